@@ -0,0 +1,20 @@
+package com.example.game.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Реактивный вариант развёртывания сервиса (WebFlux, R2DBC, реактивный Redis).
+ * <p>
+ * Предоставляет те же эндпоинты синхронизации, данных пользователя, активности и аналитики,
+ * что и основное приложение, и работает с той же схемой базы данных, которую создаёт
+ * Liquibase основного приложения.
+ * </p>
+ */
+@SpringBootApplication
+public class GameReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(GameReactiveApplication.class, args);
+    }
+}
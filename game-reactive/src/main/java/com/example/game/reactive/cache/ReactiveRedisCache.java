@@ -0,0 +1,110 @@
+package com.example.game.reactive.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.function.Supplier;
+
+/**
+ * Кэш в Redis на основе {@link ReactiveStringRedisTemplate}.
+ * <p>
+ * Ключи записываются как {@code reactive:имяКэша::ключ}. Значения реактивного приложения отличаются
+ * от значений кэшей основного приложения (например, рейтинг страны хранится списком), поэтому
+ * собственный префикс не даёт двум вариантам развёртывания читать записи друг друга в общем Redis.
+ * Составной ключ передаётся списком компонентов; каждый компонент записывается с длиной, поэтому
+ * разное разбиение на компоненты ({@code "a_b", "c"} и {@code "a", "b_c"}) не даёт одинаковых ключей.
+ * Ошибки Redis не прерывают запрос: значение загружается из базы данных.
+ * </p>
+ */
+@Component
+public class ReactiveRedisCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveRedisCache.class);
+    private static final String KEY_PREFIX = "reactive:";
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    public ReactiveRedisCache(ReactiveStringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                              @Value("${game.cache.ttl-hours:24}") long ttlHours) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * Возвращает значение из кэша или загружает и кэширует его.
+     *
+     * @param cacheName имя кэша.
+     * @param key       ключ внутри кэша: значение или список компонентов.
+     * @param type      тип значения.
+     * @param loader    загрузка значения при промахе.
+     * @param <T>       тип значения.
+     * @return значение.
+     */
+    public <T> Mono<T> get(String cacheName, Object key, TypeReference<T> type, Supplier<Mono<T>> loader) {
+        String redisKey = redisKey(cacheName, key);
+        return redisTemplate.opsForValue().get(redisKey)
+                .map(json -> read(json, type))
+                .onErrorResume(e -> {
+                    log.warn("Failed to read cache entry {}", redisKey, e);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(loader).flatMap(value -> put(cacheName, key, value).thenReturn(value)));
+    }
+
+    /**
+     * Записывает значение в кэш.
+     *
+     * @param cacheName имя кэша.
+     * @param key       ключ внутри кэша: значение или список компонентов.
+     * @param value     значение.
+     * @return завершение записи; ошибки Redis только записываются в лог.
+     */
+    public Mono<Void> put(String cacheName, Object key, Object value) {
+        String redisKey = redisKey(cacheName, key);
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(value))
+                .flatMap(json -> redisTemplate.opsForValue().set(redisKey, json, ttl))
+                .onErrorResume(e -> {
+                    log.warn("Failed to write cache entry {}", redisKey, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private <T> T read(String json, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed cache entry", e);
+        }
+    }
+
+    static String redisKey(String cacheName, Object key) {
+        StringBuilder redisKey = new StringBuilder(KEY_PREFIX).append(cacheName).append("::");
+        appendKeyPart(redisKey, key);
+        return redisKey.toString();
+    }
+
+    private static void appendKeyPart(StringBuilder redisKey, Object part) {
+        if (part == null) {
+            redisKey.append('~');
+        } else if (part instanceof Collection<?> parts) {
+            redisKey.append('[').append(parts.size()).append(']');
+            parts.forEach(element -> appendKeyPart(redisKey, element));
+        } else {
+            String value = part.toString();
+            redisKey.append(value.length()).append(':').append(value);
+        }
+    }
+}
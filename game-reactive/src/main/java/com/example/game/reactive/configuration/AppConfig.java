@@ -0,0 +1,24 @@
+package com.example.game.reactive.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.ZoneOffset;
+
+/**
+ * Конфигурационный класс реактивного приложения.
+ */
+@Configuration
+public class AppConfig {
+
+    /**
+     * Бин для получения текущего времени с часовым поясом UTC.
+     *
+     * @return объект {@link Clock}, настроенный на UTC
+     */
+    @Bean
+    public Clock clock() {
+        return Clock.system(ZoneOffset.UTC);
+    }
+}
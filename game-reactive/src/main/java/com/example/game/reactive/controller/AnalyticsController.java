@@ -0,0 +1,108 @@
+package com.example.game.reactive.controller;
+
+import com.example.game.reactive.model.UserActivityHistory;
+import com.example.game.reactive.model.UserData;
+import com.example.game.reactive.repository.UserDataRepository;
+import com.example.game.reactive.service.AnalyticsService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Реактивный контроллер аналитических данных о пользователях.
+ * <p>
+ * Предоставляет эндпоинты аналитики, основанные на запросах к базе данных: рейтинги по стране
+ * и глобальный рейтинг, количество новых пользователей и история активности пользователя.
+ * История активности может отдаваться как JSON-массивом, так и потоком NDJSON.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final UserDataRepository userDataRepository;
+    private final AnalyticsService analyticsService;
+    private final Logger log = LoggerFactory.getLogger(AnalyticsController.class);
+
+    /**
+     * Получает список пользователей с наибольшим значением "money" по указанной стране.
+     * <br>Endpoint: GET /api/analytics/top-users-by-money
+     *
+     * @param country    Код страны.
+     * @param usersCount Количество пользователей для вывода.
+     * @return Список пользователей, отсортированный по убыванию количества денег.
+     */
+    @GetMapping("/top-users-by-money")
+    public Mono<ResponseEntity<List<UserData>>> getTopUsersByMoneyPerCountry(@RequestParam String country,
+                                                                             @RequestParam int usersCount) {
+        log.info("Fetching top {} users by money for country: {}", usersCount, country);
+        return analyticsService.getTopUsersByMoneyPerCountry(country, usersCount).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Получает глобальный рейтинг пользователей по количеству денег среди всех стран
+     * или среди указанной группы стран.
+     * <br>Endpoint: GET /api/analytics/top-users-global
+     *
+     * @param countries  Коды стран региона. Если не указаны, рейтинг строится по всем странам.
+     * @param usersCount Количество пользователей для вывода.
+     * @return Список пользователей, отсортированный по убыванию количества денег.
+     */
+    @GetMapping("/top-users-global")
+    public Mono<ResponseEntity<List<UserData>>> getTopUsersByMoneyGlobal(@RequestParam(required = false) List<String> countries,
+                                                                         @RequestParam int usersCount) {
+        log.info("Fetching global top {} users by money for countries: {}", usersCount, countries);
+        return analyticsService.getTopUsersByMoneyGlobal(countries, usersCount).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Подсчитывает количество новых пользователей, зарегистрированных в указанной стране с определенной даты.
+     * <br>Endpoint: GET /api/analytics/new-users-count
+     *
+     * @param country   Код страны.
+     * @param startDate Дата начала периода.
+     * @return Количество новых пользователей в стране за заданный период.
+     */
+    @GetMapping("/new-users-count")
+    public Mono<ResponseEntity<Long>> countNewUsersByCountry(@RequestParam String country, @RequestParam LocalDate startDate) {
+        log.info("Counting new users for country: {} from date: {}", country, startDate);
+        return analyticsService.countNewUsersByCountry(country, startDate).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Получает список активности пользователя за определенный период.
+     * <br>Endpoint: GET /api/analytics/user-activity-history
+     * <p>
+     * Записи отсортированы по дате убывания. С заголовком {@code Accept: application/x-ndjson}
+     * записи отдаются построчно по мере чтения из базы данных.
+     * </p>
+     *
+     * @param uuid      Уникальный идентификатор пользователя.
+     * @param startDate Дата начала периода активности.
+     * @return Поток записей активности пользователя или 404, если пользователь не найден.
+     */
+    @GetMapping(value = "/user-activity-history",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<UserActivityHistory>>> getUserActivityHistory(@RequestParam UUID uuid,
+                                                                                  @RequestParam LocalDate startDate) {
+        log.info("Fetching activity history for user: {} from date: {}", uuid, startDate);
+        return userDataRepository.existsById(uuid)
+                .map(exists -> exists
+                        ? ResponseEntity.ok(analyticsService.getUserActivityHistory(uuid, startDate))
+                        : ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.game.reactive.controller;
+
+import com.example.game.reactive.service.UserDataService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Реактивный контроллер для работы с данными пользователя.
+ * <p>
+ * Контракт эндпоинтов совпадает с основным приложением.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class UserDataController {
+
+    private final UserDataService userDataService;
+    private final Logger log = LoggerFactory.getLogger(UserDataController.class);
+
+    /**
+     * Обрабатывает приём данных пользователя для синхронизации.
+     * <br>Endpoint: POST /api/sync
+     *
+     * @param uuid     Уникальный идентификатор пользователя.
+     * @param jsonData JSON-данные для синхронизации.
+     * @return Строка с результатом синхронизации.
+     */
+    @PostMapping("/sync")
+    public Mono<ResponseEntity<String>> syncUserData(@RequestParam UUID uuid, @RequestBody String jsonData) {
+        log.info("Syncing user data for uuid: {}", uuid);
+        return userDataService.processSyncData(uuid, jsonData).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Получает данные пользователя, изменяя счётчик синхронизации и время последней синхронизации данных.
+     * <br>Endpoint: POST /api/user-data
+     *
+     * @param uuid Уникальный идентификатор пользователя.
+     * @return JSON-строка с данными пользователя.
+     */
+    @PostMapping("/user-data")
+    public Mono<ResponseEntity<String>> getUserData(@RequestParam UUID uuid) {
+        log.info("Fetching user data for uuid: {}", uuid);
+        return userDataService.getUserData(uuid).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Обрабатывает игровую активность пользователя.
+     * <br>Endpoint: POST /api/activity
+     *
+     * @param uuid     Уникальный идентификатор пользователя.
+     * @param activity Значение активности пользователя.
+     * @return Строка с результатом обработки активности.
+     */
+    @PostMapping("/activity")
+    public Mono<ResponseEntity<String>> processActivity(@RequestParam UUID uuid, @RequestParam int activity) {
+        log.info("Processing activity for uuid: {}, activity: {}", uuid, activity);
+        return userDataService.processActivityData(uuid, activity).map(ResponseEntity::ok);
+    }
+}
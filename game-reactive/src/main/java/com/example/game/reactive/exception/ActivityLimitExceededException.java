@@ -0,0 +1,38 @@
+package com.example.game.reactive.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, которое выбрасывается при превышении лимита запросов на отправку статистики активности пользователя.
+ * <p>
+ * Этот класс расширяет {@link RequestLimitExceededException} и автоматически вызывает ошибку с кодом статуса 429 (TOO_MANY_REQUESTS) при возникновении исключения.
+ * </p>
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class ActivityLimitExceededException extends RequestLimitExceededException {
+
+    /**
+     * Константа определяющая сообщение при превышении лимита количества отправки информации в день.
+     */
+    public static final String LIMIT_ACTIVITY = "Activity limit exceeded for today.";
+
+    /**
+     * Конструктор исключения {@link ActivityLimitExceededException}.
+     * <br>Создаёт новое исключение с сообщением без времени до сброса лимита.
+     */
+    public ActivityLimitExceededException(String message) {
+        super(message, 0);
+    }
+
+    /**
+     * Конструктор исключения {@link ActivityLimitExceededException}.
+     * <br>Создаёт новое исключение с сообщением и временем до сброса лимита.
+     *
+     * @param message           сообщение об ошибке.
+     * @param retryAfterSeconds время до сброса лимита в секундах.
+     */
+    public ActivityLimitExceededException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
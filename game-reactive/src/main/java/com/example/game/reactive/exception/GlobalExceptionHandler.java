@@ -0,0 +1,132 @@
+package com.example.game.reactive.exception;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ServerWebInputException;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Глобальный обработчик исключений реактивного приложения.
+ * Возвращает те же сообщения об ошибках, что и основное приложение.
+ */
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+    private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+    private static final String ERROR = "error";
+
+    /**
+     * Обрабатывает исключение UserNotFoundException.
+     *
+     * @param e исключение о ненайденном пользователе
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(UserNotFoundException.class)
+    public Map<String, String> handleUserNotFoundException(UserNotFoundException e) {
+        log.warn("User not found: {}", e.getMessage());
+        return Collections.singletonMap(ERROR, e.getMessage());
+    }
+
+    /**
+     * Обрабатывает исключение InvalidJsonException.
+     *
+     * @param e исключение о некорректном JSON-входе
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(InvalidJsonException.class)
+    public Map<String, String> handleInvalidJsonException(InvalidJsonException e) {
+        log.warn("Invalid JSON input: {}", e.getMessage());
+        return Collections.singletonMap(ERROR, e.getMessage());
+    }
+
+    /**
+     * Обрабатывает превышение суточного лимита синхронизаций или запросов статистики.
+     * <p>
+     * Как и основное приложение, отвечает статусом 429 и, если время до сброса лимита известно,
+     * заголовком {@code Retry-After}.
+     * </p>
+     *
+     * @param e исключение о превышении лимита
+     * @return ответ со статусом 429
+     */
+    @ExceptionHandler(RequestLimitExceededException.class)
+    public ResponseEntity<Map<String, String>> handleRequestLimitExceededException(RequestLimitExceededException e) {
+        log.warn("Request limit exceeded: {}", e.getMessage());
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS);
+        if (e.getRetryAfterSeconds() > 0) {
+            response.header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()));
+        }
+        return response.body(Collections.singletonMap(ERROR, e.getMessage()));
+    }
+
+    /**
+     * Обрабатывает исключение ConcurrentUpdateException.
+     *
+     * @param e исключение об исчерпании попыток обновления при параллельных изменениях
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(ConcurrentUpdateException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleConcurrentUpdateException(ConcurrentUpdateException e) {
+        log.warn("Concurrent update conflict: {}", e.getMessage());
+        return Collections.singletonMap(ERROR, e.getMessage());
+    }
+
+    /**
+     * Обрабатывает исключение DatabaseException.
+     *
+     * @param e исключение, связанное с ошибкой базы данных
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(DatabaseException.class)
+    public Map<String, String> handleDatabaseException(DatabaseException e) {
+        log.error("Database error: {}", e.getMessage());
+        return Collections.singletonMap(ERROR, "Database error occurred. Please try again later.");
+    }
+
+    /**
+     * Обрабатывает исключение IllegalArgumentException.
+     *
+     * @param e исключение о некорректном аргументе
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public Map<String, String> handleIllegalArgumentException(IllegalArgumentException e) {
+        log.warn("Invalid input: {}", e.getMessage());
+        return Collections.singletonMap(ERROR, e.getMessage());
+    }
+
+    /**
+     * Обрабатывает ошибку преобразования параметра запроса, например некорректный UUID.
+     *
+     * @param e исключение о некорректном входе запроса
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(ServerWebInputException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleServerWebInputException(ServerWebInputException e) {
+        String name = e.getMethodParameter() != null ? e.getMethodParameter().getParameterName() : null;
+        log.warn("Invalid value of parameter {}: {}", name, e.getReason());
+        return Collections.singletonMap(ERROR, "Invalid value of parameter '" + name + "'.");
+    }
+
+    /**
+     * Обрабатывает все непредвиденные исключения.
+     *
+     * @param e общее исключение
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(Exception.class)
+    @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+    public Map<String, String> handleGenericException(Exception e) {
+        log.error("Unexpected error: ", e);
+        return Collections.singletonMap(ERROR, "An unexpected error occurred.");
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.game.reactive.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, которое выбрасывается при превышении лимита запросов на синхронизацию данных пользователя.
+ * <p>
+ * Этот класс расширяет {@link RequestLimitExceededException} и автоматически вызывает ошибку с кодом статуса 429 (TOO_MANY_REQUESTS) при возникновении исключения.
+ * </p>
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class SyncLimitExceededException extends RequestLimitExceededException {
+
+    /**
+     * Константа определяющая сообщение при превышении лимита количества отправлений информации в день.
+     */
+    public static final String MESSAGE_SYNC = "Sync limit exceeded for today.";
+
+    /**
+     * Константа определяющая сообщение при превышении лимита получения информации в день.
+     */
+    public static final String MESSAGE_RQ = "You have already received your data today.";
+
+    /**
+     * Конструктор исключения {@link SyncLimitExceededException}.
+     * <br>Создаёт новое исключение с сообщением без времени до сброса лимита.
+     */
+    public SyncLimitExceededException(String message) {
+        super(message, 0);
+    }
+
+    /**
+     * Конструктор исключения {@link SyncLimitExceededException}.
+     * <br>Создаёт новое исключение с сообщением и временем до сброса лимита.
+     *
+     * @param message           сообщение об ошибке.
+     * @param retryAfterSeconds время до сброса лимита в секундах.
+     */
+    public SyncLimitExceededException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.game.reactive.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Запись истории активности пользователя из таблицы {@code user_activity_history}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("user_activity_history")
+public class UserActivityHistory {
+
+    /**
+     * Уникальный идентификатор записи.
+     */
+    @Id
+    private Long id;
+
+    /**
+     * UUID пользователя, к которому относится запись.
+     */
+    private UUID uuid;
+
+    /**
+     * Показатель активности пользователя.
+     */
+    private Integer activity;
+
+    /**
+     * Дата активности пользователя.
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    private LocalDate activityDate;
+}
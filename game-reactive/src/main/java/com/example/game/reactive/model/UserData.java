@@ -0,0 +1,83 @@
+package com.example.game.reactive.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Данные пользователя из таблицы {@code user_data}.
+ * <p>
+ * Пользователи регистрируются основным приложением, поэтому реактивный вариант только
+ * читает и обновляет существующие записи.
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("user_data")
+public class UserData {
+
+    /**
+     * Уникальный идентификатор пользователя.
+     */
+    @Id
+    private UUID uuid;
+
+    /**
+     * Количество денег у пользователя.
+     */
+    private int money;
+
+    /**
+     * Код страны пользователя.
+     */
+    private String country;
+
+    /**
+     * Показатель пользовательской активности в игре.
+     */
+    private int activity;
+
+    /**
+     * Количество синхронизаций данных (ограничение: до 100 в день).
+     */
+    private int syncCount;
+
+    /**
+     * Количество обновлений статистики активности (ограничение: до 10000 в день).
+     */
+    private int statCount;
+
+    /**
+     * Время последней синхронизации данных в миллисекундах.
+     */
+    private long lastSyncTime;
+
+    /**
+     * Время последнего обновления активности в миллисекундах.
+     */
+    private long lastStatTime;
+
+    /**
+     * Версия записи для оптимистичной блокировки, общая с основным приложением.
+     * Обёртка {@link Long}: R2DBC считает новой только запись с {@code null}, а не с нулевой версией.
+     * Не передаётся клиентам.
+     */
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * Дата и время регистрации пользователя.
+     */
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss", timezone = "UTC")
+    private LocalDateTime createdAt;
+}
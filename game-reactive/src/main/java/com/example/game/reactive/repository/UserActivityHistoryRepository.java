@@ -0,0 +1,29 @@
+package com.example.game.reactive.repository;
+
+import com.example.game.reactive.model.UserActivityHistory;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Реактивный репозиторий истории активности пользователей.
+ */
+@Repository
+public interface UserActivityHistoryRepository extends ReactiveCrudRepository<UserActivityHistory, Long> {
+
+    /**
+     * Получает историю активности пользователя начиная с указанной даты, по убыванию даты.
+     *
+     * @param uuid      UUID пользователя.
+     * @param startDate Дата начала периода.
+     * @param limit     Максимальное количество записей.
+     * @return Поток записей активности.
+     */
+    @Query("SELECT * FROM user_activity_history WHERE uuid = :uuid AND activity_date >= :startDate "
+            + "ORDER BY activity_date DESC LIMIT :limit")
+    Flux<UserActivityHistory> findUserActivityHistoryByUuidAndPeriod(UUID uuid, LocalDate startDate, int limit);
+}
@@ -0,0 +1,46 @@
+package com.example.game.reactive.repository;
+
+import com.example.game.reactive.model.UserData;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Реактивный репозиторий данных пользователей.
+ */
+@Repository
+public interface UserDataRepository extends ReactiveCrudRepository<UserData, UUID> {
+
+    /**
+     * Получает пользователей страны, отсортированных по убыванию количества денег, при равенстве — по UUID.
+     *
+     * @param country Код страны.
+     * @param limit   Максимальное количество пользователей.
+     * @return Поток пользователей.
+     */
+    @Query("SELECT * FROM user_data WHERE country = :country ORDER BY money DESC, uuid LIMIT :limit")
+    Flux<UserData> findTopUsersByCountryMoney(String country, int limit);
+
+    /**
+     * Подсчитывает количество пользователей страны, зарегистрированных начиная с указанного момента.
+     *
+     * @param country       Код страны.
+     * @param startDateTime Дата и время начала периода.
+     * @return Количество новых пользователей.
+     */
+    @Query("SELECT COUNT(*) FROM user_data WHERE country = :country AND created_at >= :startDateTime")
+    Mono<Long> countNewUsersByCountry(String country, LocalDateTime startDateTime);
+
+    /**
+     * Возвращает список всех стран, в которых есть пользователи.
+     *
+     * @return Коды стран без повторений.
+     */
+    @Query("SELECT DISTINCT country FROM user_data")
+    Flux<String> findDistinctCountries();
+}
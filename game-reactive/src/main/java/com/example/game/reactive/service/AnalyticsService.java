@@ -0,0 +1,205 @@
+package com.example.game.reactive.service;
+
+import com.example.game.reactive.cache.ReactiveRedisCache;
+import com.example.game.reactive.exception.DatabaseException;
+import com.example.game.reactive.model.UserActivityHistory;
+import com.example.game.reactive.model.UserData;
+import com.example.game.reactive.repository.UserActivityHistoryRepository;
+import com.example.game.reactive.repository.UserDataRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static com.example.game.reactive.exception.DatabaseException.ERROR_ACTIVITY_HISTORY;
+import static com.example.game.reactive.exception.DatabaseException.ERROR_NEW_USERS;
+import static com.example.game.reactive.exception.DatabaseException.ERROR_TOP_USERS;
+
+/**
+ * Реактивный сервис аналитических запросов.
+ * <p>
+ * Рейтинги и количество новых пользователей кэшируются под теми же ключами, что и в основном
+ * приложении. Глобальный рейтинг запрашивает топ-N стран с ограниченным параллелизмом, чтобы
+ * не занимать больше соединений пула, чем задано. История активности отдаётся потоком и читается
+ * из базы данных порциями по мере того, как клиент принимает данные.
+ * </p>
+ */
+@Service
+public class AnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsService.class);
+
+    /**
+     * Константа определяющая сообщение при передаче нулевого или пустого значения в параметр.
+     */
+    public static final String COUNTRY_REQUIRED = "Country must not be null or empty.";
+
+    /**
+     * Максимальное количество записей в ответе с историей активности.
+     */
+    private static final int MAX_HISTORY_SIZE = 10000;
+
+    /**
+     * Максимальное количество пользователей в глобальном рейтинге.
+     */
+    private static final int MAX_GLOBAL_TOP_SIZE = 10000;
+
+    /**
+     * Порядок пользователей в рейтинге: по убыванию денег, при равенстве — по UUID в порядке PostgreSQL.
+     */
+    private static final Comparator<UserData> BY_MONEY_DESC = Comparator.comparingInt(UserData::getMoney).reversed()
+            .thenComparing(UserData::getUuid, AnalyticsService::compareUnsigned);
+
+    private final UserDataRepository userDataRepository;
+    private final UserActivityHistoryRepository userActivityHistoryRepository;
+    private final ReactiveRedisCache cache;
+    private final int countryConcurrency;
+    private final int streamBatchSize;
+
+    public AnalyticsService(UserDataRepository userDataRepository,
+                            UserActivityHistoryRepository userActivityHistoryRepository,
+                            ReactiveRedisCache cache,
+                            @Value("${game.analytics.country-concurrency:8}") int countryConcurrency,
+                            @Value("${game.analytics.stream-batch-size:256}") int streamBatchSize) {
+        this.userDataRepository = userDataRepository;
+        this.userActivityHistoryRepository = userActivityHistoryRepository;
+        this.cache = cache;
+        this.countryConcurrency = countryConcurrency;
+        this.streamBatchSize = streamBatchSize;
+    }
+
+    /**
+     * Получение списка пользователей с наибольшим значением "money" в стране.
+     *
+     * @param country    Страна для поиска пользователей.
+     * @param usersCount Количество пользователей, которых необходимо получить.
+     * @return Список пользователей по убыванию "money"; ошибка {@link IllegalArgumentException}
+     * при некорректных параметрах или {@link DatabaseException}, если данных нет или запрос не удался.
+     */
+    public Mono<List<UserData>> getTopUsersByMoneyPerCountry(String country, int usersCount) {
+        if (usersCount < 1) {
+            return Mono.error(new IllegalArgumentException("The number of users must be at least 1."));
+        }
+        if (country == null || country.isBlank()) {
+            return Mono.error(new IllegalArgumentException(COUNTRY_REQUIRED));
+        }
+
+        return cache.get("topUsers", List.of(country, usersCount), new TypeReference<>() {
+        }, () -> {
+            log.info("Fetching top {} users by money for country: {}", usersCount, country);
+            return userDataRepository.findTopUsersByCountryMoney(country, usersCount)
+                    .collectList()
+                    .filter(users -> !users.isEmpty())
+                    .switchIfEmpty(Mono.error(() -> new DatabaseException(ERROR_TOP_USERS)))
+                    .onErrorMap(e -> !(e instanceof DatabaseException), e -> {
+                        log.error("Error fetching top users by money for country: {}", country, e);
+                        return new DatabaseException(ERROR_TOP_USERS);
+                    });
+        });
+    }
+
+    /**
+     * Получение глобального рейтинга пользователей по количеству денег среди всех стран
+     * или среди указанной группы стран.
+     * <p>
+     * Одновременно выполняется не более {@code game.analytics.country-concurrency} запросов по странам.
+     * </p>
+     *
+     * @param countries  Коды стран региона или {@code null}/пустой список для глобального рейтинга.
+     * @param usersCount Количество пользователей, которых необходимо получить.
+     * @return Список пользователей по убыванию "money"; ошибка {@link IllegalArgumentException}
+     * или {@link DatabaseException}.
+     */
+    public Mono<List<UserData>> getTopUsersByMoneyGlobal(List<String> countries, int usersCount) {
+        if (usersCount < 1 || usersCount > MAX_GLOBAL_TOP_SIZE) {
+            return Mono.error(new IllegalArgumentException(
+                    "The number of users must be between 1 and " + MAX_GLOBAL_TOP_SIZE + "."));
+        }
+
+        return cache.get("globalTopUsers", Arrays.asList(countries, usersCount), new TypeReference<>() {
+        }, () -> {
+            log.info("Fetching global top {} users by money for countries: {}", usersCount, countries);
+            Flux<String> targetCountries = countries == null || countries.isEmpty()
+                    ? userDataRepository.findDistinctCountries()
+                    : Flux.fromIterable(countries).filter(c -> c != null && !c.isBlank()).distinct();
+
+            return targetCountries
+                    .flatMap(country -> userDataRepository.findTopUsersByCountryMoney(country, usersCount)
+                            .collectList(), countryConcurrency)
+                    .flatMapIterable(users -> users)
+                    .sort(BY_MONEY_DESC)
+                    .take(usersCount)
+                    .collectList()
+                    .onErrorMap(e -> {
+                        log.error("Error fetching global top users by money for countries: {}", countries, e);
+                        return new DatabaseException(ERROR_TOP_USERS);
+                    });
+        });
+    }
+
+    /**
+     * Подсчет количества новых пользователей страны за период.
+     *
+     * @param country   Страна для подсчета новых пользователей.
+     * @param startDate Дата начала периода.
+     * @return Количество новых пользователей; ошибка {@link IllegalArgumentException} или {@link DatabaseException}.
+     */
+    public Mono<Long> countNewUsersByCountry(String country, LocalDate startDate) {
+        if (country == null || country.isBlank()) {
+            return Mono.error(new IllegalArgumentException(COUNTRY_REQUIRED));
+        }
+        if (startDate == null) {
+            return Mono.error(new IllegalArgumentException("Start date must not be null."));
+        }
+
+        return cache.get("newUsersCount", List.of(country, startDate), new TypeReference<>() {
+        }, () -> {
+            log.info("Counting new users for country: {} from date: {}", country, startDate);
+            return userDataRepository.countNewUsersByCountry(country, startDate.atStartOfDay())
+                    .onErrorMap(e -> {
+                        log.error("Error counting new users for country: {}", country, e);
+                        return new DatabaseException(ERROR_NEW_USERS);
+                    });
+        });
+    }
+
+    /**
+     * Потоковое получение истории активности пользователя по убыванию даты.
+     * <p>
+     * Записи запрашиваются у базы данных порциями по {@code game.analytics.stream-batch-size}
+     * по мере спроса клиента, поэтому медленный клиент не заставляет сервер буферизовать всю историю.
+     * </p>
+     *
+     * @param uuid      UUID пользователя.
+     * @param startDate Дата начала периода.
+     * @return Поток записей активности; ошибка {@link DatabaseException}, если записей нет или запрос не удался.
+     */
+    public Flux<UserActivityHistory> getUserActivityHistory(UUID uuid, LocalDate startDate) {
+        if (startDate == null) {
+            return Flux.error(new IllegalArgumentException("Start date must not be null."));
+        }
+
+        log.info("Fetching activity history for user: {} from date: {}", uuid, startDate);
+        return userActivityHistoryRepository.findUserActivityHistoryByUuidAndPeriod(uuid, startDate, MAX_HISTORY_SIZE)
+                .limitRate(streamBatchSize)
+                .switchIfEmpty(Flux.error(() -> new DatabaseException(ERROR_ACTIVITY_HISTORY)))
+                .onErrorMap(e -> !(e instanceof DatabaseException), e -> {
+                    log.error("Error fetching activity history for user: {}", uuid, e);
+                    return new DatabaseException(ERROR_ACTIVITY_HISTORY);
+                });
+    }
+
+    private static int compareUnsigned(UUID a, UUID b) {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
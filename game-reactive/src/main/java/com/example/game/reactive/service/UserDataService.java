@@ -0,0 +1,247 @@
+package com.example.game.reactive.service;
+
+import com.example.game.reactive.cache.ReactiveRedisCache;
+import com.example.game.reactive.exception.ActivityLimitExceededException;
+import com.example.game.reactive.exception.ConcurrentUpdateException;
+import com.example.game.reactive.exception.InvalidJsonException;
+import com.example.game.reactive.exception.SyncLimitExceededException;
+import com.example.game.reactive.exception.UserNotFoundException;
+import com.example.game.reactive.model.UserData;
+import com.example.game.reactive.repository.UserDataRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static com.example.game.reactive.exception.ActivityLimitExceededException.LIMIT_ACTIVITY;
+import static com.example.game.reactive.exception.ConcurrentUpdateException.CONCURRENT_UPDATE;
+import static com.example.game.reactive.exception.InvalidJsonException.INVALID_JSON_FORMAT;
+import static com.example.game.reactive.exception.InvalidJsonException.JSON_PROCESSING_ERROR;
+import static com.example.game.reactive.exception.SyncLimitExceededException.MESSAGE_RQ;
+import static com.example.game.reactive.exception.SyncLimitExceededException.MESSAGE_SYNC;
+import static com.example.game.reactive.exception.UserNotFoundException.USER_NOT_FOUND;
+
+/**
+ * Реактивный сервис для обработки и синхронизации данных пользователей.
+ * <p>
+ * Повторяет правила основного приложения: лимиты синхронизаций и статистики за сутки,
+ * однократное получение данных в сутки и запись ответов в кэш {@code users}.
+ * </p>
+ * <p>
+ * Записи защищены оптимистичной блокировкой по столбцу {@code version}. Если версия изменилась
+ * между чтением и сохранением, обновление целиком повторяется со случайной экспоненциальной задержкой
+ * (не больше {@code game.user-data.retry.max-attempts} попыток), затем возвращается
+ * {@link ConcurrentUpdateException}.
+ * </p>
+ */
+@Service
+public class UserDataService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDataService.class);
+
+    /**
+     * Максимальное количество синхронизаций пользователя за сутки.
+     */
+    static final int SYNC_LIMIT = 100;
+
+    /**
+     * Максимальное количество запросов статистики пользователя за сутки.
+     */
+    static final int ACTIVITY_LIMIT = 10000;
+
+    private static final String USERS_CACHE = "users";
+    private static final long DAY_MILLIS = 86400000;
+    private static final String SYNC_RESPONSE = "Data received successfully.";
+    private static final String ACTIVITY_RESPONSE = "Activity data received successfully.";
+
+    private final UserDataRepository userDataRepository;
+    private final ReactiveRedisCache cache;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final int maxAttempts;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+
+    public UserDataService(UserDataRepository userDataRepository, ReactiveRedisCache cache,
+                           ObjectMapper objectMapper, Clock clock,
+                           @Value("${game.user-data.retry.max-attempts:5}") int maxAttempts,
+                           @Value("${game.user-data.retry.base-backoff-ms:2}") long baseBackoffMs,
+                           @Value("${game.user-data.retry.max-backoff-ms:50}") long maxBackoffMs) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Retry needs at least one attempt: " + maxAttempts);
+        }
+        this.userDataRepository = userDataRepository;
+        this.cache = cache;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoff = Duration.ofMillis(baseBackoffMs);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMs);
+    }
+
+    /**
+     * Обработка и синхронизация данных пользователя.
+     *
+     * @param uuid     UUID пользователя для синхронизации.
+     * @param jsonData Данные для синхронизации в формате JSON.
+     * @return Сообщение об успешной синхронизации данных; ошибка {@link UserNotFoundException},
+     * {@link SyncLimitExceededException}, {@link InvalidJsonException} или {@link ConcurrentUpdateException}.
+     */
+    public Mono<String> processSyncData(UUID uuid, String jsonData) {
+        long currentTime = clock.millis();
+        log.info("Processing sync data for user: {}", uuid);
+
+        return updateUser(uuid, userData -> {
+            checkAndResetCounters(userData, false, currentTime);
+            if (userData.getSyncCount() >= SYNC_LIMIT) {
+                return Mono.error(new SyncLimitExceededException(MESSAGE_SYNC,
+                        retryAfterSeconds(userData.getLastSyncTime(), currentTime)));
+            }
+            JsonNode rootNode = readSyncData(uuid, jsonData);
+            userData.setMoney(rootNode.path("money").asInt());
+            userData.setCountry(rootNode.path("country").asText());
+            userData.setSyncCount(userData.getSyncCount() + 1);
+            userData.setLastSyncTime(currentTime);
+            return userDataRepository.save(userData);
+        }).then(cache.put(USERS_CACHE, uuid, SYNC_RESPONSE))
+                .doOnSuccess(ignored -> log.info("Sync data successfully processed for user: {}", uuid))
+                .thenReturn(SYNC_RESPONSE);
+    }
+
+    /**
+     * Получение данных пользователя по UUID.
+     *
+     * @param uuid UUID пользователя для получения данных.
+     * @return Данные пользователя в формате JSON; ошибка {@link UserNotFoundException}
+     * или {@link SyncLimitExceededException}.
+     */
+    public Mono<String> getUserData(UUID uuid) {
+        return cache.get(USERS_CACHE, uuid, new TypeReference<>() {
+        }, () -> loadUserData(uuid));
+    }
+
+    /**
+     * Обработка данных активности пользователя и обновление статистики.
+     *
+     * @param uuid     уникальный идентификатор пользователя.
+     * @param activity количество активности, которое нужно добавить к текущим данным пользователя.
+     * @return сообщение об успешной обработке данных активности; ошибка {@link UserNotFoundException},
+     * {@link ActivityLimitExceededException} или {@link ConcurrentUpdateException}.
+     */
+    public Mono<String> processActivityData(UUID uuid, int activity) {
+        long currentTime = clock.millis();
+        log.info("Processing activity data for user: {}", uuid);
+
+        return updateUser(uuid, userData -> {
+            checkAndResetCounters(userData, true, currentTime);
+            if (userData.getStatCount() >= ACTIVITY_LIMIT) {
+                return Mono.error(new ActivityLimitExceededException(LIMIT_ACTIVITY,
+                        retryAfterSeconds(userData.getLastStatTime(), currentTime)));
+            }
+            userData.setActivity(userData.getActivity() + activity);
+            userData.setStatCount(userData.getStatCount() + 1);
+            userData.setLastStatTime(currentTime);
+            return userDataRepository.save(userData);
+        }).then(cache.put(USERS_CACHE, uuid, ACTIVITY_RESPONSE))
+                .thenReturn(ACTIVITY_RESPONSE);
+    }
+
+    private Mono<String> loadUserData(UUID uuid) {
+        long currentTime = clock.millis();
+        log.info("Fetching user data for UUID: {}", uuid);
+
+        return updateUser(uuid, userData -> {
+            checkAndResetCounters(userData, false, currentTime);
+            if (userData.getSyncCount() >= 1) {
+                return Mono.error(new SyncLimitExceededException(MESSAGE_RQ,
+                        retryAfterSeconds(userData.getLastSyncTime(), currentTime)));
+            }
+            userData.setSyncCount(userData.getSyncCount() + 1);
+            userData.setLastSyncTime(currentTime);
+            return userDataRepository.save(userData);
+        }).map(userData -> writeUserData(uuid, userData));
+    }
+
+    /**
+     * Читает пользователя и применяет к нему обновление, повторяя чтение и обновление при конфликте версий.
+     */
+    private Mono<UserData> updateUser(UUID uuid, Function<UserData, Mono<UserData>> update) {
+        return Mono.defer(() -> findUser(uuid).flatMap(update))
+                .retryWhen(Retry.backoff(maxAttempts - 1, baseBackoff)
+                        .maxBackoff(maxBackoff)
+                        .filter(OptimisticLockingFailureException.class::isInstance)
+                        .doBeforeRetry(signal -> log.debug("Retrying update of user {} after conflict, attempt {}",
+                                uuid, signal.totalRetries() + 1))
+                        .onRetryExhaustedThrow((spec, signal) -> {
+                            log.warn("Giving up update of user {} after {} conflicting attempts", uuid, maxAttempts);
+                            return new ConcurrentUpdateException(CONCURRENT_UPDATE);
+                        }));
+    }
+
+    private Mono<UserData> findUser(UUID uuid) {
+        return userDataRepository.findById(uuid)
+                .switchIfEmpty(Mono.error(() -> new UserNotFoundException(USER_NOT_FOUND)));
+    }
+
+    private JsonNode readSyncData(UUID uuid, String jsonData) {
+        try {
+            return objectMapper.readTree(jsonData);
+        } catch (JsonProcessingException e) {
+            log.error("Error parsing JSON for user: {}", uuid, e);
+            throw new InvalidJsonException(INVALID_JSON_FORMAT);
+        }
+    }
+
+    private String writeUserData(UUID uuid, UserData userData) {
+        try {
+            return objectMapper.writeValueAsString(userData);
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing user data for UUID: {}", uuid, e);
+            throw new InvalidJsonException(JSON_PROCESSING_ERROR);
+        }
+    }
+
+    /**
+     * Время до сброса суточного счётчика для заголовка {@code Retry-After}.
+     *
+     * @param lastTime    время последнего учтённого запроса в миллисекундах.
+     * @param currentTime время текущего запроса в миллисекундах.
+     * @return количество секунд до сброса счётчика, не меньше одной.
+     */
+    static long retryAfterSeconds(long lastTime, long currentTime) {
+        long remainingMs = lastTime + DAY_MILLIS - currentTime;
+        return Math.max(1, (remainingMs + 999) / 1000);
+    }
+
+    /**
+     * Сбрасывает счётчик статистики или синхронизации, если с последнего обновления прошло более 24 часов.
+     * Вызывается до проверки лимита, иначе исчерпанный счётчик не сбрасывался бы никогда.
+     *
+     * @param userData    данные пользователя.
+     * @param isStatCheck {@code true} для счётчика статистики, {@code false} для счётчика синхронизации.
+     * @param currentTime текущее время в миллисекундах.
+     */
+    private static void checkAndResetCounters(UserData userData, boolean isStatCheck, long currentTime) {
+        long timeDiff = currentTime - (isStatCheck ? userData.getLastStatTime() : userData.getLastSyncTime());
+
+        if (timeDiff > DAY_MILLIS) {
+            if (isStatCheck) {
+                userData.setStatCount(0);
+            } else {
+                userData.setSyncCount(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.game.reactive.benchmark;
+
+import com.example.game.reactive.service.UserDataService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * Нагрузочный тест потребления потоков и соединений реактивным вариантом.
+ * <p>
+ * Сценарий совпадает с {@code MvcConcurrencyFootprintBenchmark} основного приложения:
+ * {@value #CONCURRENCY} одновременных запросов {@code POST /api/activity}, обработка каждого
+ * ожидает ввода-вывода {@value #LATENCY_MS} мс. Ожидание моделируется без блокировки потока,
+ * как при запросе через R2DBC. Выводятся пиковое количество потоков сервера, число одновременно
+ * обрабатываемых запросов (каждому в блокирующем варианте нужен поток и соединение JDBC) и время.
+ * Запуск: {@code mvn test -Dtest=ConcurrencyFootprintBenchmark -Dbenchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "logging.level.com.example.game=WARN")
+class ConcurrencyFootprintBenchmark {
+
+    private static final int CONCURRENCY = 1000;
+    private static final int LATENCY_MS = 100;
+    private static final String SERVER_THREAD_PREFIX = "webflux-http-";
+
+    @LocalServerPort
+    private int port;
+
+    @MockitoBean
+    private UserDataService userDataService;
+
+    @Test
+    void activityUnderConcurrentLoad() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(userDataService.processActivityData(any(), anyInt())).thenAnswer(invocation ->
+                Mono.delay(Duration.ofMillis(LATENCY_MS))
+                        .doOnSubscribe(s -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                        .doFinally(signal -> inFlight.decrementAndGet())
+                        .thenReturn("Activity data received successfully."));
+
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clientExecutor).build();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        try {
+            // Прогрев: соединения и потоки сервера создаются первой волной, измеряется вторая
+            sendAll(client).join();
+            threads.resetPeakThreadCount();
+            int threadsBefore = threads.getThreadCount();
+            AtomicInteger maxServerThreads = new AtomicInteger();
+
+            long start = System.nanoTime();
+            CompletableFuture<List<HttpResponse<String>>> all = sendAll(client);
+            while (!all.isDone()) {
+                maxServerThreads.accumulateAndGet(countServerThreads(), Math::max);
+                Thread.sleep(5);
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            all.join().forEach(response -> assertThat(response.statusCode()).isEqualTo(200));
+            System.out.printf("WebFlux: %d requests x %d ms in %d ms; server threads %d; "
+                            + "requests in flight %d; JVM threads %d -> peak %d%n",
+                    CONCURRENCY, LATENCY_MS, elapsedMs, maxServerThreads.get(), maxInFlight.get(),
+                    threadsBefore, threads.getPeakThreadCount());
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<List<HttpResponse<String>>> sendAll(HttpClient client) {
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(CONCURRENCY);
+        for (int i = 0; i < CONCURRENCY; i++) {
+            responses.add(send(client));
+        }
+        return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> responses.stream().map(CompletableFuture::join).toList());
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(HttpClient client) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                        + "/api/activity?uuid=" + UUID.randomUUID() + "&activity=1"))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int countServerThreads() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith(SERVER_THREAD_PREFIX))
+                .count();
+    }
+}
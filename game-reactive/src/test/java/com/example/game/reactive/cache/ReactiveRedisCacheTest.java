@@ -0,0 +1,32 @@
+package com.example.game.reactive.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveRedisCacheTest {
+
+    @Test
+    void redisKey_ShouldUseOwnPrefix() {
+        UUID uuid = new UUID(0, 1);
+
+        assertThat(ReactiveRedisCache.redisKey("users", uuid))
+                .isEqualTo("reactive:users::36:" + uuid);
+    }
+
+    @Test
+    void redisKey_ShouldDistinguishComponentBoundaries() {
+        assertThat(ReactiveRedisCache.redisKey("newUsersCount", List.of("a_b", "c")))
+                .isNotEqualTo(ReactiveRedisCache.redisKey("newUsersCount", List.of("a", "b_c")));
+    }
+
+    @Test
+    void redisKey_ShouldDistinguishNullFromText() {
+        assertThat(ReactiveRedisCache.redisKey("globalTopUsers", Arrays.asList(null, 10)))
+                .isNotEqualTo(ReactiveRedisCache.redisKey("globalTopUsers", List.of("null", 10)));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.game.reactive.controller;
+
+import com.example.game.reactive.exception.GlobalExceptionHandler;
+import com.example.game.reactive.model.UserActivityHistory;
+import com.example.game.reactive.repository.UserDataRepository;
+import com.example.game.reactive.service.AnalyticsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsControllerTest {
+
+    private static final UUID USER_ID = UUID.fromString("3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f");
+    private static final LocalDate START_DATE = LocalDate.of(2025, 1, 1);
+
+    @Mock
+    private UserDataRepository userDataRepository;
+    @Mock
+    private AnalyticsService analyticsService;
+
+    @InjectMocks
+    private AnalyticsController analyticsController;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToController(analyticsController)
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void countNewUsersByCountry_ShouldReturnCount() {
+        when(analyticsService.countNewUsersByCountry("US", START_DATE)).thenReturn(Mono.just(42L));
+
+        webTestClient.get().uri("/api/analytics/new-users-count?country=US&startDate=2025-01-01")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Long.class).isEqualTo(42L);
+    }
+
+    @Test
+    void getUserActivityHistory_ShouldStreamNdjson() {
+        when(userDataRepository.existsById(USER_ID)).thenReturn(Mono.just(true));
+        when(analyticsService.getUserActivityHistory(USER_ID, START_DATE)).thenReturn(Flux.just(
+                new UserActivityHistory(2L, USER_ID, 20, START_DATE.plusDays(1)),
+                new UserActivityHistory(1L, USER_ID, 10, START_DATE)));
+
+        webTestClient.get().uri("/api/analytics/user-activity-history?uuid={uuid}&startDate=2025-01-01", USER_ID)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(UserActivityHistory.class)
+                .getResponseBody()
+                .map(UserActivityHistory::getActivity)
+                .as(StepVerifier::create)
+                .expectNext(20, 10)
+                .verifyComplete();
+    }
+
+    @Test
+    void getUserActivityHistory_ShouldReturnNotFoundForUnknownUser() {
+        when(userDataRepository.existsById(USER_ID)).thenReturn(Mono.just(false));
+
+        webTestClient.get().uri("/api/analytics/user-activity-history?uuid={uuid}&startDate=2025-01-01", USER_ID)
+                .exchange()
+                .expectStatus().isNotFound();
+
+        verifyNoInteractions(analyticsService);
+    }
+}
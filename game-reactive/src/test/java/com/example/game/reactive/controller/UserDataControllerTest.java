@@ -0,0 +1,100 @@
+package com.example.game.reactive.controller;
+
+import com.example.game.reactive.exception.ConcurrentUpdateException;
+import com.example.game.reactive.exception.GlobalExceptionHandler;
+import com.example.game.reactive.exception.SyncLimitExceededException;
+import com.example.game.reactive.service.UserDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserDataControllerTest {
+
+    private static final String USER_ID = "3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f";
+
+    @Mock
+    private UserDataService userDataService;
+
+    @InjectMocks
+    private UserDataController userDataController;
+
+    private WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        webTestClient = WebTestClient.bindToController(userDataController)
+                .controllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void syncUserData_ShouldReturnOk() {
+        when(userDataService.processSyncData(UUID.fromString(USER_ID), "{\"money\":1}"))
+                .thenReturn(Mono.just("Data received successfully."));
+
+        webTestClient.post().uri("/api/sync?uuid={uuid}", USER_ID)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"money\":1}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Data received successfully.");
+    }
+
+    @Test
+    void getUserData_ShouldReturnTooManyRequestsWithRetryAfterWhenLimitExceeded() {
+        when(userDataService.getUserData(UUID.fromString(USER_ID)))
+                .thenReturn(Mono.error(new SyncLimitExceededException(SyncLimitExceededException.MESSAGE_RQ, 3600)));
+
+        webTestClient.post().uri("/api/user-data?uuid={uuid}", USER_ID)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "3600")
+                .expectBody().jsonPath("$.error").isEqualTo(SyncLimitExceededException.MESSAGE_RQ);
+    }
+
+    @Test
+    void processActivity_ShouldReturnActivityData() {
+        when(userDataService.processActivityData(UUID.fromString(USER_ID), 100))
+                .thenReturn(Mono.just("Activity data received successfully."));
+
+        webTestClient.post().uri("/api/activity?uuid={uuid}&activity=100", USER_ID)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Activity data received successfully.");
+    }
+
+    @Test
+    void processActivity_ShouldReturnConflictWhenRetriesAreExhausted() {
+        when(userDataService.processActivityData(UUID.fromString(USER_ID), 100))
+                .thenReturn(Mono.error(new ConcurrentUpdateException(ConcurrentUpdateException.CONCURRENT_UPDATE)));
+
+        webTestClient.post().uri("/api/activity?uuid={uuid}&activity=100", USER_ID)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT)
+                .expectBody().jsonPath("$.error").isEqualTo(ConcurrentUpdateException.CONCURRENT_UPDATE);
+    }
+
+    @Test
+    void processActivity_ShouldRejectMalformedUuid() {
+        webTestClient.post().uri("/api/activity?uuid=not-a-uuid&activity=100")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.error").isEqualTo("Invalid value of parameter 'uuid'.");
+
+        verifyNoInteractions(userDataService);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.game.reactive.service;
+
+import com.example.game.reactive.cache.ReactiveRedisCache;
+import com.example.game.reactive.exception.DatabaseException;
+import com.example.game.reactive.model.UserActivityHistory;
+import com.example.game.reactive.model.UserData;
+import com.example.game.reactive.repository.UserActivityHistoryRepository;
+import com.example.game.reactive.repository.UserDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsServiceTest {
+
+    private static final UUID USER_ID = UUID.fromString("3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f");
+    private static final int COUNTRY_CONCURRENCY = 2;
+
+    @Mock
+    private UserDataRepository userDataRepository;
+    @Mock
+    private UserActivityHistoryRepository userActivityHistoryRepository;
+    @Mock
+    private ReactiveRedisCache cache;
+
+    private AnalyticsService analyticsService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        analyticsService = new AnalyticsService(userDataRepository, userActivityHistoryRepository, cache,
+                COUNTRY_CONCURRENCY, 16);
+        lenient().when(cache.get(anyString(), any(), any(), any()))
+                .thenAnswer(invocation -> ((Supplier<Mono<?>>) invocation.getArgument(3)).get());
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldCacheUnderMvcKey() {
+        List<UserData> users = List.of(user(UUID.randomUUID(), "US", 10));
+        when(userDataRepository.findTopUsersByCountryMoney("US", 3)).thenReturn(Flux.fromIterable(users));
+
+        StepVerifier.create(analyticsService.getTopUsersByMoneyPerCountry("US", 3))
+                .expectNext(users)
+                .verifyComplete();
+        verify(cache).get(eq("topUsers"), eq(List.of("US", 3)), any(), any());
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldFailWhenNoUsers() {
+        when(userDataRepository.findTopUsersByCountryMoney("US", 3)).thenReturn(Flux.empty());
+
+        StepVerifier.create(analyticsService.getTopUsersByMoneyPerCountry("US", 3))
+                .verifyErrorMessage(DatabaseException.ERROR_TOP_USERS);
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldRejectInvalidCount() {
+        StepVerifier.create(analyticsService.getTopUsersByMoneyPerCountry("US", 0))
+                .verifyError(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldMergeCountriesWithBoundedConcurrency() {
+        List<String> countries = IntStream.range(0, 10).mapToObj(i -> "C" + i).toList();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(userDataRepository.findTopUsersByCountryMoney(anyString(), anyInt())).thenAnswer(invocation -> {
+            String country = invocation.getArgument(0);
+            int base = Integer.parseInt(country.substring(1));
+            return Flux.just(user(UUID.randomUUID(), country, base * 10 + 5), user(UUID.randomUUID(), country, base * 10))
+                    .delaySubscription(Duration.ofMillis(5))
+                    .doOnSubscribe(s -> maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max))
+                    .doOnTerminate(inFlight::decrementAndGet);
+        });
+
+        StepVerifier.create(analyticsService.getTopUsersByMoneyGlobal(countries, 3))
+                .assertNext(top -> assertThat(top).extracting(UserData::getMoney).containsExactly(95, 90, 85))
+                .verifyComplete();
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(COUNTRY_CONCURRENCY);
+    }
+
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldBreakTiesByUnsignedUuid() {
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000001");
+        when(userDataRepository.findDistinctCountries()).thenReturn(Flux.just("US", "DE"));
+        when(userDataRepository.findTopUsersByCountryMoney("US", 2)).thenReturn(Flux.just(user(high, "US", 7)));
+        when(userDataRepository.findTopUsersByCountryMoney("DE", 2)).thenReturn(Flux.just(user(low, "DE", 7)));
+
+        StepVerifier.create(analyticsService.getTopUsersByMoneyGlobal(null, 2))
+                .assertNext(top -> assertThat(top).extracting(UserData::getUuid).containsExactly(low, high))
+                .verifyComplete();
+    }
+
+    @Test
+    void countNewUsersByCountry_ShouldWrapDatabaseErrors() {
+        when(userDataRepository.countNewUsersByCountry(eq("US"), any())).thenReturn(Mono.error(new IllegalStateException("down")));
+
+        StepVerifier.create(analyticsService.countNewUsersByCountry("US", LocalDate.of(2025, 1, 1)))
+                .verifyErrorMessage(DatabaseException.ERROR_NEW_USERS);
+    }
+
+    @Test
+    void getUserActivityHistory_ShouldRequestRowsInBatches() {
+        LocalDate startDate = LocalDate.of(2025, 1, 1);
+        List<Long> requests = new CopyOnWriteArrayList<>();
+        when(userActivityHistoryRepository.findUserActivityHistoryByUuidAndPeriod(eq(USER_ID), eq(startDate), anyInt()))
+                .thenReturn(Flux.range(0, 100)
+                        .map(i -> new UserActivityHistory((long) i, USER_ID, i, startDate))
+                        .doOnRequest(requests::add));
+
+        StepVerifier.create(analyticsService.getUserActivityHistory(USER_ID, startDate), 0)
+                .thenRequest(100)
+                .expectNextCount(100)
+                .verifyComplete();
+        assertThat(requests).allMatch(n -> n <= 16);
+    }
+
+    @Test
+    void getUserActivityHistory_ShouldFailWhenEmpty() {
+        LocalDate startDate = LocalDate.of(2025, 1, 1);
+        when(userActivityHistoryRepository.findUserActivityHistoryByUuidAndPeriod(eq(USER_ID), eq(startDate), anyInt()))
+                .thenReturn(Flux.empty());
+
+        StepVerifier.create(analyticsService.getUserActivityHistory(USER_ID, startDate))
+                .verifyErrorMessage(DatabaseException.ERROR_ACTIVITY_HISTORY);
+    }
+
+    private static UserData user(UUID uuid, String country, int money) {
+        UserData userData = new UserData();
+        userData.setUuid(uuid);
+        userData.setCountry(country);
+        userData.setMoney(money);
+        return userData;
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.game.reactive.service;
+
+import com.example.game.reactive.cache.ReactiveRedisCache;
+import com.example.game.reactive.exception.ActivityLimitExceededException;
+import com.example.game.reactive.exception.ConcurrentUpdateException;
+import com.example.game.reactive.exception.InvalidJsonException;
+import com.example.game.reactive.exception.SyncLimitExceededException;
+import com.example.game.reactive.exception.UserNotFoundException;
+import com.example.game.reactive.model.UserData;
+import com.example.game.reactive.repository.UserDataRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserDataServiceTest {
+
+    private static final UUID USER_ID = UUID.fromString("3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f");
+    private static final Instant NOW = Instant.parse("2025-02-22T08:54:13Z");
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Mock
+    private UserDataRepository userDataRepository;
+    @Mock
+    private ReactiveRedisCache cache;
+
+    private UserDataService userDataService;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        userDataService = new UserDataService(userDataRepository, cache, objectMapper, Clock.fixed(NOW, ZoneOffset.UTC),
+                MAX_ATTEMPTS, 0, 0);
+        lenient().when(cache.put(any(), any(), any())).thenReturn(Mono.empty());
+        lenient().when(userDataRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    }
+
+    @Test
+    void processSyncData_ShouldUpdateUserDataAndCacheResponse() {
+        UserData userData = user(0, NOW.toEpochMilli());
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(userData));
+
+        StepVerifier.create(userDataService.processSyncData(USER_ID, "{\"money\":100, \"country\":\"US\"}"))
+                .expectNext("Data received successfully.")
+                .verifyComplete();
+
+        assertThat(userData.getMoney()).isEqualTo(100);
+        assertThat(userData.getCountry()).isEqualTo("US");
+        assertThat(userData.getSyncCount()).isEqualTo(1);
+        verify(cache).put("users", USER_ID, "Data received successfully.");
+    }
+
+    @Test
+    void processSyncData_ShouldFailWhenUserNotFound() {
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.empty());
+
+        StepVerifier.create(userDataService.processSyncData(USER_ID, "{}"))
+                .verifyError(UserNotFoundException.class);
+
+        verify(userDataRepository, never()).save(any());
+    }
+
+    @Test
+    void processSyncData_ShouldFailWhenLimitExceeded() {
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(user(UserDataService.SYNC_LIMIT, NOW.toEpochMilli())));
+
+        StepVerifier.create(userDataService.processSyncData(USER_ID, "{}"))
+                .expectErrorSatisfies(e -> assertThat(((SyncLimitExceededException) e).getRetryAfterSeconds())
+                        .isEqualTo(86400))
+                .verify();
+
+        verify(userDataRepository, never()).save(any());
+    }
+
+    @Test
+    void processSyncData_ShouldResetExhaustedLimitAfterWindow() {
+        UserData userData = user(UserDataService.SYNC_LIMIT, NOW.toEpochMilli() - 86400001L);
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(userData));
+
+        StepVerifier.create(userDataService.processSyncData(USER_ID, "{\"money\":100, \"country\":\"US\"}"))
+                .expectNext("Data received successfully.")
+                .verifyComplete();
+
+        assertThat(userData.getSyncCount()).isEqualTo(1);
+    }
+
+    @Test
+    void processSyncData_ShouldFailOnInvalidJson() {
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(user(0, NOW.toEpochMilli())));
+
+        StepVerifier.create(userDataService.processSyncData(USER_ID, "{money:100"))
+                .verifyError(InvalidJsonException.class);
+
+        verify(userDataRepository, never()).save(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getUserData_ShouldLoadThroughCacheOncePerDay() {
+        when(cache.get(eq("users"), eq(USER_ID), any(), any()))
+                .thenAnswer(invocation -> ((Supplier<Mono<String>>) invocation.getArgument(3)).get());
+        UserData userData = user(5, NOW.toEpochMilli() - 86400001L);
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(userData));
+
+        StepVerifier.create(userDataService.getUserData(USER_ID))
+                .assertNext(json -> assertThat(json).contains("\"uuid\":\"" + USER_ID + "\"").contains("\"syncCount\":1"))
+                .verifyComplete();
+
+        StepVerifier.create(userDataService.getUserData(USER_ID))
+                .verifyError(SyncLimitExceededException.class);
+    }
+
+    @Test
+    void processActivityData_ShouldAccumulateActivity() {
+        UserData userData = user(0, NOW.toEpochMilli());
+        userData.setActivity(10);
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(userData));
+
+        StepVerifier.create(userDataService.processActivityData(USER_ID, 5))
+                .expectNext("Activity data received successfully.")
+                .verifyComplete();
+
+        assertThat(userData.getActivity()).isEqualTo(15);
+        assertThat(userData.getStatCount()).isEqualTo(1);
+    }
+
+    @Test
+    void processActivityData_ShouldFailWhenLimitExceeded() {
+        UserData userData = user(0, NOW.toEpochMilli());
+        userData.setStatCount(UserDataService.ACTIVITY_LIMIT);
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(userData));
+
+        StepVerifier.create(userDataService.processActivityData(USER_ID, 5))
+                .verifyError(ActivityLimitExceededException.class);
+    }
+
+    @Test
+    void processActivityData_ShouldRetryFromFreshReadOnVersionConflict() {
+        UserData stale = user(0, NOW.toEpochMilli());
+        UserData fresh = user(0, NOW.toEpochMilli());
+        fresh.setActivity(10);
+        fresh.setVersion(1L);
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(stale), Mono.just(fresh));
+        when(userDataRepository.save(stale)).thenReturn(Mono.error(new OptimisticLockingFailureException("stale")));
+
+        StepVerifier.create(userDataService.processActivityData(USER_ID, 5))
+                .expectNext("Activity data received successfully.")
+                .verifyComplete();
+
+        assertThat(fresh.getActivity()).isEqualTo(15);
+        verify(userDataRepository, times(2)).findById(USER_ID);
+    }
+
+    @Test
+    void processSyncData_ShouldFailWithConflictWhenRetriesAreExhausted() {
+        when(userDataRepository.findById(USER_ID)).thenAnswer(invocation -> Mono.just(user(0, NOW.toEpochMilli())));
+        when(userDataRepository.save(any())).thenReturn(Mono.error(new OptimisticLockingFailureException("stale")));
+
+        StepVerifier.create(userDataService.processSyncData(USER_ID, "{\"money\":100, \"country\":\"US\"}"))
+                .verifyErrorMessage(ConcurrentUpdateException.CONCURRENT_UPDATE);
+
+        verify(userDataRepository, times(MAX_ATTEMPTS)).save(any());
+    }
+
+    @Test
+    void processActivityData_ShouldResetExhaustedLimitAfterWindow() {
+        UserData userData = user(0, NOW.toEpochMilli());
+        userData.setStatCount(UserDataService.ACTIVITY_LIMIT);
+        userData.setLastStatTime(NOW.toEpochMilli() - 86400001L);
+        when(userDataRepository.findById(USER_ID)).thenReturn(Mono.just(userData));
+
+        StepVerifier.create(userDataService.processActivityData(USER_ID, 5))
+                .expectNext("Activity data received successfully.")
+                .verifyComplete();
+
+        assertThat(userData.getStatCount()).isEqualTo(1);
+    }
+
+    private static UserData user(int syncCount, long lastSyncTime) {
+        UserData userData = new UserData();
+        userData.setUuid(USER_ID);
+        userData.setCountry("US");
+        userData.setSyncCount(syncCount);
+        userData.setLastSyncTime(lastSyncTime);
+        userData.setLastStatTime(NOW.toEpochMilli());
+        userData.setVersion(0L);
+        return userData;
+    }
+}
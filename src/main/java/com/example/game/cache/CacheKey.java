@@ -0,0 +1,163 @@
+package com.example.game.cache;
+
+import com.example.game.model.UserData;
+import com.example.game.util.VarInts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Типизированный ключ кэша.
+ * <p>
+ * Компоненты ключа кодируются в компактное двоичное представление: байт версии схемы,
+ * затем для каждого компонента байт типа и значение (целые числа и даты — в формате
+ * {@link VarInts}, UUID — 16 байт, строки — длина и UTF-8). Равенство ключей определяется
+ * кодированием, поэтому значения разных типов ({@code 1} и {@code "1"}) или разное разбиение
+ * на компоненты ({@code "a_b", "c"} и {@code "a", "b_c"}) никогда не совпадают.
+ * Пользователь ({@link UserData}) кодируется своим UUID.
+ * </p>
+ * <p>
+ * В Redis ключ записывается строкой {@link #toString()}: префикс версии и Base64 без дополнения.
+ * При изменении кодирования {@link #SCHEMA_VERSION} увеличивается, и старые записи
+ * перестают читаться, не требуя очистки кэша.
+ * </p>
+ */
+public final class CacheKey {
+
+    /**
+     * Версия схемы кодирования ключей.
+     */
+    public static final int SCHEMA_VERSION = 1;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int INT = 2;
+    private static final int LONG = 3;
+    private static final int BOOLEAN = 4;
+    private static final int UUID_TYPE = 5;
+    private static final int DATE = 6;
+    private static final int DATE_TIME = 7;
+    private static final int ENUM = 8;
+    private static final int COLLECTION = 9;
+
+    private final byte[] encoded;
+    private final int hash;
+
+    private CacheKey(byte[] encoded) {
+        this.encoded = encoded;
+        this.hash = Arrays.hashCode(encoded);
+    }
+
+    /**
+     * Создаёт ключ из компонентов.
+     *
+     * @param components компоненты ключа: {@code null}, строки, {@link Integer}, {@link Long},
+     *                   {@link Boolean}, {@link UUID}, {@link LocalDate}, {@link LocalDateTime},
+     *                   перечисления, {@link UserData} и коллекции этих значений.
+     * @return ключ.
+     * @throws IllegalArgumentException если тип компонента не поддерживается.
+     */
+    public static CacheKey of(Object... components) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        out.write(SCHEMA_VERSION);
+        try {
+            for (Object component : components) {
+                write(out, component);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new CacheKey(out.toByteArray());
+    }
+
+    /**
+     * @return двоичное представление ключа.
+     */
+    public byte[] toBytes() {
+        return encoded.clone();
+    }
+
+    private static void write(ByteArrayOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String string) {
+            out.write(STRING);
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            VarInts.writeUnsignedInt(out, bytes.length);
+            out.write(bytes);
+        } else if (value instanceof Integer number) {
+            out.write(INT);
+            VarInts.writeSignedInt(out, number);
+        } else if (value instanceof Long number) {
+            out.write(LONG);
+            VarInts.writeSignedLong(out, number);
+        } else if (value instanceof Boolean flag) {
+            out.write(BOOLEAN);
+            out.write(flag ? 1 : 0);
+        } else if (value instanceof UUID uuid) {
+            writeUuid(out, uuid);
+        } else if (value instanceof UserData user) {
+            writeUuid(out, user.getUuid());
+        } else if (value instanceof LocalDate date) {
+            out.write(DATE);
+            VarInts.writeSignedLong(out, date.toEpochDay());
+        } else if (value instanceof LocalDateTime dateTime) {
+            out.write(DATE_TIME);
+            VarInts.writeSignedLong(out, dateTime.toEpochSecond(ZoneOffset.UTC));
+            VarInts.writeUnsignedInt(out, dateTime.getNano());
+        } else if (value instanceof Enum<?> constant) {
+            out.write(ENUM);
+            byte[] bytes = constant.name().getBytes(StandardCharsets.UTF_8);
+            VarInts.writeUnsignedInt(out, bytes.length);
+            out.write(bytes);
+        } else if (value instanceof Collection<?> collection) {
+            out.write(COLLECTION);
+            VarInts.writeUnsignedInt(out, collection.size());
+            for (Object element : collection) {
+                write(out, element);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported cache key component type: " + value.getClass().getName());
+        }
+    }
+
+    private static void writeUuid(ByteArrayOutputStream out, UUID uuid) throws IOException {
+        if (uuid == null) {
+            out.write(NULL);
+            return;
+        }
+        out.write(UUID_TYPE);
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (high >>> shift));
+        }
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (low >>> shift));
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other || other instanceof CacheKey key && Arrays.equals(encoded, key.encoded);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "v" + SCHEMA_VERSION + ":" + Base64.getUrlEncoder().withoutPadding().encodeToString(encoded);
+    }
+}
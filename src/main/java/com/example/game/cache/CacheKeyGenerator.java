@@ -0,0 +1,48 @@
+package com.example.game.cache;
+
+import org.springframework.cache.interceptor.KeyGenerator;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Генератор ключей кэша по умолчанию, создающий {@link CacheKey} из параметров метода.
+ * <p>
+ * В отличие от выражений SpEL, ключ не вычисляется интерпретатором при каждом вызове:
+ * набор параметров ключа определяется один раз для метода по аннотациям {@link CacheKeyPart}.
+ * </p>
+ */
+public class CacheKeyGenerator implements KeyGenerator {
+
+    private final Map<Method, int[]> keyParameters = new ConcurrentHashMap<>();
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        int[] indexes = keyParameters.computeIfAbsent(method, CacheKeyGenerator::keyParameters);
+        Object[] components = new Object[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            components[i] = params[indexes[i]];
+        }
+        return CacheKey.of(components);
+    }
+
+    private static int[] keyParameters(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        int[] marked = IntStream.range(0, annotations.length)
+                .filter(i -> hasKeyPart(annotations[i]))
+                .toArray();
+        return marked.length > 0 ? marked : IntStream.range(0, annotations.length).toArray();
+    }
+
+    private static boolean hasKeyPart(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof CacheKeyPart) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
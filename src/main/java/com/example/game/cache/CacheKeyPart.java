@@ -0,0 +1,20 @@
+package com.example.game.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Отмечает параметр кэшируемого метода, входящий в ключ {@link CacheKey}.
+ * <p>
+ * Если в методе не отмечен ни один параметр, ключ составляется из всех параметров.
+ * Используется, когда несколько методов с разными параметрами работают с одним кэшем.
+ * </p>
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CacheKeyPart {
+}
@@ -0,0 +1,115 @@
+package com.example.game.cache;
+
+import com.example.game.service.RedisWritePipelineService;
+import io.lettuce.core.SetArgs;
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Запись кэша Redis, отправляющая {@code put} через {@link RedisWritePipelineService}.
+ * <p>
+ * Записи, выполняемые {@code @CachePut} и при промахах {@code @Cacheable}, не ждут ответа Redis
+ * в потоке запроса. Чтение, удаление и остальные операции выполняются исходной записью
+ * синхронно, как и запись при выключенном или заполненном конвейере.
+ * </p>
+ * <p>
+ * Перед удалением ({@code @CacheEvict}, в том числе {@code allEntries = true}) запись дожидается
+ * отправки уже принятых конвейером значений, иначе значение из очереди могло бы попасть в Redis
+ * после удаления и вернуть устаревшие данные.
+ * </p>
+ */
+public class PipelinedRedisCacheWriter implements RedisCacheWriter {
+
+    private final RedisCacheWriter delegate;
+    private final RedisWritePipelineService pipeline;
+
+    /**
+     * @param delegate исходная запись кэша.
+     * @param pipeline сервис конвейера записи.
+     */
+    public PipelinedRedisCacheWriter(RedisCacheWriter delegate, RedisWritePipelineService pipeline) {
+        this.delegate = delegate;
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        boolean accepted = pipeline.submit(commands -> hasTtl(ttl)
+                ? commands.set(key, value, SetArgs.Builder.px(ttl.toMillis()))
+                : commands.set(key, value));
+        if (!accepted) {
+            delegate.put(name, key, value, ttl);
+        }
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return delegate.get(name, key);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return delegate.get(name, key, ttl);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Supplier<byte[]> valueLoader, Duration ttl, boolean timeToIdleEnabled) {
+        return delegate.get(name, key, valueLoader, ttl, timeToIdleEnabled);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return delegate.retrieve(name, key, ttl);
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        return delegate.store(name, key, value, ttl);
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        return delegate.putIfAbsent(name, key, value, ttl);
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        pipeline.awaitPendingWrites();
+        delegate.remove(name, key);
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        pipeline.awaitPendingWrites();
+        delegate.clean(name, pattern);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new PipelinedRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), pipeline);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+
+    private static boolean hasTtl(Duration ttl) {
+        return ttl != null && !ttl.isZero() && !ttl.isNegative();
+    }
+}
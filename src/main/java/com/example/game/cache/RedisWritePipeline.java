@@ -0,0 +1,309 @@
+package com.example.game.cache;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Конвейер асинхронных команд записи в Redis.
+ * <p>
+ * Команды ставятся в ограниченную очередь и отправляются отдельным потоком пакетами по
+ * выделенному соединению Lettuce с отключённым автоматическим сбросом: пакет уходит одним
+ * сбросом, когда набрано {@code batchSize} команд или с момента поступления первой из них прошло
+ * {@code flushInterval}. Вызывающий поток не ждёт ответа Redis, если сам не ожидает
+ * возвращённый результат.
+ * </p>
+ * <p>
+ * Метрики: {@code game.redis.pipeline.queue.depth} (глубина очереди),
+ * {@code game.redis.pipeline.flush} (время отправки пакета до получения всех ответов),
+ * {@code game.redis.pipeline.batch.size}, {@code game.redis.pipeline.failed}
+ * и {@code game.redis.pipeline.rejected}.
+ * </p>
+ */
+public final class RedisWritePipeline implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisWritePipeline.class);
+
+    /**
+     * Максимальное время ожидания очереди, после которого проверяется признак закрытия.
+     */
+    private static final long POLL_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Команда записи, выполняемая на асинхронном API соединения конвейера.
+     */
+    @FunctionalInterface
+    public interface Command {
+
+        /**
+         * @param commands асинхронные команды соединения конвейера.
+         * @return результат команды, завершающийся после ответа Redis.
+         */
+        CompletionStage<?> issue(RedisAsyncCommands<byte[], byte[]> commands);
+    }
+
+    private record Pending(Command command, CompletableFuture<Void> result) {
+    }
+
+    /**
+     * Пустая команда-метка: завершается вместе с пакетом, в который попала.
+     */
+    private static final Command BARRIER = commands -> CompletableFuture.completedFuture(null);
+
+    private final Supplier<StatefulRedisConnection<byte[], byte[]>> connector;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long ackTimeoutNanos;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter failed;
+    private final Counter rejected;
+    private volatile boolean running = true;
+    private StatefulRedisConnection<byte[], byte[]> connection;
+
+    /**
+     * @param connector     создание выделенного соединения с Redis; вызывается потоком конвейера
+     *                      при первой отправке и после ошибок соединения.
+     * @param batchSize     максимальное количество команд в пакете.
+     * @param flushInterval максимальное ожидание пакета с момента поступления первой команды.
+     * @param capacity      ёмкость очереди команд.
+     * @param ackTimeout    максимальное ожидание ответов Redis на пакет.
+     * @param registry      реестр метрик.
+     */
+    public RedisWritePipeline(Supplier<StatefulRedisConnection<byte[], byte[]>> connector, int batchSize,
+                              Duration flushInterval, int capacity, Duration ackTimeout, MeterRegistry registry) {
+        if (batchSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Batch size and capacity must be positive.");
+        }
+        this.connector = connector;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.ackTimeoutNanos = ackTimeout.toNanos();
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        Gauge.builder("game.redis.pipeline.queue.depth", queue, BlockingQueue::size)
+                .description("Redis write commands waiting to be flushed")
+                .register(registry);
+        this.flushTimer = Timer.builder("game.redis.pipeline.flush")
+                .description("Time to flush a batch of Redis write commands and receive all replies")
+                .publishPercentiles(0.5, 0.99)
+                .register(registry);
+        this.batchSizes = DistributionSummary.builder("game.redis.pipeline.batch.size")
+                .description("Redis write commands per flushed batch")
+                .register(registry);
+        this.failed = Counter.builder("game.redis.pipeline.failed")
+                .description("Redis write commands that failed or timed out")
+                .register(registry);
+        this.rejected = Counter.builder("game.redis.pipeline.rejected")
+                .description("Redis write commands rejected because the queue was full")
+                .register(registry);
+        this.writer = new Thread(this::run, "redis-write-pipeline");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Ставит команду в очередь на отправку.
+     *
+     * @param command команда записи.
+     * @return результат, завершающийся после ответа Redis или с ошибкой.
+     * @throws RejectedExecutionException если очередь заполнена или конвейер закрыт.
+     */
+    public CompletableFuture<Void> submit(Command command) {
+        if (!running) {
+            throw new RejectedExecutionException("Redis write pipeline is closed.");
+        }
+        Pending pending = new Pending(command, new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            rejected.increment();
+            throw new RejectedExecutionException("Redis write pipeline queue is full.");
+        }
+        return pending.result();
+    }
+
+    /**
+     * Ожидает ответов Redis на все команды, поставленные в очередь до вызова.
+     * <p>
+     * Очередь обрабатывается по порядку, а пакет завершается только после ответов на все его команды,
+     * поэтому завершение метки, поставленной за ними, означает, что они уже выполнены.
+     * </p>
+     *
+     * @param timeout максимальное время ожидания места в очереди и ответов.
+     * @return {@code true}, если все команды выполнены или завершились ошибкой до отправки;
+     * {@code false}, если время ожидания истекло или конвейер закрыт.
+     */
+    public boolean awaitSubmitted(Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Pending barrier = new Pending(BARRIER, new CompletableFuture<>());
+        try {
+            if (!running || !queue.offer(barrier, timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+            barrier.result().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // Пакет не удалось отправить, значит, предшествующие команды не выполнены и не выполнятся позже
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return количество команд в очереди.
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Отправляет оставшиеся команды и закрывает соединение.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos + ackTimeoutNanos) + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(POLL_TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0 || !running) {
+                        // При закрытии пакет не дожидается заполнения
+                        Pending next = queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        continue;
+                    }
+                    Pending next = queue.poll(Math.min(remaining, POLL_TIMEOUT_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Прерывание равносильно закрытию: оставшиеся команды дописываются без ожидания
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<CompletableFuture<?>> replies = new ArrayList<>(batch.size());
+        try {
+            if (connection == null) {
+                connection = connector.get();
+                connection.setAutoFlushCommands(false);
+            }
+            RedisAsyncCommands<byte[], byte[]> commands = connection.async();
+            for (Pending pending : batch) {
+                replies.add(issue(pending, commands));
+            }
+            connection.flushCommands();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush {} Redis write commands, reconnecting", batch.size(), e);
+            resetConnection();
+            failed.increment(batch.size());
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+            return;
+        }
+
+        long deadline = start + ackTimeoutNanos;
+        boolean timedOut = false;
+        Throwable[] errors = new Throwable[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                replies.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException e) {
+                errors[i] = e.getCause();
+            } catch (TimeoutException e) {
+                timedOut = true;
+                errors[i] = e;
+            } catch (InterruptedException e) {
+                running = false;
+                errors[i] = e;
+            }
+        }
+        // Метрики записываются до завершения результатов, чтобы вызывающий видел их актуальными
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (errors[i] == null) {
+                batch.get(i).result().complete(null);
+            } else {
+                failed.increment();
+                batch.get(i).result().completeExceptionally(errors[i]);
+            }
+        }
+        if (timedOut) {
+            log.warn("Redis did not acknowledge a batch of {} write commands in time, reconnecting", batch.size());
+            resetConnection();
+        }
+    }
+
+    private static CompletableFuture<?> issue(Pending pending, RedisAsyncCommands<byte[], byte[]> commands) {
+        try {
+            return pending.command().issue(commands).toCompletableFuture();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void resetConnection() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (RuntimeException e) {
+            log.debug("Failed to close Redis pipeline connection", e);
+        }
+        connection = null;
+    }
+}
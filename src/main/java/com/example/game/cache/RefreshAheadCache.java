@@ -0,0 +1,211 @@
+package com.example.game.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Декоратор кэша с фоновым обновлением устаревших записей (stale-while-revalidate).
+ * <p>
+ * Запись старше мягкого TTL по-прежнему возвращается вызывающему без ожидания, а её обновление
+ * выполняется в фоновом пуле тем же загрузчиком, что передан в {@code @Cacheable(sync = true)}.
+ * Успешное обновление перезаписывает значение и тем самым продлевает жёсткий TTL хранилища.
+ * Если обновление не удаётся, устаревшее значение продолжает возвращаться, пока не истечёт
+ * жёсткий TTL, а следующая попытка откладывается на интервал повтора.
+ * </p>
+ * <p>
+ * Время загрузки записей хранится в памяти экземпляра, поэтому записи, загруженные другим
+ * экземпляром или до перезапуска, считаются устаревшими и обновляются при первом обращении.
+ * Отслеживается не больше {@code maxTrackedKeys} ключей: при превышении сначала удаляются
+ * ключи, срок обновления которых уже наступил (отсутствующий ключ и так считается устаревшим),
+ * а если их недостаточно, то произвольные ключи, которые тогда обновятся раньше срока.
+ * </p>
+ */
+public class RefreshAheadCache implements Cache {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshAheadCache.class);
+
+    private final Cache delegate;
+    private final long softTtlMillis;
+    private final long retryIntervalMillis;
+    private final Executor executor;
+    private final Clock clock;
+    private final int maxTrackedKeys;
+    private final ConcurrentMap<Object, Long> refreshAt = new ConcurrentHashMap<>();
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param delegate      кэш, в котором хранятся значения; его TTL служит жёстким сроком жизни.
+     * @param softTtl       возраст записи, после которого она обновляется в фоне.
+     * @param retryInterval задержка перед повторной попыткой после неудачного обновления.
+     * @param executor      ограниченный пул фоновых обновлений.
+     * @param clock          источник текущего времени.
+     * @param maxTrackedKeys максимальное количество ключей, время обновления которых хранится в памяти.
+     */
+    public RefreshAheadCache(Cache delegate, Duration softTtl, Duration retryInterval, Executor executor, Clock clock,
+                             int maxTrackedKeys) {
+        this.delegate = delegate;
+        this.softTtlMillis = softTtl.toMillis();
+        this.retryIntervalMillis = retryInterval.toMillis();
+        this.executor = executor;
+        this.clock = clock;
+        this.maxTrackedKeys = maxTrackedKeys;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached != null) {
+            refreshIfStale(key, valueLoader);
+            return (T) cached.get();
+        }
+        return delegate.get(key, () -> {
+            T value = valueLoader.call();
+            scheduleRefresh(key, softTtlMillis);
+            return value;
+        });
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+        scheduleRefresh(key, softTtlMillis);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+        refreshAt.remove(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        refreshAt.remove(key);
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        refreshAt.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        refreshAt.clear();
+        return delegate.invalidate();
+    }
+
+    /**
+     * @return кэш, в котором хранятся значения.
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    private void refreshIfStale(Object key, Callable<?> valueLoader) {
+        Long due = refreshAt.get(key);
+        if (due != null && due > clock.millis()) {
+            return;
+        }
+        if (!refreshing.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> refresh(key, valueLoader));
+        } catch (RejectedExecutionException e) {
+            // Очередь обновлений заполнена: попробуем при следующем обращении
+            refreshing.remove(key);
+            log.debug("Refresh queue is full, skipping refresh of {} in cache {}", key, getName());
+        }
+    }
+
+    private void refresh(Object key, Callable<?> valueLoader) {
+        try {
+            Object value = valueLoader.call();
+            if (value != null) {
+                delegate.put(key, value);
+            }
+            scheduleRefresh(key, softTtlMillis);
+        } catch (Exception e) {
+            scheduleRefresh(key, retryIntervalMillis);
+            log.warn("Failed to refresh {} in cache {}, serving stale value", key, getName(), e);
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    private void scheduleRefresh(Object key, long delayMillis) {
+        refreshAt.put(key, clock.millis() + delayMillis);
+        if (refreshAt.size() > maxTrackedKeys) {
+            prune();
+        }
+    }
+
+    /**
+     * Сокращает количество отслеживаемых ключей до трёх четвертей лимита, чтобы не сканировать
+     * их при каждой записи.
+     */
+    private synchronized void prune() {
+        if (refreshAt.size() <= maxTrackedKeys) {
+            return;
+        }
+        long now = clock.millis();
+        refreshAt.values().removeIf(due -> due <= now);
+        int target = maxTrackedKeys - maxTrackedKeys / 4;
+        Iterator<Object> keys = refreshAt.keySet().iterator();
+        while (refreshAt.size() > target && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+        log.debug("Pruned refresh times of cache {} to {} keys", getName(), refreshAt.size());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.game.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Менеджер кэшей, оборачивающий выбранные кэши другого менеджера в {@link RefreshAheadCache}.
+ * Остальные кэши возвращаются без изменений.
+ */
+public class RefreshAheadCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final Set<String> cacheNames;
+    private final Duration softTtl;
+    private final Duration retryInterval;
+    private final Executor executor;
+    private final Clock clock;
+    private final int maxTrackedKeys;
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate      менеджер, создающий хранилища кэшей.
+     * @param cacheNames    имена кэшей с фоновым обновлением.
+     * @param softTtl       возраст записи, после которого она обновляется в фоне.
+     * @param retryInterval задержка перед повторной попыткой после неудачного обновления.
+     * @param executor      ограниченный пул фоновых обновлений.
+     * @param clock          источник текущего времени.
+     * @param maxTrackedKeys максимальное количество ключей каждого кэша, время обновления которых хранится в памяти.
+     */
+    public RefreshAheadCacheManager(CacheManager delegate, Set<String> cacheNames, Duration softTtl,
+                                    Duration retryInterval, Executor executor, Clock clock, int maxTrackedKeys) {
+        this.delegate = delegate;
+        this.cacheNames = Set.copyOf(cacheNames);
+        this.softTtl = softTtl;
+        this.retryInterval = retryInterval;
+        this.executor = executor;
+        this.clock = clock;
+        this.maxTrackedKeys = maxTrackedKeys;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache target = delegate.getCache(name);
+        if (target == null || !cacheNames.contains(name)) {
+            return target;
+        }
+        return caches.computeIfAbsent(name,
+                key -> new RefreshAheadCache(target, softTtl, retryInterval, executor, clock, maxTrackedKeys));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
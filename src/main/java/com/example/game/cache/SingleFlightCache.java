@@ -0,0 +1,147 @@
+package com.example.game.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Декоратор кэша, объединяющий одновременные промахи по одному ключу (single-flight).
+ * <p>
+ * Используется методами с {@code @Cacheable(sync = true)}: при промахе значение загружает
+ * только первый вызов, а остальные вызовы с тем же ключом ожидают его результат. В отличие от
+ * {@code RedisCache#get(Object, Callable)}, который синхронизирован на весь кэш, загрузки
+ * по разным ключам выполняются параллельно.
+ * </p>
+ * <p>
+ * Объединение действует в пределах одного экземпляра приложения.
+ * </p>
+ */
+public class SingleFlightCache implements Cache {
+
+    private final Cache delegate;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate кэш, в котором хранятся значения.
+     */
+    public SingleFlightCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper cached = delegate.get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            return (T) await(key, existing, valueLoader);
+        }
+
+        try {
+            // Значение могло появиться, пока предыдущая загрузка завершалась
+            cached = delegate.get(key);
+            Object value = cached != null ? cached.get() : valueLoader.call();
+            if (cached == null && value != null) {
+                delegate.put(key, value);
+            }
+            load.complete(value);
+            return (T) value;
+        } catch (Exception e) {
+            load.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, load);
+        }
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(Object key, Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return delegate.invalidate();
+    }
+
+    /**
+     * @return кэш, в котором хранятся значения.
+     */
+    public Cache getDelegate() {
+        return delegate;
+    }
+
+    private static Object await(Object key, CompletableFuture<Object> load, Callable<?> valueLoader) {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.example.game.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.time.Clock;
 import java.time.ZoneOffset;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Конфигурационный класс приложения.
- * Определяет бины, используемые в приложении.
+ * Определяет бины, используемые в приложении, и включает выполнение фоновых задач по расписанию.
  */
 @Configuration
+@EnableScheduling
 public class AppConfig {
 
     /**
@@ -22,4 +26,19 @@ public class AppConfig {
     public Clock clock() {
         return Clock.system(ZoneOffset.UTC);
     }
+
+    /**
+     * Пул потоков для параллельного выполнения аналитических подзапросов.
+     * <p>
+     * Отделён от общего {@link ForkJoinPool#commonPool()}, поскольку задачи блокируются
+     * на запросах к базе данных.
+     * </p>
+     *
+     * @param parallelism количество потоков пула
+     * @return объект {@link ForkJoinPool}
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool analyticsPool(@Value("${game.analytics.parallelism:8}") int parallelism) {
+        return new ForkJoinPool(parallelism);
+    }
 }
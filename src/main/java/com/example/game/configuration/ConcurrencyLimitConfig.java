@@ -0,0 +1,79 @@
+package com.example.game.configuration;
+
+import com.example.game.filter.ConcurrencyLimitFilter;
+import com.example.game.util.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Конфигурация адаптивного ограничения одновременно обрабатываемых запросов к API.
+ * <p>
+ * Текущий предел, количество обрабатываемых и ожидающих запросов публикуются в метриках
+ * {@code game.concurrency.limit}, {@code game.concurrency.in-flight} и {@code game.concurrency.queue-depth}.
+ * </p>
+ */
+@Configuration
+public class ConcurrencyLimitConfig {
+
+    /**
+     * Ограничитель одновременно обрабатываемых запросов.
+     *
+     * @param initialLimit     начальный предел.
+     * @param minLimit         минимальный предел.
+     * @param maxLimit         максимальный предел.
+     * @param tolerance        допустимое отношение короткой средней задержки к длинной.
+     * @param backoffRatio     множитель предела при ошибке сервера.
+     * @param lowPriorityShare доля предела, доступная аналитическим запросам.
+     * @param maxQueueSize     максимальное количество ожидающих запросов.
+     * @param registry         реестр метрик.
+     * @return объект {@link AdaptiveConcurrencyLimiter}
+     */
+    @Bean
+    public AdaptiveConcurrencyLimiter concurrencyLimiter(
+            @Value("${game.concurrency-limit.initial-limit:20}") int initialLimit,
+            @Value("${game.concurrency-limit.min-limit:4}") int minLimit,
+            @Value("${game.concurrency-limit.max-limit:200}") int maxLimit,
+            @Value("${game.concurrency-limit.tolerance:2.0}") double tolerance,
+            @Value("${game.concurrency-limit.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${game.concurrency-limit.low-priority-share:0.5}") double lowPriorityShare,
+            @Value("${game.concurrency-limit.max-queue-size:100}") int maxQueueSize,
+            MeterRegistry registry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                tolerance, backoffRatio, lowPriorityShare, maxQueueSize);
+        Gauge.builder("game.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .register(registry);
+        Gauge.builder("game.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .register(registry);
+        Gauge.builder("game.concurrency.queue-depth", limiter, AdaptiveConcurrencyLimiter::getQueueDepth)
+                .register(registry);
+        return limiter;
+    }
+
+    /**
+     * Регистрация фильтра ограничения перед остальными фильтрами API.
+     *
+     * @param limiter   ограничитель одновременно обрабатываемых запросов.
+     * @param registry  реестр метрик.
+     * @param enabled   включено ли ограничение.
+     * @param maxWaitMs максимальное время ожидания слота в миллисекундах.
+     * @return объект {@link FilterRegistrationBean}
+     */
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+            AdaptiveConcurrencyLimiter limiter,
+            MeterRegistry registry,
+            @Value("${game.concurrency-limit.enabled:true}") boolean enabled,
+            @Value("${game.concurrency-limit.max-wait-ms:50}") long maxWaitMs) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(limiter, registry, maxWaitMs));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
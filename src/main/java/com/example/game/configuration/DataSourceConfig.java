@@ -0,0 +1,147 @@
+package com.example.game.configuration;
+
+import com.example.game.datasource.ReplicaRoutingDataSource;
+import com.example.game.datasource.ShardRing;
+import com.example.game.datasource.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Конфигурация источников данных.
+ * <p>
+ * Основная база настраивается свойствами {@code spring.datasource.*}. Если включены реплики
+ * ({@code game.datasource.replica.enabled}), аналитические транзакции только для чтения направляются
+ * на них через {@link ReplicaRoutingDataSource}. Каждый пул соединений получает своё имя
+ * ({@code primary}, {@code replica-1}, ...) и публикует метрики HikariCP
+ * ({@code hikaricp.connections.*}) с тегом {@code pool}.
+ * </p>
+ * <p>
+ * Если включено шардирование ({@code game.sharding.enabled}), источник данных основной базы
+ * становится шардом {@code shard-0}, а базы из {@code game.sharding.urls} — шардами
+ * {@code shard-1 .. shard-N} с пулами того же имени. Соединения выдаются
+ * {@link ShardRoutingDataSource} по шарду, выбранному в {@link com.example.game.service.ShardService}.
+ * Реплики используются только для основной базы.
+ * </p>
+ */
+@Configuration
+public class DataSourceConfig {
+
+    private static final String HIKARI_PREFIX = "spring.datasource.hikari";
+
+    /**
+     * Источник данных приложения.
+     *
+     * @param properties       свойства основной базы данных
+     * @param environment      окружение для привязки свойств {@code spring.datasource.hikari.*}
+     * @param registry         реестр метрик
+     * @param resourceLoader   загрузчик журнала миграций для дополнительных шардов
+     * @param replicasEnabled  включена ли маршрутизация чтения на реплики
+     * @param replicaUrls      JDBC URL реплик
+     * @param replicaUsername  пользователь реплик
+     * @param replicaPassword  пароль реплик
+     * @param replicaPoolSize  максимальный размер пула соединений каждой реплики
+     * @param maxLagMs         максимально допустимое отставание реплики в миллисекундах
+     * @param lagCheckInterval интервал проверки отставания реплик в миллисекундах
+     * @param shardingEnabled  включено ли распределение пользователей по шардам
+     * @param shardUrls        JDBC URL дополнительных шардов
+     * @param shardPoolSize    максимальный размер пула соединений каждого дополнительного шарда
+     * @param migrateShards    выполнять ли миграции Liquibase на дополнительных шардах
+     * @param changeLog        журнал миграций Liquibase
+     * @return основной пул соединений, {@link ReplicaRoutingDataSource} или {@link ShardRoutingDataSource}
+     */
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment, MeterRegistry registry,
+                                 ResourceLoader resourceLoader,
+                                 @Value("${game.datasource.replica.enabled:false}") boolean replicasEnabled,
+                                 @Value("${game.datasource.replica.urls:}") List<String> replicaUrls,
+                                 @Value("${game.datasource.replica.username:${spring.datasource.username:}}")
+                                 String replicaUsername,
+                                 @Value("${game.datasource.replica.password:${spring.datasource.password:}}")
+                                 String replicaPassword,
+                                 @Value("${game.datasource.replica.maximum-pool-size:10}") int replicaPoolSize,
+                                 @Value("${game.datasource.replica.max-lag-ms:5000}") long maxLagMs,
+                                 @Value("${game.datasource.replica.lag-check-interval-ms:1000}") long lagCheckInterval,
+                                 @Value("${game.sharding.enabled:false}") boolean shardingEnabled,
+                                 @Value("${game.sharding.urls:}") List<String> shardUrls,
+                                 @Value("${game.sharding.maximum-pool-size:10}") int shardPoolSize,
+                                 @Value("${spring.liquibase.enabled:true}") boolean migrateShards,
+                                 @Value("${spring.liquibase.change-log:classpath:/liquibase/changelog-master.yaml}")
+                                 String changeLog) throws LiquibaseException {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind(HIKARI_PREFIX, Bindable.ofInstance(primary));
+        if (primary.getPoolName() == null) {
+            primary.setPoolName("primary");
+        }
+        primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+
+        DataSource main = primary;
+        if (replicasEnabled && !replicaUrls.isEmpty()) {
+            Map<String, DataSource> replicas = new LinkedHashMap<>();
+            for (int i = 0; i < replicaUrls.size(); i++) {
+                HikariDataSource replica = pool(binder, properties, registry, "replica-" + (i + 1),
+                        replicaUrls.get(i), replicaUsername, replicaPassword, replicaPoolSize);
+                replica.setReadOnly(true);
+                replicas.put(replica.getPoolName(), replica);
+            }
+            main = new ReplicaRoutingDataSource(primary, replicas, Duration.ofMillis(maxLagMs),
+                    Duration.ofMillis(lagCheckInterval), registry);
+        }
+        if (!shardingEnabled || shardUrls.isEmpty()) {
+            return main;
+        }
+
+        if (main instanceof ReplicaRoutingDataSource routing) {
+            // Вложенный источник данных не является бином и не инициализируется контейнером
+            routing.afterPropertiesSet();
+        }
+        // Основная база мигрируется Liquibase Spring Boot, дополнительные шарды — здесь же
+        Map<String, DataSource> shards = new LinkedHashMap<>();
+        shards.put(ShardRing.shardName(0), main);
+        for (int i = 0; i < shardUrls.size(); i++) {
+            String name = ShardRing.shardName(i + 1);
+            HikariDataSource shard = pool(binder, properties, registry, name, shardUrls.get(i),
+                    properties.determineUsername(), properties.determinePassword(), shardPoolSize);
+            if (migrateShards) {
+                SpringLiquibase liquibase = new SpringLiquibase();
+                liquibase.setDataSource(shard);
+                liquibase.setChangeLog(changeLog);
+                liquibase.setResourceLoader(resourceLoader);
+                liquibase.afterPropertiesSet();
+            }
+            shards.put(name, shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    private static HikariDataSource pool(Binder binder, DataSourceProperties properties, MeterRegistry registry,
+                                         String name, String url, String username, String password, int poolSize) {
+        HikariDataSource pool = new HikariDataSource();
+        binder.bind(HIKARI_PREFIX, Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setJdbcUrl(url.trim());
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaximumPoolSize(poolSize);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+        return pool;
+    }
+}
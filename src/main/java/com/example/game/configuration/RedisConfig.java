@@ -1,16 +1,33 @@
 package com.example.game.configuration;
 
+import com.example.game.cache.CacheKeyGenerator;
+import com.example.game.cache.PipelinedRedisCacheWriter;
+import com.example.game.cache.RefreshAheadCacheManager;
+import com.example.game.cache.SingleFlightCacheManager;
+import com.example.game.service.RedisWritePipelineService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 
+import java.time.Clock;
 import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Конфигурация Redis-кэша.
@@ -18,7 +35,7 @@ import java.time.Duration;
  */
 @Configuration
 @EnableCaching
-public class RedisConfig {
+public class RedisConfig implements CachingConfigurer {
     /**
      * Фабрика подключений к Redis с использованием Lettuce.
      *
@@ -29,6 +46,19 @@ public class RedisConfig {
         return new LettuceConnectionFactory();
     }
 
+    /**
+     * Генератор ключей кэша по умолчанию.
+     * Ключи кэшируемых методов строятся как типизированные {@link com.example.game.cache.CacheKey}
+     * без вычисления выражений SpEL.
+     *
+     * @return объект {@link KeyGenerator}
+     */
+    @Bean
+    @Override
+    public KeyGenerator keyGenerator() {
+        return new CacheKeyGenerator();
+    }
+
     /**
      * Конфигурация кеширования Redis.
      * Определяет TTL записей, запрещает кеширование null-значений и настраивает сериализацию.
@@ -45,4 +75,70 @@ public class RedisConfig {
                         new GenericJackson2JsonRedisSerializer(objectMapper)
                 ));
     }
+
+    /**
+     * Менеджер кэшей Redis с объединением одновременных промахов по одному ключу
+     * и фоновым обновлением устаревших записей аналитики.
+     * <p>
+     * Методы с {@code @Cacheable(sync = true)} при холодном кэше выполняют один запрос
+     * к базе данных на ключ, а не по одному на каждый одновременный вызов. Записи кэшей из
+     * {@code game.cache.refresh-ahead.caches} старше мягкого TTL возвращаются сразу и обновляются
+     * в фоне; TTL Redis остаётся жёстким сроком жизни на случай, если обновление не удаётся.
+     * Запись значений в Redis выполняется через конвейер {@link RedisWritePipelineService}.
+     * </p>
+     *
+     * @param connectionFactory    фабрика подключений к Redis
+     * @param cacheConfiguration   конфигурация кэшей по умолчанию
+     * @param writePipeline        конвейер асинхронной записи в Redis
+     * @param cacheRefreshExecutor пул фоновых обновлений
+     * @param clock                источник текущего времени
+     * @param refreshAheadCaches   имена кэшей с фоновым обновлением
+     * @param softTtlMinutes       возраст записи в минутах, после которого она обновляется
+     * @param retryIntervalSeconds задержка в секундах перед повтором неудачного обновления
+     * @param maxTrackedKeys       максимальное количество ключей кэша, время обновления которых хранится в памяти
+     * @return объект {@link CacheManager}
+     */
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     RedisCacheConfiguration cacheConfiguration,
+                                     RedisWritePipelineService writePipeline,
+                                     ThreadPoolExecutor cacheRefreshExecutor,
+                                     Clock clock,
+                                     @Value("${game.cache.refresh-ahead.caches:topUsers,newUsersCount}") Set<String> refreshAheadCaches,
+                                     @Value("${game.cache.refresh-ahead.soft-ttl-minutes:60}") long softTtlMinutes,
+                                     @Value("${game.cache.refresh-ahead.retry-interval-seconds:30}") long retryIntervalSeconds,
+                                     @Value("${game.cache.refresh-ahead.max-tracked-keys:10000}") int maxTrackedKeys) {
+        RedisCacheWriter cacheWriter = new PipelinedRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory), writePipeline);
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter)
+                .cacheDefaults(cacheConfiguration)
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        return new RefreshAheadCacheManager(new SingleFlightCacheManager(redisCacheManager), refreshAheadCaches,
+                Duration.ofMinutes(softTtlMinutes), Duration.ofSeconds(retryIntervalSeconds),
+                cacheRefreshExecutor, clock, maxTrackedKeys);
+    }
+
+    /**
+     * Ограниченный пул фоновых обновлений кэша.
+     * <p>
+     * При заполненной очереди новые обновления отклоняются, и запись продолжает
+     * возвращаться устаревшей до следующего обращения.
+     * </p>
+     *
+     * @param threads       количество потоков пула
+     * @param queueCapacity ёмкость очереди обновлений
+     * @return объект {@link ThreadPoolExecutor}
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor cacheRefreshExecutor(@Value("${game.cache.refresh-ahead.threads:2}") int threads,
+                                                   @Value("${game.cache.refresh-ahead.queue-capacity:100}") int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "cache-refresh-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
 }
@@ -1,28 +1,42 @@
 package com.example.game.controller;
 
+import com.example.game.dto.HistogramBucket;
+import com.example.game.dto.UserRankResponse;
+import com.example.game.exception.UserNotFoundException;
 import com.example.game.model.UserActivityHistory;
 import com.example.game.model.UserData;
-import com.example.game.repository.UserDataRepository;
+import com.example.game.service.ActiveUsersService;
 import com.example.game.service.AnalyticsService;
+import com.example.game.service.KnownUsersService;
+import com.example.game.service.QuantileSketchService;
+import com.example.game.service.UserRankService;
 import io.swagger.v3.oas.annotations.Operation;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Контроллер для предоставления аналитических данных о пользователях.
  * <p>
- * Содержит эндпоинты для получения списка топ-пользователей по количеству денег,
- * подсчета новых пользователей в стране за период, а также истории активности пользователя.
+ * Содержит эндпоинты для получения списка топ-пользователей по количеству денег (по стране,
+ * региону или глобально),
+ * подсчета новых и активных пользователей в стране за период, распределений денег и активности,
+ * позиции пользователя в рейтинге страны, а также истории активности пользователя.
  * </p>
  */
 @RestController
@@ -30,10 +44,15 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AnalyticsController {
 
-    private final UserDataRepository userDataRepository;
     private final AnalyticsService analyticsService;
+    private final ActiveUsersService activeUsersService;
+    private final QuantileSketchService quantileSketchService;
+    private final UserRankService userRankService;
+    private final KnownUsersService knownUsersService;
     private final Logger log = LoggerFactory.getLogger(AnalyticsController.class);
 
+    private static final String SKETCH_TOKEN_HEADER = "X-Sketch-Token";
+
     /**
      * Получает список пользователей с наибольшим значением "money" по указанной стране.
      * <br>Endpoint: GET /api/analytics/top-users-by-money
@@ -50,6 +69,56 @@ public class AnalyticsController {
         return ResponseEntity.ok(topUsers);
     }
 
+    /**
+     * Получает списки пользователей с наибольшим значением "money" сразу для нескольких стран.
+     * <br>Endpoint: GET /api/analytics/top-users-by-money/batch
+     *
+     * @param countries  Коды стран.
+     * @param usersCount Количество пользователей на страну.
+     * @return Пользователи по странам, отсортированные по убыванию количества денег.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Получение списков топ-пользователей для нескольких стран")
+    @GetMapping("/top-users-by-money/batch")
+    public ResponseEntity<Map<String, List<UserData>>> getTopUsersByMoneyForCountries(@RequestParam List<String> countries,
+                                                                                      @RequestParam int usersCount) {
+        log.info("Fetching top {} users by money for countries: {}", usersCount, countries);
+        return ResponseEntity.ok(analyticsService.getTopUsersByMoneyForCountries(countries, usersCount));
+    }
+
+    /**
+     * Получает глобальный рейтинг пользователей по количеству денег среди всех стран
+     * или среди указанной группы стран.
+     * <br>Endpoint: GET /api/analytics/top-users-global
+     *
+     * @param countries  Коды стран региона. Если не указаны, рейтинг строится по всем странам.
+     * @param usersCount Количество пользователей для вывода.
+     * @return Список пользователей, отсортированный по убыванию количества денег.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Получение глобального или регионального рейтинга пользователей")
+    @GetMapping("/top-users-global")
+    public ResponseEntity<List<UserData>> getTopUsersByMoneyGlobal(@RequestParam(required = false) List<String> countries,
+                                                                   @RequestParam int usersCount) {
+        log.info("Fetching global top {} users by money for countries: {}", usersCount, countries);
+        List<UserData> topUsers = analyticsService.getTopUsersByMoneyGlobal(countries, usersCount);
+        return ResponseEntity.ok(topUsers);
+    }
+
+    /**
+     * Получает позицию пользователя в рейтинге его страны по количеству денег и соседей по рейтингу.
+     * <br>Endpoint: GET /api/analytics/user-rank
+     *
+     * @param uuid      Уникальный идентификатор пользователя.
+     * @param neighbors Количество соседей по рейтингу с каждой стороны.
+     * @return Позиция пользователя и соседи по рейтингу.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Получение позиции пользователя в рейтинге страны")
+    @GetMapping("/user-rank")
+    public ResponseEntity<UserRankResponse> getUserRank(@RequestParam UUID uuid,
+                                                        @RequestParam(defaultValue = "5") int neighbors) {
+        log.info("Fetching rank of user: {} with {} neighbors", uuid, neighbors);
+        return ResponseEntity.ok(userRankService.getUserRank(uuid, neighbors));
+    }
+
     /**
      * Подсчитывает количество новых пользователей, зарегистрированных в указанной стране с определенной даты.
      * <br>Endpoint: GET /api/analytics/new-users-count
@@ -66,6 +135,123 @@ public class AnalyticsController {
         return ResponseEntity.ok(count);
     }
 
+    /**
+     * Подсчитывает количество новых пользователей сразу для нескольких стран с определенной даты.
+     * <br>Endpoint: GET /api/analytics/new-users-count/batch
+     *
+     * @param countries Коды стран.
+     * @param startDate Дата начала периода, за который считается количество новых пользователей.
+     * @return Количество новых пользователей по странам.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Получение количества новых пользователей для нескольких стран")
+    @GetMapping("/new-users-count/batch")
+    public ResponseEntity<Map<String, Long>> countNewUsersByCountries(@RequestParam List<String> countries,
+                                                                      @RequestParam LocalDate startDate) {
+        log.info("Counting new users for countries: {} from date: {}", countries, startDate);
+        return ResponseEntity.ok(analyticsService.countNewUsersByCountries(countries, startDate));
+    }
+
+    /**
+     * Оценивает количество уникальных активных пользователей страны за период (DAU/MAU).
+     * <br>Endpoint: GET /api/analytics/active-users
+     * <p>
+     * Значение приближённое (HyperLogLog, стандартная ошибка около 1.6%).
+     * </p>
+     *
+     * @param country   Код страны.
+     * @param startDate Дата начала периода (включительно).
+     * @param endDate   Дата окончания периода (включительно).
+     * @return Оценка количества уникальных пользователей, обращавшихся к синхронизации или активности.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Получение количества активных пользователей")
+    @GetMapping("/active-users")
+    public ResponseEntity<Long> countActiveUsers(@RequestParam String country, @RequestParam LocalDate startDate,
+                                                 @RequestParam LocalDate endDate) {
+        log.info("Counting active users for country: {} from {} to {}", country, startDate, endDate);
+        long count = activeUsersService.countActiveUsers(country, startDate, endDate);
+        return ResponseEntity.ok(count);
+    }
+
+    /**
+     * Получает приближённые квантили денег или активности пользователей страны.
+     * <br>Endpoint: GET /api/analytics/percentiles
+     *
+     * @param metric    Показатель: MONEY или ACTIVITY.
+     * @param country   Код страны.
+     * @param quantiles Уровни квантилей от 0 до 1, например 0.5,0.9,0.99.
+     * @return Значения квантилей по уровням.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Получение перцентилей денег или активности")
+    @GetMapping("/percentiles")
+    public ResponseEntity<Map<Double, Integer>> getPercentiles(@RequestParam QuantileSketchService.Metric metric,
+                                                               @RequestParam String country,
+                                                               @RequestParam List<Double> quantiles) {
+        log.info("Fetching {} percentiles {} for country: {}", metric, quantiles, country);
+        return ResponseEntity.ok(quantileSketchService.getQuantiles(metric, country, quantiles));
+    }
+
+    /**
+     * Получает приближённую гистограмму денег или активности пользователей страны.
+     * <br>Endpoint: GET /api/analytics/histogram
+     *
+     * @param metric      Показатель: MONEY или ACTIVITY.
+     * @param country     Код страны.
+     * @param splitPoints Возрастающие границы интервалов.
+     * @return Список интервалов с оценкой количества значений.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Получение гистограммы денег или активности")
+    @GetMapping("/histogram")
+    public ResponseEntity<List<HistogramBucket>> getHistogram(@RequestParam QuantileSketchService.Metric metric,
+                                                              @RequestParam String country,
+                                                              @RequestParam List<Integer> splitPoints) {
+        log.info("Fetching {} histogram for country: {}", metric, country);
+        return ResponseEntity.ok(quantileSketchService.getHistogram(metric, country, splitPoints));
+    }
+
+    /**
+     * Выгружает скетч квантилей страны для объединения на другом узле.
+     * <br>Endpoint: GET /api/analytics/sketch
+     *
+     * @param metric  Показатель: MONEY или ACTIVITY.
+     * @param country Код страны.
+     * @return Бинарное представление скетча.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Выгрузка скетча квантилей")
+    @GetMapping(value = "/sketch", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> exportSketch(@RequestParam QuantileSketchService.Metric metric, @RequestParam String country) {
+        return ResponseEntity.ok(quantileSketchService.exportSketch(metric, country));
+    }
+
+    /**
+     * Объединяет скетч квантилей, выгруженный с другого узла, с локальным скетчем страны.
+     * <br>Endpoint: POST /api/analytics/sketch
+     * <p>
+     * Требует заголовок {@code X-Sketch-Token} с токеном {@code game.sketch.merge-token};
+     * повторная отправка скетча того же узла заменяет предыдущий.
+     * </p>
+     *
+     * @param metric  Показатель: MONEY или ACTIVITY.
+     * @param country Код страны.
+     * @param node    Идентификатор узла-отправителя.
+     * @param token   Токен объединения скетчей.
+     * @param sketch  Бинарное представление скетча.
+     * @return Пустой ответ при успешном объединении или 403, если токен неверен.
+     */
+    @Operation(tags = {"Аналитика"}, summary = "Объединение скетча квантилей")
+    @PostMapping(value = "/sketch", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Void> mergeSketch(@RequestParam QuantileSketchService.Metric metric, @RequestParam String country,
+                                            @RequestParam String node,
+                                            @RequestHeader(value = SKETCH_TOKEN_HEADER, required = false) String token,
+                                            @RequestBody byte[] sketch) {
+        if (!quantileSketchService.isMergeAuthorized(token)) {
+            log.warn("Rejected {} sketch merge for country: {} from node: {}", metric, country, node);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        log.info("Merging {} sketch for country: {} from node: {}", metric, country, node);
+        quantileSketchService.mergeSketch(metric, country, node, sketch);
+        return ResponseEntity.ok().build();
+    }
+
     /**
      * Получает список активности пользователя за определенный период.
      * <br>Endpoint: GET /api/analytics/user-activity-history
@@ -79,14 +265,19 @@ public class AnalyticsController {
      */
     @Operation(tags = {"Аналитика"}, summary = "Получение истории активности пользователя")
     @GetMapping("/user-activity-history")
-    public ResponseEntity<List<UserActivityHistory>> getUserActivityHistory(@RequestParam String uuid, @RequestParam LocalDate startDate) {
+    public ResponseEntity<List<UserActivityHistory>> getUserActivityHistory(@RequestParam UUID uuid, @RequestParam LocalDate startDate) {
         log.info("Fetching activity history for user: {} from date: {}", uuid, startDate);
-        UserData userData = userDataRepository.findByUuid(uuid);
-        if (userData == null) {
+        if (knownUsersService.isDefinitelyUnknown(uuid)) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
 
-        List<UserActivityHistory> activityHistory = analyticsService.getUserActivityHistory(userData, startDate);
+        List<UserActivityHistory> activityHistory;
+        try {
+            activityHistory = analyticsService.getUserActivityHistory(uuid, startDate);
+        } catch (UserNotFoundException e) {
+            knownUsersService.recordMissing(uuid);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
         return ResponseEntity.ok(activityHistory);
     }
 }
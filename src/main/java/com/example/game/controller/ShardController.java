@@ -0,0 +1,37 @@
+package com.example.game.controller;
+
+import com.example.game.dto.ShardRebalanceReport;
+import com.example.game.service.ShardRebalanceService;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Контроллер обслуживания шардов базы данных.
+ */
+@RestController
+@RequestMapping("/api/shards")
+@RequiredArgsConstructor
+public class ShardController {
+
+    private final ShardRebalanceService shardRebalanceService;
+    private final Logger log = LoggerFactory.getLogger(ShardController.class);
+
+    /**
+     * Переносит пользователей на шарды, назначенные им после добавления шардов.
+     * <br>Endpoint: POST /api/shards/rebalance
+     *
+     * @return Результат перераспределения.
+     */
+    @Operation(tags = {"Шарды"}, summary = "Перераспределение пользователей после добавления шардов")
+    @PostMapping("/rebalance")
+    public ResponseEntity<ShardRebalanceReport> rebalance() {
+        log.info("Rebalancing users across shards");
+        return ResponseEntity.ok(shardRebalanceService.rebalance());
+    }
+}
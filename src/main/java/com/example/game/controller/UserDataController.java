@@ -8,6 +8,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.UUID;
+
 /**
  * Контроллер для работы с данными пользователя.
  * <p>
@@ -33,7 +35,7 @@ public class UserDataController {
      */
     @Operation(tags = {"Синхронизация"}, summary = "Обработка данных пользователя")
     @PostMapping("/sync")
-    public ResponseEntity<String> syncUserData(@RequestParam String uuid, @RequestBody String jsonData) {
+    public ResponseEntity<String> syncUserData(@RequestParam UUID uuid, @RequestBody String jsonData) {
         log.info("Syncing user data for uuid: {}", uuid);
         String syncData = userDataService.processSyncData(uuid, jsonData);
         return ResponseEntity.ok(syncData);
@@ -48,7 +50,7 @@ public class UserDataController {
      */
     @Operation(tags = {"Данные"}, summary = "Получение данных пользователя")
     @PostMapping("/user-data")
-    public ResponseEntity<String> getUserData(@RequestParam String uuid) {
+    public ResponseEntity<String> getUserData(@RequestParam UUID uuid) {
         log.info("Fetching user data for uuid: {}", uuid);
         String userData = userDataService.getUserData(uuid);
         return ResponseEntity.ok(userData);
@@ -64,7 +66,7 @@ public class UserDataController {
      */
     @Operation(tags = {"Активность"}, summary = "Обработка игровой активности")
     @PostMapping("/activity")
-    public ResponseEntity<String> processActivity(@RequestParam String uuid, @RequestParam int activity) {
+    public ResponseEntity<String> processActivity(@RequestParam UUID uuid, @RequestParam int activity) {
         log.info("Processing activity for uuid: {}, activity: {}", uuid, activity);
         String activityData = userDataService.processActivityData(uuid, activity);
         return ResponseEntity.ok(activityData);
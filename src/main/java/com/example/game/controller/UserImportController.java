@@ -0,0 +1,58 @@
+package com.example.game.controller;
+
+import com.example.game.dto.UserImportReport;
+import com.example.game.service.UserImportService;
+import com.example.game.storage.UserImportReader;
+import io.swagger.v3.oas.annotations.Operation;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.InputStream;
+
+/**
+ * Контроллер массового импорта пользователей.
+ * <p>
+ * Тело запроса передаётся в {@link UserImportService} потоком, без чтения в память целиком.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+public class UserImportController {
+
+    private final UserImportService userImportService;
+    private final Logger log = LoggerFactory.getLogger(UserImportController.class);
+
+    /**
+     * Импортирует пользователей из CSV со строкой заголовка.
+     * <br>Endpoint: POST /api/users/import (Content-Type: text/csv)
+     *
+     * @param body CSV с колонками uuid, country и необязательными money, activity, created_at.
+     * @return Результат импорта.
+     */
+    @Operation(tags = {"Импорт"}, summary = "Массовый импорт пользователей из CSV")
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<UserImportReport> importCsv(InputStream body) {
+        log.info("Importing users from CSV");
+        return ResponseEntity.ok(userImportService.importUsers(body, UserImportReader.Format.CSV));
+    }
+
+    /**
+     * Импортирует пользователей из NDJSON, по одному объекту на строку.
+     * <br>Endpoint: POST /api/users/import (Content-Type: application/x-ndjson)
+     *
+     * @param body NDJSON с полями uuid, country и необязательными money, activity, createdAt.
+     * @return Результат импорта.
+     */
+    @Operation(tags = {"Импорт"}, summary = "Массовый импорт пользователей из NDJSON")
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    public ResponseEntity<UserImportReport> importNdjson(InputStream body) {
+        log.info("Importing users from NDJSON");
+        return ResponseEntity.ok(userImportService.importUsers(body, UserImportReader.Format.NDJSON));
+    }
+}
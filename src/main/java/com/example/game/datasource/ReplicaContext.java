@@ -0,0 +1,47 @@
+package com.example.game.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Разрешение читать с реплик для текущего потока.
+ * <p>
+ * {@link ReplicaRoutingDataSource} направляет на реплику только транзакции только для чтения,
+ * начатые внутри {@link #call(Supplier)}. Остальные транзакции только для чтения, например
+ * {@code findById} репозиториев Spring Data перед изменением и сохранением пользователя,
+ * выполняются в основной базе и не видят отставания реплики. Как и шард ({@link ShardContext}),
+ * разрешение устанавливается до начала транзакции.
+ * </p>
+ */
+public final class ReplicaContext {
+
+    private static final ThreadLocal<Boolean> ALLOWED = new ThreadLocal<>();
+
+    private ReplicaContext() {
+    }
+
+    /**
+     * @return {@code true}, если транзакции только для чтения текущего потока могут выполняться на реплике.
+     */
+    public static boolean isAllowed() {
+        return Boolean.TRUE.equals(ALLOWED.get());
+    }
+
+    /**
+     * Выполняет аналитическое действие, транзакции только для чтения которого могут выполняться на реплике.
+     *
+     * @param action действие; транзакции начинаются внутри него.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     */
+    public static <T> T call(Supplier<T> action) {
+        if (isAllowed()) {
+            return action.get();
+        }
+        ALLOWED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            ALLOWED.remove();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.game.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник данных, направляющий транзакции только для чтения на реплики PostgreSQL.
+ * <p>
+ * Физическое соединение выбирается при первом запросе в транзакции: если соединение
+ * помечено только для чтения ({@code @Transactional(readOnly = true)}) и транзакция начата внутри
+ * {@link ReplicaContext#call(java.util.function.Supplier)}, оно берётся из очередной исправной
+ * реплики по кругу, иначе — из основной базы. Запись и чтение перед записью всегда выполняются
+ * в основной базе.
+ * </p>
+ * <p>
+ * Отдельный поток с интервалом {@code lagCheckInterval} измеряет отставание каждой реплики
+ * ({@link #LAG_SQL}). Реплика с отставанием больше {@code maxLag}, неизвестным отставанием
+ * или ошибкой соединения исключается из выбора до следующей успешной проверки; если исправных
+ * реплик нет, чтение выполняется в основной базе. Между проверками отставание может вырасти
+ * не более чем на интервал проверки.
+ * </p>
+ * <p>
+ * Метрики: {@code game.datasource.replica.lag} (отставание в миллисекундах),
+ * {@code game.datasource.replica.healthy} и {@code game.datasource.read-only.connections}
+ * с тегом {@code datasource} — имя реплики или {@code primary}.
+ * </p>
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /**
+     * Отставание реплики в миллисекундах: ноль, если реплика применила всё полученное
+     * или сервер не находится в режиме восстановления; {@code NULL}, если ещё ничего не применено.
+     */
+    static final String LAG_SQL = "SELECT CASE "
+            + "WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE (EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000)::bigint END";
+
+    static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final long maxLagMillis;
+    private final Duration lagCheckInterval;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryReads;
+    private ScheduledExecutorService lagChecker;
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final Counter reads;
+        private volatile long lagMillis = -1;
+        private volatile boolean healthy;
+
+        private Replica(String name, DataSource dataSource, Counter reads) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.reads = reads;
+        }
+    }
+
+    /**
+     * @param primary          основная база данных.
+     * @param replicas         реплики по именам в порядке обхода.
+     * @param maxLag           максимально допустимое отставание реплики.
+     * @param lagCheckInterval интервал проверки отставания реплик.
+     * @param registry         реестр метрик.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag,
+                                    Duration lagCheckInterval, MeterRegistry registry) {
+        this.primary = primary;
+        setTargetDataSource(primary);
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagCheckInterval = lagCheckInterval;
+        this.primaryReads = readsCounter(PRIMARY, registry);
+        replicas.forEach((name, dataSource) -> {
+            Replica replica = new Replica(name, dataSource, readsCounter(name, registry));
+            Gauge.builder("game.datasource.replica.lag", replica, r -> r.lagMillis < 0 ? Double.NaN : r.lagMillis)
+                    .description("Replication lag of the read replica in milliseconds")
+                    .tag("datasource", name)
+                    .register(registry);
+            Gauge.builder("game.datasource.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .description("Whether the read replica is used for read-only transactions")
+                    .tag("datasource", name)
+                    .register(registry);
+            this.replicas.add(replica);
+        });
+        setReadOnlyDataSource(new AbstractDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return readOnlyConnection();
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                return readOnlyConnection();
+            }
+        });
+    }
+
+    private static Counter readsCounter(String name, MeterRegistry registry) {
+        return Counter.builder("game.datasource.read-only.connections")
+                .description("Physical connections opened for read-only transactions")
+                .tag("datasource", name)
+                .register(registry);
+    }
+
+    /**
+     * Запускает периодическую проверку отставания реплик; первая проверка выполняется сразу,
+     * до неё чтение идёт в основную базу.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (replicas.isEmpty()) {
+            return;
+        }
+        lagChecker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        lagChecker.scheduleWithFixedDelay(this::checkLag, 0, lagCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Измеряет отставание каждой реплики и обновляет признак исправности.
+     */
+    void checkLag() {
+        for (Replica replica : replicas) {
+            long lag;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout((int) Math.max(1, lagCheckInterval.toSeconds()));
+                try (ResultSet resultSet = statement.executeQuery(LAG_SQL)) {
+                    resultSet.next();
+                    lag = resultSet.getLong(1);
+                    if (resultSet.wasNull()) {
+                        lag = -1;
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                lag = -1;
+                if (replica.healthy) {
+                    log.warn("Lag check failed for replica {}, reading from primary: {}", replica.name, e.getMessage());
+                }
+            }
+            replica.lagMillis = lag;
+            boolean healthy = lag >= 0 && lag <= maxLagMillis;
+            if (healthy != replica.healthy) {
+                if (healthy) {
+                    log.info("Replica {} is in sync (lag {} ms), routing read-only transactions to it.",
+                            replica.name, lag);
+                } else if (lag >= 0) {
+                    log.warn("Replica {} lags {} ms behind primary, reading from primary.", replica.name, lag);
+                }
+                replica.healthy = healthy;
+            }
+        }
+    }
+
+    private Connection readOnlyConnection() throws SQLException {
+        if (!ReplicaContext.isAllowed()) {
+            return primary.getConnection();
+        }
+        int size = replicas.size();
+        int start = size == 0 ? 0 : Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replica.reads.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+                log.warn("Replica {} is unavailable, reading from primary: {}", replica.name, e.getMessage());
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Останавливает проверку отставания и закрывает пулы соединений основной базы и реплик.
+     */
+    @Override
+    public void close() throws IOException {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof Closeable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.game.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Шард базы данных, выбранный для текущего потока.
+ * <p>
+ * {@link ShardRoutingDataSource} выдаёт соединения шарда, выбранного в момент получения
+ * соединения. Соединение транзакции привязывается к потоку при её начале, поэтому шард
+ * выбирается до начала транзакции и не меняется внутри неё.
+ * </p>
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return имя выбранного шарда или {@code null}, если используется основная база данных.
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Выполняет действие с соединениями указанного шарда.
+     *
+     * @param shard  имя шарда.
+     * @param action действие.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     */
+    public static <T> T call(String shard, Supplier<T> action) {
+        String previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
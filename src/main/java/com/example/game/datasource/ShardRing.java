@@ -0,0 +1,85 @@
+package com.example.game.datasource;
+
+import com.example.game.util.Hashing;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Кольцо согласованного хеширования, распределяющее пользователей по шардам базы данных.
+ * <p>
+ * Каждый шард занимает на кольце {@code virtualNodes} точек — хеши строк {@code "<имя>#<номер>"}.
+ * Пользователь принадлежит шарду первой точки, не меньшей хеша его UUID. Положение точек
+ * зависит только от имени шарда, поэтому при добавлении шарда к нему переходит примерно
+ * {@code 1/N} пользователей, а остальные остаются на прежних шардах.
+ * </p>
+ */
+public final class ShardRing {
+
+    private static final String SHARD_PREFIX = "shard-";
+
+    private final List<String> shards;
+    private final long[] points;
+    private final String[] owners;
+
+    /**
+     * @param shards       имена шардов.
+     * @param virtualNodes количество точек каждого шарда на кольце.
+     * @throws IllegalArgumentException если список шардов пуст, имена повторяются
+     *                                  или количество точек не положительно.
+     */
+    public ShardRing(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Shard ring needs at least one shard and one virtual node per shard.");
+        }
+        if (shards.stream().distinct().count() != shards.size()) {
+            throw new IllegalArgumentException("Shard names must be unique: " + shards);
+        }
+        this.shards = List.copyOf(shards);
+        int size = shards.size() * virtualNodes;
+        long[][] nodes = new long[size][];
+        int n = 0;
+        for (int shard = 0; shard < shards.size(); shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                nodes[n++] = new long[]{Hashing.hash64(shards.get(shard) + "#" + node), shard};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = nodes[i][0];
+            owners[i] = shards.get((int) nodes[i][1]);
+        }
+    }
+
+    /**
+     * Имя шарда по его номеру: {@code shard-0} — основная база данных, далее дополнительные.
+     *
+     * @param index номер шарда.
+     * @return имя шарда.
+     */
+    public static String shardName(int index) {
+        return SHARD_PREFIX + index;
+    }
+
+    /**
+     * @param uuid UUID пользователя.
+     * @return имя шарда, которому принадлежит пользователь.
+     */
+    public String shardFor(UUID uuid) {
+        int index = Arrays.binarySearch(points, Hashing.hash64(uuid));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * @return имена шардов в порядке конфигурации.
+     */
+    public List<String> getShards() {
+        return shards;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.game.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Источник данных, выдающий соединения шарда, выбранного в {@link ShardContext}.
+ * <p>
+ * Без выбранного шарда используется основная база данных ({@code shard-0}): в ней
+ * хранятся служебные таблицы и выполняются миграции. Неизвестное имя шарда является ошибкой.
+ * </p>
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    private final Map<String, DataSource> shards;
+
+    /**
+     * @param shards источники данных шардов по именам; первый из них — основная база данных.
+     */
+    public ShardRoutingDataSource(Map<String, DataSource> shards) {
+        this.shards = new LinkedHashMap<>(shards);
+        setTargetDataSources(new LinkedHashMap<>(shards));
+        setDefaultTargetDataSource(shards.values().iterator().next());
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    /**
+     * Закрывает пулы соединений всех шардов.
+     */
+    @Override
+    public void close() throws IOException {
+        for (DataSource shard : shards.values()) {
+            if (shard instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
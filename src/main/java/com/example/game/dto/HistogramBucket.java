@@ -0,0 +1,17 @@
+package com.example.game.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Интервал гистограммы распределения значений.
+ *
+ * @param lowerBound нижняя граница интервала (не включительно) или {@code null} для первого интервала.
+ * @param upperBound верхняя граница интервала (включительно) или {@code null} для последнего интервала.
+ * @param count      приближённое количество значений в интервале.
+ */
+@Schema(description = "Интервал гистограммы распределения значений")
+public record HistogramBucket(
+        @Schema(description = "Нижняя граница интервала (не включительно)") Integer lowerBound,
+        @Schema(description = "Верхняя граница интервала (включительно)") Integer upperBound,
+        @Schema(description = "Приближённое количество значений в интервале") long count) {
+}
@@ -0,0 +1,19 @@
+package com.example.game.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.UUID;
+
+/**
+ * Позиция пользователя в рейтинге страны по количеству денег.
+ *
+ * @param rank  позиция в рейтинге начиная с 1.
+ * @param uuid  UUID пользователя.
+ * @param money количество денег пользователя.
+ */
+@Schema(description = "Позиция пользователя в рейтинге страны")
+public record RankedUser(
+        @Schema(description = "Позиция в рейтинге начиная с 1") int rank,
+        @Schema(description = "Уникальный идентификатор пользователя") UUID uuid,
+        @Schema(description = "Количество денег у пользователя") int money) {
+}
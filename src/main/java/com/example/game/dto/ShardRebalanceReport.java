@@ -0,0 +1,21 @@
+package com.example.game.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.Map;
+
+/**
+ * Результат перераспределения пользователей по шардам базы данных.
+ *
+ * @param movedUsers    количество перенесённых пользователей по шардам назначения.
+ * @param movedActivity количество перенесённых записей истории активности.
+ * @param skippedUsers  количество пользователей, уже существующих на шарде назначения.
+ * @param elapsedMs     длительность перераспределения в миллисекундах.
+ */
+@Schema(description = "Результат перераспределения пользователей по шардам")
+public record ShardRebalanceReport(
+        @Schema(description = "Количество перенесённых пользователей по шардам назначения") Map<String, Long> movedUsers,
+        @Schema(description = "Количество перенесённых записей истории активности") long movedActivity,
+        @Schema(description = "Количество пользователей, уже существующих на шарде назначения") long skippedUsers,
+        @Schema(description = "Длительность перераспределения в миллисекундах") long elapsedMs) {
+}
@@ -0,0 +1,27 @@
+package com.example.game.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/**
+ * Результат массового импорта пользователей.
+ *
+ * @param receivedRows  количество строк с данными во входном файле.
+ * @param invalidRows   количество строк, отклонённых проверкой.
+ * @param insertedRows  количество созданных пользователей.
+ * @param duplicateRows количество корректных строк с уже существующим или повторяющимся UUID.
+ * @param elapsedMs     длительность импорта в миллисекундах.
+ * @param rowsPerSecond скорость обработки строк.
+ * @param errors        описания первых ошибок проверки.
+ */
+@Schema(description = "Результат массового импорта пользователей")
+public record UserImportReport(
+        @Schema(description = "Количество строк с данными") long receivedRows,
+        @Schema(description = "Количество отклонённых строк") long invalidRows,
+        @Schema(description = "Количество созданных пользователей") long insertedRows,
+        @Schema(description = "Количество строк с существующим или повторяющимся UUID") long duplicateRows,
+        @Schema(description = "Длительность импорта в миллисекундах") long elapsedMs,
+        @Schema(description = "Скорость обработки строк в секунду") long rowsPerSecond,
+        @Schema(description = "Описания первых ошибок проверки") List<String> errors) {
+}
@@ -0,0 +1,26 @@
+package com.example.game.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ответ с позицией пользователя в рейтинге его страны и соседями по рейтингу.
+ *
+ * @param uuid       UUID пользователя.
+ * @param country    код страны пользователя.
+ * @param money      количество денег пользователя.
+ * @param rank       позиция пользователя начиная с 1.
+ * @param totalUsers количество пользователей страны в рейтинге.
+ * @param neighbors  пользователи на позициях от {@code rank - k} до {@code rank + k}, включая самого пользователя.
+ */
+@Schema(description = "Позиция пользователя в рейтинге страны по количеству денег")
+public record UserRankResponse(
+        @Schema(description = "Уникальный идентификатор пользователя") UUID uuid,
+        @Schema(description = "Код страны пользователя") String country,
+        @Schema(description = "Количество денег у пользователя") int money,
+        @Schema(description = "Позиция в рейтинге начиная с 1") int rank,
+        @Schema(description = "Количество пользователей страны в рейтинге") int totalUsers,
+        @Schema(description = "Соседи по рейтингу, включая самого пользователя") List<RankedUser> neighbors) {
+}
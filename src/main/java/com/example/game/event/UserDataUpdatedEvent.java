@@ -0,0 +1,47 @@
+package com.example.game.event;
+
+import java.util.UUID;
+
+/**
+ * Событие, публикуемое после успешного изменения данных пользователя
+ * при синхронизации или приёме игровой активности.
+ * <p>
+ * Используется аналитическими компонентами, которые поддерживают собственные
+ * агрегаты в памяти и не должны обращаться к базе данных. Прежние значения позволяют
+ * агрегатам убрать пользователя из старого состояния, не перечитывая его.
+ * </p>
+ *
+ * @param uuid             UUID пользователя.
+ * @param country          код страны пользователя после изменения.
+ * @param money            количество денег пользователя после изменения.
+ * @param activity         значение активности, полученное в запросе (для синхронизации — 0).
+ * @param source           источник изменения.
+ * @param timestamp        время изменения в миллисекундах.
+ * @param previousCountry  код страны пользователя до изменения.
+ * @param previousMoney    количество денег пользователя до изменения.
+ * @param previousActivity суммарная активность пользователя до изменения.
+ */
+public record UserDataUpdatedEvent(UUID uuid, String country, int money, int activity, Source source, long timestamp,
+                                   String previousCountry, int previousMoney, int previousActivity) {
+
+    /**
+     * @return суммарная активность пользователя после изменения.
+     */
+    public int totalActivity() {
+        return previousActivity + activity;
+    }
+
+    /**
+     * Источник изменения данных пользователя.
+     */
+    public enum Source {
+        /**
+         * Синхронизация данных через POST /api/sync.
+         */
+        SYNC,
+        /**
+         * Приём игровой активности через POST /api/activity.
+         */
+        ACTIVITY
+    }
+}
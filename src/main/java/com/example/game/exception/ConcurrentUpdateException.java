@@ -0,0 +1,27 @@
+package com.example.game.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, которое выбрасывается, если данные пользователя не удалось обновить из-за параллельных изменений.
+ * <p>
+ * Этот класс расширяет {@link RuntimeException} и автоматически вызывает ошибку с кодом статуса 409 (CONFLICT) при возникновении исключения.
+ * </p>
+ */
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConcurrentUpdateException extends RuntimeException {
+
+    /**
+     * Константа определяющая сообщение при исчерпании попыток обновления данных пользователя.
+     */
+    public static final String CONCURRENT_UPDATE = "User data is being updated concurrently. Please try again later.";
+
+    /**
+     * Конструктор исключения {@link ConcurrentUpdateException}.
+     * <br>Создаёт новое исключение с сообщением.
+     */
+    public ConcurrentUpdateException(String message) {
+        super(message);
+    }
+}
@@ -26,6 +26,21 @@ public class DatabaseException extends RuntimeException {
      */
     public static final String ERROR_NEW_USERS = "Failed to count new users. Please try again later";
 
+    /**
+     * Константа определяющая сообщение при неудаче записи в журнал приёма данных.
+     */
+    public static final String ERROR_INGEST_LOG = "Failed to accept data. Please try again later";
+
+    /**
+     * Константа определяющая сообщение при неудаче массового импорта пользователей.
+     */
+    public static final String ERROR_USER_IMPORT = "Failed to import users. Please try again later";
+
+    /**
+     * Константа определяющая сообщение при неудаче перераспределения пользователей по шардам.
+     */
+    public static final String ERROR_SHARD_REBALANCE = "Failed to rebalance shards. Please try again later";
+
     /**
      * Конструктор исключения {@link DatabaseException}.
      * Создаёт новое исключение с сообщением.
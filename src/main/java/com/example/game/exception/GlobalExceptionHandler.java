@@ -1,14 +1,21 @@
 package com.example.game.exception;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Глобальный обработчик исключений в приложении.
@@ -19,6 +26,23 @@ public class GlobalExceptionHandler {
     private static final Logger log = LoggerFactory.getLogger(GlobalExceptionHandler.class);
     private static final String ERROR = "error";
 
+    /**
+     * Каждый какой отказ по лимиту записывается в журнал.
+     */
+    static final long REJECTION_LOG_SAMPLE = 1000;
+
+    private static final ObjectMapper BODY_MAPPER = new ObjectMapper();
+
+    private static final Map<String, byte[]> LIMIT_BODIES = Map.of(
+            SyncLimitExceededException.MESSAGE_SYNC, encodeError(SyncLimitExceededException.MESSAGE_SYNC),
+            SyncLimitExceededException.MESSAGE_RQ, encodeError(SyncLimitExceededException.MESSAGE_RQ),
+            ActivityLimitExceededException.LIMIT_ACTIVITY, encodeError(ActivityLimitExceededException.LIMIT_ACTIVITY));
+
+    private static final byte[] OVERLOADED_BODY = encodeError(ServiceOverloadedException.SERVICE_OVERLOADED);
+
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong overloadRejections = new AtomicLong();
+
     /**
      * Обрабатывает исключение UserNotFoundException.
      *
@@ -44,29 +68,66 @@ public class GlobalExceptionHandler {
     }
 
     /**
-     * Обрабатывает исключение SyncLimitExceededException.
+     * Обрабатывает превышение лимитов синхронизации и активности.
+     * <p>
+     * Отвечает статусом 429 с заголовком {@code Retry-After} и заранее закодированным телом.
+     * Отказы по лимиту ожидаемы и массовы, поэтому в журнал попадает только каждый
+     * {@value #REJECTION_LOG_SAMPLE}-й из них вместе с общим количеством.
+     * </p>
      *
-     * @param e исключение о превышении лимита синхронизации
-     * @return сообщение об ошибке
+     * @param e исключение о превышении лимита
+     * @return ответ со статусом 429
      */
-    @ExceptionHandler(SyncLimitExceededException.class)
-    public Map<String, String> handleSyncLimitExceededException(SyncLimitExceededException e) {
-        log.warn("Sync limit exceeded: {}", e.getMessage());
-        return Collections.singletonMap(ERROR, e.getMessage());
+    @ExceptionHandler(RequestLimitExceededException.class)
+    public ResponseEntity<byte[]> handleRequestLimitExceededException(RequestLimitExceededException e) {
+        long rejected = rejections.incrementAndGet();
+        if (rejected % REJECTION_LOG_SAMPLE == 1) {
+            log.warn("Request limit exceeded: {} ({} requests rejected by limits so far)", e.getMessage(), rejected);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (e.getRetryAfterSeconds() > 0) {
+            response.header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()));
+        }
+        byte[] body = LIMIT_BODIES.get(e.getMessage());
+        return response.body(body != null ? body : encodeError(e.getMessage()));
     }
 
     /**
-     * Обрабатывает исключение ActivityLimitExceededException.
+     * Обрабатывает исключение ConcurrentUpdateException.
      *
-     * @param e исключение о превышении лимита запросов активности
+     * @param e исключение об исчерпании попыток обновления при параллельных изменениях
      * @return сообщение об ошибке
      */
-    @ExceptionHandler(ActivityLimitExceededException.class)
-    public Map<String, String> handleActivityLimitExceededException(ActivityLimitExceededException e) {
-        log.warn("Activity limit exceeded: {}", e.getMessage());
+    @ExceptionHandler(ConcurrentUpdateException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleConcurrentUpdateException(ConcurrentUpdateException e) {
+        log.warn("Concurrent update conflict: {}", e.getMessage());
         return Collections.singletonMap(ERROR, e.getMessage());
     }
 
+    /**
+     * Обрабатывает отказ в приёме запроса из-за перегрузки.
+     * <p>
+     * Отвечает статусом 503 с заголовком {@code Retry-After} и заранее закодированным телом;
+     * в журнал, как и для отказов по лимиту, попадает только каждый {@value #REJECTION_LOG_SAMPLE}-й отказ.
+     * </p>
+     *
+     * @param e исключение о перегрузке
+     * @return ответ со статусом 503
+     */
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<byte[]> handleServiceOverloadedException(ServiceOverloadedException e) {
+        long rejected = overloadRejections.incrementAndGet();
+        if (rejected % REJECTION_LOG_SAMPLE == 1) {
+            log.warn("Service overloaded: {} ({} requests rejected so far)", e.getMessage(), rejected);
+        }
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(OVERLOADED_BODY);
+    }
+
     /**
      * Обрабатывает исключение NoDataFoundException.
      *
@@ -98,11 +159,33 @@ public class GlobalExceptionHandler {
      * @return сообщение об ошибке
      */
     @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleIllegalArgumentException(IllegalArgumentException e) {
         log.warn("Invalid input: {}", e.getMessage());
         return Collections.singletonMap(ERROR, e.getMessage());
     }
 
+    /**
+     * Обрабатывает ошибку преобразования параметра запроса, например некорректный UUID.
+     *
+     * @param e исключение о несоответствии типа параметра
+     * @return сообщение об ошибке
+     */
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleArgumentTypeMismatchException(MethodArgumentTypeMismatchException e) {
+        log.warn("Invalid value of parameter {}: {}", e.getName(), e.getValue());
+        return Collections.singletonMap(ERROR, "Invalid value of parameter '" + e.getName() + "'.");
+    }
+
+    private static byte[] encodeError(String message) {
+        try {
+            return BODY_MAPPER.writeValueAsBytes(Collections.singletonMap(ERROR, message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode error body", e);
+        }
+    }
+
     /**
      * Обрабатывает все непредвиденные исключения.
      *
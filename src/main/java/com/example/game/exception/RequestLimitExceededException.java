@@ -0,0 +1,30 @@
+package com.example.game.exception;
+
+/**
+ * Базовое исключение превышения суточного лимита запросов пользователя.
+ * <p>
+ * Отказ по лимиту — ожидаемый результат, а не ошибка, поэтому исключение не заполняет стек вызовов:
+ * отклонённый запрос обходится почти так же дёшево, как проверка счётчика. Исключение содержит
+ * время в секундах, через которое лимит будет сброшен; оно передаётся клиенту в заголовке {@code Retry-After}.
+ * </p>
+ */
+public abstract class RequestLimitExceededException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    /**
+     * @param message           сообщение об ошибке.
+     * @param retryAfterSeconds время до сброса лимита в секундах; {@code 0}, если оно неизвестно.
+     */
+    protected RequestLimitExceededException(String message, long retryAfterSeconds) {
+        super(message, null, false, false);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return время до сброса лимита в секундах; {@code 0}, если оно неизвестно.
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
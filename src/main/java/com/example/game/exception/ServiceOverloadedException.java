@@ -0,0 +1,27 @@
+package com.example.game.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Исключение, которое выбрасывается, если сервер не может принять запрос из-за перегрузки.
+ * <p>
+ * Этот класс расширяет {@link RuntimeException} и автоматически вызывает ошибку с кодом статуса 503 (SERVICE_UNAVAILABLE) при возникновении исключения.
+ * </p>
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class ServiceOverloadedException extends RuntimeException {
+
+    /**
+     * Константа определяющая сообщение при перегрузке сервера.
+     */
+    public static final String SERVICE_OVERLOADED = "Server is overloaded. Please try again later.";
+
+    /**
+     * Конструктор исключения {@link ServiceOverloadedException}.
+     * <br>Создаёт новое исключение с сообщением без стека вызовов: отказы при перегрузке массовы.
+     */
+    public ServiceOverloadedException(String message) {
+        super(message, null, false, false);
+    }
+}
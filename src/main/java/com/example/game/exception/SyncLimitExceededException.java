@@ -6,11 +6,11 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 /**
  * Исключение, которое выбрасывается при превышении лимита запросов на синхронизацию данных пользователя.
  * <p>
- * Этот класс расширяет {@link RuntimeException} и автоматически вызывает ошибку с кодом статуса 429 (TOO_MANY_REQUESTS) при возникновении исключения.
+ * Этот класс расширяет {@link RequestLimitExceededException} и автоматически вызывает ошибку с кодом статуса 429 (TOO_MANY_REQUESTS) при возникновении исключения.
  * </p>
  */
 @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
-public class SyncLimitExceededException extends RuntimeException {
+public class SyncLimitExceededException extends RequestLimitExceededException {
 
     /**
      * Константа определяющая сообщение при превышении лимита количества отправлений информации в день.
@@ -24,9 +24,20 @@ public class SyncLimitExceededException extends RuntimeException {
 
     /**
      * Конструктор исключения {@link SyncLimitExceededException}.
-     * <br>Создаёт новое исключение с сообщением.
+     * <br>Создаёт новое исключение с сообщением без времени до сброса лимита.
      */
     public SyncLimitExceededException(String message) {
-        super(message);
+        super(message, 0);
+    }
+
+    /**
+     * Конструктор исключения {@link SyncLimitExceededException}.
+     * <br>Создаёт новое исключение с сообщением и временем до сброса лимита.
+     *
+     * @param message           сообщение об ошибке.
+     * @param retryAfterSeconds время до сброса лимита в секундах.
+     */
+    public SyncLimitExceededException(String message, long retryAfterSeconds) {
+        super(message, retryAfterSeconds);
     }
 }
@@ -0,0 +1,137 @@
+package com.example.game.filter;
+
+import com.example.game.util.AdaptiveConcurrencyLimiter;
+import com.example.game.util.AdaptiveConcurrencyLimiter.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.example.game.exception.ServiceOverloadedException.SERVICE_OVERLOADED;
+
+/**
+ * Фильтр, ограничивающий количество одновременно обрабатываемых запросов к API.
+ * <p>
+ * Перед обработкой запрос занимает слот {@link AdaptiveConcurrencyLimiter}. Синхронизация
+ * ({@code /api/sync}) имеет высший приоритет, запросы данных и активности — обычный,
+ * аналитика ({@code /api/analytics/**}) — низкий и при перегрузке отклоняется первой.
+ * Запрос, не получивший слот, сразу получает ответ 503 с заголовком {@code Retry-After},
+ * не доходя до пула соединений базы данных.
+ * </p>
+ * <p>
+ * Количество отклонённых запросов публикуется в метрике {@code game.concurrency.rejected}
+ * с тегом {@code priority}.
+ * </p>
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    /**
+     * Каждый какой отказ записывается в журнал.
+     */
+    private static final long REJECTION_LOG_SAMPLE = 1000;
+
+    private static final byte[] OVERLOADED_BODY = ("{\"error\":\"" + SERVICE_OVERLOADED + "\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final long maxWaitMs;
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * @param limiter   ограничитель одновременно обрабатываемых запросов.
+     * @param registry  реестр метрик.
+     * @param maxWaitMs максимальное время ожидания слота в миллисекундах.
+     */
+    public ConcurrencyLimitFilter(AdaptiveConcurrencyLimiter limiter, MeterRegistry registry, long maxWaitMs) {
+        this.limiter = limiter;
+        this.maxWaitMs = maxWaitMs;
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, Counter.builder("game.concurrency.rejected")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return priorityOf(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Priority priority = priorityOf(request);
+        boolean acquired;
+        try {
+            acquired = limiter.tryAcquire(priority, maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            reject(priority, response);
+            return;
+        }
+
+        long started = System.nanoTime();
+        boolean dropped = true;
+        try {
+            chain.doFilter(request, response);
+            dropped = response.getStatus() >= HttpStatus.INTERNAL_SERVER_ERROR.value();
+        } finally {
+            limiter.release(System.nanoTime() - started, dropped);
+        }
+    }
+
+    private void reject(Priority priority, HttpServletResponse response) throws IOException {
+        rejected.get(priority).increment();
+        long count = rejections.incrementAndGet();
+        if (count % REJECTION_LOG_SAMPLE == 1) {
+            log.warn("Shedding {} priority request, limit {}, queue depth {}, {} rejected in total",
+                    priority, limiter.getLimit(), limiter.getQueueDepth(), count);
+        }
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(OVERLOADED_BODY.length);
+        response.getOutputStream().write(OVERLOADED_BODY);
+    }
+
+    /**
+     * Определяет приоритет запроса по пути.
+     *
+     * @param request запрос.
+     * @return приоритет или {@code null}, если запрос не ограничивается.
+     */
+    static Priority priorityOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/api/sync")) {
+            return Priority.CRITICAL;
+        }
+        if (path.equals("/api/user-data") || path.equals("/api/activity")) {
+            return Priority.NORMAL;
+        }
+        if (path.startsWith("/api/analytics/")) {
+            return Priority.LOW;
+        }
+        return null;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.game.model;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Сущность, представляющая данные пользователя.
@@ -28,7 +30,7 @@ public class UserData {
      */
     @Schema(description = "Уникальный идентификатор пользователя")
     @Id
-    private String uuid;
+    private UUID uuid;
 
     /**
      * Количество денег у пользователя.
@@ -77,6 +79,15 @@ public class UserData {
     @Column(name = "last_stat_time")
     private long lastStatTime;
 
+    /**
+     * Версия записи для оптимистичной блокировки.
+     * Увеличивается при каждом обновлении; не передаётся клиентам.
+     */
+    @Schema(hidden = true)
+    @Version
+    @JsonIgnore
+    private Long version;
+
     /**
      * Дата и время регистрации пользователя (создание пользователя в БД).
      * Значение устанавливается автоматически при создании.
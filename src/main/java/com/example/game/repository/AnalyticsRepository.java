@@ -3,30 +3,85 @@ package com.example.game.repository;
 import com.example.game.model.UserData;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 /**
  * Репозиторий для аналитических запросов к данным пользователей.
+ * <p>
+ * Запросы выполняются в транзакциях только для чтения. Сущности загружаются в режиме
+ * только для чтения: Hibernate не хранит их снимки и не проверяет изменения при сбросе.
+ * </p>
  */
 @Repository
-public interface AnalyticsRepository extends JpaRepository<UserData, String> {
+@Transactional(readOnly = true)
+public interface AnalyticsRepository extends JpaRepository<UserData, UUID> {
 
     /**
      * Получает список пользователей из указанной страны, отсортированный по убыванию количества денег.
      * Используется для определения топ-N пользователей по финансовым показателям в конкретной стране.
+     * При равенстве денег пользователи упорядочиваются по UUID, чтобы порядок был детерминированным.
      *
      * @param country  Код страны.
      * @param pageable Объект для пагинации и ограничения количества записей.
      * @return Список пользователей, отсортированный по количеству денег.
      */
-    @Query("SELECT u FROM UserData u WHERE u.country = :country ORDER BY u.money DESC")
+    @QueryHints({@QueryHint(name = HINT_READ_ONLY, value = "true"), @QueryHint(name = HINT_FETCH_SIZE, value = "1000")})
+    @Query("SELECT u FROM UserData u WHERE u.country = :country ORDER BY u.money DESC, u.uuid")
     List<UserData> findTopUsersByCountryMoney(@Param("country") String country, Pageable pageable);
 
+    /**
+     * Продолжает рейтинг страны после указанного пользователя (постраничный вывод по ключу).
+     * <p>
+     * Возвращает пользователей, следующих за позицией {@code (money, uuid)} в порядке
+     * {@link #findTopUsersByCountryMoney(String, Pageable)}, без пропуска предыдущих строк через {@code OFFSET}.
+     * </p>
+     *
+     * @param country  Код страны.
+     * @param money    Количество денег последнего уже полученного пользователя.
+     * @param uuid     UUID последнего уже полученного пользователя.
+     * @param pageable Объект для ограничения количества записей.
+     * @return Список пользователей, отсортированный по количеству денег.
+     */
+    @QueryHints({@QueryHint(name = HINT_READ_ONLY, value = "true"), @QueryHint(name = HINT_FETCH_SIZE, value = "1000")})
+    @Query("SELECT u FROM UserData u WHERE u.country = :country " +
+            "AND (u.money < :money OR (u.money = :money AND u.uuid > :uuid)) ORDER BY u.money DESC, u.uuid")
+    List<UserData> findTopUsersByCountryMoneyAfter(@Param("country") String country, @Param("money") int money,
+                                                   @Param("uuid") UUID uuid, Pageable pageable);
+
+    /**
+     * Получает топ-N пользователей по количеству денег сразу для нескольких стран одним запросом.
+     * <p>
+     * Пользователи нумеруются оконной функцией {@code ROW_NUMBER()} внутри каждой страны
+     * в том же порядке, что и в {@link #findTopUsersByCountryMoney(String, Pageable)}.
+     * </p>
+     *
+     * @param countries  Коды стран.
+     * @param usersCount Количество пользователей на страну.
+     * @return Пользователи, упорядоченные по стране и затем по позиции в рейтинге страны.
+     */
+    @QueryHints({@QueryHint(name = HINT_READ_ONLY, value = "true"), @QueryHint(name = HINT_FETCH_SIZE, value = "1000")})
+    @Query(value = "SELECT ranked.uuid, ranked.money, ranked.country, ranked.activity, ranked.sync_count, " +
+            "ranked.stat_count, ranked.last_sync_time, ranked.last_stat_time, ranked.version, ranked.created_at FROM (" +
+            "SELECT u.*, ROW_NUMBER() OVER (PARTITION BY u.country ORDER BY u.money DESC, u.uuid) AS position " +
+            "FROM user_data u WHERE u.country IN (:countries)) ranked " +
+            "WHERE ranked.position <= :usersCount ORDER BY ranked.country, ranked.position", nativeQuery = true)
+    List<UserData> findTopUsersByCountriesMoney(@Param("countries") Collection<String> countries,
+                                                @Param("usersCount") int usersCount);
+
     /**
      * Подсчитывает количество новых пользователей, зарегистрированных в указанной стране с определенной даты.
      *
@@ -36,5 +91,64 @@ public interface AnalyticsRepository extends JpaRepository<UserData, String> {
      */
     @Query("SELECT COUNT(u) FROM UserData u WHERE u.country = :country AND u.createdAt >= :startDateTime")
     long countNewUsersByCountry(@Param("country") String country, @Param("startDateTime") LocalDateTime startDateTime);
-}
 
+    /**
+     * Подсчитывает количество новых пользователей сразу для нескольких стран одним запросом.
+     *
+     * @param countries     Коды стран.
+     * @param startDateTime Дата и время, начиная с которых нужно считать новых пользователей.
+     * @return Массивы {@code [country, count]}; страны без новых пользователей отсутствуют.
+     */
+    @Query("SELECT u.country, COUNT(u) FROM UserData u " +
+            "WHERE u.country IN :countries AND u.createdAt >= :startDateTime GROUP BY u.country")
+    List<Object[]> countNewUsersByCountries(@Param("countries") Collection<String> countries,
+                                            @Param("startDateTime") LocalDateTime startDateTime);
+
+    /**
+     * Возвращает список всех стран, в которых есть пользователи.
+     * <p>
+     * PostgreSQL не умеет пропускать повторы при чтении индекса, поэтому {@code SELECT DISTINCT}
+     * прочитал бы весь индекс {@code country}. Рекурсивный запрос вместо этого находит каждую
+     * следующую страну отдельным поиском по индексу, и количество чтений пропорционально числу стран,
+     * а не пользователей.
+     * </p>
+     *
+     * @return Коды стран без повторений в порядке возрастания.
+     */
+    @Query(value = "WITH RECURSIVE countries AS (" +
+            "(SELECT u.country FROM user_data u ORDER BY u.country LIMIT 1) " +
+            "UNION ALL " +
+            "SELECT (SELECT u.country FROM user_data u WHERE u.country > c.country ORDER BY u.country LIMIT 1) " +
+            "FROM countries c WHERE c.country IS NOT NULL) " +
+            "SELECT country FROM countries WHERE country IS NOT NULL", nativeQuery = true)
+    List<String> findDistinctCountries();
+
+    /**
+     * Потоково читает страну и количество денег всех пользователей.
+     * <p>
+     * Возвращает массивы {@code [uuid, country, money]}. Используется для построения
+     * рейтингов в памяти и должен вызываться внутри транзакции.
+     * </p>
+     *
+     * @return Поток данных пользователей.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT u.uuid, u.country, u.money FROM UserData u")
+    Stream<Object[]> streamMoneyByUser();
+
+    /**
+     * Потоково читает пользователей, зарегистрированных за период, для выгрузки.
+     * <p>
+     * Возвращает массивы {@code [uuid, country, money, activity, createdAt]}, отсортированные
+     * по стране и дате регистрации. Должен вызываться внутри транзакции.
+     * </p>
+     *
+     * @param from начало периода (включительно).
+     * @param to   конец периода (не включительно).
+     * @return Поток данных пользователей.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT u.uuid, u.country, u.money, u.activity, u.createdAt FROM UserData u " +
+            "WHERE u.createdAt >= :from AND u.createdAt < :to ORDER BY u.country, u.createdAt")
+    Stream<Object[]> streamUsersCreatedForPeriod(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
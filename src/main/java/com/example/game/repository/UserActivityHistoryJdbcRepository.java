@@ -0,0 +1,102 @@
+package com.example.game.repository;
+
+import com.example.game.model.UserActivityHistory;
+import com.example.game.model.UserData;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Чтение истории активности пользователя через JDBC без контекста персистентности.
+ * <p>
+ * Данные пользователя и его записи активности читаются одним запросом по UUID. Объекты
+ * создаются напрямую из строк результата: Hibernate не отслеживает их и не хранит снимки
+ * для проверки изменений, а все записи ссылаются на один объект пользователя.
+ * </p>
+ */
+@Repository
+public class UserActivityHistoryJdbcRepository {
+
+    private static final String HISTORY_SQL = "SELECT u.uuid, u.money, u.country, u.activity, u.sync_count, "
+            + "u.stat_count, u.last_sync_time, u.last_stat_time, u.created_at, "
+            + "h.id, h.activity AS history_activity, h.activity_date "
+            + "FROM user_data u LEFT JOIN user_activity_history h ON h.uuid = u.uuid AND h.activity_date >= ? "
+            + "WHERE u.uuid = ? ORDER BY h.activity_date DESC NULLS LAST LIMIT ?";
+
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserActivityHistoryJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Пользователь и его записи активности.
+     *
+     * @param user    данные пользователя.
+     * @param history записи активности, отсортированные по дате убывания.
+     */
+    public record UserHistory(UserData user, List<UserActivityHistory> history) {
+    }
+
+    /**
+     * Получает данные пользователя и его записи активности за период.
+     *
+     * @param uuid      UUID пользователя.
+     * @param startDate начальная дата (включительно).
+     * @param limit     максимальное количество записей активности.
+     * @return пользователь и записи активности; пустой результат, если пользователь не найден.
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserHistory> findUserActivityHistory(UUID uuid, LocalDate startDate, int limit) {
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(HISTORY_SQL);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setDate(1, Date.valueOf(startDate));
+            statement.setObject(2, uuid);
+            statement.setInt(3, limit);
+            return statement;
+        }, resultSet -> {
+            if (!resultSet.next()) {
+                return Optional.empty();
+            }
+            UserData user = mapUser(resultSet);
+            List<UserActivityHistory> history = new ArrayList<>();
+            do {
+                long id = resultSet.getLong("id");
+                if (!resultSet.wasNull()) {
+                    history.add(new UserActivityHistory(id, user, resultSet.getInt("history_activity"),
+                            resultSet.getDate("activity_date").toLocalDate()));
+                }
+            } while (resultSet.next());
+            return Optional.of(new UserHistory(user, history));
+        });
+    }
+
+    private static UserData mapUser(ResultSet resultSet) throws SQLException {
+        UserData user = new UserData();
+        user.setUuid(resultSet.getObject("uuid", UUID.class));
+        user.setMoney(resultSet.getInt("money"));
+        user.setCountry(resultSet.getString("country"));
+        user.setActivity(resultSet.getInt("activity"));
+        user.setSyncCount(resultSet.getInt("sync_count"));
+        user.setStatCount(resultSet.getInt("stat_count"));
+        user.setLastSyncTime(resultSet.getLong("last_sync_time"));
+        user.setLastStatTime(resultSet.getLong("last_stat_time"));
+        Timestamp createdAt = resultSet.getTimestamp("created_at");
+        user.setCreatedAt(createdAt == null ? null : createdAt.toLocalDateTime());
+        return user;
+    }
+}
@@ -3,13 +3,20 @@ package com.example.game.repository;
 import com.example.game.model.UserActivityHistory;
 import com.example.game.model.UserData;
 import org.springframework.data.domain.Pageable;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 /**
  * Репозиторий для работы с историей активности пользователей.
@@ -30,4 +37,58 @@ public interface UserActivityHistoryRepository extends JpaRepository<UserActivit
      */
     @Query("SELECT uah FROM UserActivityHistory uah WHERE uah.user = :user AND uah.activityDate >= :startDate ORDER BY uah.activityDate DESC")
     List<UserActivityHistory> findUserActivityHistoryByUuidAndPeriod(@Param("user") UserData user, @Param("startDate") LocalDate startDate, Pageable pageable);
+
+    /**
+     * Возвращает самую раннюю дату активности, хранящуюся в таблице.
+     *
+     * @return минимальная дата активности или {@code null}, если таблица пуста.
+     */
+    @Query("SELECT MIN(uah.activityDate) FROM UserActivityHistory uah")
+    LocalDate findMinActivityDate();
+
+    /**
+     * Потоково читает записи активности за период для архивации.
+     * <p>
+     * Возвращает массивы {@code [uuid, activityDate, activity, id]}, сгруппированные по UUID
+     * и отсортированные по дате. Должен вызываться внутри транзакции.
+     * </p>
+     *
+     * @param from дата начала периода (включительно).
+     * @param to   дата окончания периода (не включительно).
+     * @return поток записей активности.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT uah.user.uuid, uah.activityDate, uah.activity, uah.id FROM UserActivityHistory uah " +
+            "WHERE uah.activityDate >= :from AND uah.activityDate < :to ORDER BY uah.user.uuid, uah.activityDate")
+    Stream<Object[]> streamActivityForPeriod(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Потоково читает записи активности за период вместе со страной пользователя для выгрузки.
+     * <p>
+     * Возвращает массивы {@code [uuid, country, activityDate, activity]}, отсортированные
+     * по стране и дате. Должен вызываться внутри транзакции.
+     * </p>
+     *
+     * @param from дата начала периода (включительно).
+     * @param to   дата окончания периода (не включительно).
+     * @return поток записей активности.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT u.uuid, u.country, uah.activityDate, uah.activity FROM UserActivityHistory uah JOIN uah.user u " +
+            "WHERE uah.activityDate >= :from AND uah.activityDate < :to ORDER BY u.country, uah.activityDate")
+    Stream<Object[]> streamActivityWithCountryForPeriod(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Удаляет перенесённые в архив записи активности по их идентификаторам.
+     * <p>
+     * Удаляются только записи, действительно прочитанные при архивации: записи за тот же период,
+     * добавленные после чтения, остаются в таблице.
+     * </p>
+     *
+     * @param ids идентификаторы записей.
+     * @return количество удалённых записей.
+     */
+    @Modifying
+    @Query("DELETE FROM UserActivityHistory uah WHERE uah.id IN :ids")
+    int deleteActivityByIds(@Param("ids") Collection<Long> ids);
 }
@@ -1,9 +1,18 @@
 package com.example.game.repository;
 
 import com.example.game.model.UserData;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
 /**
  * Репозиторий для работы с данными пользователей.
  * <p>
@@ -11,7 +20,52 @@ import org.springframework.stereotype.Repository;
  * </p>
  */
 @Repository
-public interface UserDataRepository extends JpaRepository<UserData, String> {
-    UserData findByUuid(String uuid);
-}
+public interface UserDataRepository extends JpaRepository<UserData, UUID> {
+    UserData findByUuid(UUID uuid);
+
+    /**
+     * Потоково читает UUID всех пользователей.
+     * <p>
+     * Должен вызываться внутри транзакции; поток необходимо закрыть после использования.
+     * </p>
+     *
+     * @return Поток UUID пользователей.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT u.uuid FROM UserData u")
+    Stream<UUID> streamAllUuids();
 
+    /**
+     * Возвращает наибольший порядковый номер добавления строки пользователя.
+     * <p>
+     * Номер {@code registration_seq} выдаётся последовательностью при вставке строки и не зависит
+     * от {@code created_at}, который может быть задан при импорте или переносе.
+     * </p>
+     *
+     * @return Наибольший номер или {@code 0}, если пользователей нет.
+     */
+    @Query(value = "SELECT COALESCE(MAX(registration_seq), 0) FROM user_data", nativeQuery = true)
+    long findMaxRegistrationSeq();
+
+    /**
+     * Потоково читает UUID пользователей, добавленных после строки с указанным порядковым номером.
+     *
+     * @param seq Порядковый номер (не включительно).
+     * @return Поток UUID пользователей.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    @Query(value = "SELECT uuid FROM user_data WHERE registration_seq > :seq", nativeQuery = true)
+    Stream<UUID> streamUuidsRegisteredAfter(@Param("seq") long seq);
+
+    /**
+     * Потоково читает страну, количество денег и суммарную активность всех пользователей.
+     * <p>
+     * Должен вызываться внутри транзакции; поток необходимо закрыть после использования.
+     * </p>
+     *
+     * @return Поток строк {@code [country, money, activity]}.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    @Query("SELECT u.country, u.money, u.activity FROM UserData u")
+    Stream<Object[]> streamCountryMoneyActivity();
+}
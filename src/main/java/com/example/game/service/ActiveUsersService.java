@@ -0,0 +1,198 @@
+package com.example.game.service;
+
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.util.Hashing;
+import com.example.game.util.HyperLogLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.example.game.service.AnalyticsService.COUNTRY_REQUIRED;
+
+/**
+ * Сервис приближённого подсчёта активных пользователей (DAU/MAU) по странам.
+ * <p>
+ * Каждый UUID, обратившийся к POST /api/sync или POST /api/activity, добавляется
+ * в дневной скетч {@link HyperLogLog} своей страны. Количество уникальных пользователей
+ * за произвольный период вычисляется объединением дневных скетчей. Каждый дневной скетч
+ * занимает 4 КБ независимо от числа пользователей.
+ * </p>
+ * <p>
+ * При включённом режиме Redis скетчи дополнительно ведутся командами PFADD в ключах
+ * {@code dau:{country}:{date}}, а запрос за период выполняется через PFMERGE во временный
+ * ключ, что позволяет объединять данные нескольких экземпляров приложения. Команды PFADD
+ * отправляются через {@link RedisWritePipelineService}, если конвейер включён.
+ * </p>
+ */
+@Service
+public class ActiveUsersService {
+
+    private static final Logger log = LoggerFactory.getLogger(ActiveUsersService.class);
+    private static final String REDIS_KEY_PREFIX = "dau:";
+    private static final Duration MERGE_KEY_TTL = Duration.ofMinutes(1);
+
+    /**
+     * Сообщение об ошибке при запросе периода за пределами срока хранения скетчей.
+     */
+    public static final String PERIOD_OUT_OF_RETENTION = "Start date must be within the last %d days.";
+
+    private final Clock clock;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisWritePipelineService writePipeline;
+    private final boolean redisEnabled;
+    private final int retentionDays;
+    private final Map<String, Map<LocalDate, HyperLogLog>> sketches = new ConcurrentHashMap<>();
+
+    public ActiveUsersService(Clock clock,
+                              ObjectProvider<StringRedisTemplate> redisTemplate,
+                              RedisWritePipelineService writePipeline,
+                              @Value("${game.dau.redis-enabled:false}") boolean redisEnabled,
+                              @Value("${game.dau.retention-days:62}") int retentionDays) {
+        this.clock = clock;
+        this.redisTemplate = redisEnabled ? redisTemplate.getObject() : null;
+        this.writePipeline = writePipeline;
+        this.redisEnabled = redisEnabled;
+        this.retentionDays = retentionDays;
+    }
+
+    /**
+     * Учитывает пользователя в дневном скетче его страны.
+     *
+     * @param event событие изменения данных пользователя.
+     */
+    @EventListener
+    public void onUserDataUpdated(UserDataUpdatedEvent event) {
+        if (event.country() == null || event.country().isBlank()) {
+            return;
+        }
+        LocalDate date = Instant.ofEpochMilli(event.timestamp()).atZone(ZoneOffset.UTC).toLocalDate();
+        record(event.uuid(), event.country(), date);
+    }
+
+    /**
+     * Добавляет пользователя в скетч страны за указанный день.
+     *
+     * @param uuid    UUID пользователя.
+     * @param country код страны.
+     * @param date    день активности.
+     */
+    public void record(UUID uuid, String country, LocalDate date) {
+        Map<LocalDate, HyperLogLog> byDate = sketches.computeIfAbsent(country, c -> new ConcurrentHashMap<>());
+        boolean[] created = new boolean[1];
+        HyperLogLog sketch = byDate.computeIfAbsent(date, d -> {
+            created[0] = true;
+            return new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        });
+        sketch.add(Hashing.hash64(uuid));
+
+        if (redisEnabled) {
+            recordInRedis(redisKey(country, date), uuid.toString(), created[0], country);
+        }
+    }
+
+    /**
+     * Оценивает количество уникальных активных пользователей страны за период.
+     *
+     * @param country   код страны.
+     * @param startDate дата начала периода (включительно).
+     * @param endDate   дата окончания периода (включительно).
+     * @return оценка количества уникальных пользователей.
+     * @throws IllegalArgumentException если параметры пустые, период задан некорректно
+     *                                  или начинается раньше срока хранения скетчей.
+     */
+    public long countActiveUsers(String country, LocalDate startDate, LocalDate endDate) {
+        if (country == null || country.isBlank()) {
+            throw new IllegalArgumentException(COUNTRY_REQUIRED);
+        }
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("Start date must not be after end date.");
+        }
+        LocalDate today = LocalDate.now(clock);
+        if (startDate.isBefore(today.minusDays(retentionDays))) {
+            throw new IllegalArgumentException(String.format(PERIOD_OUT_OF_RETENTION, retentionDays));
+        }
+        // Скетчей за будущие дни нет, поэтому период ограничивается сегодняшним днём
+        if (endDate.isAfter(today)) {
+            endDate = today;
+        }
+        if (endDate.isBefore(startDate)) {
+            return 0;
+        }
+
+        if (redisEnabled) {
+            List<String> keys = new ArrayList<>();
+            for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+                keys.add(redisKey(country, date));
+            }
+            String mergeKey = REDIS_KEY_PREFIX + country + ":" + startDate + ":" + endDate;
+            redisTemplate.opsForHyperLogLog().union(mergeKey, keys.toArray(new String[0]));
+            redisTemplate.expire(mergeKey, MERGE_KEY_TTL);
+            return redisTemplate.opsForHyperLogLog().size(mergeKey);
+        }
+
+        Map<LocalDate, HyperLogLog> byDate = sketches.get(country);
+        if (byDate == null) {
+            return 0;
+        }
+        HyperLogLog union = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            HyperLogLog daily = byDate.get(date);
+            if (daily != null) {
+                union.merge(daily);
+            }
+        }
+        return union.estimate();
+    }
+
+    /**
+     * Удаляет из памяти дневные скетчи старше срока хранения.
+     */
+    @Scheduled(cron = "${game.dau.prune-cron:0 5 0 * * *}")
+    public void pruneExpiredSketches() {
+        LocalDate oldest = LocalDate.now(clock).minusDays(retentionDays);
+        sketches.values().forEach(byDate -> byDate.keySet().removeIf(date -> date.isBefore(oldest)));
+    }
+
+    private void recordInRedis(String key, String member, boolean newKey, String country) {
+        Duration ttl = Duration.ofDays(retentionDays);
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] memberBytes = member.getBytes(StandardCharsets.UTF_8);
+        boolean accepted = writePipeline.submit(commands -> {
+            CompletableFuture<Long> added = commands.pfadd(keyBytes, memberBytes).toCompletableFuture();
+            return newKey ? added.thenCombine(commands.expire(keyBytes, ttl), (a, b) -> b) : added;
+        });
+        if (accepted) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHyperLogLog().add(key, member);
+            if (newKey) {
+                redisTemplate.expire(key, ttl);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to record active user in Redis for country: {}", country, e);
+        }
+    }
+
+    private static String redisKey(String country, LocalDate date) {
+        return REDIS_KEY_PREFIX + country + ":" + date;
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.game.service;
+
+import com.example.game.model.UserActivityHistory;
+import com.example.game.model.UserData;
+import com.example.game.repository.UserActivityHistoryRepository;
+import com.example.game.storage.ActivityArchiveSegment;
+import com.example.game.storage.ArchivedActivity;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Сервис архивации холодной истории активности.
+ * <p>
+ * Записи {@code user_activity_history} старше заданного количества месяцев переносятся
+ * в помесячные колоночные файлы на локальном диске ({@link ActivityArchiveSegment}) и удаляются
+ * из таблицы всех шардов. При запросе истории за период, затрагивающий архивные месяцы,
+ * сервис прозрачно дочитывает записи из отображённых в память сегментов.
+ * </p>
+ */
+@Service
+public class ActivityArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityArchiveService.class);
+    private static final String FILE_PREFIX = "activity-";
+    private static final String FILE_SUFFIX = ".seg";
+    private static final String IDS_SUFFIX = ".ids";
+    private static final long END_OF_SHARD = -1;
+    private static final int DELETE_BATCH_SIZE = 5000;
+
+    private final UserActivityHistoryRepository userActivityHistoryRepository;
+    private final ShardService shardService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Path directory;
+    private final int retentionMonths;
+    private final long maxSegmentSize;
+    private final NavigableMap<YearMonth, ActivityArchiveSegment> segments = new ConcurrentSkipListMap<>();
+
+    public ActivityArchiveService(UserActivityHistoryRepository userActivityHistoryRepository,
+                                  ShardService shardService,
+                                  PlatformTransactionManager transactionManager,
+                                  Clock clock,
+                                  @Value("${game.archive.enabled:false}") boolean enabled,
+                                  @Value("${game.archive.directory:archive}") String directory,
+                                  @Value("${game.archive.retention-months:12}") int retentionMonths,
+                                  @Value("${game.archive.max-segment-bytes:2147483647}") long maxSegmentSize) {
+        this.userActivityHistoryRepository = userActivityHistoryRepository;
+        this.shardService = shardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.retentionMonths = retentionMonths;
+        this.maxSegmentSize = Math.min(maxSegmentSize, ActivityArchiveSegment.MAX_SIZE);
+    }
+
+    /**
+     * Открывает ранее созданные архивные сегменты при старте приложения.
+     */
+    @PostConstruct
+    public void openSegments() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+                for (Path file : files) {
+                    YearMonth month = parseMonth(file);
+                    segments.put(month, ActivityArchiveSegment.open(file, month));
+                }
+            }
+            log.info("Opened {} activity archive segments in {}", segments.size(), directory.toAbsolutePath());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open activity archive in " + directory, e);
+        }
+    }
+
+    /**
+     * Закрывает открытые сегменты при остановке приложения.
+     */
+    @PreDestroy
+    public void closeSegments() {
+        for (ActivityArchiveSegment segment : segments.values()) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Failed to close activity archive segment for month: {}", segment.getMonth(), e);
+            }
+        }
+        segments.clear();
+    }
+
+    /**
+     * Периодически переносит в архив все полные месяцы старше срока хранения.
+     */
+    @Scheduled(cron = "${game.archive.cron:0 30 3 * * *}")
+    public void archiveColdMonths() {
+        if (!enabled) {
+            return;
+        }
+        YearMonth cutoff = YearMonth.now(clock).minusMonths(retentionMonths);
+        LocalDate oldest = shardService.scatter(userActivityHistoryRepository::findMinActivityDate).stream()
+                .filter(Objects::nonNull)
+                .min(Comparator.naturalOrder())
+                .orElse(null);
+        if (oldest == null) {
+            return;
+        }
+        for (YearMonth month = YearMonth.from(oldest); month.isBefore(cutoff); month = month.plusMonths(1)) {
+            archiveMonth(month);
+        }
+    }
+
+    /**
+     * Переносит записи активности за месяц в архивный сегмент и удаляет их из таблицы.
+     * <p>
+     * Сегмент сначала пишется во временный файл и атомарно переименовывается, поэтому
+     * после сбоя в каталоге не остаётся частично записанных сегментов. Идентификаторы прочитанных
+     * записей каждого шарда сохраняются рядом с сегментом, и удаляются только они: записи за тот же
+     * месяц, добавленные после чтения, остаются в таблице и по-прежнему читаются из базы данных.
+     * Файл идентификаторов удаляется после удаления записей, поэтому прерванное удаление
+     * продолжается при следующем запуске.
+     * </p>
+     * <p>
+     * Если сегмент месяца не помещается в {@code game.archive.max-segment-bytes} (не больше 2 ГБ,
+     * так как смещения сегмента хранятся в {@code int}), архивация месяца прерывается до переименования
+     * файлов: временные файлы удаляются, а записи остаются в таблице.
+     * </p>
+     *
+     * @param month архивируемый месяц.
+     */
+    public void archiveMonth(YearMonth month) {
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        Path target = directory.resolve(fileName(month));
+        Path ids = directory.resolve(idsFileName(month));
+
+        if (!segments.containsKey(month)) {
+            Path temp = directory.resolve(fileName(month) + ".tmp");
+            Path idsTemp = directory.resolve(idsFileName(month) + ".tmp");
+            int[] rows = new int[1];
+            try {
+                // Файл идентификаторов без сегмента остался от сбоя до переименования сегмента
+                Files.deleteIfExists(ids);
+                Files.deleteIfExists(temp);
+                Files.deleteIfExists(idsTemp);
+                try (ActivityArchiveSegment.Writer writer = ActivityArchiveSegment.writer(temp, month, maxSegmentSize);
+                     DataOutputStream idsOut = new DataOutputStream(
+                             new BufferedOutputStream(Files.newOutputStream(idsTemp)))) {
+                    idsOut.writeInt(shardService.getShards().size());
+                    // Пользователи шардов не пересекаются, поэтому записи остаются сгруппированными по UUID
+                    shardService.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+                        writeUnchecked(() -> idsOut.writeUTF(shard));
+                        try (Stream<Object[]> stream = userActivityHistoryRepository.streamActivityForPeriod(from, to)) {
+                            stream.forEach(row -> {
+                                append(writer, row);
+                                writeUnchecked(() -> idsOut.writeLong(((Number) row[3]).longValue()));
+                                rows[0]++;
+                            });
+                        }
+                        writeUnchecked(() -> idsOut.writeLong(END_OF_SHARD));
+                    }));
+                }
+                if (rows[0] == 0) {
+                    Files.delete(temp);
+                    Files.delete(idsTemp);
+                    return;
+                }
+                Files.move(idsTemp, ids, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                segments.put(month, ActivityArchiveSegment.open(target, month));
+            } catch (IOException | UncheckedIOException e) {
+                log.error("Failed to archive activity history for month: {}", month, e);
+                deleteQuietly(temp);
+                deleteQuietly(idsTemp);
+                return;
+            }
+            log.info("Archived {} activity rows for month: {}", rows[0], month);
+        }
+
+        if (!Files.exists(ids)) {
+            return;
+        }
+        try {
+            int deleted = deleteArchived(ids);
+            Files.delete(ids);
+            log.info("Deleted {} archived activity rows for month: {}", deleted, month);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to delete archived activity rows for month: {}", month, e);
+        }
+    }
+
+    private int deleteArchived(Path ids) throws IOException {
+        int deleted = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(ids)))) {
+            int shards = in.readInt();
+            for (int i = 0; i < shards; i++) {
+                String shard = in.readUTF();
+                List<Long> batch = new ArrayList<>(DELETE_BATCH_SIZE);
+                for (long id = in.readLong(); id != END_OF_SHARD; id = in.readLong()) {
+                    batch.add(id);
+                    if (batch.size() == DELETE_BATCH_SIZE) {
+                        deleted += deleteOnShard(shard, batch);
+                        batch.clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    deleted += deleteOnShard(shard, batch);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private int deleteOnShard(String shard, List<Long> ids) {
+        Integer deleted = shardService.onShard(shard, () -> transactionTemplate.execute(status ->
+                userActivityHistoryRepository.deleteActivityByIds(ids)));
+        return deleted == null ? 0 : deleted;
+    }
+
+    /**
+     * Читает из архива историю активности пользователя начиная с указанной даты.
+     *
+     * @param user      пользователь, чья история запрашивается.
+     * @param startDate дата начала периода (включительно).
+     * @return записи активности, отсортированные по убыванию даты, или пустой список,
+     * если период не затрагивает архивные месяцы.
+     */
+    public List<UserActivityHistory> findArchivedHistory(UserData user, LocalDate startDate) {
+        if (segments.isEmpty() || YearMonth.from(startDate).isAfter(segments.lastKey())) {
+            return Collections.emptyList();
+        }
+
+        List<UserActivityHistory> history = new ArrayList<>();
+        for (Map.Entry<YearMonth, ActivityArchiveSegment> entry
+                : segments.tailMap(YearMonth.from(startDate), true).descendingMap().entrySet()) {
+            List<ArchivedActivity> rows = entry.getValue().read(user.getUuid(), startDate);
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                ArchivedActivity row = rows.get(i);
+                history.add(new UserActivityHistory(null, user, row.activity(), row.activityDate()));
+            }
+        }
+        return history;
+    }
+
+    private static void append(ActivityArchiveSegment.Writer writer, Object[] row) {
+        try {
+            writer.append((UUID) row[0], (LocalDate) row[1], row[2] == null ? 0 : (Integer) row[2]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary archive file: {}", file, e);
+        }
+    }
+
+    private static String fileName(YearMonth month) {
+        return FILE_PREFIX + month + FILE_SUFFIX;
+    }
+
+    private static String idsFileName(YearMonth month) {
+        return FILE_PREFIX + month + IDS_SUFFIX;
+    }
+
+    private static void writeUnchecked(IoAction action) {
+        try {
+            action.run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IoAction {
+        void run() throws IOException;
+    }
+
+    private static YearMonth parseMonth(Path file) {
+        String name = file.getFileName().toString();
+        return YearMonth.parse(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+}
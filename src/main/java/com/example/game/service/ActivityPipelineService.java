@@ -0,0 +1,227 @@
+package com.example.game.service;
+
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.exception.ServiceOverloadedException;
+import com.example.game.model.UserData;
+import com.example.game.repository.UserDataRepository;
+import com.example.game.storage.ActivityRingBuffer;
+import com.example.game.storage.IngestEntry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.game.exception.ServiceOverloadedException.SERVICE_OVERLOADED;
+
+/**
+ * Конвейер приёма игровой активности через кольцевой буфер.
+ * <p>
+ * При включённом конвейере запрос активности только публикует событие в {@link ActivityRingBuffer}
+ * и сразу подтверждается, не обращаясь к базе данных. Потоки-потребители применяют события
+ * одного пользователя в порядке приёма и сохраняют их пакетами: одна транзакция на шард базы
+ * данных вместо транзакции на каждый запрос. Лимит запросов статистики проверяется при приёме
+ * ({@link RequestQuotaService}), поэтому принятые события применяются всегда, а счётчики из базы данных
+ * передаются обратно в {@link RequestQuotaService}. События неизвестных пользователей отбрасываются
+ * и учитываются в метрике {@code game.activity-pipeline.dropped}. Если буфер заполнен, запрос
+ * отклоняется с {@link ServiceOverloadedException}.
+ * </p>
+ * <p>
+ * Применённые шарды удаляются из пакета, поэтому после ошибки буфер повторно передаёт только события
+ * неприменённых шардов. Если они не применились {@code game.activity-pipeline.max-apply-attempts} раз,
+ * они отбрасываются и учитываются в метрике {@code game.activity-pipeline.discarded}.
+ * </p>
+ * <p>
+ * Принятые, но ещё не применённые события хранятся только в памяти и теряются при аварийной
+ * остановке; если подтверждение должно означать надёжное сохранение, следует использовать журнал
+ * приёма данных ({@link IngestLogService}). Конвейер не совместим с ним и с состоянием
+ * пользователей в памяти ({@link UserStateService}). Количество необработанных событий
+ * публикуется в метрике {@code game.activity-pipeline.backlog}.
+ * </p>
+ */
+@Service
+public class ActivityPipelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(ActivityPipelineService.class);
+
+    private static final String PIPELINE_ENDPOINT = "activity-pipeline";
+
+    private final UserDataRepository userDataRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardService shardService;
+    private final OptimisticRetryService optimisticRetryService;
+    private final IngestLogService ingestLogService;
+    private final UserStateService userStateService;
+    private final RequestQuotaService requestQuotaService;
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final int bufferSize;
+    private final int consumers;
+    private final int batchSize;
+    private final int maxApplyAttempts;
+    private final long publishTimeoutMs;
+    private final Counter dropped;
+    private volatile ActivityRingBuffer ringBuffer;
+
+    public ActivityPipelineService(UserDataRepository userDataRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   ApplicationEventPublisher eventPublisher,
+                                   ShardService shardService,
+                                   OptimisticRetryService optimisticRetryService,
+                                   IngestLogService ingestLogService,
+                                   UserStateService userStateService,
+                                   RequestQuotaService requestQuotaService,
+                                   MeterRegistry registry,
+                                   @Value("${game.activity-pipeline.enabled:false}") boolean enabled,
+                                   @Value("${game.activity-pipeline.buffer-size:65536}") int bufferSize,
+                                   @Value("${game.activity-pipeline.consumers:4}") int consumers,
+                                   @Value("${game.activity-pipeline.batch-size:1000}") int batchSize,
+                                   @Value("${game.activity-pipeline.max-apply-attempts:5}") int maxApplyAttempts,
+                                   @Value("${game.activity-pipeline.publish-timeout-ms:10}") long publishTimeoutMs) {
+        this.userDataRepository = userDataRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.shardService = shardService;
+        this.optimisticRetryService = optimisticRetryService;
+        this.ingestLogService = ingestLogService;
+        this.userStateService = userStateService;
+        this.requestQuotaService = requestQuotaService;
+        this.registry = registry;
+        this.enabled = enabled;
+        this.bufferSize = bufferSize;
+        this.consumers = consumers;
+        this.batchSize = batchSize;
+        this.maxApplyAttempts = maxApplyAttempts;
+        this.publishTimeoutMs = publishTimeoutMs;
+        this.dropped = Counter.builder("game.activity-pipeline.dropped").register(registry);
+    }
+
+    /**
+     * Создаёт буфер и запускает потоки-потребители при старте приложения.
+     *
+     * @throws IllegalStateException если одновременно включены журнал приёма данных или состояние в памяти.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (ingestLogService.isEnabled() || userStateService.isEnabled()) {
+            throw new IllegalStateException(
+                    "Activity pipeline cannot be combined with the ingest log or in-memory user state.");
+        }
+        ringBuffer = new ActivityRingBuffer(bufferSize, consumers, batchSize, maxApplyAttempts, this::applyBatch,
+                "activity-pipeline");
+        Gauge.builder("game.activity-pipeline.backlog", ringBuffer, ActivityRingBuffer::backlog).register(registry);
+        FunctionCounter.builder("game.activity-pipeline.discarded", ringBuffer, ActivityRingBuffer::discarded)
+                .register(registry);
+        log.info("Activity pipeline enabled with {} slots and {} consumers", bufferSize, consumers);
+    }
+
+    /**
+     * Применяет уже принятые события и останавливает потоки-потребители.
+     */
+    @PreDestroy
+    public void stop() {
+        if (ringBuffer == null) {
+            return;
+        }
+        ringBuffer.close();
+        log.info("Activity pipeline stopped");
+    }
+
+    /**
+     * @return {@code true}, если активность принимается через конвейер.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Принимает событие активности для фонового применения.
+     *
+     * @param uuid      UUID пользователя.
+     * @param activity  значение активности.
+     * @param timestamp время приёма запроса в миллисекундах.
+     * @throws ServiceOverloadedException если буфер заполнен дольше времени ожидания.
+     */
+    public void publish(UUID uuid, int activity, long timestamp) {
+        if (!ringBuffer.publish(uuid, activity, timestamp, publishTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new ServiceOverloadedException(SERVICE_OVERLOADED);
+        }
+    }
+
+    /**
+     * Применяет пакет событий одного потребителя: по транзакции на каждый шард базы данных.
+     * <p>
+     * События применённого шарда удаляются из пакета, чтобы при повторе после ошибки другого
+     * шарда они не применялись второй раз.
+     * </p>
+     *
+     * @param batch изменяемый список событий в порядке приёма.
+     */
+    void applyBatch(List<IngestEntry> batch) {
+        try {
+            shardService.groupByShard(batch, IngestEntry::uuid).forEach((shard, entries) -> {
+                List<UserDataUpdatedEvent> events = optimisticRetryService.execute(PIPELINE_ENDPOINT, () ->
+                        shardService.onShard(shard, () -> applyOnShard(entries)));
+                // Все события пользователя относятся к одному шарду
+                Set<UUID> applied = new HashSet<>();
+                entries.forEach(entry -> applied.add(entry.uuid()));
+                batch.removeIf(entry -> applied.contains(entry.uuid()));
+                events.forEach(eventPublisher::publishEvent);
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to apply {} activity events", batch.size(), e);
+            throw e;
+        }
+    }
+
+    private List<UserDataUpdatedEvent> applyOnShard(List<IngestEntry> batch) {
+        List<UserDataUpdatedEvent> events = new ArrayList<>(batch.size());
+        Map<UUID, UserData> changed = new LinkedHashMap<>();
+        int[] unknown = new int[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<UUID> uuids = new LinkedHashSet<>();
+            batch.forEach(entry -> uuids.add(entry.uuid()));
+            Map<UUID, UserData> users = new HashMap<>();
+            userDataRepository.findAllById(uuids).forEach(user -> users.put(user.getUuid(), user));
+
+            for (IngestEntry entry : batch) {
+                UserData userData = users.get(entry.uuid());
+                if (userData == null) {
+                    unknown[0]++;
+                    log.debug("Dropping activity event for user: {}", entry.uuid());
+                    continue;
+                }
+                events.add(UserDataService.applyActivity(userData, entry.activity(), entry.timestamp()));
+                changed.put(userData.getUuid(), userData);
+            }
+            userDataRepository.saveAll(changed.values());
+        });
+        // Отброшенные события учитываются только после фиксации, чтобы повтор транзакции не учитывал их дважды
+        dropped.increment(unknown[0]);
+        changed.values().forEach(requestQuotaService::observe);
+        return events;
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.game.service;
+
+import com.example.game.datasource.ReplicaContext;
+import com.example.game.repository.AnalyticsRepository;
+import com.example.game.repository.UserActivityHistoryRepository;
+import com.example.game.storage.ColumnarFile;
+import com.example.game.storage.ColumnarFile.Column;
+import com.example.game.storage.ColumnarFile.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Сервис инкрементальной выгрузки аналитических данных в колоночные файлы.
+ * <p>
+ * Таблицы {@code user_data} и {@code user_activity_history} читаются потоково через серверный
+ * курсор и записываются в сжатые файлы {@link ColumnarFile}, разбитые на разделы по стране
+ * и дате: {@code <таблица>/country=US/date=2025-02-10/data.gcf}. Страна и дата хранятся
+ * только в пути раздела. В памяти одновременно находится не больше одной группы строк.
+ * </p>
+ * <p>
+ * Выгружаются только полные дни (по {@code created_at} и {@code activity_date}). Последний
+ * выгруженный день каждой таблицы сохраняется в {@code export-state.properties}, поэтому
+ * следующий запуск пишет только новые разделы. Раздел пишется во временный файл
+ * и атомарно переименовывается; после сбоя повторный запуск перезаписывает его целиком.
+ * </p>
+ * <p>
+ * Если пользователи распределены по шардам базы данных ({@link ShardService}), каждый шард
+ * выгружается отдельно в собственный файл раздела {@code data-<шард>.gcf}. День считается
+ * выгруженным, только когда выгрузка таблицы завершилась на всех шардах.
+ * </p>
+ */
+@Service
+public class AnalyticsExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsExportService.class);
+
+    static final String USERS_TABLE = "user_data";
+    static final String ACTIVITY_TABLE = "user_activity_history";
+    static final String FILE_NAME = "data.gcf";
+    private static final String FILE_EXTENSION = ".gcf";
+    private static final String STATE_FILE = "export-state.properties";
+    private static final String WATERMARK_SUFFIX = ".exported-through";
+
+    private static final List<Column> USER_COLUMNS = List.of(
+            new Column("uuid", Type.UUID),
+            new Column("money", Type.INT),
+            new Column("activity", Type.INT),
+            new Column("created_at", Type.TIMESTAMP));
+
+    private static final List<Column> ACTIVITY_COLUMNS = List.of(
+            new Column("uuid", Type.UUID),
+            new Column("activity", Type.INT));
+
+    private final AnalyticsRepository analyticsRepository;
+    private final UserActivityHistoryRepository userActivityHistoryRepository;
+    private final ShardService shardService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Path directory;
+    private final int rowGroupSize;
+
+    public AnalyticsExportService(AnalyticsRepository analyticsRepository,
+                                  UserActivityHistoryRepository userActivityHistoryRepository,
+                                  ShardService shardService,
+                                  PlatformTransactionManager transactionManager,
+                                  Clock clock,
+                                  @Value("${game.export.enabled:false}") boolean enabled,
+                                  @Value("${game.export.directory:export}") String directory,
+                                  @Value("${game.export.row-group-size:50000}") int rowGroupSize) {
+        this.analyticsRepository = analyticsRepository;
+        this.userActivityHistoryRepository = userActivityHistoryRepository;
+        this.shardService = shardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.clock = clock;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.rowGroupSize = rowGroupSize;
+    }
+
+    /**
+     * Периодически выгружает полные дни, которые ещё не выгружались.
+     */
+    @Scheduled(cron = "${game.export.cron:0 0 4 * * *}")
+    public void exportIncremental() {
+        if (!enabled) {
+            return;
+        }
+        exportBefore(LocalDate.now(clock));
+    }
+
+    /**
+     * Выгружает данные обеих таблиц за дни после последней выгрузки и до указанной даты.
+     *
+     * @param to дата окончания периода (не включительно).
+     * @return количество выгруженных строк по таблицам; таблица, выгрузка которой
+     * завершилась ошибкой, в результат не попадает.
+     */
+    public synchronized Map<String, Long> exportBefore(LocalDate to) {
+        Properties state = loadState();
+        Map<String, Long> exported = new LinkedHashMap<>();
+        exportTable(USERS_TABLE, USER_COLUMNS, state, to,
+                (from, until) -> analyticsRepository.streamUsersCreatedForPeriod(from.atStartOfDay(), until.atStartOfDay()),
+                row -> {
+                    LocalDateTime createdAt = (LocalDateTime) row[4];
+                    return new Partitioned((String) row[1], createdAt.toLocalDate(),
+                            new Object[]{row[0], row[2], row[3], createdAt});
+                }, exported);
+        exportTable(ACTIVITY_TABLE, ACTIVITY_COLUMNS, state, to,
+                userActivityHistoryRepository::streamActivityWithCountryForPeriod,
+                row -> new Partitioned((String) row[1], (LocalDate) row[2], new Object[]{row[0], row[3]}),
+                exported);
+        return exported;
+    }
+
+    private void exportTable(String table, List<Column> columns, Properties state, LocalDate to,
+                             BiFunction<LocalDate, LocalDate, Stream<Object[]>> query,
+                             Function<Object[], Partitioned> mapper, Map<String, Long> exported) {
+        String watermark = state.getProperty(table + WATERMARK_SUFFIX);
+        LocalDate from = watermark == null ? LocalDate.EPOCH : LocalDate.parse(watermark).plusDays(1);
+        if (!from.isBefore(to)) {
+            exported.put(table, 0L);
+            return;
+        }
+        long started = System.currentTimeMillis();
+        try {
+            long rows = 0;
+            Set<Path> partitions = new HashSet<>();
+            for (String shard : shardService.getShards()) {
+                try (PartitionWriter writer = new PartitionWriter(directory.resolve(table), columns, fileName(shard))) {
+                    shardService.onShard(shard, () -> ReplicaContext.call(() -> transactionTemplate.execute(status -> {
+                        try (Stream<Object[]> stream = query.apply(from, to)) {
+                            stream.forEach(row -> writer.append(mapper.apply(row)));
+                        }
+                        return null;
+                    })));
+                    writer.finish();
+                    rows += writer.rows;
+                    partitions.addAll(writer.partitions);
+                }
+            }
+            state.setProperty(table + WATERMARK_SUFFIX, to.minusDays(1).toString());
+            saveState(state);
+            exported.put(table, rows);
+            log.info("Exported {} rows of {} into {} partitions for {} - {} in {} ms", rows, table,
+                    partitions.size(), from, to.minusDays(1), System.currentTimeMillis() - started);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to export {} for {} - {}, will retry on next run", table, from, to.minusDays(1), e);
+        }
+    }
+
+    private String fileName(String shard) {
+        return shardService.isEnabled() ? "data-" + shard + FILE_EXTENSION : FILE_NAME;
+    }
+
+    private Properties loadState() {
+        Properties state = new Properties();
+        Path file = directory.resolve(STATE_FILE);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                state.load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read export state from " + file, e);
+            }
+        }
+        return state;
+    }
+
+    private void saveState(Properties state) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = directory.resolve(STATE_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            state.store(out, "Last exported day per table");
+        }
+        Files.move(temp, directory.resolve(STATE_FILE), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Строка выгрузки с ключом раздела.
+     */
+    private record Partitioned(String country, LocalDate date, Object[] values) {
+    }
+
+    /**
+     * Писатель разделов одной таблицы. Строки должны поступать сгруппированными по разделам.
+     */
+    private final class PartitionWriter implements Closeable {
+
+        private final Path root;
+        private final List<Column> columns;
+        private final String fileName;
+        private final Set<Path> partitions = new HashSet<>();
+        private Path current;
+        private ColumnarFile.Writer writer;
+        private long rows;
+
+        private PartitionWriter(Path root, List<Column> columns, String fileName) {
+            this.root = root;
+            this.columns = columns;
+            this.fileName = fileName;
+        }
+
+        private void append(Partitioned row) {
+            try {
+                Path partition = root.resolve("country=" + row.country()).resolve("date=" + row.date());
+                if (!partition.equals(current)) {
+                    commit();
+                    if (!partitions.add(partition)) {
+                        throw new IllegalStateException("Rows of partition " + partition + " are not grouped together");
+                    }
+                    Files.createDirectories(partition);
+                    Path temp = partition.resolve(fileName + ".tmp");
+                    Files.deleteIfExists(temp);
+                    writer = ColumnarFile.writer(temp, columns, rowGroupSize);
+                    current = partition;
+                }
+                writer.append(row.values());
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void finish() throws IOException {
+            commit();
+        }
+
+        private void commit() throws IOException {
+            if (writer == null) {
+                return;
+            }
+            writer.close();
+            writer = null;
+            Files.move(current.resolve(fileName + ".tmp"), current.resolve(fileName),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Удаляет незавершённый раздел, если выгрузка прервалась.
+         */
+        @Override
+        public void close() throws IOException {
+            if (writer == null) {
+                return;
+            }
+            writer.close();
+            writer = null;
+            Files.deleteIfExists(current.resolve(fileName + ".tmp"));
+        }
+    }
+}
@@ -1,26 +1,49 @@
 package com.example.game.service;
 
+import com.example.game.cache.CacheKey;
+import com.example.game.datasource.ReplicaContext;
 import com.example.game.exception.DatabaseException;
 import com.example.game.exception.NoDataFoundException;
+import com.example.game.exception.UserNotFoundException;
 import com.example.game.model.UserActivityHistory;
 import com.example.game.model.UserData;
 import com.example.game.repository.AnalyticsRepository;
-import com.example.game.repository.UserActivityHistoryRepository;
+import com.example.game.repository.UserActivityHistoryJdbcRepository;
+import com.example.game.repository.UserActivityHistoryJdbcRepository.UserHistory;
+import com.example.game.util.KWayMerge;
+import com.example.game.util.Uuids;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static com.example.game.exception.DatabaseException.*;
 import static com.example.game.exception.NoDataFoundException.*;
+import static com.example.game.exception.UserNotFoundException.USER_NOT_FOUND;
 
 
 /**
@@ -29,13 +52,28 @@ import static com.example.game.exception.NoDataFoundException.*;
  * Этот класс предоставляет методы для получения списка топ-пользователей по количеству денег,
  * подсчета новых пользователей в стране за период, а также истории активности пользователя.
  * </p>
+ * <p>
+ * Если пользователи распределены по шардам базы данных ({@link ShardService}), рейтинги и счётчики
+ * запрашиваются на всех шардах параллельно: рейтинги шардов сливаются k-путевым слиянием,
+ * счётчики суммируются. История активности читается с шарда пользователя.
+ * </p>
+ * <p>
+ * Аналитические запросы выполняются внутри {@link ReplicaContext} и при включённых репликах
+ * читают с них.
+ * </p>
  */
 @Service
 @RequiredArgsConstructor
 public class AnalyticsService {
 
     private final AnalyticsRepository analyticsRepository;
-    private final UserActivityHistoryRepository userActivityHistoryRepository;
+    private final UserActivityHistoryJdbcRepository userActivityHistoryJdbcRepository;
+    private final ActivityArchiveService activityArchiveService;
+    private final ForkJoinPool analyticsPool;
+    private final CacheManager cacheManager;
+    private final ObjectMapper objectMapper;
+    private final ShardService shardService;
+    private final ConcurrentMap<CacheKey, CompletableFuture<CachedTopUsers>> topUsersExtensions = new ConcurrentHashMap<>();
 
     private static final Logger log = LoggerFactory.getLogger(AnalyticsService.class);
 
@@ -44,8 +82,49 @@ public class AnalyticsService {
      */
     public static final String COUNTRY_REQUIRED = "Country must not be null or empty.";
 
+    /**
+     * Максимальное количество записей в ответе с историей активности.
+     */
+    private static final int MAX_HISTORY_SIZE = 10000;
+
+    /**
+     * Максимальное количество пользователей в глобальном рейтинге.
+     */
+    private static final int MAX_GLOBAL_TOP_SIZE = 10000;
+
+    /**
+     * Максимальная длина кэшируемого рейтинга страны.
+     */
+    static final int MAX_CACHED_TOP_SIZE = 1000;
+
+    private static final String TOP_USERS_CACHE = "topUsers";
+
+    /**
+     * Максимальное количество стран в пакетном запросе.
+     */
+    private static final int MAX_BATCH_COUNTRIES = 500;
+
+    /**
+     * Наименьший размер первой страницы рейтинга страны при слиянии глобального рейтинга.
+     */
+    private static final int MIN_GLOBAL_PAGE_SIZE = 10;
+
+    /**
+     * Порядок пользователей в рейтинге: по убыванию денег, при равенстве — по UUID.
+     */
+    private static final Comparator<UserData> BY_MONEY_DESC = Comparator.comparingInt(UserData::getMoney).reversed()
+            .thenComparing(UserData::getUuid, Uuids.UNSIGNED_ORDER);
+
     /**
      * Получение списка пользователей с наибольшим значением "money" по каждой стране.
+     * <p>
+     * Для каждой страны кэшируется один список наибольшей запрошенной длины (но не больше
+     * {@link #MAX_CACHED_TOP_SIZE}), а меньшие запросы обслуживаются его началом. Когда
+     * запрашивается больше пользователей, чем есть в кэше, список дополняется запросом
+     * по ключу после последнего пользователя; одновременные дополнения списка страны объединяются
+     * в одно. Фоновое обновление перечитывает список той длины, которая уже закэширована.
+     * Запросы длиннее предела кэша выполняются напрямую.
+     * </p>
      *
      * @param country     Страна для поиска пользователей.
      * @param usersCount  Количество пользователей, которых необходимо получить.
@@ -54,7 +133,6 @@ public class AnalyticsService {
      * @throws NoDataFoundException Если не найдено данных для указанной страны.
      * @throws DatabaseException Если произошла ошибка при запросе данных из базы данных.
      */
-    @Cacheable(value = "topUsers", key = "#country + '_' + #usersCount")
     public List<UserData> getTopUsersByMoneyPerCountry(String country, int usersCount) {
         if (usersCount < 1) {
             throw new IllegalArgumentException("The number of users must be at least 1.");
@@ -64,10 +142,11 @@ public class AnalyticsService {
         }
 
         log.info("Fetching top {} users by money for country: {}", usersCount, country);
-        Pageable pageable = PageRequest.of(0, usersCount);
 
         try {
-            List<UserData> users = analyticsRepository.findTopUsersByCountryMoney(country, pageable);
+            List<UserData> users = usersCount > MAX_CACHED_TOP_SIZE
+                    ? findTopUsers(country, usersCount)
+                    : cachedTopUsers(country, usersCount);
             if (users.isEmpty()) {
                 throw new NoDataFoundException(ERROR_NO_ACTIVITY_FOR_COUNTRY + country);
             }
@@ -78,6 +157,197 @@ public class AnalyticsService {
         }
     }
 
+    private List<UserData> cachedTopUsers(String country, int usersCount) {
+        Cache cache = cacheManager.getCache(TOP_USERS_CACHE);
+        if (cache == null) {
+            return findTopUsers(country, usersCount);
+        }
+        CacheKey key = CacheKey.of(country);
+        // Загрузчик вызывается и при фоновом обновлении: тогда перечитывается вся закэшированная длина
+        CachedTopUsers cached = toCachedTopUsers(cache.get(key, () -> {
+            CachedTopUsers current = currentTopUsers(cache, key);
+            return loadTopUsers(country, current == null ? usersCount : Math.max(usersCount, current.users().size()));
+        }));
+        if (cached.users().size() < usersCount && !cached.complete()) {
+            cached = extendCachedTopUsers(cache, key, country, usersCount);
+        }
+        List<UserData> users = cached.users();
+        return new ArrayList<>(users.subList(0, Math.min(usersCount, users.size())));
+    }
+
+    /**
+     * Дополняет закэшированный рейтинг страны. Пока список дополняется, остальные запросы страны
+     * ждут результата; если его не хватает, они дополняют список дальше сами.
+     */
+    private CachedTopUsers extendCachedTopUsers(Cache cache, CacheKey key, String country, int usersCount) {
+        while (true) {
+            CompletableFuture<CachedTopUsers> extension = new CompletableFuture<>();
+            CompletableFuture<CachedTopUsers> existing = topUsersExtensions.putIfAbsent(key, extension);
+            if (existing != null) {
+                CachedTopUsers extended = existing.join();
+                if (extended.users().size() >= usersCount || extended.complete()) {
+                    return extended;
+                }
+                continue;
+            }
+            try {
+                // Список мог быть дополнен, пока предыдущее дополнение завершалось
+                CachedTopUsers current = currentTopUsers(cache, key);
+                CachedTopUsers extended;
+                if (current == null) {
+                    extended = loadTopUsers(country, usersCount);
+                    cache.put(key, extended);
+                } else if (current.users().size() < usersCount && !current.complete()) {
+                    extended = extendTopUsers(country, current, usersCount);
+                    cache.put(key, extended);
+                } else {
+                    extended = current;
+                }
+                extension.complete(extended);
+                return extended;
+            } catch (RuntimeException e) {
+                extension.completeExceptionally(e);
+                throw e;
+            } finally {
+                topUsersExtensions.remove(key, extension);
+            }
+        }
+    }
+
+    private CachedTopUsers currentTopUsers(Cache cache, CacheKey key) {
+        Cache.ValueWrapper wrapper = cache.get(key);
+        return wrapper == null || wrapper.get() == null ? null : toCachedTopUsers(wrapper.get());
+    }
+
+    private CachedTopUsers loadTopUsers(String country, int usersCount) {
+        List<UserData> users = findTopUsers(country, usersCount);
+        return new CachedTopUsers(new ArrayList<>(users), users.size() < usersCount);
+    }
+
+    private CachedTopUsers extendTopUsers(String country, CachedTopUsers cached, int usersCount) {
+        List<UserData> users = new ArrayList<>(cached.users());
+        int missing = usersCount - users.size();
+        UserData last = users.isEmpty() ? null : users.get(users.size() - 1);
+        List<UserData> next = last == null
+                ? findTopUsers(country, missing)
+                : findTopUsersAfter(country, last, missing);
+        // Пользователь, опустившийся в рейтинге после заполнения кэша, может вернуться повторно
+        Set<UUID> known = users.stream().map(UserData::getUuid).collect(Collectors.toSet());
+        next.stream().filter(user -> !known.contains(user.getUuid())).forEach(users::add);
+        log.debug("Extended cached top users for country {} from {} to {}", country, cached.users().size(), users.size());
+        return new CachedTopUsers(users, next.size() < missing);
+    }
+
+    private List<UserData> findTopUsers(String country, int usersCount) {
+        return mergeShards(scatterOnReplicas(() ->
+                analyticsRepository.findTopUsersByCountryMoney(country, PageRequest.of(0, usersCount))), usersCount);
+    }
+
+    private List<UserData> findTopUsersAfter(String country, UserData last, int usersCount) {
+        return mergeShards(scatterOnReplicas(() -> analyticsRepository.findTopUsersByCountryMoneyAfter(country,
+                last.getMoney(), last.getUuid(), PageRequest.of(0, usersCount))), usersCount);
+    }
+
+    /**
+     * Выполняет аналитический запрос на всех шардах; транзакции только для чтения могут выполняться на репликах.
+     */
+    private <T> List<T> scatterOnReplicas(Supplier<T> query) {
+        return shardService.scatter(() -> ReplicaContext.call(query));
+    }
+
+    private static List<UserData> mergeShards(List<List<UserData>> perShard, int usersCount) {
+        return perShard.size() == 1 ? perShard.get(0) : KWayMerge.merge(perShard, BY_MONEY_DESC, usersCount);
+    }
+
+    private CachedTopUsers toCachedTopUsers(Object value) {
+        // Кэш Redis возвращает значение, разобранное из JSON без сведений о типе
+        return value instanceof CachedTopUsers cached ? cached : objectMapper.convertValue(value, CachedTopUsers.class);
+    }
+
+    /**
+     * Получение глобального рейтинга пользователей по количеству денег среди всех стран
+     * или среди указанной группы стран (региона).
+     * <p>
+     * Страны без явного списка перечисляются проходом по индексу {@code country} с пропуском повторов,
+     * а не {@code SELECT DISTINCT} по всей таблице. Рейтинги стран читаются по индексу
+     * {@code (country, money DESC)} страницами и сливаются на куче: первые страницы всех стран
+     * запрашиваются параллельно в отдельном {@link ForkJoinPool}, а следующая страница страны — только
+     * когда слияние дошло до конца предыдущей. Поэтому читается примерно столько строк, сколько
+     * попадает в ответ, плюс по одной небольшой странице на страну, а не по "usersCount" строк на страну.
+     * </p>
+     *
+     * @param countries  Коды стран региона (не больше 500) или {@code null}/пустой список для глобального рейтинга.
+     * @param usersCount Количество пользователей, которых необходимо получить.
+     * @return Список пользователей, отсортированных по убыванию значения "money".
+     * @throws IllegalArgumentException Если "usersCount" меньше 1 или больше допустимого максимума,
+     * или указано слишком много стран.
+     * @throws DatabaseException Если произошла ошибка при запросе данных из базы данных.
+     */
+    @Cacheable(value = "globalTopUsers", sync = true)
+    public List<UserData> getTopUsersByMoneyGlobal(List<String> countries, int usersCount) {
+        if (usersCount < 1 || usersCount > MAX_GLOBAL_TOP_SIZE) {
+            throw new IllegalArgumentException("The number of users must be between 1 and " + MAX_GLOBAL_TOP_SIZE + ".");
+        }
+        if (countries != null && countries.size() > MAX_BATCH_COUNTRIES) {
+            throw new IllegalArgumentException("The number of countries must not exceed " + MAX_BATCH_COUNTRIES + ".");
+        }
+
+        log.info("Fetching global top {} users by money for countries: {}", usersCount, countries);
+
+        try {
+            List<String> targetCountries = countries == null || countries.isEmpty()
+                    ? scatterOnReplicas(analyticsRepository::findDistinctCountries).stream()
+                    .flatMap(List::stream).distinct().toList()
+                    : countries.stream().filter(c -> c != null && !c.isBlank()).distinct().toList();
+            if (targetCountries.isEmpty()) {
+                return List.of();
+            }
+            return mergeCountries(targetCountries, usersCount);
+        } catch (Exception e) {
+            log.error("Error fetching global top users by money for countries: {}", countries, e);
+            throw new DatabaseException(ERROR_TOP_USERS);
+        }
+    }
+
+    /**
+     * Сливает рейтинги стран, дочитывая рейтинг страны следующей страницей по ключу, когда слияние
+     * исчерпало уже прочитанную. Страницы страны удваиваются, но не превышают недостающего количества.
+     */
+    private List<UserData> mergeCountries(List<String> countries, int usersCount) {
+        int pageSize = Math.min(usersCount, Math.max(MIN_GLOBAL_PAGE_SIZE, 2 * usersCount / countries.size()));
+        List<List<UserData>> firstPages = analyticsPool.submit(() -> countries.parallelStream()
+                .map(country -> findTopUsers(country, pageSize))
+                .toList()).join();
+
+        PriorityQueue<CountryPage> heap = new PriorityQueue<>(countries.size(),
+                (a, b) -> BY_MONEY_DESC.compare(a.head(), b.head()));
+        for (int i = 0; i < countries.size(); i++) {
+            if (!firstPages.get(i).isEmpty()) {
+                heap.add(new CountryPage(countries.get(i), firstPages.get(i), pageSize));
+            }
+        }
+        List<UserData> result = new ArrayList<>(usersCount);
+        Set<UUID> seen = new HashSet<>();
+        while (result.size() < usersCount && !heap.isEmpty()) {
+            CountryPage page = heap.poll();
+            UserData user = page.head();
+            // Пользователь, чьи деньги изменились между страницами, может встретиться повторно
+            if (seen.add(user.getUuid())) {
+                result.add(user);
+            }
+            if (++page.index < page.users.size()) {
+                heap.add(page);
+            } else if (page.users.size() == page.requested && result.size() < usersCount) {
+                int requested = Math.min(page.requested * 2, usersCount - result.size());
+                List<UserData> next = findTopUsersAfter(page.country, user, requested);
+                if (!next.isEmpty()) {
+                    heap.add(new CountryPage(page.country, next, requested));
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Подсчет количества новых пользователей по каждой стране за период.
      *
@@ -87,7 +357,7 @@ public class AnalyticsService {
      * @throws IllegalArgumentException Если параметры "country" или "startDate" пустые или равны null.
      * @throws DatabaseException Если произошла ошибка при запросе данных из базы данных.
      */
-    @Cacheable(value = "newUsersCount", key = "#country + '_' + #startDate")
+    @Cacheable(value = "newUsersCount", sync = true)
     public long countNewUsersByCountry(String country, LocalDate startDate) {
         if (country == null || country.isBlank()) {
             throw new IllegalArgumentException(COUNTRY_REQUIRED);
@@ -100,44 +370,178 @@ public class AnalyticsService {
         LocalDateTime startDateTime = startDate.atStartOfDay();
 
         try {
-            return analyticsRepository.countNewUsersByCountry(country, startDateTime);
+            return scatterOnReplicas(() -> analyticsRepository.countNewUsersByCountry(country, startDateTime))
+                    .stream().mapToLong(Long::longValue).sum();
         } catch (Exception e) {
             log.error("Error counting new users for country: {}", country, e);
             throw new DatabaseException(ERROR_NEW_USERS);
         }
     }
 
+    /**
+     * Получение списков пользователей с наибольшим значением "money" сразу для нескольких стран.
+     * <p>
+     * Все страны обрабатываются одним запросом с оконной функцией {@code ROW_NUMBER()},
+     * а результат кэшируется одной записью.
+     * </p>
+     *
+     * @param countries  Коды стран.
+     * @param usersCount Количество пользователей на страну.
+     * @return Пользователи по странам в порядке запроса; для стран без пользователей — пустой список.
+     * @throws IllegalArgumentException Если список стран пуст или слишком велик, или "usersCount" вне допустимого диапазона.
+     * @throws DatabaseException Если произошла ошибка при запросе данных из базы данных.
+     */
+    @Cacheable(value = "topUsersBatch", sync = true)
+    public Map<String, List<UserData>> getTopUsersByMoneyForCountries(List<String> countries, int usersCount) {
+        if (usersCount < 1 || usersCount > MAX_GLOBAL_TOP_SIZE) {
+            throw new IllegalArgumentException("The number of users must be between 1 and " + MAX_GLOBAL_TOP_SIZE + ".");
+        }
+        List<String> targetCountries = batchCountries(countries);
+
+        log.info("Fetching top {} users by money for {} countries", usersCount, targetCountries.size());
+        try {
+            List<Map<String, List<UserData>>> perShard = scatterOnReplicas(() -> {
+                Map<String, List<UserData>> shardResult = new LinkedHashMap<>();
+                targetCountries.forEach(country -> shardResult.put(country, new ArrayList<>()));
+                for (UserData user : analyticsRepository.findTopUsersByCountriesMoney(targetCountries, usersCount)) {
+                    shardResult.get(user.getCountry()).add(user);
+                }
+                return shardResult;
+            });
+            Map<String, List<UserData>> result = new LinkedHashMap<>();
+            targetCountries.forEach(country -> result.put(country, mergeShards(perShard.stream()
+                    .map(shardResult -> shardResult.get(country)).toList(), usersCount)));
+            return result;
+        } catch (Exception e) {
+            log.error("Error fetching top users by money for countries: {}", targetCountries, e);
+            throw new DatabaseException(ERROR_TOP_USERS);
+        }
+    }
+
+    /**
+     * Подсчет количества новых пользователей сразу для нескольких стран за период.
+     * <p>
+     * Все страны обрабатываются одним запросом с {@code GROUP BY country},
+     * а результат кэшируется одной записью.
+     * </p>
+     *
+     * @param countries Коды стран.
+     * @param startDate Дата начала периода для подсчета новых пользователей.
+     * @return Количество новых пользователей по странам в порядке запроса.
+     * @throws IllegalArgumentException Если список стран пуст или слишком велик, или "startDate" равен null.
+     * @throws DatabaseException Если произошла ошибка при запросе данных из базы данных.
+     */
+    @Cacheable(value = "newUsersCountBatch", sync = true)
+    public Map<String, Long> countNewUsersByCountries(List<String> countries, LocalDate startDate) {
+        if (startDate == null) {
+            throw new IllegalArgumentException("Start date must not be null.");
+        }
+        List<String> targetCountries = batchCountries(countries);
+
+        log.info("Counting new users for {} countries from date: {}", targetCountries.size(), startDate);
+        try {
+            Map<String, Long> result = new LinkedHashMap<>();
+            targetCountries.forEach(country -> result.put(country, 0L));
+            for (List<Object[]> rows : scatterOnReplicas(() ->
+                    analyticsRepository.countNewUsersByCountries(targetCountries, startDate.atStartOfDay()))) {
+                for (Object[] row : rows) {
+                    result.merge((String) row[0], (Long) row[1], Long::sum);
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            log.error("Error counting new users for countries: {}", targetCountries, e);
+            throw new DatabaseException(ERROR_NEW_USERS);
+        }
+    }
+
     /**
      * Получение списка истории активности пользователя, отсортированного по дате.
+     * <p>
+     * Пользователь и его записи читаются одним запросом JDBC по UUID без загрузки управляемых
+     * сущностей. Если период затрагивает месяцы, перенесённые в архив, записи из архивных сегментов
+     * добавляются после записей из базы данных.
+     * </p>
      *
-     * @param user        UUID пользователя, чью активность нужно получить.
+     * @param uuid        UUID пользователя, чью активность нужно получить.
      * @param startDate   Дата начала периода для получения истории активности.
      * @return Список объектов {@link UserActivityHistory}, представляющих активность пользователя за указанный период.
      * @throws IllegalArgumentException Если параметры "uuid" или "startDate" пустые или равны null.
-     * @throws NoDataFoundException Если не найдено данных активности для указанного пользователя.
-     * @throws DatabaseException Если произошла ошибка при запросе данных из базы данных.
+     * @throws UserNotFoundException Если пользователь с данным UUID не найден.
+     * @throws DatabaseException Если произошла ошибка при запросе данных из базы данных
+     * или не найдено данных активности для указанного пользователя.
      */
-    @Cacheable(value = "userActivityHistory", key = "#uuid + '_' + #startDate")
-    public List<UserActivityHistory> getUserActivityHistory(UserData user, LocalDate startDate) {
-        if (user == null) {
+    @Cacheable(value = "userActivityHistory", sync = true)
+    public List<UserActivityHistory> getUserActivityHistory(UUID uuid, LocalDate startDate) {
+        if (uuid == null) {
             throw new IllegalArgumentException("User UUID must not be null.");
         }
         if (startDate == null) {
             throw new IllegalArgumentException("Start date must not be null.");
         }
 
-        log.info("Fetching activity history for user: {} from date: {}", user, startDate);
-        Pageable pageable = PageRequest.of(0, 10000);
+        log.info("Fetching activity history for user: {} from date: {}", uuid, startDate);
 
         try {
-            List<UserActivityHistory> history = userActivityHistoryRepository.findUserActivityHistoryByUuidAndPeriod(user, startDate, pageable);
+            UserHistory found = shardService.onShardOf(uuid, () -> ReplicaContext.call(() ->
+                            userActivityHistoryJdbcRepository.findUserActivityHistory(uuid, startDate, MAX_HISTORY_SIZE)))
+                    .orElseThrow(() -> new UserNotFoundException(USER_NOT_FOUND));
+            List<UserActivityHistory> history = new ArrayList<>(found.history());
+            if (history.size() < MAX_HISTORY_SIZE) {
+                List<UserActivityHistory> archived = activityArchiveService.findArchivedHistory(found.user(), startDate);
+                history.addAll(archived.subList(0, Math.min(archived.size(), MAX_HISTORY_SIZE - history.size())));
+            }
             if (history.isEmpty()) {
-                throw new NoDataFoundException(ERROR_NO_ACTIVITY_FOR_USER + user);
+                throw new NoDataFoundException(ERROR_NO_ACTIVITY_FOR_USER + uuid);
             }
             return history;
+        } catch (UserNotFoundException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error fetching activity history for user: {}", user, e);
+            log.error("Error fetching activity history for user: {}", uuid, e);
             throw new DatabaseException(ERROR_ACTIVITY_HISTORY);
         }
     }
+
+    private static List<String> batchCountries(List<String> countries) {
+        List<String> result = countries == null ? List.of()
+                : countries.stream().filter(c -> c != null && !c.isBlank()).distinct().toList();
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("At least one country must be specified.");
+        }
+        if (result.size() > MAX_BATCH_COUNTRIES) {
+            throw new IllegalArgumentException("The number of countries must not exceed " + MAX_BATCH_COUNTRIES + ".");
+        }
+        return result;
+    }
+
+    /**
+     * Прочитанная страница рейтинга страны и позиция слияния в ней.
+     */
+    private static final class CountryPage {
+
+        private final String country;
+        private final List<UserData> users;
+        private final int requested;
+        private int index;
+
+        private CountryPage(String country, List<UserData> users, int requested) {
+            this.country = country;
+            this.users = users;
+            this.requested = requested;
+        }
+
+        private UserData head() {
+            return users.get(index);
+        }
+    }
+
+    /**
+     * Закэшированный рейтинг страны.
+     *
+     * @param users    пользователи в порядке рейтинга.
+     * @param complete {@code true}, если в стране нет других пользователей.
+     */
+    public record CachedTopUsers(List<UserData> users, boolean complete) {
+    }
 }
@@ -0,0 +1,311 @@
+package com.example.game.service;
+
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.model.UserData;
+import com.example.game.repository.UserDataRepository;
+import com.example.game.storage.IngestEntry;
+import com.example.game.storage.IngestLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Фоновое применение записей журнала приёма данных к базе данных.
+ * <p>
+ * Записи читаются пакетами начиная с контрольной точки {@code ingest_log_checkpoint}.
+ * Изменения пользователей и новая контрольная точка сохраняются в одной транзакции,
+ * поэтому повторное применение после перезапуска не дублирует изменения. Лимиты
+ * синхронизаций и статистики проверяются при приёме ({@link RequestQuotaService}), поэтому
+ * подтверждённые записи применяются всегда, а счётчики из базы данных передаются обратно в
+ * {@link RequestQuotaService}.
+ * </p>
+ * <p>
+ * Если пакет не удаётся применить, его записи применяются по одной. Запись, которая не применилась
+ * {@code game.ingest-log.max-apply-attempts} раз подряд, и запись неизвестного пользователя
+ * сохраняются в таблицу {@code ingest_log_dead_letter} вместе с причиной в той же транзакции,
+ * что и контрольная точка, и больше не задерживают остальные записи. Количество таких записей
+ * публикуется в метрике {@code game.ingest-log.dead-lettered}.
+ * </p>
+ * <p>
+ * Если пользователи распределены по шардам базы данных, пакет применяется отдельной транзакцией
+ * на каждом шарде, и каждый шард хранит свою контрольную точку. Чтение после перезапуска
+ * начинается с наименьшей из них, а записи не новее контрольной точки шарда пропускаются.
+ * </p>
+ * <p>
+ * Контрольные точки и отложенные записи хранятся по идентификатору журнала ({@link IngestLogService#getLogId()}),
+ * поэтому новый каталог журнала или другой экземпляр приложения с общей базой данных начинают со своей
+ * контрольной точки. Если сохранённая контрольная точка больше последнего номера журнала, каталог журнала
+ * подменён или восстановлен из старой копии: применение не запускается, а старт приложения завершается ошибкой,
+ * чтобы принятые записи не были пропущены молча.
+ * </p>
+ */
+@Service
+public class IngestLogApplier {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestLogApplier.class);
+    private static final String UNKNOWN_USER = "Unknown user";
+
+    /**
+     * Идентификатор, под которым хранится контрольная точка журнала, созданного до появления идентификаторов.
+     */
+    static final String LEGACY_LOG_ID = "legacy";
+
+    private final IngestLogService ingestLogService;
+    private final UserDataRepository userDataRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ShardService shardService;
+    private final RequestQuotaService requestQuotaService;
+    private final int batchSize;
+    private final int maxApplyAttempts;
+    private final Counter deadLettered;
+    private final Map<String, Long> checkpoints = new HashMap<>();
+    private final Map<Long, Integer> failedAttempts = new HashMap<>();
+    private IngestLog.Reader reader;
+
+    public IngestLogApplier(IngestLogService ingestLogService,
+                            UserDataRepository userDataRepository,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ApplicationEventPublisher eventPublisher,
+                            ShardService shardService,
+                            RequestQuotaService requestQuotaService,
+                            MeterRegistry registry,
+                            @Value("${game.ingest-log.apply-batch-size:1000}") int batchSize,
+                            @Value("${game.ingest-log.max-apply-attempts:5}") int maxApplyAttempts) {
+        this.ingestLogService = ingestLogService;
+        this.userDataRepository = userDataRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.shardService = shardService;
+        this.requestQuotaService = requestQuotaService;
+        this.batchSize = batchSize;
+        this.maxApplyAttempts = maxApplyAttempts;
+        this.deadLettered = Counter.builder("game.ingest-log.dead-lettered").register(registry);
+    }
+
+    /**
+     * Применяет записи, принятые до остановки приложения, сразу после старта.
+     *
+     * @throws IllegalStateException если контрольная точка в базе данных впереди журнала.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replay() {
+        if (!ingestLogService.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            if (reader == null) {
+                openReader();
+            }
+        }
+        int applied = applyPending();
+        log.info("Replayed {} ingest log entries on startup", applied);
+    }
+
+    /**
+     * Периодически применяет новые записи журнала.
+     *
+     * @return количество применённых записей.
+     */
+    @Scheduled(fixedDelayString = "${game.ingest-log.apply-interval-ms:200}")
+    public synchronized int applyPending() {
+        if (!ingestLogService.isEnabled()) {
+            return 0;
+        }
+        int total = 0;
+        try {
+            if (reader == null) {
+                openReader();
+            }
+            List<IngestEntry> batch;
+            while (!(batch = reader.next(batchSize)).isEmpty()) {
+                applyBatch(batch);
+                total += batch.size();
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to apply ingest log entries, will retry from checkpoint", e);
+            resetReader();
+        }
+        return total;
+    }
+
+    private void applyBatch(List<IngestEntry> batch) {
+        long lastLsn = batch.get(batch.size() - 1).lsn();
+        Map<String, List<IngestEntry>> byShard = shardService.groupByShard(batch, IngestEntry::uuid);
+        for (String shard : shardService.getShards()) {
+            long applied = checkpoints.getOrDefault(shard, 0L);
+            List<IngestEntry> pending = byShard.getOrDefault(shard, List.of()).stream()
+                    .filter(entry -> entry.lsn() > applied)
+                    .toList();
+            try {
+                List<UserDataUpdatedEvent> events = shardService.onShard(shard, () -> applyOnShard(pending, lastLsn));
+                checkpoints.put(shard, lastLsn);
+                pending.forEach(entry -> failedAttempts.remove(entry.lsn()));
+                events.forEach(eventPublisher::publishEvent);
+            } catch (RuntimeException e) {
+                log.warn("Failed to apply {} ingest log entries on shard {}, applying them one by one",
+                        pending.size(), shard, e);
+                applyOneByOne(shard, pending, lastLsn);
+            }
+        }
+        ingestLogService.deleteAppliedSegments(lastLsn);
+    }
+
+    /**
+     * Применяет записи шарда по одной транзакции на запись, чтобы ошибка одной записи
+     * не задерживала остальные.
+     *
+     * @throws RuntimeException если запись не применилась, но попытки ещё не исчерпаны.
+     */
+    private void applyOneByOne(String shard, List<IngestEntry> pending, long lastLsn) {
+        for (IngestEntry entry : pending) {
+            try {
+                shardService.onShard(shard, () -> applyOnShard(List.of(entry), entry.lsn()))
+                        .forEach(eventPublisher::publishEvent);
+                failedAttempts.remove(entry.lsn());
+            } catch (RuntimeException e) {
+                int attempts = failedAttempts.merge(entry.lsn(), 1, Integer::sum);
+                if (attempts < maxApplyAttempts) {
+                    throw e;
+                }
+                log.error("Moving ingest log entry {} for user {} to dead letters after {} attempts",
+                        entry.lsn(), entry.uuid(), attempts, e);
+                shardService.onShard(shard, () -> {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        deadLetter(entry, e.toString());
+                        updateCheckpoint(entry.lsn());
+                    });
+                    return null;
+                });
+                failedAttempts.remove(entry.lsn());
+            }
+            checkpoints.put(shard, entry.lsn());
+        }
+        shardService.onShard(shard, () -> {
+            transactionTemplate.executeWithoutResult(status -> updateCheckpoint(lastLsn));
+            return null;
+        });
+        checkpoints.put(shard, lastLsn);
+    }
+
+    private List<UserDataUpdatedEvent> applyOnShard(List<IngestEntry> batch, long lastLsn) {
+        List<UserDataUpdatedEvent> events = new ArrayList<>(batch.size());
+        Map<UUID, UserData> changed = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Set<UUID> uuids = new LinkedHashSet<>();
+            batch.forEach(entry -> uuids.add(entry.uuid()));
+            Map<UUID, UserData> users = new HashMap<>();
+            userDataRepository.findAllById(uuids).forEach(user -> users.put(user.getUuid(), user));
+
+            for (IngestEntry entry : batch) {
+                UserData userData = users.get(entry.uuid());
+                if (userData == null) {
+                    log.warn("Moving ingest log entry {} for unknown user {} to dead letters", entry.lsn(), entry.uuid());
+                    deadLetter(entry, UNKNOWN_USER);
+                    continue;
+                }
+                events.add(apply(userData, entry));
+                changed.put(userData.getUuid(), userData);
+            }
+            userDataRepository.saveAll(changed.values());
+            updateCheckpoint(lastLsn);
+        });
+        changed.values().forEach(requestQuotaService::observe);
+        return events;
+    }
+
+    private UserDataUpdatedEvent apply(UserData userData, IngestEntry entry) {
+        if (entry.type() == IngestEntry.Type.SYNC) {
+            return UserDataService.applySync(userData, entry.money(), entry.country(), entry.timestamp());
+        }
+        return UserDataService.applyActivity(userData, entry.activity(), entry.timestamp());
+    }
+
+    private void updateCheckpoint(long lsn) {
+        jdbcTemplate.update("UPDATE ingest_log_checkpoint SET applied_lsn = ? WHERE log_id = ?",
+                lsn, ingestLogService.getLogId());
+    }
+
+    private void deadLetter(IngestEntry entry, String reason) {
+        jdbcTemplate.update("INSERT INTO ingest_log_dead_letter "
+                        + "(log_id, lsn, type, uuid, entry_timestamp, money, country, activity, reason) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                ingestLogService.getLogId(), entry.lsn(), entry.type().name(), entry.uuid(), entry.timestamp(),
+                entry.money(), entry.country(), entry.activity(), reason);
+        deadLettered.increment();
+    }
+
+    /**
+     * Читает контрольные точки шардов и открывает журнал с наименьшей из них.
+     *
+     * @throws IllegalStateException если контрольная точка шарда впереди журнала.
+     */
+    private void openReader() {
+        checkpoints.clear();
+        String logId = ingestLogService.getLogId();
+        shardService.forEachShard(shard -> checkpoints.put(shard, readCheckpoint(logId)));
+        long durableLsn = ingestLogService.getDurableLsn();
+        checkpoints.forEach((shard, applied) -> {
+            if (applied > durableLsn) {
+                throw new IllegalStateException(String.format(
+                        "Ingest log checkpoint %d on shard %s is ahead of ingest log %s at lsn %d",
+                        applied, shard, logId, durableLsn));
+            }
+        });
+        reader = ingestLogService.reader(checkpoints.values().stream().min(Long::compare).orElse(0L) + 1);
+    }
+
+    /**
+     * Читает контрольную точку журнала на текущем шарде, создавая её при первом запуске журнала.
+     * Журнал, созданный до появления идентификаторов, продолжает с общей контрольной точки прежней версии.
+     */
+    private long readCheckpoint(String logId) {
+        List<Long> applied = jdbcTemplate.queryForList(
+                "SELECT applied_lsn FROM ingest_log_checkpoint WHERE log_id = ?", Long.class, logId);
+        if (!applied.isEmpty()) {
+            return applied.get(0);
+        }
+        if (ingestLogService.isUpgraded() && jdbcTemplate.update(
+                "UPDATE ingest_log_checkpoint SET log_id = ? WHERE log_id = ?", logId, LEGACY_LOG_ID) > 0) {
+            log.info("Ingest log {} takes over the checkpoint of the previous ingest log", logId);
+            return readCheckpoint(logId);
+        }
+        jdbcTemplate.update("INSERT INTO ingest_log_checkpoint (log_id, applied_lsn) VALUES (?, 0)", logId);
+        return 0;
+    }
+
+    private void resetReader() {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("Failed to close ingest log reader", e);
+        }
+        reader = null;
+    }
+}
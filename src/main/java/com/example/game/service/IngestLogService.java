@@ -0,0 +1,152 @@
+package com.example.game.service;
+
+import com.example.game.exception.DatabaseException;
+import com.example.game.storage.IngestEntry;
+import com.example.game.storage.IngestLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.example.game.exception.DatabaseException.ERROR_INGEST_LOG;
+
+/**
+ * Сервис журнала предзаписи для принимаемых данных пользователей.
+ * <p>
+ * При включённом журнале запросы синхронизации и активности подтверждаются сразу после
+ * надёжной записи в {@link IngestLog}, а применение к базе данных выполняет
+ * {@link IngestLogApplier} в фоне пакетами.
+ * </p>
+ */
+@Service
+public class IngestLogService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestLogService.class);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final long appendTimeoutMs;
+    private volatile IngestLog ingestLog;
+
+    public IngestLogService(@Value("${game.ingest-log.enabled:false}") boolean enabled,
+                            @Value("${game.ingest-log.directory:ingest-log}") String directory,
+                            @Value("${game.ingest-log.segment-size-mb:64}") int segmentSizeMb,
+                            @Value("${game.ingest-log.fsync:true}") boolean fsync,
+                            @Value("${game.ingest-log.append-timeout-ms:5000}") long appendTimeoutMs) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentBytes = segmentSizeMb * 1024L * 1024L;
+        this.fsync = fsync;
+        this.appendTimeoutMs = appendTimeoutMs;
+    }
+
+    /**
+     * Открывает журнал при старте приложения.
+     */
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            ingestLog = IngestLog.open(directory, segmentBytes, fsync);
+            log.info("Opened ingest log {} in {} at lsn {}", ingestLog.getLogId(), directory.toAbsolutePath(),
+                    ingestLog.getDurableLsn());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open ingest log in " + directory, e);
+        }
+    }
+
+    /**
+     * Закрывает журнал при остановке приложения, дописав принятые записи.
+     */
+    @PreDestroy
+    public void close() {
+        if (ingestLog == null) {
+            return;
+        }
+        try {
+            ingestLog.close();
+        } catch (IOException e) {
+            log.warn("Failed to close ingest log", e);
+        }
+    }
+
+    /**
+     * @return {@code true}, если запросы принимаются через журнал.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Добавляет запись в журнал и ожидает её фиксации на диске.
+     *
+     * @param entry запись без номера.
+     * @return назначенный номер записи.
+     * @throws DatabaseException если запись не удалось зафиксировать.
+     */
+    public long append(IngestEntry entry) {
+        try {
+            return ingestLog.append(entry).get(appendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException(ERROR_INGEST_LOG);
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("Failed to append entry to ingest log for user: {}", entry.uuid(), e);
+            throw new DatabaseException(ERROR_INGEST_LOG);
+        }
+    }
+
+    /**
+     * @return идентификатор журнала, к которому относятся номера записей.
+     */
+    public String getLogId() {
+        return ingestLog.getLogId();
+    }
+
+    /**
+     * @return {@code true}, если журнал с записями создан до появления идентификатора журнала.
+     */
+    public boolean isUpgraded() {
+        return ingestLog.isUpgraded();
+    }
+
+    /**
+     * @return номер последней зафиксированной записи.
+     */
+    public long getDurableLsn() {
+        return ingestLog.getDurableLsn();
+    }
+
+    /**
+     * Создаёт читателя журнала, например для аудита или применения записей.
+     *
+     * @param fromLsn номер первой читаемой записи.
+     * @return читатель журнала.
+     */
+    public IngestLog.Reader reader(long fromLsn) {
+        return ingestLog.reader(fromLsn);
+    }
+
+    /**
+     * Удаляет сегменты, полностью применённые к базе данных.
+     *
+     * @param appliedLsn номер последней применённой записи.
+     */
+    public void deleteAppliedSegments(long appliedLsn) {
+        ingestLog.deleteSegmentsUpTo(appliedLsn);
+    }
+}
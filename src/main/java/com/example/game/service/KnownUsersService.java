@@ -0,0 +1,310 @@
+package com.example.game.service;
+
+import com.example.game.repository.UserDataRepository;
+import com.example.game.util.BloomFilter;
+import com.example.game.util.Hashing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Сервис проверки существования пользователей без обращения к базе данных.
+ * <p>
+ * UUID всех пользователей из {@code user_data} всех шардов загружаются при старте в {@link BloomFilter}.
+ * Запросы с UUID, которых точно нет в фильтре, отклоняются до поиска в базе данных.
+ * UUID, прошедшие фильтр, но не найденные в базе данных (ложноположительные ответы),
+ * кэшируются на короткое время, чтобы повторные запросы тоже не доходили до базы данных.
+ * </p>
+ * <p>
+ * Пользователи, созданные импортом, добавляются сразу. Пользователи, созданные в обход
+ * приложения, добавляются периодическим чтением строк с порядковым номером {@code registration_seq}
+ * больше уже прочитанного на шарде. Номер выдаётся последовательностью при вставке, поэтому
+ * строки со старым или пустым {@code created_at} (импорт, перенос между шардами) тоже находятся.
+ * Фильтр не поддерживает удаление, поэтому удалённые пользователи исключаются только
+ * полной перестройкой по расписанию; до неё такие UUID проверяются в базе данных как обычно.
+ * Пока фильтр не загружен, проверка ничего не отклоняет.
+ * </p>
+ * <p>
+ * Метрики: {@code game.known-users.rejected} (отклонённые запросы по источнику ответа),
+ * {@code game.known-users.false-positives}, {@code game.known-users.false-positive-rate}
+ * (наблюдаемая доля ложноположительных ответов среди неизвестных UUID)
+ * и {@code game.known-users.expected-false-positive-rate} (оценка по заполнению фильтра).
+ * </p>
+ */
+@Service
+public class KnownUsersService {
+
+    private static final Logger log = LoggerFactory.getLogger(KnownUsersService.class);
+
+    private final UserDataRepository userDataRepository;
+    private final ShardService shardService;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final long expectedUsers;
+    private final double falsePositiveRate;
+    private final long negativeTtlMillis;
+    private final int negativeCacheSize;
+    private final Duration refreshOverlap;
+    private final Map<UUID, Long> negative = new ConcurrentHashMap<>();
+    private final Counter filterRejected;
+    private final Counter negativeRejected;
+    private final Counter falsePositives;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter building;
+    private final Map<String, Deque<Mark>> marks = new HashMap<>();
+    private volatile double expectedFalsePositiveRate;
+
+    public KnownUsersService(UserDataRepository userDataRepository,
+                             ShardService shardService,
+                             PlatformTransactionManager transactionManager,
+                             Clock clock,
+                             MeterRegistry registry,
+                             @Value("${game.known-users.enabled:true}") boolean enabled,
+                             @Value("${game.known-users.expected-users:1000000}") long expectedUsers,
+                             @Value("${game.known-users.false-positive-rate:0.01}") double falsePositiveRate,
+                             @Value("${game.known-users.negative-ttl-seconds:60}") long negativeTtlSeconds,
+                             @Value("${game.known-users.negative-cache-size:100000}") int negativeCacheSize,
+                             @Value("${game.known-users.refresh-overlap-seconds:60}") long refreshOverlapSeconds) {
+        this.userDataRepository = userDataRepository;
+        this.shardService = shardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.clock = clock;
+        this.enabled = enabled;
+        this.expectedUsers = expectedUsers;
+        this.falsePositiveRate = falsePositiveRate;
+        this.negativeTtlMillis = Duration.ofSeconds(negativeTtlSeconds).toMillis();
+        this.negativeCacheSize = negativeCacheSize;
+        this.refreshOverlap = Duration.ofSeconds(refreshOverlapSeconds);
+        this.filterRejected = Counter.builder("game.known-users.rejected")
+                .tag("source", "filter")
+                .description("Requests for unknown users rejected without a database lookup")
+                .register(registry);
+        this.negativeRejected = Counter.builder("game.known-users.rejected")
+                .tag("source", "negative-cache")
+                .description("Requests for unknown users rejected without a database lookup")
+                .register(registry);
+        this.falsePositives = Counter.builder("game.known-users.false-positives")
+                .description("Unknown users that passed the filter and were looked up in the database")
+                .register(registry);
+        Gauge.builder("game.known-users.false-positive-rate", this, KnownUsersService::getObservedFalsePositiveRate)
+                .description("Share of unknown users that passed the filter")
+                .register(registry);
+        Gauge.builder("game.known-users.expected-false-positive-rate", this, s -> s.expectedFalsePositiveRate)
+                .description("False positive rate estimated from the filter fill ratio")
+                .register(registry);
+    }
+
+    /**
+     * Загружает фильтр после старта приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    /**
+     * Перестраивает фильтр по всем пользователям, исключая удалённых.
+     * <p>
+     * До окончания перестройки запросы проверяются старым фильтром, а новые пользователи
+     * добавляются в оба фильтра. При ошибке старый фильтр остаётся в работе.
+     * </p>
+     */
+    @Scheduled(cron = "${game.known-users.rebuild-cron:0 15 3 * * *}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        long now = clock.millis();
+        Map<String, Deque<Mark>> nextMarks = new HashMap<>();
+        long[] loaded = new long[1];
+        try {
+            long count = shardService.scatter(userDataRepository::count).stream().mapToLong(Long::longValue).sum();
+            BloomFilter next = new BloomFilter(Math.max(expectedUsers, count * 2), falsePositiveRate);
+            building = next;
+            shardService.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+                // Номер читается до потока: строки, добавленные во время чтения, найдёт обновление
+                Deque<Mark> shardMarks = new ArrayDeque<>();
+                shardMarks.add(new Mark(now, userDataRepository.findMaxRegistrationSeq()));
+                nextMarks.put(shard, shardMarks);
+                try (Stream<UUID> uuids = userDataRepository.streamAllUuids()) {
+                    uuids.forEach(uuid -> {
+                        next.put(Hashing.hash64(uuid));
+                        loaded[0]++;
+                    });
+                }
+            }));
+            // Фильтр заменяется до сброса building, чтобы параллельное добавление попало в новый фильтр
+            filter = next;
+            building = null;
+            marks.clear();
+            marks.putAll(nextMarks);
+            negative.clear();
+            expectedFalsePositiveRate = next.expectedFalsePositiveRate();
+            log.info("Loaded {} users into known users filter ({} KB, {} hashes) in {} ms", loaded[0],
+                    next.sizeInBytes() / 1024, next.getHashCount(), System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            building = null;
+            log.error("Failed to build known users filter", e);
+        }
+    }
+
+    /**
+     * Добавляет в фильтр пользователей, добавленных в {@code user_data} после предыдущей загрузки.
+     * <p>
+     * Номера последовательности выдаются при вставке, а видны после фиксации транзакции, поэтому
+     * порядок фиксации может отличаться от порядка номеров. Чтение начинается с наибольшего номера,
+     * известного не меньше {@code refresh-overlap-seconds} назад, и перекрывает предыдущие чтения,
+     * чтобы не пропустить транзакции, зафиксированные с опозданием.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${game.known-users.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        if (!enabled || filter == null || marks.isEmpty()) {
+            return;
+        }
+        long now = clock.millis();
+        long settled = now - refreshOverlap.toMillis();
+        try {
+            shardService.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+                Deque<Mark> shardMarks = marks.get(shard);
+                long top = userDataRepository.findMaxRegistrationSeq();
+                try (Stream<UUID> uuids = userDataRepository.streamUuidsRegisteredAfter(settledSeq(shardMarks, settled))) {
+                    uuids.forEach(this::add);
+                }
+                // Из отметок старше перекрытия нужна только последняя: с неё начнётся следующее чтение
+                Mark oldest = shardMarks.removeFirst();
+                while (!shardMarks.isEmpty() && shardMarks.getFirst().at() <= settled) {
+                    oldest = shardMarks.removeFirst();
+                }
+                shardMarks.addFirst(oldest);
+                shardMarks.addLast(new Mark(now, top));
+            }));
+            expectedFalsePositiveRate = filter.expectedFalsePositiveRate();
+        } catch (RuntimeException e) {
+            log.warn("Failed to refresh known users filter, will retry", e);
+        }
+    }
+
+    /**
+     * Добавляет созданного пользователя.
+     *
+     * @param uuid UUID пользователя.
+     */
+    public void add(UUID uuid) {
+        if (!enabled) {
+            return;
+        }
+        long hash = Hashing.hash64(uuid);
+        // building читается до filter: после замены filter уже указывает на новый фильтр
+        BloomFilter next = building;
+        if (next != null) {
+            next.put(hash);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(hash);
+        }
+        negative.remove(uuid);
+    }
+
+    /**
+     * Проверяет, что пользователя точно не существует.
+     *
+     * @param uuid UUID пользователя.
+     * @return {@code true}, если пользователя нет в фильтре или он недавно не был найден в базе данных;
+     * {@code false}, если пользователя нужно искать в базе данных.
+     */
+    public boolean isDefinitelyUnknown(UUID uuid) {
+        BloomFilter current = filter;
+        if (!enabled || current == null) {
+            return false;
+        }
+        Long expiresAt = negative.get(uuid);
+        if (expiresAt != null) {
+            if (expiresAt > clock.millis()) {
+                negativeRejected.increment();
+                return true;
+            }
+            negative.remove(uuid, expiresAt);
+        }
+        if (!current.mightContain(Hashing.hash64(uuid))) {
+            filterRejected.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Запоминает пользователя, прошедшего фильтр, но не найденного в базе данных.
+     *
+     * @param uuid UUID пользователя.
+     */
+    public void recordMissing(UUID uuid) {
+        if (!enabled || filter == null) {
+            return;
+        }
+        falsePositives.increment();
+        long now = clock.millis();
+        if (negative.size() >= negativeCacheSize) {
+            negative.values().removeIf(expiresAt -> expiresAt <= now);
+            if (negative.size() >= negativeCacheSize) {
+                return;
+            }
+        }
+        negative.put(uuid, now + negativeTtlMillis);
+    }
+
+    /**
+     * Наибольший номер, известный к моменту {@code settled}; если такого ещё нет, самый ранний известный.
+     */
+    private static long settledSeq(Deque<Mark> shardMarks, long settled) {
+        long seq = shardMarks.getFirst().seq();
+        for (Mark mark : shardMarks) {
+            if (mark.at() > settled) {
+                break;
+            }
+            seq = mark.seq();
+        }
+        return seq;
+    }
+
+    /**
+     * @return наблюдаемая доля ложноположительных ответов среди неизвестных UUID.
+     */
+    public double getObservedFalsePositiveRate() {
+        double passed = falsePositives.count();
+        double total = passed + filterRejected.count();
+        return total == 0 ? 0 : passed / total;
+    }
+
+    /**
+     * Наибольший номер строки пользователя на шарде в момент чтения.
+     *
+     * @param at  время чтения в миллисекундах.
+     * @param seq наибольший номер {@code registration_seq}.
+     */
+    private record Mark(long at, long seq) {
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.game.service;
+
+import com.example.game.exception.ConcurrentUpdateException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static com.example.game.exception.ConcurrentUpdateException.CONCURRENT_UPDATE;
+
+/**
+ * Повтор обновлений данных пользователя при конфликте оптимистичной блокировки.
+ * <p>
+ * Обновление целиком (чтение, проверка лимитов, изменение и сохранение) повторяется, если
+ * версия записи изменилась между чтением и сохранением. Перед повтором поток ждёт случайное
+ * время от нуля до экспоненциально растущей границы, чтобы конкурирующие запросы разошлись.
+ * Блокировки строк не используются, поэтому запросы к разным пользователям не ждут друг друга.
+ * </p>
+ * <p>
+ * Количество конфликтов и исчерпанных повторов публикуется в метриках
+ * {@code game.user-data.update.conflicts} и {@code game.user-data.update.exhausted} с тегом {@code endpoint}.
+ * </p>
+ */
+@Service
+public class OptimisticRetryService {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetryService.class);
+
+    private final MeterRegistry registry;
+    private final int maxAttempts;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final Map<String, Counter> conflicts = new ConcurrentHashMap<>();
+    private final Map<String, Counter> exhausted = new ConcurrentHashMap<>();
+
+    public OptimisticRetryService(MeterRegistry registry,
+                                  @Value("${game.user-data.retry.max-attempts:5}") int maxAttempts,
+                                  @Value("${game.user-data.retry.base-backoff-ms:2}") long baseBackoffMs,
+                                  @Value("${game.user-data.retry.max-backoff-ms:50}") long maxBackoffMs) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Retry needs at least one attempt: " + maxAttempts);
+        }
+        this.registry = registry;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    /**
+     * Выполняет обновление, повторяя его при конфликте версий.
+     *
+     * @param endpoint имя эндпоинта для метрик.
+     * @param update   обновление; выполняется заново при каждой попытке.
+     * @param <T>      тип результата.
+     * @return результат первой успешной попытки.
+     * @throws ConcurrentUpdateException если все попытки завершились конфликтом.
+     */
+    public <T> T execute(String endpoint, Supplier<T> update) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return update.get();
+            } catch (OptimisticLockingFailureException e) {
+                counter(conflicts, "game.user-data.update.conflicts", endpoint).increment();
+                if (attempt >= maxAttempts) {
+                    counter(exhausted, "game.user-data.update.exhausted", endpoint).increment();
+                    log.warn("Giving up {} update after {} conflicting attempts", endpoint, attempt);
+                    throw new ConcurrentUpdateException(CONCURRENT_UPDATE);
+                }
+                log.debug("Retrying {} update after conflict, attempt {}", endpoint, attempt);
+                backOff(attempt);
+            }
+        }
+    }
+
+    private void backOff(int attempt) {
+        long bound = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        if (bound <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException(CONCURRENT_UPDATE);
+        }
+    }
+
+    private Counter counter(Map<String, Counter> counters, String name, String endpoint) {
+        return counters.computeIfAbsent(endpoint, key -> Counter.builder(name)
+                .tag("endpoint", key)
+                .register(registry));
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.game.service;
+
+import com.example.game.datasource.ReplicaContext;
+import com.example.game.dto.HistogramBucket;
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.exception.NoDataFoundException;
+import com.example.game.repository.UserDataRepository;
+import com.example.game.util.KllSketch;
+import com.example.game.util.LogHistogram;
+import com.example.game.util.QuantileSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import static com.example.game.exception.NoDataFoundException.ERROR_NO_ACTIVITY_FOR_COUNTRY;
+import static com.example.game.service.AnalyticsService.COUNTRY_REQUIRED;
+
+/**
+ * Сервис распределений денег и активности пользователей по странам.
+ * <p>
+ * Для каждой страны поддерживаются гистограммы {@link LogHistogram}, в которые каждый
+ * пользователь входит ровно одним значением: текущим количеством денег и суммарной активностью.
+ * Гистограммы обновляются событиями {@link UserDataUpdatedEvent} из {@code processSyncData}
+ * и {@code processActivityData}: прежнее значение пользователя удаляется из гистограммы прежней
+ * страны, новое добавляется, поэтому ни запросы, ни обновления не сканируют таблицу.
+ * </p>
+ * <p>
+ * Полное чтение {@code user_data} всех шардов выполняется только при старте и для редкой сверки
+ * ({@code game.sketch.reconcile-interval-ms}, по умолчанию раз в час): оно возвращает в распределения
+ * пользователей, созданных без события, и изменения, совпавшие с предыдущей сверкой.
+ * </p>
+ * <p>
+ * Малые значения учитываются точно, большие — с относительной ошибкой 1%. Скетчи {@link KllSketch}
+ * узлов с другой базой данных (например, другого региона) объединяются через
+ * {@link #mergeSketch(Metric, String, String, byte[])}; ошибка ранга объединения при {@code k = 200}
+ * не превышает примерно 1.65%. Скетч каждого узла хранится отдельно и заменяется при повторной
+ * отправке, поэтому повтор не учитывает пользователей дважды. Объединение доступно только с токеном
+ * {@code game.sketch.merge-token}; без настроенного токена оно отключено.
+ * </p>
+ */
+@Service
+public class QuantileSketchService {
+
+    private static final Logger log = LoggerFactory.getLogger(QuantileSketchService.class);
+
+    /**
+     * Максимальное количество узлов, скетчи которых принимаются для объединения.
+     */
+    static final int MAX_REMOTE_NODES = 64;
+
+    private static final int MAX_COUNTRY_LENGTH = 3;
+
+    /**
+     * Показатель, распределение которого строится скетчем.
+     */
+    public enum Metric {
+        /**
+         * Текущее количество денег пользователя.
+         */
+        MONEY,
+        /**
+         * Суммарная активность пользователя.
+         */
+        ACTIVITY
+    }
+
+    private final UserDataRepository userDataRepository;
+    private final ShardService shardService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final byte[] mergeToken;
+    private final Map<Metric, Map<String, Map<String, KllSketch>>> remote = Map.of(
+            Metric.MONEY, new ConcurrentHashMap<>(),
+            Metric.ACTIVITY, new ConcurrentHashMap<>());
+    private volatile Map<Metric, ConcurrentMap<String, LogHistogram>> distributions = Map.of(
+            Metric.MONEY, new ConcurrentHashMap<>(),
+            Metric.ACTIVITY, new ConcurrentHashMap<>());
+
+    public QuantileSketchService(UserDataRepository userDataRepository,
+                                 ShardService shardService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${game.sketch.enabled:true}") boolean enabled,
+                                 @Value("${game.sketch.merge-token:}") String mergeToken) {
+        this.userDataRepository = userDataRepository;
+        this.shardService = shardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.enabled = enabled;
+        this.mergeToken = mergeToken == null || mergeToken.isBlank()
+                ? null : mergeToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Строит распределения после старта приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    /**
+     * Переносит пользователя в распределениях из прежнего состояния в новое.
+     *
+     * @param event событие изменения данных пользователя.
+     */
+    @EventListener
+    public void onUserDataUpdated(UserDataUpdatedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Map<Metric, ConcurrentMap<String, LogHistogram>> current = distributions;
+        move(current.get(Metric.MONEY), event.previousCountry(), event.previousMoney(),
+                event.country(), event.money());
+        move(current.get(Metric.ACTIVITY), event.previousCountry(), event.previousActivity(),
+                event.country(), event.totalActivity());
+    }
+
+    /**
+     * Строит распределения заново по текущим данным всех пользователей для сверки.
+     * <p>
+     * До окончания перестройки запросы обслуживаются прежними распределениями; при ошибке
+     * они остаются в работе. Изменения, принятые во время чтения, могут не попасть в новые
+     * распределения и учитываются следующей сверкой.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${game.sketch.reconcile-interval-ms:3600000}",
+            initialDelayString = "${game.sketch.reconcile-interval-ms:3600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        ConcurrentMap<String, LogHistogram> money = new ConcurrentHashMap<>();
+        ConcurrentMap<String, LogHistogram> activity = new ConcurrentHashMap<>();
+        long[] users = new long[1];
+        try {
+            shardService.forEachShard(shard -> ReplicaContext.call(() -> transactionTemplate.execute(status -> {
+                try (Stream<Object[]> rows = userDataRepository.streamCountryMoneyActivity()) {
+                    rows.forEach(row -> {
+                        String country = (String) row[0];
+                        if (country == null || country.isBlank()) {
+                            return;
+                        }
+                        money.computeIfAbsent(country, c -> new LogHistogram()).add(((Number) row[1]).intValue());
+                        activity.computeIfAbsent(country, c -> new LogHistogram()).add(((Number) row[2]).intValue());
+                        users[0]++;
+                    });
+                }
+                return null;
+            })));
+            distributions = Map.of(Metric.MONEY, money, Metric.ACTIVITY, activity);
+            log.info("Built quantile distributions for {} users in {} countries in {} ms", users[0], money.size(),
+                    System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Failed to build quantile distributions", e);
+        }
+    }
+
+    /**
+     * Возвращает приближённые значения квантилей показателя для страны.
+     *
+     * @param metric    показатель.
+     * @param country   код страны.
+     * @param quantiles уровни квантилей от 0 до 1.
+     * @return значения квантилей в порядке запроса.
+     * @throws IllegalArgumentException если параметры некорректны.
+     * @throws NoDataFoundException     если для страны ещё нет данных.
+     */
+    public Map<Double, Integer> getQuantiles(Metric metric, String country, List<Double> quantiles) {
+        if (quantiles == null || quantiles.isEmpty()) {
+            throw new IllegalArgumentException("At least one quantile must be specified.");
+        }
+        QuantileSummary summary = existingSummary(metric, country);
+        Map<Double, Integer> result = new LinkedHashMap<>();
+        for (Double quantile : quantiles) {
+            result.put(quantile, summary.quantile(quantile));
+        }
+        return result;
+    }
+
+    /**
+     * Строит приближённую гистограмму показателя для страны.
+     *
+     * @param metric      показатель.
+     * @param country     код страны.
+     * @param splitPoints возрастающие границы интервалов.
+     * @return интервалы {@code (-inf, s0], (s0, s1], ..., (sN, +inf)} с оценкой количества пользователей.
+     * @throws IllegalArgumentException если границы не возрастают.
+     * @throws NoDataFoundException     если для страны ещё нет данных.
+     */
+    public List<HistogramBucket> getHistogram(Metric metric, String country, List<Integer> splitPoints) {
+        if (splitPoints == null || splitPoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one split point must be specified.");
+        }
+        for (int i = 1; i < splitPoints.size(); i++) {
+            if (splitPoints.get(i) <= splitPoints.get(i - 1)) {
+                throw new IllegalArgumentException("Split points must be strictly increasing.");
+            }
+        }
+        QuantileSummary summary = existingSummary(metric, country);
+        long total = summary.getCount();
+
+        List<HistogramBucket> buckets = new ArrayList<>(splitPoints.size() + 1);
+        Integer lower = null;
+        double lowerRank = 0;
+        for (Integer upper : splitPoints) {
+            double upperRank = summary.rank(upper);
+            buckets.add(new HistogramBucket(lower, upper, Math.round((upperRank - lowerRank) * total)));
+            lower = upper;
+            lowerRank = upperRank;
+        }
+        buckets.add(new HistogramBucket(lower, null, Math.round((1 - lowerRank) * total)));
+        return buckets;
+    }
+
+    /**
+     * Сериализует локальное распределение страны скетчем {@link KllSketch} для объединения на другом узле.
+     * <p>
+     * Скетчи, полученные от других узлов, не выгружаются, чтобы они не возвращались к отправителю.
+     * </p>
+     *
+     * @param metric  показатель.
+     * @param country код страны.
+     * @return бинарное представление скетча.
+     * @throws NoDataFoundException если для страны ещё нет данных.
+     */
+    public byte[] exportSketch(Metric metric, String country) {
+        requireCountry(country);
+        LogHistogram local = distributions.get(metric).get(country);
+        if (local == null || local.getCount() == 0) {
+            throw new NoDataFoundException(ERROR_NO_ACTIVITY_FOR_COUNTRY + country);
+        }
+        return local.toKllSketch().toBytes();
+    }
+
+    /**
+     * Проверяет токен запроса на объединение скетчей.
+     *
+     * @param token токен из запроса.
+     * @return {@code true}, если объединение разрешено.
+     */
+    public boolean isMergeAuthorized(String token) {
+        return mergeToken != null && token != null
+                && MessageDigest.isEqual(mergeToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Сохраняет скетч страны, полученный с другого узла, заменяя предыдущий скетч этого узла.
+     *
+     * @param metric  показатель.
+     * @param country код страны.
+     * @param node    идентификатор узла-отправителя.
+     * @param data    бинарное представление скетча.
+     * @throws IllegalArgumentException если параметры некорректны, данные повреждены
+     *                                  или превышено количество узлов.
+     */
+    public void mergeSketch(Metric metric, String country, String node, byte[] data) {
+        requireCountry(country);
+        if (country.length() > MAX_COUNTRY_LENGTH) {
+            throw new IllegalArgumentException("Country code must not exceed " + MAX_COUNTRY_LENGTH + " characters.");
+        }
+        if (node == null || node.isBlank()) {
+            throw new IllegalArgumentException("Node must not be null or empty.");
+        }
+        KllSketch sketch = KllSketch.fromBytes(data);
+        if (sketch.getK() != KllSketch.DEFAULT_K) {
+            throw new IllegalArgumentException("Cannot merge sketches with different k.");
+        }
+        Map<String, KllSketch> byNode = remote.get(metric).computeIfAbsent(country, c -> new ConcurrentHashMap<>());
+        synchronized (byNode) {
+            if (!byNode.containsKey(node) && byNode.size() >= MAX_REMOTE_NODES) {
+                throw new IllegalArgumentException("Too many nodes for country: " + country);
+            }
+            byNode.put(node, sketch);
+        }
+    }
+
+    private QuantileSummary existingSummary(Metric metric, String country) {
+        requireCountry(country);
+        LogHistogram local = distributions.get(metric).get(country);
+        Map<String, KllSketch> byNode = remote.get(metric).get(country);
+        QuantileSummary summary = local;
+        if (byNode != null && !byNode.isEmpty()) {
+            KllSketch sketch = local == null ? new KllSketch() : local.toKllSketch();
+            byNode.values().forEach(sketch::merge);
+            summary = sketch;
+        }
+        if (summary == null || summary.getCount() == 0) {
+            throw new NoDataFoundException(ERROR_NO_ACTIVITY_FOR_COUNTRY + country);
+        }
+        return summary;
+    }
+
+    private static void move(ConcurrentMap<String, LogHistogram> byCountry, String previousCountry, int previous,
+                             String country, int value) {
+        if (previousCountry != null && !previousCountry.isBlank()) {
+            LogHistogram histogram = byCountry.get(previousCountry);
+            if (histogram != null) {
+                histogram.remove(previous);
+            }
+        }
+        if (country != null && !country.isBlank()) {
+            byCountry.computeIfAbsent(country, c -> new LogHistogram()).add(value);
+        }
+    }
+
+    private static void requireCountry(String country) {
+        if (country == null || country.isBlank()) {
+            throw new IllegalArgumentException(COUNTRY_REQUIRED);
+        }
+    }
+}
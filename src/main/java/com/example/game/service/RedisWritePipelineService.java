@@ -0,0 +1,151 @@
+package com.example.game.service;
+
+import com.example.game.cache.RedisWritePipeline;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Сервис асинхронной записи в Redis через {@link RedisWritePipeline}.
+ * <p>
+ * Используется для записей кэша и счётчиков активных пользователей. По умолчанию поток запроса
+ * только ставит команду в очередь; с {@code game.redis.pipeline.await-ack=true} он дожидается
+ * ответа Redis. Если конвейер выключен или его очередь заполнена, вызывающий код выполняет
+ * запись синхронно, как без конвейера.
+ * </p>
+ */
+@Service
+public class RedisWritePipelineService {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisWritePipelineService.class);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final boolean awaitAck;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final int queueCapacity;
+    private final Duration ackTimeout;
+    private volatile RedisWritePipeline pipeline;
+
+    public RedisWritePipelineService(RedisConnectionFactory connectionFactory,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${game.redis.pipeline.enabled:false}") boolean enabled,
+                                     @Value("${game.redis.pipeline.await-ack:false}") boolean awaitAck,
+                                     @Value("${game.redis.pipeline.batch-size:128}") int batchSize,
+                                     @Value("${game.redis.pipeline.flush-interval-ms:5}") long flushIntervalMs,
+                                     @Value("${game.redis.pipeline.queue-capacity:10000}") int queueCapacity,
+                                     @Value("${game.redis.pipeline.ack-timeout-ms:1000}") long ackTimeoutMs) {
+        this.connectionFactory = connectionFactory;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.awaitAck = awaitAck;
+        this.batchSize = batchSize;
+        this.flushInterval = Duration.ofMillis(flushIntervalMs);
+        this.queueCapacity = queueCapacity;
+        this.ackTimeout = Duration.ofMillis(ackTimeoutMs);
+    }
+
+    /**
+     * Запускает конвейер при старте приложения. Соединение с Redis открывается при первой записи.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        pipeline = new RedisWritePipeline(this::connect, batchSize, flushInterval, queueCapacity, ackTimeout,
+                meterRegistry);
+        log.info("Redis write pipeline enabled: batch size {}, flush interval {} ms, await ack {}",
+                batchSize, flushInterval.toMillis(), awaitAck);
+    }
+
+    /**
+     * Дописывает оставшиеся команды при остановке приложения.
+     */
+    @PreDestroy
+    public void stop() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Передаёт команду записи в конвейер.
+     *
+     * @param command команда записи.
+     * @return {@code true}, если команда принята конвейером; {@code false}, если конвейер выключен
+     * или заполнен и запись нужно выполнить синхронно.
+     */
+    public boolean submit(RedisWritePipeline.Command command) {
+        if (pipeline == null) {
+            return false;
+        }
+        try {
+            CompletableFuture<Void> result = pipeline.submit(command);
+            if (awaitAck) {
+                result.get(ackTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                result.whenComplete((ignored, e) -> {
+                    if (e != null) {
+                        log.warn("Asynchronous Redis write failed", e);
+                    }
+                });
+            }
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Redis write pipeline is saturated, writing synchronously");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Redis write was not acknowledged", e);
+            return true;
+        }
+    }
+
+    /**
+     * Дожидается выполнения записей, принятых конвейером до вызова.
+     * <p>
+     * Вызывается перед синхронным удалением из кэша, чтобы запись, ещё стоящая в очереди,
+     * не восстановила удалённое значение. Ожидание ограничено временем отправки двух пакетов
+     * на каждую заполненную очередь; если его не хватило, удаление выполняется без гарантии порядка.
+     * </p>
+     */
+    public void awaitPendingWrites() {
+        RedisWritePipeline current = pipeline;
+        if (current == null) {
+            return;
+        }
+        Duration timeout = flushInterval.plus(ackTimeout).multipliedBy(2L + current.getQueueDepth() / batchSize);
+        if (!current.awaitSubmitted(timeout)) {
+            log.warn("Pending Redis writes were not flushed within {} ms before eviction", timeout.toMillis());
+        }
+    }
+
+    private StatefulRedisConnection<byte[], byte[]> connect() {
+        if (!(connectionFactory instanceof LettuceConnectionFactory lettuce)
+                || !(lettuce.getRequiredNativeClient() instanceof RedisClient client)) {
+            throw new IllegalStateException("Redis write pipeline requires a standalone Lettuce connection factory.");
+        }
+        return client.connect(ByteArrayCodec.INSTANCE);
+    }
+}
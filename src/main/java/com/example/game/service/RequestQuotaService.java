@@ -0,0 +1,171 @@
+package com.example.game.service;
+
+import com.example.game.exception.ActivityLimitExceededException;
+import com.example.game.exception.SyncLimitExceededException;
+import com.example.game.model.UserData;
+import com.example.game.storage.IngestEntry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.example.game.exception.ActivityLimitExceededException.LIMIT_ACTIVITY;
+import static com.example.game.exception.SyncLimitExceededException.MESSAGE_SYNC;
+
+/**
+ * Суточные лимиты запросов, которые подтверждаются до применения к базе данных.
+ * <p>
+ * Журнал приёма данных и конвейер активности отвечают клиенту, не читая пользователя из базы
+ * данных, поэтому лимиты синхронизаций и статистики проверяются по счётчикам принятых запросов
+ * в памяти. Счётчики ведутся так же, как в {@link UserData}: сначала сбрасываются, если
+ * с последнего учтённого запроса прошло больше суток, затем сравниваются с лимитом. Принятый запрос
+ * применяется к базе данных в любом случае, даже если счётчик в базе данных уже достиг лимита.
+ * </p>
+ * <p>
+ * После применения записей счётчики объединяются со значениями из базы данных ({@link #observe(UserData)}),
+ * поэтому учитываются и запросы, обработанные другими узлами или до перезапуска. Пока пользователь не
+ * применялся после старта, лимит может быть превышен на количество запросов, принятых до первого
+ * применения. Счётчики с истёкшим окном периодически удаляются; если отслеживается
+ * {@code game.request-quota.max-users} пользователей, запросы новых пользователей принимаются без проверки.
+ * Количество отслеживаемых пользователей публикуется в метрике {@code game.request-quota.users}.
+ * </p>
+ */
+@Service
+public class RequestQuotaService {
+
+    private final Clock clock;
+    private final int maxUsers;
+    private final Map<UUID, Quota> quotas = new ConcurrentHashMap<>();
+
+    public RequestQuotaService(Clock clock,
+                               MeterRegistry registry,
+                               @Value("${game.request-quota.max-users:1000000}") int maxUsers) {
+        this.clock = clock;
+        this.maxUsers = maxUsers;
+        Gauge.builder("game.request-quota.users", quotas, Map::size).register(registry);
+    }
+
+    /**
+     * Учитывает принимаемый запрос.
+     *
+     * @param uuid      UUID пользователя.
+     * @param type      тип запроса.
+     * @param timestamp время приёма запроса в миллисекундах.
+     * @throws SyncLimitExceededException     если превышен лимит синхронизаций.
+     * @throws ActivityLimitExceededException если превышен лимит запросов статистики.
+     */
+    public void acquire(UUID uuid, IngestEntry.Type type, long timestamp) {
+        Quota quota = quota(uuid);
+        if (quota == null) {
+            return;
+        }
+        synchronized (quota) {
+            if (type == IngestEntry.Type.SYNC) {
+                if (timestamp - quota.lastSyncTime > UserDataService.LIMIT_WINDOW_MS) {
+                    quota.syncCount = 0;
+                }
+                if (quota.syncCount >= UserDataService.SYNC_LIMIT) {
+                    throw new SyncLimitExceededException(MESSAGE_SYNC,
+                            UserDataService.retryAfterSeconds(quota.lastSyncTime, timestamp));
+                }
+                quota.syncCount++;
+                quota.lastSyncTime = Math.max(quota.lastSyncTime, timestamp);
+            } else {
+                if (timestamp - quota.lastStatTime > UserDataService.LIMIT_WINDOW_MS) {
+                    quota.statCount = 0;
+                }
+                if (quota.statCount >= UserDataService.ACTIVITY_LIMIT) {
+                    throw new ActivityLimitExceededException(LIMIT_ACTIVITY,
+                            UserDataService.retryAfterSeconds(quota.lastStatTime, timestamp));
+                }
+                quota.statCount++;
+                quota.lastStatTime = Math.max(quota.lastStatTime, timestamp);
+            }
+        }
+    }
+
+    /**
+     * Возвращает учтённый запрос, который не удалось принять.
+     *
+     * @param uuid UUID пользователя.
+     * @param type тип запроса.
+     */
+    public void release(UUID uuid, IngestEntry.Type type) {
+        Quota quota = quotas.get(uuid);
+        if (quota == null) {
+            return;
+        }
+        synchronized (quota) {
+            if (type == IngestEntry.Type.SYNC) {
+                quota.syncCount = Math.max(0, quota.syncCount - 1);
+            } else {
+                quota.statCount = Math.max(0, quota.statCount - 1);
+            }
+        }
+    }
+
+    /**
+     * Объединяет счётчики пользователя со значениями, сохранёнными в базе данных.
+     *
+     * @param userData данные пользователя после применения записей.
+     */
+    public void observe(UserData userData) {
+        Quota quota = quota(userData.getUuid());
+        if (quota == null) {
+            return;
+        }
+        synchronized (quota) {
+            quota.syncCount = merge(quota.syncCount, quota.lastSyncTime,
+                    userData.getSyncCount(), userData.getLastSyncTime());
+            quota.lastSyncTime = Math.max(quota.lastSyncTime, userData.getLastSyncTime());
+            quota.statCount = merge(quota.statCount, quota.lastStatTime,
+                    userData.getStatCount(), userData.getLastStatTime());
+            quota.lastStatTime = Math.max(quota.lastStatTime, userData.getLastStatTime());
+        }
+    }
+
+    /**
+     * Удаляет счётчики, окна которых истекли.
+     */
+    @Scheduled(fixedDelayString = "${game.request-quota.prune-interval-ms:60000}")
+    public void prune() {
+        long oldest = clock.millis() - UserDataService.LIMIT_WINDOW_MS;
+        quotas.values().removeIf(quota -> {
+            synchronized (quota) {
+                return quota.lastSyncTime < oldest && quota.lastStatTime < oldest;
+            }
+        });
+    }
+
+    private Quota quota(UUID uuid) {
+        Quota quota = quotas.get(uuid);
+        if (quota != null || quotas.size() >= maxUsers) {
+            return quota;
+        }
+        return quotas.computeIfAbsent(uuid, u -> new Quota());
+    }
+
+    /**
+     * Счётчики из разных окон не складываются: если запросы разделены больше чем сутками,
+     * действует счётчик более позднего окна.
+     */
+    private static int merge(int count, long lastTime, int observedCount, long observedLastTime) {
+        if (Math.abs(lastTime - observedLastTime) > UserDataService.LIMIT_WINDOW_MS) {
+            return observedLastTime > lastTime ? observedCount : count;
+        }
+        return Math.max(count, observedCount);
+    }
+
+    private static final class Quota {
+        private int syncCount;
+        private long lastSyncTime;
+        private int statCount;
+        private long lastStatTime;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.game.service;
+
+import com.example.game.dto.ShardRebalanceReport;
+import com.example.game.exception.DatabaseException;
+import com.example.game.repository.UserDataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static com.example.game.exception.DatabaseException.ERROR_SHARD_REBALANCE;
+
+/**
+ * Перераспределение пользователей по шардам базы данных после добавления шардов.
+ * <p>
+ * После добавления адреса в {@code game.sharding.urls} и перезапуска кольцо согласованного хеширования
+ * назначает части пользователей новые шарды. Сервис обходит шарды, находит пользователей,
+ * принадлежащих другому шарду, и переносит их порциями вместе с историей активности: порция
+ * вставляется на шард назначения одной транзакцией и только затем удаляется с исходного шарда.
+ * Пользователи, уже существующие на шарде назначения, не перезаписываются, поэтому прерванное
+ * перераспределение можно повторить.
+ * </p>
+ * <p>
+ * Пока пользователь не перенесён, запросы по нему не находят его на новом шарде, поэтому
+ * перераспределение следует запускать сразу после добавления шардов.
+ * </p>
+ */
+@Service
+public class ShardRebalanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalanceService.class);
+
+    private static final String SELECT_USERS_SQL = "SELECT uuid, money, country, activity, sync_count, stat_count, "
+            + "last_sync_time, last_stat_time, created_at, version FROM user_data WHERE uuid = ANY(?)";
+
+    private static final String SELECT_ACTIVITY_SQL = "SELECT uuid, activity, activity_date "
+            + "FROM user_activity_history WHERE uuid = ANY(?)";
+
+    private static final String INSERT_USER_SQL = "INSERT INTO user_data (uuid, money, country, activity, sync_count, "
+            + "stat_count, last_sync_time, last_stat_time, created_at, version) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SELECT_EXISTING_SQL = "SELECT uuid FROM user_data WHERE uuid = ANY(?)";
+
+    private static final String INSERT_ACTIVITY_SQL = "INSERT INTO user_activity_history (uuid, activity, activity_date) "
+            + "VALUES (?, ?, ?)";
+
+    private static final String DELETE_ACTIVITY_SQL = "DELETE FROM user_activity_history WHERE uuid = ANY(?)";
+
+    private static final String DELETE_USERS_SQL = "DELETE FROM user_data WHERE uuid = ANY(?)";
+
+    private final ShardService shardService;
+    private final UserDataRepository userDataRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final int batchSize;
+
+    public ShardRebalanceService(ShardService shardService,
+                                 UserDataRepository userDataRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${game.sharding.rebalance-batch-size:1000}") int batchSize) {
+        this.shardService = shardService;
+        this.userDataRepository = userDataRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Чтение выполняется вне ReplicaContext, то есть в основной базе: прочитанные строки удаляются
+        // на исходном шарде, и строки с отстающей реплики потеряли бы последние изменения
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Переносит на шарды-владельцы всех пользователей, хранящихся на других шардах.
+     *
+     * @return результат перераспределения.
+     * @throws DatabaseException если порцию не удалось перенести; уже перенесённые порции сохраняются.
+     */
+    public synchronized ShardRebalanceReport rebalance() {
+        long started = System.currentTimeMillis();
+        Map<String, Long> moved = new LinkedHashMap<>();
+        shardService.getShards().forEach(shard -> moved.put(shard, 0L));
+        long[] totals = new long[2];
+        try {
+            for (String source : shardService.getShards()) {
+                List<UUID> misplaced = findMisplaced(source);
+                if (!misplaced.isEmpty()) {
+                    log.info("Moving {} users from shard {}", misplaced.size(), source);
+                }
+                for (int from = 0; from < misplaced.size(); from += batchSize) {
+                    List<UUID> batch = misplaced.subList(from, Math.min(from + batchSize, misplaced.size()));
+                    moveBatch(source, batch, moved, totals);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Shard rebalance failed after moving {} users", moved.values().stream()
+                    .mapToLong(Long::longValue).sum(), e);
+            throw new DatabaseException(ERROR_SHARD_REBALANCE);
+        }
+        ShardRebalanceReport report = new ShardRebalanceReport(moved, totals[0], totals[1],
+                System.currentTimeMillis() - started);
+        log.info("Rebalanced shards: moved users {}, {} activity rows, {} already present, in {} ms",
+                report.movedUsers(), report.movedActivity(), report.skippedUsers(), report.elapsedMs());
+        return report;
+    }
+
+    private List<UUID> findMisplaced(String shard) {
+        List<UUID> misplaced = new ArrayList<>();
+        shardService.onShard(shard, () -> readOnlyTransactionTemplate.execute(status -> {
+            try (Stream<UUID> uuids = userDataRepository.streamAllUuids()) {
+                uuids.filter(uuid -> !shard.equals(shardService.shardFor(uuid))).forEach(misplaced::add);
+            }
+            return null;
+        }));
+        return misplaced;
+    }
+
+    private void moveBatch(String source, List<UUID> batch, Map<String, Long> moved, long[] totals) {
+        List<Object[]> users = shardService.onShard(source, () -> readOnlyTransactionTemplate.execute(status ->
+                jdbcTemplate.query(SELECT_USERS_SQL, uuids(batch), (rs, rowNum) -> new Object[]{
+                        rs.getObject(1, UUID.class), rs.getInt(2), rs.getString(3), rs.getInt(4), rs.getInt(5),
+                        rs.getInt(6), rs.getLong(7), rs.getLong(8), rs.getTimestamp(9),
+                        rs.getLong(10)})));
+        List<Object[]> activity = shardService.onShard(source, () -> readOnlyTransactionTemplate.execute(status ->
+                jdbcTemplate.query(SELECT_ACTIVITY_SQL, uuids(batch), (rs, rowNum) -> new Object[]{
+                        rs.getObject(1, UUID.class), rs.getInt(2), rs.getDate(3)})));
+
+        shardService.groupByShard(users, row -> (UUID) row[0]).forEach((target, targetUsers) -> {
+            Moved result = shardService.onShard(target, () -> transactionTemplate.execute(status -> {
+                Set<UUID> existing = new HashSet<>(jdbcTemplate.query(SELECT_EXISTING_SQL,
+                        uuids(targetUsers.stream().map(row -> (UUID) row[0]).toList()),
+                        (rs, rowNum) -> rs.getObject(1, UUID.class)));
+                List<Object[]> createdUsers = targetUsers.stream()
+                        .filter(row -> !existing.contains((UUID) row[0]))
+                        .toList();
+                Set<UUID> created = new HashSet<>();
+                createdUsers.forEach(row -> created.add((UUID) row[0]));
+                List<Object[]> createdActivity = activity.stream()
+                        .filter(row -> created.contains((UUID) row[0]))
+                        .toList();
+                jdbcTemplate.batchUpdate(INSERT_USER_SQL, createdUsers, batchSize, (ps, row) -> {
+                    for (int i = 0; i < row.length; i++) {
+                        ps.setObject(i + 1, row[i]);
+                    }
+                });
+                jdbcTemplate.batchUpdate(INSERT_ACTIVITY_SQL, createdActivity, batchSize, (ps, row) -> {
+                    ps.setObject(1, row[0]);
+                    ps.setInt(2, (Integer) row[1]);
+                    ps.setDate(3, (Date) row[2]);
+                });
+                return new Moved(createdUsers.size(), createdActivity.size());
+            }));
+            moved.merge(target, (long) result.users(), Long::sum);
+            totals[0] += result.activity();
+            totals[1] += targetUsers.size() - result.users();
+        });
+
+        // Удаление с исходного шарда выполняется только после фиксации вставки на шардах назначения
+        shardService.onShard(source, () -> transactionTemplate.execute(status -> {
+            jdbcTemplate.update(DELETE_ACTIVITY_SQL, uuids(batch));
+            return jdbcTemplate.update(DELETE_USERS_SQL, uuids(batch));
+        }));
+    }
+
+    private record Moved(int users, int activity) {
+    }
+
+    private static PreparedStatementSetter uuids(List<UUID> uuids) {
+        return ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", uuids.toArray()));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.game.service;
+
+import com.example.game.datasource.ShardContext;
+import com.example.game.datasource.ShardRing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Распределение пользователей по шардам базы данных.
+ * <p>
+ * Шард {@code shard-0} — основная база данных ({@code spring.datasource.*}), шарды
+ * {@code shard-1 .. shard-N} — базы из {@code game.sharding.urls}. Пользователь и его история
+ * активности хранятся на шарде, выбранном по UUID кольцом согласованного хеширования
+ * ({@link ShardRing}). Запросы по одному пользователю выполняются на его шарде, аналитические
+ * запросы — параллельно на всех шардах с последующим объединением результатов.
+ * </p>
+ * <p>
+ * Шард выбирается до начала транзакции: внутри транзакции все запросы выполняются
+ * на соединении, полученном при её начале. Если шардирование выключено, все действия
+ * выполняются на основной базе данных без переключения.
+ * </p>
+ */
+@Service
+public class ShardService {
+
+    private final ForkJoinPool analyticsPool;
+    private final boolean enabled;
+    private final ShardRing ring;
+
+    public ShardService(ForkJoinPool analyticsPool,
+                        @Value("${game.sharding.enabled:false}") boolean enabled,
+                        @Value("${game.sharding.urls:}") List<String> urls,
+                        @Value("${game.sharding.virtual-nodes:128}") int virtualNodes) {
+        this.analyticsPool = analyticsPool;
+        this.enabled = enabled;
+        int count = enabled ? urls.size() + 1 : 1;
+        List<String> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(ShardRing.shardName(i));
+        }
+        this.ring = new ShardRing(shards, virtualNodes);
+    }
+
+    /**
+     * @return {@code true}, если данные пользователей распределены по нескольким базам данных.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return имена шардов; при выключенном шардировании — только основная база данных.
+     */
+    public List<String> getShards() {
+        return ring.getShards();
+    }
+
+    /**
+     * @param uuid UUID пользователя.
+     * @return имя шарда пользователя.
+     */
+    public String shardFor(UUID uuid) {
+        return ring.shardFor(uuid);
+    }
+
+    /**
+     * Выполняет действие на указанном шарде.
+     *
+     * @param shard  имя шарда.
+     * @param action действие; транзакции начинаются внутри него.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     * @throws IllegalStateException если вызван внутри транзакции.
+     */
+    public <T> T onShard(String shard, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Database shard must be selected before a transaction starts.");
+        }
+        return ShardContext.call(shard, action);
+    }
+
+    /**
+     * Выполняет действие на шарде пользователя.
+     *
+     * @param uuid   UUID пользователя.
+     * @param action действие; транзакции начинаются внутри него.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     */
+    public <T> T onShardOf(UUID uuid, Supplier<T> action) {
+        return enabled ? onShard(shardFor(uuid), action) : action.get();
+    }
+
+    /**
+     * Последовательно выполняет действие на каждом шарде.
+     *
+     * @param action действие, получающее имя шарда.
+     */
+    public void forEachShard(Consumer<String> action) {
+        for (String shard : getShards()) {
+            onShard(shard, () -> {
+                action.accept(shard);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Выполняет запрос на всех шардах параллельно в пуле аналитических запросов.
+     *
+     * @param query запрос; транзакции начинаются внутри него.
+     * @param <T>   тип результата.
+     * @return результаты шардов в порядке {@link #getShards()}.
+     */
+    public <T> List<T> scatter(Supplier<T> query) {
+        if (!enabled) {
+            return List.of(query.get());
+        }
+        return analyticsPool.submit(() -> getShards().parallelStream()
+                .map(shard -> onShard(shard, query))
+                .toList()).join();
+    }
+
+    /**
+     * Группирует элементы по шардам их пользователей, сохраняя порядок элементов.
+     *
+     * @param items элементы.
+     * @param uuid  UUID пользователя элемента.
+     * @param <T>   тип элементов.
+     * @return элементы по именам шардов; шарды без элементов отсутствуют.
+     */
+    public <T> Map<String, List<T>> groupByShard(Collection<T> items, Function<T, UUID> uuid) {
+        if (!enabled) {
+            return items.isEmpty() ? Map.of() : Map.of(getShards().get(0), new ArrayList<>(items));
+        }
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            groups.computeIfAbsent(shardFor(uuid.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return groups;
+    }
+}
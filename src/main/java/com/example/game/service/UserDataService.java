@@ -1,12 +1,17 @@
 package com.example.game.service;
 
 
+import com.example.game.cache.CacheKeyPart;
+import com.example.game.event.UserDataUpdatedEvent;
 import com.example.game.exception.ActivityLimitExceededException;
+import com.example.game.exception.ConcurrentUpdateException;
 import com.example.game.exception.InvalidJsonException;
+import com.example.game.exception.ServiceOverloadedException;
 import com.example.game.exception.SyncLimitExceededException;
 import com.example.game.exception.UserNotFoundException;
 import com.example.game.model.UserData;
 import com.example.game.repository.UserDataRepository;
+import com.example.game.storage.IngestEntry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -17,10 +22,12 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.UUID;
 
 import static com.example.game.exception.ActivityLimitExceededException.LIMIT_ACTIVITY;
 import static com.example.game.exception.InvalidJsonException.INVALID_JSON_FORMAT;
@@ -35,6 +42,10 @@ import static com.example.game.exception.UserNotFoundException.USER_NOT_FOUND;
  *  Этот класс предоставляет методы для обработки синхронизации данных, получение данных пользователя
  *  и обработку игровой активности.
  *  </p>
+ *  <p>
+ *  Изменения данных пользователя защищены оптимистичной блокировкой: если запись изменилась
+ *  между чтением и сохранением, обновление повторяется в {@link OptimisticRetryService}.
+ *  </p>
  */
 @Service
 public class UserDataService {
@@ -42,13 +53,62 @@ public class UserDataService {
     private final UserDataRepository userDataRepository;
     private final ObjectMapper objectMapper;
     private final Clock clock;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IngestLogService ingestLogService;
+    private final UserStateService userStateService;
+    private final KnownUsersService knownUsersService;
+    private final ShardService shardService;
+    private final OptimisticRetryService optimisticRetryService;
+    private final ActivityPipelineService activityPipelineService;
+    private final RequestQuotaService requestQuotaService;
+
+    /**
+     * Максимальное количество синхронизаций пользователя за сутки.
+     */
+    static final int SYNC_LIMIT = 100;
+
+    /**
+     * Максимальное количество запросов статистики пользователя за сутки.
+     */
+    static final int ACTIVITY_LIMIT = 10000;
+
+    /**
+     * Длительность окна суточных лимитов в миллисекундах.
+     */
+    static final long LIMIT_WINDOW_MS = 86_400_000L;
+
+    /**
+     * Максимальная длина кода страны (столбец {@code country VARCHAR(3)}).
+     */
+    static final int MAX_COUNTRY_LENGTH = 3;
+
+    /**
+     * Сообщение об ошибке при слишком длинном коде страны.
+     */
+    public static final String INVALID_COUNTRY = "Country code must not exceed " + MAX_COUNTRY_LENGTH + " characters.";
+
+    private static final String SYNC_ENDPOINT = "sync";
+    private static final String USER_DATA_ENDPOINT = "user-data";
+    private static final String ACTIVITY_ENDPOINT = "activity";
 
     private static final Logger log = LoggerFactory.getLogger(UserDataService.class);
 
     @Autowired
-    public UserDataService(UserDataRepository userDataRepository, Clock clock, ObjectMapper objectMapper) {
+    public UserDataService(UserDataRepository userDataRepository, Clock clock, ObjectMapper objectMapper,
+                           ApplicationEventPublisher eventPublisher, IngestLogService ingestLogService,
+                           UserStateService userStateService, KnownUsersService knownUsersService,
+                           ShardService shardService, OptimisticRetryService optimisticRetryService,
+                           ActivityPipelineService activityPipelineService, RequestQuotaService requestQuotaService) {
         this.userDataRepository = userDataRepository;
         this.clock = clock;
+        this.eventPublisher = eventPublisher;
+        this.ingestLogService = ingestLogService;
+        this.userStateService = userStateService;
+        this.knownUsersService = knownUsersService;
+        this.shardService = shardService;
+        this.optimisticRetryService = optimisticRetryService;
+        this.activityPipelineService = activityPipelineService;
+        this.requestQuotaService = requestQuotaService;
         this.objectMapper = objectMapper != null ? objectMapper : new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
         this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -64,38 +124,57 @@ public class UserDataService {
      * @throws UserNotFoundException Если пользователь с данным UUID не найден.
      * @throws SyncLimitExceededException Если превышен лимит синхронизаций для пользователя.
      * @throws InvalidJsonException Если данные в формате JSON некорректны.
+     * @throws ConcurrentUpdateException Если данные не удалось сохранить из-за параллельных изменений.
      */
-    @CachePut(value = "users", key = "#uuid")
-    public String processSyncData(String uuid, String jsonData) {
+    @CachePut("users")
+    public String processSyncData(@CacheKeyPart UUID uuid, String jsonData) {
         long currentTime = Instant.now().toEpochMilli();
         log.info("Processing sync data for user: {}", uuid);
+        checkKnownUser(uuid);
 
-        UserData userData = userDataRepository.findById(uuid)
-                .orElseThrow(() -> new UserNotFoundException(USER_NOT_FOUND));
+        if (userStateService.isEnabled()) {
+            JsonNode rootNode = readSyncData(uuid, jsonData);
+            int money = rootNode.path("money").asInt();
+            String country = readCountry(rootNode);
+            UserDataUpdatedEvent event = userStateService.execute(uuid, userData -> {
+                if (syncLimitReached(userData, currentTime)) {
+                    throw new SyncLimitExceededException(MESSAGE_SYNC,
+                            retryAfterSeconds(userData.getLastSyncTime(), currentTime));
+                }
+                return applySync(userData, money, country, currentTime);
+            });
+            eventPublisher.publishEvent(event);
+            log.info("Sync data successfully processed for user: {}", uuid);
+            return "Data received successfully.";
+        }
 
-        if (userData.getSyncCount() >= 100) {
-            throw new SyncLimitExceededException(MESSAGE_SYNC);
+        if (ingestLogService.isEnabled()) {
+            JsonNode rootNode = readSyncData(uuid, jsonData);
+            long lsn = appendToIngestLog(IngestEntry.sync(uuid, currentTime, rootNode.path("money").asInt(),
+                    readCountry(rootNode)));
+            log.info("Sync data accepted into ingest log for user: {} at lsn {}", uuid, lsn);
+            return "Data received successfully.";
         }
 
-        checkAndResetCounters(userData, false, currentTime);
+        return optimisticRetryService.execute(SYNC_ENDPOINT, () -> {
+            UserData userData = findUser(uuid);
 
-        try {
-            JsonNode rootNode = objectMapper.readTree(jsonData);
+            if (syncLimitReached(userData, currentTime)) {
+                throw new SyncLimitExceededException(MESSAGE_SYNC,
+                        retryAfterSeconds(userData.getLastSyncTime(), currentTime));
+            }
+
+            JsonNode rootNode = readSyncData(uuid, jsonData);
             int money = rootNode.path("money").asInt();
-            String country = rootNode.path("country").asText();
+            String country = readCountry(rootNode);
 
-            userData.setMoney(money);
-            userData.setCountry(country);
-            userData.setSyncCount(userData.getSyncCount() + 1);
-            userData.setLastSyncTime(currentTime);
-            userDataRepository.save(userData);
+            UserDataUpdatedEvent event = applySync(userData, money, country, currentTime);
+            saveUser(userData);
+            eventPublisher.publishEvent(event);
 
             log.info("Sync data successfully processed for user: {}", uuid);
             return "Data received successfully.";
-        } catch (JsonProcessingException e) {
-            log.error("Error parsing JSON for user: {}", uuid, e);
-            throw new InvalidJsonException(INVALID_JSON_FORMAT);
-        }
+        });
     }
 
     /**
@@ -106,25 +185,165 @@ public class UserDataService {
      * @throws UserNotFoundException Если пользователь с данным UUID не найден.
      * @throws SyncLimitExceededException Если превышен лимит запросов.
      * @throws InvalidJsonException Если возникла ошибка при сериализации данных.
+     * @throws ConcurrentUpdateException Если данные не удалось сохранить из-за параллельных изменений.
      */
-    @Cacheable(value = "users", key = "#uuid")
-    public String getUserData(String uuid) {
+    @Cacheable("users")
+    public String getUserData(UUID uuid) {
         long currentTime = Instant.now(clock).toEpochMilli();
         log.info("Fetching user data for UUID: {}", uuid);
+        checkKnownUser(uuid);
+
+        if (userStateService.isEnabled()) {
+            return userStateService.execute(uuid, userData -> {
+                registerDataRequest(userData, currentTime);
+                return writeUserData(uuid, userData);
+            });
+        }
+
+        return optimisticRetryService.execute(USER_DATA_ENDPOINT, () -> {
+            UserData userData = findUser(uuid);
 
-        UserData userData = userDataRepository.findById(uuid)
-                .orElseThrow(() -> new UserNotFoundException(USER_NOT_FOUND));
+            registerDataRequest(userData, currentTime);
+            saveUser(userData);
+
+            return writeUserData(uuid, userData);
+        });
+    }
+
+    /**
+     * Обработка данных активности пользователя и обновление статистики.
+     *
+     * @param uuid уникальный идентификатор пользователя.
+     * @param activity количество активности, которое нужно добавить к текущим данным пользователя.
+     * @return сообщение об успешной обработке данных активности.
+     * @throws UserNotFoundException если пользователь с заданным UUID не найден.
+     * @throws ActivityLimitExceededException если лимит на количество запросов статистики превышен.
+     * @throws ConcurrentUpdateException если данные не удалось сохранить из-за параллельных изменений.
+     * @throws ServiceOverloadedException если конвейер приёма активности переполнен.
+     */
+    @CachePut("users")
+    public String processActivityData(@CacheKeyPart UUID uuid, int activity) {
+        long currentTime = Instant.now().toEpochMilli(); // Вычисляем время для текущего запроса
+        log.info("Processing activity data for user: {}", uuid);
+        checkKnownUser(uuid);
+
+        if (userStateService.isEnabled()) {
+            UserDataUpdatedEvent event = userStateService.execute(uuid, userData -> {
+                if (activityLimitReached(userData, currentTime)) {
+                    throw new ActivityLimitExceededException(LIMIT_ACTIVITY,
+                            retryAfterSeconds(userData.getLastStatTime(), currentTime));
+                }
+                return applyActivity(userData, activity, currentTime);
+            });
+            eventPublisher.publishEvent(event);
+            return "Activity data received successfully.";
+        }
+
+        if (activityPipelineService.isEnabled()) {
+            publishToPipeline(uuid, activity, currentTime);
+            return "Activity data received successfully.";
+        }
+
+        if (ingestLogService.isEnabled()) {
+            long lsn = appendToIngestLog(IngestEntry.activity(uuid, currentTime, activity));
+            log.info("Activity data accepted into ingest log for user: {} at lsn {}", uuid, lsn);
+            return "Activity data received successfully.";
+        }
+
+        return optimisticRetryService.execute(ACTIVITY_ENDPOINT, () -> {
+            UserData userData = findUser(uuid);
+
+            if (activityLimitReached(userData, currentTime)) {
+                throw new ActivityLimitExceededException(LIMIT_ACTIVITY,
+                        retryAfterSeconds(userData.getLastStatTime(), currentTime));
+            }
+
+            UserDataUpdatedEvent event = applyActivity(userData, activity, currentTime);
+            saveUser(userData);
+            eventPublisher.publishEvent(event);
+
+            return "Activity data received successfully.";
+        });
+    }
+
+    /**
+     * Отклоняет запрос к пользователю, который точно не существует, без обращения к базе данных.
+     */
+    private void checkKnownUser(UUID uuid) {
+        if (knownUsersService.isDefinitelyUnknown(uuid)) {
+            throw new UserNotFoundException(USER_NOT_FOUND);
+        }
+    }
+
+    private UserData findUser(UUID uuid) {
+        return shardService.onShardOf(uuid, () -> userDataRepository.findById(uuid)).orElseThrow(() -> {
+            knownUsersService.recordMissing(uuid);
+            return new UserNotFoundException(USER_NOT_FOUND);
+        });
+    }
 
+    /**
+     * Добавляет запись в журнал приёма данных, проверив суточный лимит по счётчикам принятых запросов.
+     * <p>
+     * Пользователь не читается из базы данных: запрос подтверждается и при её временной недоступности.
+     * </p>
+     */
+    private long appendToIngestLog(IngestEntry entry) {
+        requestQuotaService.acquire(entry.uuid(), entry.type(), entry.timestamp());
+        try {
+            return ingestLogService.append(entry);
+        } catch (RuntimeException e) {
+            requestQuotaService.release(entry.uuid(), entry.type());
+            throw e;
+        }
+    }
+
+    /**
+     * Публикует событие в конвейер активности, проверив суточный лимит по счётчикам принятых запросов.
+     */
+    private void publishToPipeline(UUID uuid, int activity, long currentTime) {
+        requestQuotaService.acquire(uuid, IngestEntry.Type.ACTIVITY, currentTime);
+        try {
+            activityPipelineService.publish(uuid, activity, currentTime);
+        } catch (RuntimeException e) {
+            requestQuotaService.release(uuid, IngestEntry.Type.ACTIVITY);
+            throw e;
+        }
+    }
+
+    private static String readCountry(JsonNode rootNode) {
+        String country = rootNode.path("country").asText();
+        if (country.length() > MAX_COUNTRY_LENGTH) {
+            throw new IllegalArgumentException(INVALID_COUNTRY);
+        }
+        return country;
+    }
+
+    private void saveUser(UserData userData) {
+        shardService.onShardOf(userData.getUuid(), () -> userDataRepository.save(userData));
+    }
+
+    private JsonNode readSyncData(UUID uuid, String jsonData) {
+        try {
+            return objectMapper.readTree(jsonData);
+        } catch (JsonProcessingException e) {
+            log.error("Error parsing JSON for user: {}", uuid, e);
+            throw new InvalidJsonException(INVALID_JSON_FORMAT);
+        }
+    }
+
+    private void registerDataRequest(UserData userData, long currentTime) {
         checkAndResetCounters(userData, false, currentTime);
 
         if (userData.getSyncCount() >= 1) {
-            throw new SyncLimitExceededException(MESSAGE_RQ);
+            throw new SyncLimitExceededException(MESSAGE_RQ, retryAfterSeconds(userData.getLastSyncTime(), currentTime));
         }
 
         userData.setSyncCount(userData.getSyncCount() + 1);
         userData.setLastSyncTime(currentTime);
-        userDataRepository.save(userData);
+    }
 
+    private String writeUserData(UUID uuid, UserData userData) {
         try {
             String jsonResult = objectMapper.writeValueAsString(userData);
             log.info("Serialized userData: {}", jsonResult);
@@ -137,34 +356,87 @@ public class UserDataService {
     }
 
     /**
-     * Обработка данных активности пользователя и обновление статистики.
+     * Применяет синхронизацию к данным пользователя без сохранения.
+     * <p>
+     * Используется как при непосредственной обработке запроса, так и при применении
+     * записей журнала приёма данных.
+     * </p>
      *
-     * @param uuid уникальный идентификатор пользователя.
-     * @param activity количество активности, которое нужно добавить к текущим данным пользователя.
-     * @return сообщение об успешной обработке данных активности.
-     * @throws UserNotFoundException если пользователь с заданным UUID не найден.
-     * @throws ActivityLimitExceededException если лимит на количество запросов статистики превышен.
+     * @param userData    данные пользователя.
+     * @param money       количество денег.
+     * @param country     код страны.
+     * @param currentTime время приёма запроса.
+     * @return событие изменения данных пользователя с прежними значениями.
      */
-    @CachePut(value = "users", key = "#uuid")
-    public String processActivityData(String uuid, int activity) {
-        long currentTime = Instant.now().toEpochMilli(); // Вычисляем время для текущего запроса
-        log.info("Processing activity data for user: {}", uuid);
-
-        UserData userData = userDataRepository.findById(uuid)
-                .orElseThrow(() -> new UserNotFoundException(USER_NOT_FOUND));
-
-        if (userData.getStatCount() >= 10000) {
-            throw new ActivityLimitExceededException(LIMIT_ACTIVITY);
-        }
+    static UserDataUpdatedEvent applySync(UserData userData, int money, String country, long currentTime) {
+        String previousCountry = userData.getCountry();
+        int previousMoney = userData.getMoney();
+        checkAndResetCounters(userData, false, currentTime);
+        userData.setMoney(money);
+        userData.setCountry(country);
+        userData.setSyncCount(userData.getSyncCount() + 1);
+        userData.setLastSyncTime(currentTime);
+        return new UserDataUpdatedEvent(userData.getUuid(), country, money, 0, UserDataUpdatedEvent.Source.SYNC,
+                currentTime, previousCountry, previousMoney, userData.getActivity());
+    }
 
+    /**
+     * Применяет игровую активность к данным пользователя без сохранения.
+     *
+     * @param userData    данные пользователя.
+     * @param activity    добавляемая активность.
+     * @param currentTime время приёма запроса.
+     * @return событие изменения данных пользователя с прежними значениями.
+     */
+    static UserDataUpdatedEvent applyActivity(UserData userData, int activity, long currentTime) {
+        int previousActivity = userData.getActivity();
         checkAndResetCounters(userData, true, currentTime);
-
-        userData.setActivity(userData.getActivity() + activity);
+        userData.setActivity(previousActivity + activity);
         userData.setStatCount(userData.getStatCount() + 1);
         userData.setLastStatTime(currentTime);
-        userDataRepository.save(userData);
+        return new UserDataUpdatedEvent(userData.getUuid(), userData.getCountry(), userData.getMoney(), activity,
+                UserDataUpdatedEvent.Source.ACTIVITY, currentTime, userData.getCountry(), userData.getMoney(),
+                previousActivity);
+    }
 
-        return "Activity data received successfully.";
+    /**
+     * Проверяет суточный лимит синхронизаций, предварительно сбросив счётчик истёкшего окна.
+     * <p>
+     * Без сброса счётчик, достигший лимита, не сбрасывался бы никогда: сброс выполняется
+     * только при применении запроса, а запрос сверх лимита отклоняется.
+     * </p>
+     *
+     * @param userData    данные пользователя.
+     * @param currentTime время приёма запроса.
+     * @return {@code true}, если лимит синхронизаций за текущие сутки исчерпан.
+     */
+    static boolean syncLimitReached(UserData userData, long currentTime) {
+        checkAndResetCounters(userData, false, currentTime);
+        return userData.getSyncCount() >= SYNC_LIMIT;
+    }
+
+    /**
+     * Проверяет суточный лимит запросов статистики, предварительно сбросив счётчик истёкшего окна.
+     *
+     * @param userData    данные пользователя.
+     * @param currentTime время приёма запроса.
+     * @return {@code true}, если лимит запросов статистики за текущие сутки исчерпан.
+     */
+    static boolean activityLimitReached(UserData userData, long currentTime) {
+        checkAndResetCounters(userData, true, currentTime);
+        return userData.getStatCount() >= ACTIVITY_LIMIT;
+    }
+
+    /**
+     * Время до сброса суточного счётчика для заголовка {@code Retry-After}.
+     *
+     * @param lastTime    время последнего учтённого запроса в миллисекундах.
+     * @param currentTime время текущего запроса в миллисекундах.
+     * @return количество секунд до сброса счётчика, не меньше одной.
+     */
+    static long retryAfterSeconds(long lastTime, long currentTime) {
+        long remainingMs = lastTime + LIMIT_WINDOW_MS - currentTime;
+        return Math.max(1, (remainingMs + 999) / 1000);
     }
 
     /**
@@ -179,10 +451,10 @@ public class UserDataService {
      * @param isStatCheck флаг, определяющий, нужно ли сбрасывать счетчик статистики (если true) или синхронизации (если false).
      * @param currentTime текущее время, использующееся для проверки истечения 24 часов.
      */
-    private void checkAndResetCounters(UserData userData, boolean isStatCheck, long currentTime) {
+    private static void checkAndResetCounters(UserData userData, boolean isStatCheck, long currentTime) {
         long timeDiff = currentTime - (isStatCheck ? userData.getLastStatTime() : userData.getLastSyncTime());
 
-        if (timeDiff > 86400000) {
+        if (timeDiff > LIMIT_WINDOW_MS) {
             if (isStatCheck) {
                 userData.setStatCount(0);
                 log.info("Reset stat count for user: {}", userData.getUuid());
@@ -0,0 +1,193 @@
+package com.example.game.service;
+
+import com.example.game.dto.UserImportReport;
+import com.example.game.exception.DatabaseException;
+import com.example.game.storage.UserImportReader;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.example.game.exception.DatabaseException.ERROR_USER_IMPORT;
+
+/**
+ * Сервис массового импорта пользователей.
+ * <p>
+ * Входные данные читаются потоково {@link UserImportReader} и загружаются порциями: каждая порция
+ * передаётся протоколом {@code COPY} во временную таблицу, откуда переносится в {@code user_data}
+ * одним {@code INSERT ... ON CONFLICT DO NOTHING}. Уже существующие UUID и повторы внутри файла
+ * пропускаются (при повторе сохраняется первая строка). Каждая порция фиксируется отдельной
+ * транзакцией, поэтому после сбоя импорт можно повторить тем же файлом.
+ * </p>
+ * <p>
+ * Если пользователи распределены по шардам базы данных ({@link ShardService}), порция делится
+ * по шардам пользователей и загружается на каждый шард отдельной транзакцией.
+ * </p>
+ * <p>
+ * После загрузки созданные пользователи добавляются в рейтинг {@link UserRankService}
+ * и фильтр известных пользователей {@link KnownUsersService}, а кэши рейтингов и количества новых пользователей очищаются.
+ * </p>
+ */
+@Service
+public class UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportService.class);
+
+    private static final String CREATE_STAGING_SQL = "CREATE TEMP TABLE user_import_staging ("
+            + "line BIGINT, uuid UUID, money INT, country VARCHAR(3), activity INT, created_at TIMESTAMP) ON COMMIT DROP";
+
+    private static final String COPY_SQL = "COPY user_import_staging (line, uuid, money, country, activity, created_at) "
+            + "FROM STDIN";
+
+    private static final String INSERT_SQL = "INSERT INTO user_data (uuid, money, country, activity, sync_count, "
+            + "stat_count, last_sync_time, last_stat_time, created_at) "
+            + "SELECT DISTINCT ON (uuid) uuid, money, country, activity, 0, 0, 0, 0, created_at "
+            + "FROM user_import_staging ORDER BY uuid, line "
+            + "ON CONFLICT (uuid) DO NOTHING RETURNING uuid, country, money";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserRankService userRankService;
+    private final KnownUsersService knownUsersService;
+    private final ShardService shardService;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final int chunkSize;
+    private final int maxErrors;
+
+    public UserImportService(JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             UserRankService userRankService,
+                             KnownUsersService knownUsersService,
+                             ShardService shardService,
+                             ObjectMapper objectMapper,
+                             Clock clock,
+                             @Value("${game.import.chunk-size:50000}") int chunkSize,
+                             @Value("${game.import.max-errors:100}") int maxErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userRankService = userRankService;
+        this.knownUsersService = knownUsersService;
+        this.shardService = shardService;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Импортирует пользователей из входного потока.
+     *
+     * @param input  входные данные в UTF-8.
+     * @param format формат входных данных.
+     * @return результат импорта.
+     * @throws IllegalArgumentException если заголовок CSV некорректен.
+     * @throws DatabaseException        если порцию не удалось загрузить в базу данных.
+     */
+    @CacheEvict(value = {"topUsers", "globalTopUsers", "topUsersBatch", "newUsersCount", "newUsersCountBatch"},
+            allEntries = true)
+    public UserImportReport importUsers(InputStream input, UserImportReader.Format format) {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now(clock);
+        long valid = 0;
+        long inserted = 0;
+        try (UserImportReader reader = new UserImportReader(input, format, objectMapper, maxErrors)) {
+            List<UserImportReader.Row> rows;
+            while (!(rows = reader.next(chunkSize)).isEmpty()) {
+                for (Map.Entry<String, List<UserImportReader.Row>> shard
+                        : shardService.groupByShard(rows, UserImportReader.Row::uuid).entrySet()) {
+                    List<UserImportReader.Row> batch = shard.getValue();
+                    List<InsertedUser> created = shardService.onShard(shard.getKey(), () ->
+                            transactionTemplate.execute(status ->
+                                    jdbcTemplate.execute((ConnectionCallback<List<InsertedUser>>) connection ->
+                                            copyChunk(connection, batch, now))));
+                    created.forEach(user -> {
+                        knownUsersService.add(user.uuid());
+                        userRankService.update(user.uuid(), user.country(), user.money());
+                    });
+                    inserted += created.size();
+                }
+                valid += rows.size();
+                log.debug("Imported chunk of {} rows, {} users created so far", rows.size(), inserted);
+            }
+            long elapsedMs = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+            long received = valid + reader.getInvalidRows();
+            UserImportReport report = new UserImportReport(received, reader.getInvalidRows(), inserted,
+                    valid - inserted, elapsedMs, received * 1000 / elapsedMs, reader.getErrors());
+            log.info("Imported {} of {} users ({} invalid, {} duplicates) in {} ms, {} rows/s", inserted, received,
+                    report.invalidRows(), report.duplicateRows(), elapsedMs, report.rowsPerSecond());
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read user import input", e);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.error("User import failed after {} users were created", inserted, e);
+            throw new DatabaseException(ERROR_USER_IMPORT);
+        }
+    }
+
+    private static List<InsertedUser> copyChunk(Connection connection, List<UserImportReader.Row> rows,
+                                                LocalDateTime now) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING_SQL);
+        }
+        try {
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(encode(rows, now)));
+        } catch (IOException e) {
+            throw new SQLException("Failed to stream rows to COPY", e);
+        }
+        List<InsertedUser> created = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL);
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                created.add(new InsertedUser(resultSet.getObject(1, UUID.class), resultSet.getString(2),
+                        resultSet.getInt(3)));
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Кодирует строки в текстовый формат {@code COPY}. Значения уже проверены читателем
+     * и не содержат табуляций, переводов строк и обратных косых черт.
+     */
+    static String encode(List<UserImportReader.Row> rows, LocalDateTime now) {
+        StringBuilder text = new StringBuilder(rows.size() * 96);
+        for (UserImportReader.Row row : rows) {
+            text.append(row.line()).append('\t')
+                    .append(row.uuid()).append('\t')
+                    .append(row.money()).append('\t')
+                    .append(row.country()).append('\t')
+                    .append(row.activity()).append('\t')
+                    .append(row.createdAt() == null ? now : row.createdAt()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private record InsertedUser(UUID uuid, String country, int money) {
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.game.service;
+
+import com.example.game.dto.RankedUser;
+import com.example.game.dto.UserRankResponse;
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.exception.UserNotFoundException;
+import com.example.game.repository.AnalyticsRepository;
+import com.example.game.util.RankedSkipList;
+import com.example.game.util.Uuids;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static com.example.game.exception.UserNotFoundException.USER_NOT_FOUND;
+
+/**
+ * Сервис рейтинга пользователей внутри страны по количеству денег.
+ * <p>
+ * Для каждой страны в памяти поддерживается индексированный список с пропусками
+ * ({@link RankedSkipList}), упорядоченный по убыванию денег и затем по UUID. Позиция
+ * пользователя и его соседи по рейтингу вычисляются за O(log n) без запросов к базе данных.
+ * Индекс заполняется из {@code user_data} при старте и обновляется событиями синхронизации.
+ * </p>
+ */
+@Service
+public class UserRankService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserRankService.class);
+
+    /**
+     * Максимальное количество соседей с каждой стороны.
+     */
+    private static final int MAX_NEIGHBORS = 100;
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::money).reversed()
+            .thenComparing(Entry::uuid, Uuids.UNSIGNED_ORDER);
+
+    private final AnalyticsRepository analyticsRepository;
+    private final ShardService shardService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean warmUp;
+    private final Map<String, RankedSkipList<Entry>> rankings = new ConcurrentHashMap<>();
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    public UserRankService(AnalyticsRepository analyticsRepository,
+                           ShardService shardService,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${game.rank-index.warm-up:true}") boolean warmUp) {
+        this.analyticsRepository = analyticsRepository;
+        this.shardService = shardService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Заполняет рейтинги данными всех пользователей всех шардов после старта приложения.
+     * <p>
+     * Пользователи, уже обновлённые событиями во время загрузки, не перезаписываются.
+     * </p>
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadRankings() {
+        if (!warmUp) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        int[] loaded = new int[1];
+        shardService.forEachShard(shard -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> users = analyticsRepository.streamMoneyByUser()) {
+                users.forEach(row -> {
+                    if (row[1] != null) {
+                        putIfAbsent((UUID) row[0], (String) row[1], (Integer) row[2]);
+                        loaded[0]++;
+                    }
+                });
+            }
+        }));
+        log.info("Loaded {} users into rank index in {} ms", loaded[0], System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Обновляет позицию пользователя после изменения его данных.
+     *
+     * @param event событие изменения данных пользователя.
+     */
+    @EventListener
+    public void onUserDataUpdated(UserDataUpdatedEvent event) {
+        if (event.country() == null || event.country().isBlank()) {
+            return;
+        }
+        update(event.uuid(), event.country(), event.money());
+    }
+
+    /**
+     * Устанавливает страну и количество денег пользователя в рейтинге.
+     *
+     * @param uuid    UUID пользователя.
+     * @param country код страны.
+     * @param money   количество денег.
+     */
+    public void update(UUID uuid, String country, int money) {
+        Entry entry = new Entry(uuid, country, money);
+        // compute сериализует обновления одного пользователя, чтобы в рейтинге не оставалось устаревших записей
+        entries.compute(uuid, (key, previous) -> {
+            if (entry.equals(previous)) {
+                return previous;
+            }
+            if (previous != null) {
+                RankedSkipList<Entry> previousRanking = ranking(previous.country());
+                synchronized (previousRanking) {
+                    previousRanking.remove(previous);
+                }
+            }
+            add(entry);
+            return entry;
+        });
+    }
+
+    /**
+     * Возвращает позицию пользователя в рейтинге его страны и соседей по рейтингу.
+     *
+     * @param uuid      UUID пользователя.
+     * @param neighbors количество соседей с каждой стороны.
+     * @return позиция пользователя и соседи.
+     * @throws IllegalArgumentException если количество соседей вне допустимого диапазона.
+     * @throws UserNotFoundException    если пользователь отсутствует в рейтинге.
+     */
+    public UserRankResponse getUserRank(UUID uuid, int neighbors) {
+        if (neighbors < 0 || neighbors > MAX_NEIGHBORS) {
+            throw new IllegalArgumentException("The number of neighbors must be between 0 and " + MAX_NEIGHBORS + ".");
+        }
+        while (true) {
+            Entry entry = entries.get(uuid);
+            if (entry == null) {
+                throw new UserNotFoundException(USER_NOT_FOUND);
+            }
+            RankedSkipList<Entry> ranking = ranking(entry.country());
+            synchronized (ranking) {
+                int rank = ranking.rank(entry);
+                if (rank == 0) {
+                    // Позиция пользователя изменилась между чтением записи и захватом блокировки
+                    continue;
+                }
+                List<Entry> range = ranking.range(rank - neighbors, rank + neighbors);
+                int firstRank = Math.max(1, rank - neighbors);
+                List<RankedUser> neighborList = new ArrayList<>(range.size());
+                for (int i = 0; i < range.size(); i++) {
+                    neighborList.add(new RankedUser(firstRank + i, range.get(i).uuid(), range.get(i).money()));
+                }
+                return new UserRankResponse(uuid, entry.country(), entry.money(), rank, ranking.size(), neighborList);
+            }
+        }
+    }
+
+    private void putIfAbsent(UUID uuid, String country, int money) {
+        entries.computeIfAbsent(uuid, key -> {
+            Entry entry = new Entry(uuid, country, money);
+            add(entry);
+            return entry;
+        });
+    }
+
+    private void add(Entry entry) {
+        RankedSkipList<Entry> ranking = ranking(entry.country());
+        synchronized (ranking) {
+            ranking.add(entry);
+        }
+    }
+
+    private RankedSkipList<Entry> ranking(String country) {
+        return rankings.computeIfAbsent(country, c -> new RankedSkipList<>(ORDER));
+    }
+
+    private record Entry(UUID uuid, String country, int money) {
+    }
+}
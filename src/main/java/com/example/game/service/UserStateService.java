@@ -0,0 +1,165 @@
+package com.example.game.service;
+
+import com.example.game.exception.UserNotFoundException;
+import com.example.game.model.UserData;
+import com.example.game.repository.UserDataRepository;
+import com.example.game.storage.UserStateStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static com.example.game.exception.UserNotFoundException.USER_NOT_FOUND;
+
+/**
+ * Сервис состояния пользователей в памяти.
+ * <p>
+ * При включённом режиме данные пользователей читаются из базы данных только при первом
+ * обращении, а затем обслуживаются {@link UserStateStore}. Изменённые пользователи
+ * периодически сохраняются в {@code user_data} одним пакетным обновлением. Количество пользователей
+ * в памяти ограничено {@code game.user-state.max-users}: давно не использовавшиеся сохранённые
+ * пользователи вытесняются и при следующем обращении загружаются снова.
+ * </p>
+ * <p>
+ * Режим рассчитан на единственный экземпляр приложения, владеющий записью в {@code user_data},
+ * и не совместим с журналом приёма данных ({@link IngestLogService}), который применяет
+ * изменения к базе данных в обход хранилища.
+ * </p>
+ */
+@Service
+public class UserStateService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStateService.class);
+
+    private static final String UPDATE_SQL = "UPDATE user_data SET money = ?, country = ?, activity = ?, "
+            + "sync_count = ?, stat_count = ?, last_sync_time = ?, last_stat_time = ?, version = version + 1 "
+            + "WHERE uuid = ?";
+
+    private final UserDataRepository userDataRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final IngestLogService ingestLogService;
+    private final KnownUsersService knownUsersService;
+    private final ShardService shardService;
+    private final boolean enabled;
+    private final int shards;
+    private final int maxUsers;
+    private volatile UserStateStore store;
+
+    public UserStateService(UserDataRepository userDataRepository,
+                            JdbcTemplate jdbcTemplate,
+                            IngestLogService ingestLogService,
+                            KnownUsersService knownUsersService,
+                            ShardService shardService,
+                            @Value("${game.user-state.enabled:false}") boolean enabled,
+                            @Value("${game.user-state.shards:8}") int shards,
+                            @Value("${game.user-state.max-users:1000000}") int maxUsers) {
+        this.userDataRepository = userDataRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.ingestLogService = ingestLogService;
+        this.knownUsersService = knownUsersService;
+        this.shardService = shardService;
+        this.enabled = enabled;
+        this.shards = shards;
+        this.maxUsers = maxUsers;
+    }
+
+    /**
+     * Создаёт хранилище при старте приложения.
+     *
+     * @throws IllegalStateException если одновременно включён журнал приёма данных.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (ingestLogService.isEnabled()) {
+            throw new IllegalStateException("In-memory user state cannot be combined with the ingest log.");
+        }
+        store = new UserStateStore(shards, maxUsers, uuid -> shardService.onShardOf(uuid, () -> userDataRepository.findById(uuid))
+                .orElseThrow(() -> {
+                    knownUsersService.recordMissing(uuid);
+                    return new UserNotFoundException(USER_NOT_FOUND);
+                }));
+        log.info("In-memory user state enabled with {} shards for up to {} users", shards, maxUsers);
+    }
+
+    /**
+     * Сохраняет оставшиеся изменения и останавливает потоки шардов.
+     */
+    @PreDestroy
+    public void stop() {
+        if (store == null) {
+            return;
+        }
+        checkpoint();
+        store.close();
+    }
+
+    /**
+     * @return {@code true}, если данные пользователей обслуживаются из памяти.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Выполняет действие над состоянием пользователя.
+     * <p>
+     * Экземпляр {@link UserData}, переданный действию, действителен только во время его выполнения.
+     * </p>
+     *
+     * @param uuid   UUID пользователя.
+     * @param action действие над состоянием пользователя.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     * @throws UserNotFoundException если пользователь не найден.
+     */
+    public <T> T execute(UUID uuid, Function<UserData, T> action) {
+        return store.execute(uuid, action);
+    }
+
+    /**
+     * Периодически сохраняет изменённых пользователей в базу данных, одним пакетом на каждый шард.
+     *
+     * @return количество сохранённых пользователей.
+     */
+    @Scheduled(fixedDelayString = "${game.user-state.checkpoint-interval-ms:1000}")
+    public synchronized int checkpoint() {
+        if (store == null) {
+            return 0;
+        }
+        List<UserData> dirty = store.drainDirty();
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        try {
+            shardService.groupByShard(dirty, UserData::getUuid).forEach((shard, users) -> shardService.onShard(shard, () ->
+                    jdbcTemplate.batchUpdate(UPDATE_SQL, users, users.size(), (ps, user) -> {
+                        ps.setInt(1, user.getMoney());
+                        ps.setString(2, user.getCountry());
+                        ps.setInt(3, user.getActivity());
+                        ps.setInt(4, user.getSyncCount());
+                        ps.setInt(5, user.getStatCount());
+                        ps.setLong(6, user.getLastSyncTime());
+                        ps.setLong(7, user.getLastStatTime());
+                        ps.setObject(8, user.getUuid());
+                    })));
+            store.completeDrain();
+            log.debug("Checkpointed {} users from in-memory state", dirty.size());
+            return dirty.size();
+        } catch (RuntimeException e) {
+            log.error("Failed to checkpoint {} users, will retry", dirty.size(), e);
+            store.markDirty(dirty.stream().map(UserData::getUuid).toList());
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.game.storage;
+
+import com.example.game.util.UuidIndex;
+import com.example.game.util.VarInts;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Архивный сегмент истории активности за один календарный месяц.
+ * <p>
+ * Формат файла колоночный: для каждого пользователя сначала хранится колонка дат
+ * (смещение первой даты от начала месяца и далее дельты между соседними датами),
+ * затем колонка значений активности. Все числа записаны в формате varint.
+ * В конце файла расположен индекс и футер. Ключ индекса — две 64-битные половины UUID,
+ * записи отсортированы по старшей, затем по младшей половине как знаковые числа, поэтому
+ * поиск сравнивает два {@code long} без преобразования UUID в строку:
+ * </p>
+ * <pre>
+ * [блоки данных][индекс: high, low, dataOffset, rowCount][футер: indexOffset, entryCount, MAGIC]
+ * </pre>
+ * <p>
+ * Чтение выполняется через отображение файла в память, поэтому открытый сегмент
+ * не держит данные в куче и безопасен для конкурентного чтения. Смещения хранятся
+ * как {@code int}, поэтому размер сегмента не превышает {@link #MAX_SIZE}.
+ * </p>
+ * <p>
+ * Сегменты прежнего формата с ключами-строками ("UAH1") переписываются в текущий формат при открытии.
+ * </p>
+ */
+public final class ActivityArchiveSegment implements Closeable {
+
+    /**
+     * Сигнатура формата ("UAH2").
+     */
+    static final int MAGIC = 0x55414832;
+
+    /**
+     * Сигнатура прежнего формата с ключами-строками ("UAH1").
+     */
+    static final int LEGACY_MAGIC = 0x55414831;
+
+    /**
+     * Максимальный размер файла сегмента: смещения и отображение в память ограничены {@code int}.
+     */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private static final int INDEX_ENTRY_SIZE = 24;
+    private static final int FOOTER_SIZE = 12;
+    private static final int LEGACY_INDEX_ENTRY_SIZE = 16;
+    private static final int LEGACY_FOOTER_SIZE = 16;
+
+    private final YearMonth month;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int indexOffset;
+    private final int entryCount;
+
+    private ActivityArchiveSegment(YearMonth month, FileChannel channel, MappedByteBuffer buffer) {
+        this.month = month;
+        this.channel = channel;
+        this.buffer = buffer;
+        int footer = buffer.capacity() - FOOTER_SIZE;
+        if (footer < 0 || buffer.getInt(footer + 8) != MAGIC) {
+            throw new IllegalStateException("Corrupted activity archive segment for month: " + month);
+        }
+        this.indexOffset = buffer.getInt(footer);
+        this.entryCount = buffer.getInt(footer + 4);
+    }
+
+    /**
+     * Открывает сегмент и отображает его в память только для чтения.
+     * <p>
+     * Сегмент прежнего формата сначала переписывается в текущий формат во временный файл,
+     * который атомарно заменяет исходный.
+     * </p>
+     *
+     * @param file  путь к файлу сегмента.
+     * @param month месяц, данные которого хранит сегмент.
+     * @return открытый сегмент.
+     * @throws IOException если файл не удалось открыть.
+     */
+    public static ActivityArchiveSegment open(Path file, YearMonth month) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() >= LEGACY_FOOTER_SIZE && buffer.getInt(buffer.capacity() - 4) == LEGACY_MAGIC) {
+                upgradeLegacy(file, month, buffer);
+                channel.close();
+                return open(file, month);
+            }
+            return new ActivityArchiveSegment(month, channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Создаёт писатель сегмента.
+     *
+     * @param file  путь к создаваемому файлу.
+     * @param month месяц, данные которого будут записаны.
+     * @return писатель сегмента.
+     * @throws IOException если файл не удалось создать.
+     */
+    public static Writer writer(Path file, YearMonth month) throws IOException {
+        return writer(file, month, MAX_SIZE);
+    }
+
+    /**
+     * Создаёт писатель сегмента с ограничением размера файла.
+     *
+     * @param file    путь к создаваемому файлу.
+     * @param month   месяц, данные которого будут записаны.
+     * @param maxSize максимальный размер файла, не больше {@link #MAX_SIZE}.
+     * @return писатель сегмента.
+     * @throws IOException если файл не удалось создать.
+     */
+    public static Writer writer(Path file, YearMonth month, long maxSize) throws IOException {
+        if (maxSize < FOOTER_SIZE || maxSize > MAX_SIZE) {
+            throw new IllegalArgumentException("Segment size limit must be between " + FOOTER_SIZE
+                    + " and " + MAX_SIZE + " bytes.");
+        }
+        return new Writer(file, month, maxSize);
+    }
+
+    /**
+     * @return месяц, данные которого хранит сегмент.
+     */
+    public YearMonth getMonth() {
+        return month;
+    }
+
+    /**
+     * @return количество пользователей в сегменте.
+     */
+    public int getUserCount() {
+        return entryCount;
+    }
+
+    /**
+     * Читает историю активности пользователя начиная с указанной даты.
+     *
+     * @param uuid          UUID пользователя.
+     * @param fromInclusive дата начала периода (включительно).
+     * @return записи активности, отсортированные по возрастанию даты.
+     */
+    public List<ArchivedActivity> read(UUID uuid, LocalDate fromInclusive) {
+        int entry = findEntry(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (entry < 0) {
+            return Collections.emptyList();
+        }
+        int position = indexOffset + entry * INDEX_ENTRY_SIZE;
+        return decode(buffer, month, buffer.getInt(position + 16), buffer.getInt(position + 20),
+                fromInclusive.toEpochDay());
+    }
+
+    private int findEntry(long high, long low) {
+        int lowEntry = 0;
+        int highEntry = entryCount - 1;
+        while (lowEntry <= highEntry) {
+            int mid = (lowEntry + highEntry) >>> 1;
+            int position = indexOffset + mid * INDEX_ENTRY_SIZE;
+            int cmp = Long.compare(buffer.getLong(position), high);
+            if (cmp == 0) {
+                cmp = Long.compare(buffer.getLong(position + 8), low);
+            }
+            if (cmp < 0) {
+                lowEntry = mid + 1;
+            } else if (cmp > 0) {
+                highEntry = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static List<ArchivedActivity> decode(ByteBuffer buffer, YearMonth month, int dataOffset, int rowCount,
+                                                 long fromDay) {
+        ByteBuffer data = buffer.duplicate();
+        data.position(dataOffset);
+        long[] days = new long[rowCount];
+        long day = month.atDay(1).toEpochDay();
+        for (int i = 0; i < rowCount; i++) {
+            day += VarInts.readUnsignedInt(data);
+            days[i] = day;
+        }
+
+        List<ArchivedActivity> result = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            int activity = VarInts.readSignedInt(data);
+            if (days[i] >= fromDay) {
+                result.add(new ArchivedActivity(LocalDate.ofEpochDay(days[i]), activity));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Переписывает сегмент прежнего формата, где индекс хранил UUID строками:
+     * {@code [блоки данных][ключи][индекс: keyOffset, keyLength, dataOffset, rowCount]
+     * [футер: indexOffset, entryCount, keysOffset, MAGIC]}.
+     */
+    private static void upgradeLegacy(Path file, YearMonth month, MappedByteBuffer legacy) throws IOException {
+        int footer = legacy.capacity() - LEGACY_FOOTER_SIZE;
+        int legacyIndexOffset = legacy.getInt(footer);
+        int legacyEntryCount = legacy.getInt(footer + 4);
+        int keysOffset = legacy.getInt(footer + 8);
+        Path temp = file.resolveSibling(file.getFileName() + ".upgrade");
+        Files.deleteIfExists(temp);
+        try (Writer writer = writer(temp, month)) {
+            for (int entry = 0; entry < legacyEntryCount; entry++) {
+                int position = legacyIndexOffset + entry * LEGACY_INDEX_ENTRY_SIZE;
+                byte[] key = new byte[legacy.getInt(position + 4)];
+                legacy.get(keysOffset + legacy.getInt(position), key);
+                UUID uuid = UUID.fromString(new String(key, StandardCharsets.UTF_8));
+                for (ArchivedActivity row : decode(legacy, month, legacy.getInt(position + 8),
+                        legacy.getInt(position + 12), Long.MIN_VALUE)) {
+                    writer.append(uuid, row.activityDate(), row.activity());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Последовательный писатель сегмента.
+     * <p>
+     * Записи должны поступать сгруппированными по UUID и отсортированными по дате
+     * внутри группы — именно в таком порядке их возвращает запрос к базе данных.
+     * </p>
+     * <p>
+     * После записи блока каждого пользователя проверяется итоговый размер файла вместе
+     * с индексом и футером. Если он превысит ограничение, писатель отказывает с {@link IOException}
+     * до того, как смещение выйдет за пределы {@code int}, и больше ничего не пишет: такой файл
+     * не является сегментом и должен быть удалён.
+     * </p>
+     */
+    public static final class Writer implements Closeable {
+
+        private final YearMonth month;
+        private final long monthStartDay;
+        private final long monthEndDay;
+        private final long maxSize;
+        private final DataOutputStream out;
+        private final List<IndexEntry> index = new ArrayList<>();
+        private final UuidIndex writtenKeys = new UuidIndex(1024);
+
+        private UUID currentUuid;
+        private int[] dates = new int[32];
+        private int[] activities = new int[32];
+        private int rows;
+        private long tailSize = FOOTER_SIZE;
+        private boolean tooLarge;
+
+        private Writer(Path file, YearMonth month, long maxSize) throws IOException {
+            this.month = month;
+            this.maxSize = maxSize;
+            this.monthStartDay = month.atDay(1).toEpochDay();
+            this.monthEndDay = month.atEndOfMonth().toEpochDay();
+            OutputStream stream = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        }
+
+        /**
+         * Добавляет запись активности в сегмент.
+         *
+         * @param uuid     UUID пользователя.
+         * @param date     дата активности, принадлежащая месяцу сегмента.
+         * @param activity показатель активности.
+         * @throws IOException при ошибке записи.
+         */
+        public void append(UUID uuid, LocalDate date, int activity) throws IOException {
+            checkSize();
+            long day = date.toEpochDay();
+            if (day < monthStartDay || day > monthEndDay) {
+                throw new IllegalArgumentException("Activity date " + date + " is outside of month " + month);
+            }
+            if (!uuid.equals(currentUuid)) {
+                flushUser();
+                if (writtenKeys.put(uuid, 0) != UuidIndex.MISSING) {
+                    throw new IllegalStateException("Rows of user " + uuid + " are not grouped together");
+                }
+                currentUuid = uuid;
+            } else if (day < dates[rows - 1]) {
+                throw new IllegalArgumentException("Activity dates of user " + uuid + " are not sorted");
+            }
+            if (rows == dates.length) {
+                dates = Arrays.copyOf(dates, rows * 2);
+                activities = Arrays.copyOf(activities, rows * 2);
+            }
+            dates[rows] = (int) day;
+            activities[rows] = activity;
+            rows++;
+        }
+
+        private void flushUser() throws IOException {
+            if (currentUuid == null) {
+                return;
+            }
+            index.add(new IndexEntry(currentUuid.getMostSignificantBits(), currentUuid.getLeastSignificantBits(),
+                    out.size(), rows));
+            long previous = monthStartDay;
+            for (int i = 0; i < rows; i++) {
+                VarInts.writeUnsignedInt(out, (int) (dates[i] - previous));
+                previous = dates[i];
+            }
+            for (int i = 0; i < rows; i++) {
+                VarInts.writeSignedInt(out, activities[i]);
+            }
+            currentUuid = null;
+            rows = 0;
+            // size() перестаёт расти на Integer.MAX_VALUE, поэтому проверка выполняется после каждого блока
+            tailSize += INDEX_ENTRY_SIZE;
+            tooLarge = out.size() + tailSize > maxSize;
+            checkSize();
+        }
+
+        private void checkSize() throws IOException {
+            if (tooLarge) {
+                throw new IOException("Activity archive segment for month " + month + " exceeds "
+                        + maxSize + " bytes");
+            }
+        }
+
+        /**
+         * Дописывает индекс и футер и закрывает файл.
+         * <p>
+         * Если сегмент превысил ограничение размера, файл закрывается без индекса.
+         * </p>
+         *
+         * @throws IOException при ошибке записи или превышении ограничения размера.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                checkSize();
+                flushUser();
+                index.sort(Comparator.comparingLong(IndexEntry::high).thenComparingLong(IndexEntry::low));
+
+                int indexOffset = out.size();
+                for (IndexEntry entry : index) {
+                    out.writeLong(entry.high());
+                    out.writeLong(entry.low());
+                    out.writeInt(entry.dataOffset());
+                    out.writeInt(entry.rowCount());
+                }
+
+                out.writeInt(indexOffset);
+                out.writeInt(index.size());
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+
+        private record IndexEntry(long high, long low, int dataOffset, int rowCount) {
+        }
+    }
+}
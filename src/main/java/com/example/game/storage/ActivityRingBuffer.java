@@ -0,0 +1,264 @@
+package com.example.game.storage;
+
+import com.example.game.util.Hashing;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Кольцевой буфер событий игровой активности с разбором пакетами в выделенных потоках.
+ * <p>
+ * Слоты буфера выделяются один раз: поля событий хранятся в параллельных примитивных массивах,
+ * поэтому публикация события не создаёт объектов. Публикующий поток захватывает следующий номер
+ * последовательности сравнением с обменом, записывает поля в слот и отмечает слот опубликованным.
+ * Если буфер заполнен, публикация ждёт освобождения слота не дольше заданного времени.
+ * </p>
+ * <p>
+ * События распределяются между потоками-потребителями по хешу UUID, поэтому события одного
+ * пользователя обрабатываются одним потоком в порядке публикации. Каждый потребитель читает
+ * все опубликованные слоты подряд, собирает события своей части в пакет, передаёт пакет
+ * обработчику и только затем отмечает слоты прочитанными. Слот переиспользуется, когда его
+ * прочитали все потребители, поэтому медленная обработка сдерживает публикацию.
+ * </p>
+ * <p>
+ * Если обработчик завершился исключением, пакет передаётся ему повторно после паузы. Обработчик
+ * может удалить из пакета уже применённые события, тогда повторно передаются только оставшиеся.
+ * После {@code maxAttempts} неудачных попыток оставшиеся события отбрасываются, чтобы один
+ * пакет не останавливал потребителя; их количество возвращает {@link #discarded()}.
+ * </p>
+ */
+public final class ActivityRingBuffer implements Closeable {
+
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long RETRY_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int mask;
+    private final long[] uuidHigh;
+    private final long[] uuidLow;
+    private final long[] timestamps;
+    private final int[] activities;
+    private final int[] partitions;
+    private final AtomicLongArray published;
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private final AtomicLong[] consumed;
+    private final Thread[] consumers;
+    private final Consumer<List<IngestEntry>> handler;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final AtomicLong discarded = new AtomicLong();
+    private volatile long cachedGatingSequence = -1;
+    private volatile boolean running = true;
+
+    /**
+     * Создаёт буфер и запускает потоки-потребители.
+     *
+     * @param capacity      количество слотов; степень двойки.
+     * @param consumerCount количество потоков-потребителей.
+     * @param maxBatchSize  максимальное количество событий в пакете обработчика.
+     * @param maxAttempts   максимальное количество попыток обработки пакета.
+     * @param handler       обработчик пакета событий одного потребителя; при исключении
+     *                      оставшиеся в пакете события передаются повторно после паузы.
+     * @param threadName    префикс имён потоков-потребителей.
+     */
+    public ActivityRingBuffer(int capacity, int consumerCount, int maxBatchSize, int maxAttempts,
+                              Consumer<List<IngestEntry>> handler, String threadName) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (consumerCount <= 0 || maxBatchSize <= 0 || maxAttempts <= 0) {
+            throw new IllegalArgumentException("Consumer count, batch size and attempts must be positive.");
+        }
+        this.mask = capacity - 1;
+        this.uuidHigh = new long[capacity];
+        this.uuidLow = new long[capacity];
+        this.timestamps = new long[capacity];
+        this.activities = new int[capacity];
+        this.partitions = new int[capacity];
+        long[] unpublished = new long[capacity];
+        Arrays.fill(unpublished, -1);
+        this.published = new AtomicLongArray(unpublished);
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.handler = handler;
+        this.consumed = new AtomicLong[consumerCount];
+        this.consumers = new Thread[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            consumed[i] = new AtomicLong(-1);
+            int partition = i;
+            consumers[i] = new Thread(() -> consume(partition), threadName + "-" + i);
+            consumers[i].setDaemon(true);
+            consumers[i].start();
+        }
+    }
+
+    /**
+     * Публикует событие активности.
+     *
+     * @param uuid      UUID пользователя.
+     * @param activity  значение активности.
+     * @param timestamp время приёма запроса в миллисекундах.
+     * @param maxWait   максимальное время ожидания свободного слота.
+     * @param unit      единица времени ожидания.
+     * @return {@code false}, если свободный слот не появился за время ожидания или буфер закрыт.
+     */
+    public boolean publish(UUID uuid, int activity, long timestamp, long maxWait, TimeUnit unit) {
+        if (!running) {
+            return false;
+        }
+        long deadline = 0;
+        long sequence;
+        while ((sequence = tryClaim()) < 0) {
+            if (!running) {
+                return false;
+            }
+            long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + unit.toNanos(maxWait);
+            } else if (now - deadline >= 0) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        int slot = (int) (sequence & mask);
+        long high = uuid.getMostSignificantBits();
+        long low = uuid.getLeastSignificantBits();
+        uuidHigh[slot] = high;
+        uuidLow[slot] = low;
+        timestamps[slot] = timestamp;
+        activities[slot] = activity;
+        partitions[slot] = (int) Long.remainderUnsigned(Hashing.hash64(high, low), consumers.length);
+        published.set(slot, sequence);
+        return true;
+    }
+
+    private long tryClaim() {
+        while (true) {
+            long current = cursor.get();
+            long next = current + 1;
+            long wrapPoint = next - mask - 1;
+            if (wrapPoint > cachedGatingSequence) {
+                long gating = minConsumed();
+                cachedGatingSequence = gating;
+                if (wrapPoint > gating) {
+                    return -1;
+                }
+            }
+            if (cursor.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private void consume(int partition) {
+        AtomicLong sequence = consumed[partition];
+        List<IngestEntry> batch = new ArrayList<>(maxBatchSize);
+        int idle = 0;
+        while (true) {
+            long next = sequence.get() + 1;
+            long available = next - 1;
+            while (available - next + 1 < maxBatchSize && isPublished(available + 1)) {
+                available++;
+            }
+            if (available < next) {
+                if (!running && cursor.get() < next) {
+                    return;
+                }
+                if (++idle > SPINS_BEFORE_PARK) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+                continue;
+            }
+            idle = 0;
+            for (long s = next; s <= available; s++) {
+                int slot = (int) (s & mask);
+                if (partitions[slot] == partition) {
+                    batch.add(IngestEntry.activity(new UUID(uuidHigh[slot], uuidLow[slot]), timestamps[slot],
+                            activities[slot]));
+                }
+            }
+            if (!batch.isEmpty()) {
+                handle(batch);
+                batch.clear();
+            }
+            sequence.set(available);
+        }
+    }
+
+    private boolean isPublished(long sequence) {
+        return published.get((int) (sequence & mask)) == sequence;
+    }
+
+    private void handle(List<IngestEntry> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                handler.accept(batch);
+                return;
+            } catch (RuntimeException e) {
+                if (!running || attempt >= maxAttempts) {
+                    discarded.addAndGet(batch.size());
+                    return;
+                }
+                LockSupport.parkNanos(RETRY_PAUSE_NANOS);
+            }
+        }
+    }
+
+    private long minConsumed() {
+        long min = Long.MAX_VALUE;
+        for (AtomicLong sequence : consumed) {
+            min = Math.min(min, sequence.get());
+        }
+        return min;
+    }
+
+    /**
+     * @return количество опубликованных, но ещё не обработанных всеми потребителями событий.
+     */
+    public long backlog() {
+        return cursor.get() - minConsumed();
+    }
+
+    /**
+     * @return количество событий, отброшенных после исчерпания попыток обработки или при закрытии.
+     */
+    public long discarded() {
+        return discarded.get();
+    }
+
+    /**
+     * @return количество слотов буфера.
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Прекращает приём событий и ждёт, пока потребители обработают уже опубликованные.
+     * <p>
+     * Пакет, обработка которого продолжает завершаться ошибкой после закрытия, отбрасывается.
+     * </p>
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread consumer : consumers) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.game.storage;
+
+import java.time.LocalDate;
+
+/**
+ * Запись истории активности, прочитанная из архивного сегмента.
+ *
+ * @param activityDate дата активности.
+ * @param activity     показатель активности за день.
+ */
+public record ArchivedActivity(LocalDate activityDate, int activity) {
+}
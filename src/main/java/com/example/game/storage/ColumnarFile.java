@@ -0,0 +1,427 @@
+package com.example.game.storage;
+
+import com.example.game.util.VarInts;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатый колоночный файл для выгрузки аналитических данных.
+ * <p>
+ * Строки записываются группами ограниченного размера (row group), поэтому писатель держит
+ * в памяти не больше одной группы. Внутри группы каждая колонка хранится отдельным блоком,
+ * сжатым Deflate: сначала битовая карта {@code null}-значений, затем непустые значения.
+ * Числа записаны в формате varint, временные метки — дельтами в микросекундах от предыдущей.
+ * В конце файла расположены схема и каталог групп:
+ * </p>
+ * <pre>
+ * [группа 0: блок колонки 0][блок колонки 1]...[группа 1]...
+ * [футер: columnCount, (name, type)*, groupCount, (rowCount, (offset, length)*)*]
+ * [footerOffset, MAGIC]
+ * </pre>
+ */
+public final class ColumnarFile implements Closeable {
+
+    /**
+     * Сигнатура формата ("GCF1").
+     */
+    static final int MAGIC = 0x47434631;
+
+    private static final int TRAILER_SIZE = 12;
+
+    /**
+     * Тип колонки.
+     */
+    public enum Type {
+        /**
+         * {@link UUID}, 16 байт.
+         */
+        UUID,
+        /**
+         * {@link Integer}, ZigZag varint.
+         */
+        INT,
+        /**
+         * {@link LocalDateTime} в UTC, дельта микросекунд в ZigZag varint.
+         */
+        TIMESTAMP
+    }
+
+    /**
+     * Описание колонки.
+     *
+     * @param name имя колонки.
+     * @param type тип значений.
+     */
+    public record Column(String name, Type type) {
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final List<Column> columns;
+    private final List<RowGroup> rowGroups;
+
+    private ColumnarFile(FileChannel channel, MappedByteBuffer buffer) throws IOException {
+        this.channel = channel;
+        this.buffer = buffer;
+        int trailer = buffer.capacity() - TRAILER_SIZE;
+        if (trailer < 0 || buffer.getInt(trailer + 8) != MAGIC) {
+            throw new IllegalStateException("Corrupted columnar file.");
+        }
+        ByteBuffer footer = buffer.duplicate().position((int) buffer.getLong(trailer)).limit(trailer);
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(footer));
+        int columnCount = in.readInt();
+        List<Column> schema = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            schema.add(new Column(in.readUTF(), Type.values()[in.readByte()]));
+        }
+        int groupCount = in.readInt();
+        List<RowGroup> groups = new ArrayList<>(groupCount);
+        for (int i = 0; i < groupCount; i++) {
+            int rowCount = in.readInt();
+            long[] offsets = new long[columnCount];
+            int[] lengths = new int[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                offsets[c] = in.readLong();
+                lengths[c] = in.readInt();
+            }
+            groups.add(new RowGroup(rowCount, offsets, lengths));
+        }
+        this.columns = Collections.unmodifiableList(schema);
+        this.rowGroups = Collections.unmodifiableList(groups);
+    }
+
+    /**
+     * Открывает файл и отображает его в память только для чтения.
+     *
+     * @param file путь к файлу.
+     * @return открытый файл.
+     * @throws IOException если файл не удалось открыть.
+     */
+    public static ColumnarFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ColumnarFile(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Создаёт писатель файла.
+     *
+     * @param file         путь к создаваемому файлу.
+     * @param columns      схема файла.
+     * @param rowGroupSize максимальное количество строк в группе.
+     * @return писатель файла.
+     * @throws IOException если файл не удалось создать.
+     */
+    public static Writer writer(Path file, List<Column> columns, int rowGroupSize) throws IOException {
+        return new Writer(file, columns, rowGroupSize);
+    }
+
+    /**
+     * @return схема файла.
+     */
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return количество групп строк.
+     */
+    public int getRowGroupCount() {
+        return rowGroups.size();
+    }
+
+    /**
+     * @return общее количество строк.
+     */
+    public long getRowCount() {
+        return rowGroups.stream().mapToLong(RowGroup::rowCount).sum();
+    }
+
+    /**
+     * Последовательно читает все строки, распаковывая по одной группе за раз.
+     *
+     * @param action обработчик строки; массив значений в порядке колонок схемы.
+     */
+    public void forEachRow(Consumer<Object[]> action) {
+        for (int g = 0; g < rowGroups.size(); g++) {
+            RowGroup group = rowGroups.get(g);
+            Object[][] values = new Object[columns.size()][];
+            for (int c = 0; c < columns.size(); c++) {
+                values[c] = decode(columns.get(c).type(), inflate(group, c), group.rowCount());
+            }
+            for (int r = 0; r < group.rowCount(); r++) {
+                Object[] row = new Object[columns.size()];
+                for (int c = 0; c < columns.size(); c++) {
+                    row[c] = values[c][r];
+                }
+                action.accept(row);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer inflate(RowGroup group, int column) {
+        byte[] compressed = new byte[group.lengths()[column]];
+        buffer.get((int) group.offsets()[column], compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] chunk = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated column block in columnar file.");
+                }
+                out.write(chunk, 0, n);
+            }
+            return ByteBuffer.wrap(out.toByteArray());
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted column block in columnar file.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static Object[] decode(Type type, ByteBuffer data, int rowCount) {
+        byte[] bitmap = new byte[VarInts.readUnsignedInt(data)];
+        data.get(bitmap);
+        BitSet nulls = BitSet.valueOf(bitmap);
+        Object[] values = new Object[rowCount];
+        long previous = 0;
+        for (int r = 0; r < rowCount; r++) {
+            if (nulls.get(r)) {
+                continue;
+            }
+            switch (type) {
+                case UUID -> values[r] = new UUID(data.getLong(), data.getLong());
+                case INT -> values[r] = VarInts.readSignedInt(data);
+                case TIMESTAMP -> {
+                    previous += VarInts.readSignedLong(data);
+                    values[r] = LocalDateTime.ofEpochSecond(Math.floorDiv(previous, 1_000_000L),
+                            (int) Math.floorMod(previous, 1_000_000L) * 1000, ZoneOffset.UTC);
+                }
+            }
+        }
+        return values;
+    }
+
+    private record RowGroup(int rowCount, long[] offsets, int[] lengths) {
+    }
+
+    /**
+     * Последовательный писатель колоночного файла.
+     */
+    public static final class Writer implements Closeable {
+
+        private final List<Column> columns;
+        private final int rowGroupSize;
+        private final DataOutputStream out;
+        private final List<RowGroup> rowGroups = new ArrayList<>();
+        private final Object[][] pending;
+        private int rows;
+        private long rowCount;
+
+        private Writer(Path file, List<Column> columns, int rowGroupSize) throws IOException {
+            if (columns.isEmpty() || rowGroupSize <= 0) {
+                throw new IllegalArgumentException("Columnar file needs at least one column and a positive row group size.");
+            }
+            this.columns = List.copyOf(columns);
+            this.rowGroupSize = rowGroupSize;
+            this.pending = new Object[columns.size()][rowGroupSize];
+            OutputStream stream = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        }
+
+        /**
+         * Добавляет строку.
+         *
+         * @param values значения в порядке колонок схемы; {@code null} допускается.
+         * @throws IOException              при ошибке записи.
+         * @throws IllegalArgumentException если количество или типы значений не соответствуют схеме.
+         */
+        public void append(Object... values) throws IOException {
+            if (values.length != columns.size()) {
+                throw new IllegalArgumentException("Expected " + columns.size() + " values but got " + values.length);
+            }
+            for (int c = 0; c < values.length; c++) {
+                Object value = values[c];
+                if (value != null && !javaType(columns.get(c).type()).isInstance(value)) {
+                    throw new IllegalArgumentException("Column " + columns.get(c).name() + " does not accept "
+                            + value.getClass().getSimpleName());
+                }
+                pending[c][rows] = value;
+            }
+            rows++;
+            rowCount++;
+            if (rows == rowGroupSize) {
+                flushRowGroup();
+            }
+        }
+
+        /**
+         * @return количество добавленных строк.
+         */
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        private void flushRowGroup() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            long[] offsets = new long[columns.size()];
+            int[] lengths = new int[columns.size()];
+            for (int c = 0; c < columns.size(); c++) {
+                byte[] block = encode(columns.get(c).type(), pending[c], rows);
+                offsets[c] = out.size();
+                lengths[c] = block.length;
+                out.write(block);
+            }
+            rowGroups.add(new RowGroup(rows, offsets, lengths));
+            for (Object[] column : pending) {
+                Arrays.fill(column, 0, rows, null);
+            }
+            rows = 0;
+        }
+
+        private static byte[] encode(Type type, Object[] values, int rowCount) throws IOException {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (DeflaterOutputStream data = new DeflaterOutputStream(compressed)) {
+                BitSet nulls = new BitSet(rowCount);
+                for (int r = 0; r < rowCount; r++) {
+                    if (values[r] == null) {
+                        nulls.set(r);
+                    }
+                }
+                byte[] bitmap = nulls.toByteArray();
+                VarInts.writeUnsignedInt(data, bitmap.length);
+                data.write(bitmap);
+
+                DataOutputStream fixed = new DataOutputStream(data);
+                long previous = 0;
+                for (int r = 0; r < rowCount; r++) {
+                    Object value = values[r];
+                    if (value == null) {
+                        continue;
+                    }
+                    switch (type) {
+                        case UUID -> {
+                            fixed.writeLong(((UUID) value).getMostSignificantBits());
+                            fixed.writeLong(((UUID) value).getLeastSignificantBits());
+                        }
+                        case INT -> VarInts.writeSignedInt(data, (Integer) value);
+                        case TIMESTAMP -> {
+                            LocalDateTime timestamp = (LocalDateTime) value;
+                            long micros = timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000L
+                                    + timestamp.getNano() / 1000;
+                            VarInts.writeSignedLong(data, micros - previous);
+                            previous = micros;
+                        }
+                    }
+                }
+                fixed.flush();
+            }
+            return compressed.toByteArray();
+        }
+
+        private static Class<?> javaType(Type type) {
+            return switch (type) {
+                case UUID -> UUID.class;
+                case INT -> Integer.class;
+                case TIMESTAMP -> LocalDateTime.class;
+            };
+        }
+
+        /**
+         * Дописывает последнюю группу, схему и каталог групп и закрывает файл.
+         *
+         * @throws IOException при ошибке записи.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flushRowGroup();
+                long footerOffset = out.size();
+                out.writeInt(columns.size());
+                for (Column column : columns) {
+                    out.writeUTF(column.name());
+                    out.writeByte(column.type().ordinal());
+                }
+                out.writeInt(rowGroups.size());
+                for (RowGroup group : rowGroups) {
+                    out.writeInt(group.rowCount());
+                    for (int c = 0; c < columns.size(); c++) {
+                        out.writeLong(group.offsets()[c]);
+                        out.writeInt(group.lengths()[c]);
+                    }
+                }
+                out.writeLong(footerOffset);
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Поток чтения из {@link ByteBuffer} для разбора футера.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer source;
+
+        private ByteBufferInputStream(ByteBuffer source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read() {
+            return source.hasRemaining() ? source.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!source.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(length, source.remaining());
+            source.get(target, offset, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.game.storage;
+
+import java.util.UUID;
+
+/**
+ * Запись журнала приёма данных.
+ *
+ * @param lsn       порядковый номер записи в журнале (назначается при добавлении).
+ * @param type      тип запроса.
+ * @param uuid      UUID пользователя.
+ * @param timestamp время приёма запроса в миллисекундах.
+ * @param money     количество денег (для синхронизации).
+ * @param country   код страны (для синхронизации).
+ * @param activity  значение активности (для приёма статистики).
+ */
+public record IngestEntry(long lsn, Type type, UUID uuid, long timestamp, int money, String country, int activity) {
+
+    /**
+     * Тип принятого запроса.
+     */
+    public enum Type {
+        /**
+         * Синхронизация данных пользователя.
+         */
+        SYNC,
+        /**
+         * Приём игровой активности.
+         */
+        ACTIVITY
+    }
+
+    /**
+     * Создаёт запись синхронизации без номера.
+     *
+     * @param uuid      UUID пользователя.
+     * @param timestamp время приёма запроса.
+     * @param money     количество денег.
+     * @param country   код страны.
+     * @return запись журнала.
+     */
+    public static IngestEntry sync(UUID uuid, long timestamp, int money, String country) {
+        return new IngestEntry(0, Type.SYNC, uuid, timestamp, money, country, 0);
+    }
+
+    /**
+     * Создаёт запись приёма активности без номера.
+     *
+     * @param uuid      UUID пользователя.
+     * @param timestamp время приёма запроса.
+     * @param activity  значение активности.
+     * @return запись журнала.
+     */
+    public static IngestEntry activity(UUID uuid, long timestamp, int activity) {
+        return new IngestEntry(0, Type.ACTIVITY, uuid, timestamp, 0, null, activity);
+    }
+
+    /**
+     * @param lsn назначенный порядковый номер.
+     * @return копия записи с указанным номером.
+     */
+    public IngestEntry withLsn(long lsn) {
+        return new IngestEntry(lsn, type, uuid, timestamp, money, country, activity);
+    }
+}
@@ -0,0 +1,540 @@
+package com.example.game.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал предзаписи (write-ahead log) для принятых запросов синхронизации и активности.
+ * <p>
+ * Журнал состоит из сегментов {@code ingest-<firstLsn>.log}, в которые записи только дописываются.
+ * Запись имеет формат {@code [length][crc32c][payload]}, поэтому после сбоя недописанный хвост
+ * последнего сегмента обнаруживается и отрезается при открытии.
+ * </p>
+ * <p>
+ * Добавление выполняет отдельный поток-писатель с групповой фиксацией: все записи, накопившиеся
+ * в очереди за время предыдущего {@code fsync}, пишутся одним вызовом и фиксируются одним
+ * {@link FileChannel#force(boolean)}. Будущий результат добавления завершается только после
+ * фиксации, поэтому подтверждение клиенту означает, что запись пережит перезапуск.
+ * </p>
+ * <p>
+ * Если группу не удалось записать или зафиксировать, сегмент обрезается до позиции перед группой,
+ * поэтому отклонённые записи не остаются в журнале и не занимают номера следующих. Если обрезать
+ * сегмент тоже не удалось, журнал переходит в состояние ошибки и отклоняет все дальнейшие добавления.
+ * </p>
+ * <p>
+ * Номера записей имеют смысл только внутри одного каталога журнала, поэтому при создании каталога
+ * в нём сохраняется случайный идентификатор {@code log-id} ({@link #getLogId()}). Всё, что хранится
+ * вне каталога и ссылается на номера записей, например контрольные точки в базе данных, должно
+ * храниться вместе с этим идентификатором.
+ * </p>
+ */
+public final class IngestLog implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestLog.class);
+    private static final String FILE_PREFIX = "ingest-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final String LOG_ID_FILE = "log-id";
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024;
+    private static final int MAX_GROUP_SIZE = 4096;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final NavigableMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final UnaryOperator<FileChannel> channels;
+    private final String logId;
+    private final boolean upgraded;
+
+    private FileChannel current;
+    private long nextLsn;
+    private volatile long durableLsn;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+
+    private IngestLog(Path directory, long segmentBytes, boolean fsync, UnaryOperator<FileChannel> channels)
+            throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        this.channels = channels;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                segments.put(parseFirstLsn(file), file);
+            }
+        }
+        Path idFile = directory.resolve(LOG_ID_FILE);
+        if (Files.exists(idFile)) {
+            this.logId = Files.readString(idFile, StandardCharsets.UTF_8).trim();
+            this.upgraded = false;
+        } else {
+            this.logId = UUID.randomUUID().toString();
+            this.upgraded = !segments.isEmpty();
+            writeLogId(idFile, logId);
+        }
+        recover();
+        this.writer = new Thread(this::writeLoop, "ingest-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Открывает журнал, восстанавливая его после возможного сбоя.
+     *
+     * @param directory    каталог сегментов.
+     * @param segmentBytes размер сегмента, после которого начинается новый.
+     * @param fsync        фиксировать ли записи на диске перед подтверждением.
+     * @return открытый журнал.
+     * @throws IOException если журнал не удалось открыть.
+     */
+    public static IngestLog open(Path directory, long segmentBytes, boolean fsync) throws IOException {
+        return new IngestLog(directory, segmentBytes, fsync, UnaryOperator.identity());
+    }
+
+    /**
+     * Открывает журнал, оборачивая каналы записи сегментов; используется для проверки обработки ошибок.
+     */
+    static IngestLog open(Path directory, long segmentBytes, boolean fsync, UnaryOperator<FileChannel> channels)
+            throws IOException {
+        return new IngestLog(directory, segmentBytes, fsync, channels);
+    }
+
+    /**
+     * Добавляет запись в журнал.
+     *
+     * @param entry запись без номера.
+     * @return будущий результат с назначенным номером, завершаемый после фиксации записи.
+     */
+    public CompletableFuture<Long> append(IngestEntry entry) {
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Ingest log is closed."));
+            return future;
+        }
+        if (failed) {
+            future.completeExceptionally(new IllegalStateException("Ingest log has failed."));
+            return future;
+        }
+        queue.add(new Pending(entry, future));
+        return future;
+    }
+
+    /**
+     * @return идентификатор каталога журнала, в пределах которого уникальны номера записей.
+     */
+    public String getLogId() {
+        return logId;
+    }
+
+    /**
+     * @return {@code true}, если каталог с записями создан до появления идентификатора журнала
+     * и идентификатор назначен ему только сейчас.
+     */
+    public boolean isUpgraded() {
+        return upgraded;
+    }
+
+    /**
+     * @return номер последней зафиксированной записи или 0, если журнал пуст.
+     */
+    public long getDurableLsn() {
+        return durableLsn;
+    }
+
+    /**
+     * Создаёт читателя журнала.
+     *
+     * @param fromLsn номер первой записи, которую нужно прочитать.
+     * @return читатель, последовательно возвращающий зафиксированные записи.
+     */
+    public Reader reader(long fromLsn) {
+        return new Reader(Math.max(1, fromLsn));
+    }
+
+    /**
+     * Удаляет сегменты, все записи которых имеют номер не больше указанного.
+     *
+     * @param lsn номер последней записи, которая больше не нужна.
+     */
+    public void deleteSegmentsUpTo(long lsn) {
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            Long nextFirst = segments.higherKey(segment.getKey());
+            if (nextFirst == null || nextFirst > lsn + 1) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(segment.getValue());
+                segments.remove(segment.getKey());
+            } catch (IOException e) {
+                log.warn("Failed to delete ingest log segment: {}", segment.getValue(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Дописывает принятые записи и закрывает журнал.
+     * <p>
+     * Поток-писатель не прерывается: прерывание закрыло бы {@link FileChannel} посреди записи
+     * группы. Он завершается сам, когда очередь опустеет, не позднее интервала ожидания очереди.
+     * </p>
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            // Записи, добавленные одновременно с закрытием, уже не будут записаны
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                pending.future().completeExceptionally(new IllegalStateException("Ingest log is closed."));
+            }
+            current.close();
+        }
+    }
+
+    private static void writeLogId(Path idFile, String logId) throws IOException {
+        Path tmp = idFile.resolveSibling(LOG_ID_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(logId.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, idFile, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void recover() throws IOException {
+        if (segments.isEmpty()) {
+            nextLsn = 1;
+            openSegment(nextLsn);
+            return;
+        }
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        long lastLsn = last.getKey() - 1;
+        long validEnd = 0;
+        try (FileChannel channel = FileChannel.open(last.getValue(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (true) {
+                IngestEntry entry = readEntry(channel, validEnd, header);
+                if (entry == null) {
+                    break;
+                }
+                lastLsn = entry.lsn();
+                validEnd = channel.position();
+            }
+        }
+        current = channels.apply(FileChannel.open(last.getValue(), StandardOpenOption.WRITE));
+        if (current.size() > validEnd) {
+            log.warn("Truncating {} bytes of incomplete ingest log tail in {}", current.size() - validEnd, last.getValue());
+            current.truncate(validEnd);
+            current.force(true);
+        }
+        current.position(validEnd);
+        nextLsn = lastLsn + 1;
+        durableLsn = lastLsn;
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", FILE_PREFIX, firstLsn, FILE_SUFFIX));
+        current = channels.apply(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE));
+        current.position(current.size());
+        segments.put(firstLsn, file);
+    }
+
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                // Писатель останавливается по флагу running, а не прерыванием
+                log.warn("Ingest log writer interrupted, continuing");
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private synchronized void writeGroup(List<Pending> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        if (failed) {
+            IllegalStateException e = new IllegalStateException("Ingest log has failed.");
+            group.forEach(pending -> pending.future().completeExceptionally(e));
+            return;
+        }
+        long start = -1;
+        try {
+            if (current.position() > 0 && current.position() >= segmentBytes) {
+                current.force(true);
+                current.close();
+                openSegment(nextLsn);
+            }
+            start = current.position();
+            List<byte[]> payloads = new ArrayList<>(group.size());
+            int total = 0;
+            for (int i = 0; i < group.size(); i++) {
+                byte[] payload = encode(group.get(i).entry().withLsn(nextLsn + i));
+                payloads.add(payload);
+                total += HEADER_SIZE + payload.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(total);
+            CRC32C crc = new CRC32C();
+            for (byte[] payload : payloads) {
+                crc.reset();
+                crc.update(payload);
+                buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                current.write(buffer);
+            }
+            if (fsync) {
+                current.force(false);
+            }
+            long firstLsn = nextLsn;
+            nextLsn += group.size();
+            durableLsn = nextLsn - 1;
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).future().complete(firstLsn + i);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to append {} entries to ingest log", group.size(), e);
+            rollback(start);
+            for (Pending pending : group) {
+                pending.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Отрезает от сегмента байты неудавшейся группы, чтобы следующая группа записалась на их место
+     * с теми же номерами, а восстановление не остановилось на недописанной записи.
+     *
+     * @param start позиция сегмента перед группой или -1, если не удалось перейти к новому сегменту.
+     */
+    private void rollback(long start) {
+        if (start < 0) {
+            failed = true;
+            log.error("Ingest log segment is not available, rejecting further appends");
+            return;
+        }
+        try {
+            current.truncate(start);
+            current.position(start);
+            current.force(true);
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            log.error("Failed to roll back ingest log to position {}, rejecting further appends", start, e);
+        }
+    }
+
+    private static byte[] encode(IngestEntry entry) {
+        byte[] country = entry.country() == null ? null : entry.country().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 8 + 1 + 4 + 4 + 16 + 2 + (country == null ? 0 : country.length));
+        buffer.putLong(entry.lsn())
+                .putLong(entry.timestamp())
+                .put((byte) entry.type().ordinal())
+                .putInt(entry.money())
+                .putInt(entry.activity())
+                .putLong(entry.uuid().getMostSignificantBits())
+                .putLong(entry.uuid().getLeastSignificantBits())
+                .putShort((short) (country == null ? -1 : country.length));
+        if (country != null) {
+            buffer.put(country);
+        }
+        return buffer.array();
+    }
+
+    private static IngestEntry decode(ByteBuffer buffer) {
+        long lsn = buffer.getLong();
+        long timestamp = buffer.getLong();
+        IngestEntry.Type type = IngestEntry.Type.values()[buffer.get()];
+        int money = buffer.getInt();
+        int activity = buffer.getInt();
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        short countryLength = buffer.getShort();
+        String country = null;
+        if (countryLength >= 0) {
+            byte[] bytes = new byte[countryLength];
+            buffer.get(bytes);
+            country = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new IngestEntry(lsn, type, uuid, timestamp, money, country, activity);
+    }
+
+    /**
+     * Читает запись с указанной позиции канала.
+     *
+     * @return запись или {@code null}, если дальше нет целой корректной записи.
+     */
+    private static IngestEntry readEntry(FileChannel channel, long position, ByteBuffer header) throws IOException {
+        header.clear();
+        if (channel.read(header, position) < HEADER_SIZE) {
+            return null;
+        }
+        header.flip();
+        int length = header.getInt();
+        int checksum = header.getInt();
+        if (length <= 0 || length > MAX_PAYLOAD_SIZE) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        if (channel.read(payload, position + HEADER_SIZE) < length) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        channel.position(position + HEADER_SIZE + length);
+        payload.flip();
+        return decode(payload);
+    }
+
+    private static long parseFirstLsn(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    /**
+     * Последовательный читатель зафиксированных записей журнала.
+     * <p>
+     * Используется фоновым применением записей к базе данных, а также для аудита.
+     * Экземпляр не потокобезопасен.
+     * </p>
+     */
+    public final class Reader implements Closeable {
+
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        private long nextLsn;
+        private Long segmentFirstLsn;
+        private FileChannel channel;
+        private long position;
+
+        private Reader(long fromLsn) {
+            this.nextLsn = fromLsn;
+        }
+
+        /**
+         * @return номер следующей записи, которую вернёт читатель.
+         */
+        public long getNextLsn() {
+            return nextLsn;
+        }
+
+        /**
+         * Читает очередную порцию зафиксированных записей.
+         *
+         * @param maxEntries максимальное количество записей.
+         * @return записи в порядке номеров; пустой список, если новых записей нет.
+         */
+        public List<IngestEntry> next(int maxEntries) {
+            List<IngestEntry> result = new ArrayList<>();
+            try {
+                while (result.size() < maxEntries && nextLsn <= durableLsn) {
+                    if (channel == null && !openSegmentFor(nextLsn)) {
+                        break;
+                    }
+                    IngestEntry entry = readEntry(channel, position, header);
+                    if (entry == null) {
+                        if (!moveToNextSegment()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    if (entry.lsn() > durableLsn) {
+                        break;
+                    }
+                    position = channel.position();
+                    if (entry.lsn() >= nextLsn) {
+                        result.add(entry);
+                        nextLsn = entry.lsn() + 1;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read ingest log", e);
+            }
+            return result;
+        }
+
+        private boolean openSegmentFor(long lsn) throws IOException {
+            Map.Entry<Long, Path> segment = segments.floorEntry(lsn);
+            if (segment == null) {
+                segment = segments.firstEntry();
+                if (segment == null) {
+                    return false;
+                }
+                // Записи до начала самого старого сегмента уже удалены
+                nextLsn = segment.getKey();
+            }
+            segmentFirstLsn = segment.getKey();
+            channel = FileChannel.open(segment.getValue(), StandardOpenOption.READ);
+            position = 0;
+            return true;
+        }
+
+        private boolean moveToNextSegment() throws IOException {
+            Long nextSegment = segments.higherKey(segmentFirstLsn);
+            if (nextSegment == null || nextSegment > nextLsn) {
+                return false;
+            }
+            channel.close();
+            channel = null;
+            return openSegmentFor(nextSegment);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    private record Pending(IngestEntry entry, CompletableFuture<Long> future) {
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.game.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Потоковое чтение пользователей для массового импорта из CSV или NDJSON.
+ * <p>
+ * Входные данные читаются построчно, поэтому размер файла не ограничен памятью.
+ * Строки с некорректным UUID, неизвестным кодом страны ISO 3166 или нечисловыми значениями
+ * пропускаются и учитываются в {@link #getInvalidRows()}; описания первых ошибок сохраняются.
+ * </p>
+ * <p>
+ * CSV должен начинаться со строки заголовка с обязательными колонками {@code uuid} и {@code country}
+ * и необязательными {@code money}, {@code activity} и {@code created_at}. Каждая строка NDJSON —
+ * объект с полями {@code uuid}, {@code country}, {@code money}, {@code activity} и {@code createdAt}.
+ * </p>
+ */
+public final class UserImportReader implements Closeable {
+
+    /**
+     * Формат входных данных.
+     */
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * Проверенная строка импорта.
+     *
+     * @param line      номер строки во входных данных начиная с 1.
+     * @param uuid      UUID пользователя.
+     * @param country   код страны в верхнем регистре.
+     * @param money     количество денег.
+     * @param activity  показатель активности.
+     * @param createdAt дата регистрации или {@code null}, если не указана.
+     */
+    public record Row(long line, UUID uuid, String country, int money, int activity, LocalDateTime createdAt) {
+    }
+
+    private static final Set<String> COUNTRIES = countries();
+    private static final List<String> CSV_COLUMNS = List.of("uuid", "country", "money", "activity", "created_at");
+
+    private final BufferedReader reader;
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private final int maxErrors;
+    private final List<String> errors = new ArrayList<>();
+    private Map<String, Integer> columns;
+    private long line;
+    private long invalidRows;
+
+    /**
+     * Создаёт читателя.
+     *
+     * @param input        входные данные в UTF-8.
+     * @param format       формат входных данных.
+     * @param objectMapper разбор строк NDJSON.
+     * @param maxErrors    количество сохраняемых описаний ошибок.
+     */
+    public UserImportReader(InputStream input, Format format, ObjectMapper objectMapper, int maxErrors) {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Читает следующую порцию корректных строк.
+     *
+     * @param max максимальное количество строк.
+     * @return строки; пустой список, если входные данные закончились.
+     * @throws IOException              при ошибке чтения.
+     * @throws IllegalArgumentException если заголовок CSV некорректен.
+     */
+    public List<Row> next(int max) throws IOException {
+        List<Row> rows = new ArrayList<>(Math.min(max, 1024));
+        String text;
+        while (rows.size() < max && (text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            if (format == Format.CSV && columns == null) {
+                columns = parseHeader(text);
+                continue;
+            }
+            try {
+                rows.add(format == Format.CSV ? parseCsv(text) : parseJson(text));
+            } catch (IllegalArgumentException | DateTimeParseException | JsonProcessingException e) {
+                invalidRows++;
+                if (errors.size() < maxErrors) {
+                    errors.add("Line " + line + ": " + e.getMessage());
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return количество прочитанных строк, включая заголовок и пустые строки.
+     */
+    public long getLinesRead() {
+        return line;
+    }
+
+    /**
+     * @return количество пропущенных некорректных строк.
+     */
+    public long getInvalidRows() {
+        return invalidRows;
+    }
+
+    /**
+     * @return описания первых ошибок.
+     */
+    public List<String> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private Map<String, Integer> parseHeader(String text) {
+        String[] names = text.split(",", -1);
+        Map<String, Integer> result = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim().toLowerCase(Locale.ROOT);
+            if (!CSV_COLUMNS.contains(name)) {
+                throw new IllegalArgumentException("Unknown CSV column: " + name);
+            }
+            result.put(name, i);
+        }
+        if (!result.containsKey("uuid") || !result.containsKey("country")) {
+            throw new IllegalArgumentException("CSV header must contain 'uuid' and 'country' columns.");
+        }
+        return result;
+    }
+
+    private Row parseCsv(String text) {
+        String[] values = text.split(",", -1);
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " values but got " + values.length);
+        }
+        return row(values[columns.get("uuid")],
+                values[columns.get("country")],
+                column(values, "money"),
+                column(values, "activity"),
+                column(values, "created_at"));
+    }
+
+    private Row parseJson(String text) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(text);
+        if (!node.isObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return row(node.path("uuid").asText(null),
+                node.path("country").asText(null),
+                node.path("money").asText(null),
+                node.path("activity").asText(null),
+                node.path("createdAt").asText(null));
+    }
+
+    private String column(String[] values, String name) {
+        Integer index = columns.get(name);
+        return index == null ? null : values[index];
+    }
+
+    private Row row(String uuid, String country, String money, String activity, String createdAt) {
+        if (uuid == null || uuid.isBlank()) {
+            throw new IllegalArgumentException("Missing uuid");
+        }
+        String code = country == null ? "" : country.trim().toUpperCase(Locale.ROOT);
+        if (!COUNTRIES.contains(code)) {
+            throw new IllegalArgumentException("Unknown country code: " + country);
+        }
+        return new Row(line,
+                UUID.fromString(uuid.trim()),
+                code,
+                parseInt(money, "money"),
+                parseInt(activity, "activity"),
+                isBlank(createdAt) ? null : LocalDateTime.parse(createdAt.trim()));
+    }
+
+    private static int parseInt(String value, String name) {
+        if (isBlank(value)) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static Set<String> countries() {
+        Set<String> result = new HashSet<>(Arrays.asList(Locale.getISOCountries()));
+        result.addAll(Locale.getISOCountries(Locale.IsoCountryCode.PART1_ALPHA3));
+        return Set.copyOf(result);
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.game.storage;
+
+import com.example.game.model.UserData;
+import com.example.game.util.Hashing;
+import com.example.game.util.UuidIndex;
+
+import java.io.Closeable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Шардированное хранилище состояния пользователей в памяти.
+ * <p>
+ * Пользователи распределяются по шардам по хешу UUID. Каждым шардом владеет единственный
+ * поток: все чтения и изменения шарда выполняются в нём, поэтому блокировки не нужны.
+ * Поля пользователей хранятся в параллельных примитивных массивах, слот пользователя ищется
+ * в {@link UuidIndex} по двум 64-битным половинам UUID, а изменённые записи
+ * отмечаются в {@link BitSet}, что позволяет сохранять в базу данных только их.
+ * </p>
+ * <p>
+ * Пользователь, которого нет в шарде, загружается в вызывающем потоке, а не в потоке шарда,
+ * поэтому медленное чтение из базы данных не задерживает остальных пользователей шарда. Загруженные
+ * данные передаются шарду отдельной задачей; если за время загрузки пользователя уже добавил
+ * другой поток, используется состояние в памяти.
+ * </p>
+ * <p>
+ * Количество пользователей ограничено: при заполнении шарда вытесняется давно не использовавшийся
+ * пользователь (алгоритм «часы»). Изменённые и сохраняемые в данный момент пользователи не
+ * вытесняются, поэтому если все пользователи шарда изменены, шард временно растёт сверх лимита
+ * до следующего сохранения. Если во время загрузки шард кого-то вытеснил, загрузка повторяется,
+ * чтобы не заменить сохранённые изменения прочитанными до них данными.
+ * </p>
+ */
+public final class UserStateStore implements Closeable {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Shard[] shards;
+    private final Function<UUID, UserData> loader;
+
+    /**
+     * Создаёт хранилище.
+     *
+     * @param shardCount количество шардов (и потоков-владельцев).
+     * @param capacity   максимальное количество пользователей, делится между шардами поровну.
+     * @param loader     загрузка пользователя из базы данных при первом обращении;
+     *                   выбрасывает исключение, если пользователь не найден.
+     */
+    public UserStateStore(int shardCount, int capacity, Function<UUID, UserData> loader) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive.");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+        this.loader = loader;
+        this.shards = new Shard[shardCount];
+        int shardCapacity = (int) Math.max(1, ((long) capacity + shardCount - 1) / shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, shardCapacity);
+        }
+    }
+
+    /**
+     * Выполняет действие над состоянием пользователя в потоке его шарда.
+     * <p>
+     * Действие получает изменяемый экземпляр {@link UserData}, который переиспользуется шардом,
+     * поэтому его нельзя сохранять или возвращать. Изменения фиксируются в хранилище только при
+     * успешном завершении действия; исключение отменяет их.
+     * </p>
+     *
+     * @param uuid   UUID пользователя.
+     * @param action действие над состоянием пользователя.
+     * @param <T>    тип результата.
+     * @return результат действия.
+     */
+    public <T> T execute(UUID uuid, Function<UserData, T> action) {
+        Shard shard = shardFor(uuid);
+        Outcome<T> outcome = await(shard.executor.submit(() -> shard.execute(uuid, action)));
+        while (!outcome.applied()) {
+            UserData loaded = loader.apply(uuid);
+            long evictions = outcome.evictions();
+            outcome = await(shard.executor.submit(() -> shard.execute(loaded, evictions, action)));
+        }
+        return outcome.value();
+    }
+
+    /**
+     * Возвращает копии всех изменённых пользователей и снимает с них отметку об изменении.
+     *
+     * @return изменённые с прошлого вызова пользователи.
+     */
+    public List<UserData> drainDirty() {
+        List<Future<List<UserData>>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(shard.executor.submit(shard::drainDirty));
+        }
+        List<UserData> result = new ArrayList<>();
+        for (Future<List<UserData>> future : futures) {
+            result.addAll(await(future));
+        }
+        return result;
+    }
+
+    /**
+     * Подтверждает, что пользователи, полученные последним вызовом {@link #drainDirty()}, сохранены,
+     * и их снова можно вытеснять.
+     */
+    public void completeDrain() {
+        List<Future<?>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(shard.executor.submit(shard::completeDrain));
+        }
+        futures.forEach(UserStateStore::await);
+    }
+
+    /**
+     * Повторно отмечает пользователей изменёнными, например после неудачного сохранения.
+     *
+     * @param uuids UUID пользователей.
+     */
+    public void markDirty(Collection<UUID> uuids) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            Shard shard = shardFor(uuid);
+            futures.add(shard.executor.submit(() -> shard.markDirty(uuid)));
+        }
+        futures.forEach(UserStateStore::await);
+    }
+
+    /**
+     * @return количество пользователей в хранилище.
+     */
+    public int size() {
+        List<Future<Integer>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(shard.executor.submit(() -> shard.size));
+        }
+        return futures.stream().mapToInt(UserStateStore::await).sum();
+    }
+
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.executor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Shard shardFor(UUID uuid) {
+        // Младшие биты хеша использует UuidIndex внутри шарда, поэтому шард выбирается по старшим
+        return shards[(int) ((Hashing.hash64(uuid) >>> 32) % shards.length)];
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for user state shard.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("User state shard task failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Результат задачи шарда: значение действия или признак того, что пользователя нужно загрузить.
+     *
+     * @param applied   {@code true}, если действие выполнено.
+     * @param value     результат действия.
+     * @param evictions количество вытеснений шарда на момент промаха.
+     */
+    private record Outcome<T>(boolean applied, T value, long evictions) {
+    }
+
+    /**
+     * Шард хранилища. Все поля изменяются только потоком шарда.
+     */
+    private final class Shard {
+
+        private final ExecutorService executor;
+        private final int capacity;
+        private final UuidIndex slots = new UuidIndex(INITIAL_CAPACITY);
+        private final BitSet dirty = new BitSet();
+        private final BitSet draining = new BitSet();
+        private final BitSet referenced = new BitSet();
+        private final UserData scratch = new UserData();
+        private UUID[] uuids = new UUID[INITIAL_CAPACITY];
+        private String[] countries = new String[INITIAL_CAPACITY];
+        private LocalDateTime[] createdAt = new LocalDateTime[INITIAL_CAPACITY];
+        private int[] money = new int[INITIAL_CAPACITY];
+        private int[] activity = new int[INITIAL_CAPACITY];
+        private int[] syncCount = new int[INITIAL_CAPACITY];
+        private int[] statCount = new int[INITIAL_CAPACITY];
+        private long[] lastSyncTime = new long[INITIAL_CAPACITY];
+        private long[] lastStatTime = new long[INITIAL_CAPACITY];
+        private int size;
+        private int hand;
+        private long evictions;
+
+        private Shard(int index, int capacity) {
+            this.capacity = capacity;
+            this.executor = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "user-state-shard-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        private <T> Outcome<T> execute(UUID uuid, Function<UserData, T> action) {
+            int slot = slots.get(uuid);
+            if (slot == UuidIndex.MISSING) {
+                return new Outcome<>(false, null, evictions);
+            }
+            return new Outcome<>(true, apply(slot, action), evictions);
+        }
+
+        private <T> Outcome<T> execute(UserData loaded, long expectedEvictions, Function<UserData, T> action) {
+            int slot = slots.get(loaded.getUuid());
+            if (slot == UuidIndex.MISSING) {
+                if (evictions != expectedEvictions) {
+                    // Данные могли быть прочитаны до сохранения изменений вытесненного пользователя
+                    return new Outcome<>(false, null, evictions);
+                }
+                slot = insert(loaded);
+            }
+            return new Outcome<>(true, apply(slot, action), evictions);
+        }
+
+        private <T> T apply(int slot, Function<UserData, T> action) {
+            referenced.set(slot);
+            read(slot, scratch);
+            T result = action.apply(scratch);
+            if (write(slot, scratch)) {
+                dirty.set(slot);
+            }
+            return result;
+        }
+
+        private List<UserData> drainDirty() {
+            List<UserData> result = new ArrayList<>(dirty.cardinality());
+            for (int slot = dirty.nextSetBit(0); slot >= 0; slot = dirty.nextSetBit(slot + 1)) {
+                UserData copy = new UserData();
+                read(slot, copy);
+                result.add(copy);
+            }
+            draining.or(dirty);
+            dirty.clear();
+            return result;
+        }
+
+        private Void completeDrain() {
+            draining.clear();
+            return null;
+        }
+
+        private Void markDirty(UUID uuid) {
+            int slot = slots.get(uuid);
+            if (slot != UuidIndex.MISSING) {
+                dirty.set(slot);
+                draining.clear(slot);
+            }
+            return null;
+        }
+
+        /**
+         * Освобождает слот давно не использовавшегося сохранённого пользователя.
+         *
+         * @return освобождённый слот или {@link UuidIndex#MISSING}, если все пользователи изменены.
+         */
+        private int evict() {
+            for (int i = 0; i < size * 2; i++) {
+                int slot = hand;
+                hand = (hand + 1) % size;
+                if (dirty.get(slot) || draining.get(slot)) {
+                    continue;
+                }
+                if (referenced.get(slot)) {
+                    referenced.clear(slot);
+                    continue;
+                }
+                slots.remove(uuids[slot]);
+                evictions++;
+                return slot;
+            }
+            return UuidIndex.MISSING;
+        }
+
+        private int insert(UserData userData) {
+            int slot = size < capacity ? UuidIndex.MISSING : evict();
+            if (slot == UuidIndex.MISSING) {
+                slot = append();
+            }
+            uuids[slot] = userData.getUuid();
+            createdAt[slot] = userData.getCreatedAt();
+            write(slot, userData);
+            slots.put(userData.getUuid(), slot);
+            return slot;
+        }
+
+        private int append() {
+            if (size == uuids.length) {
+                int length = size * 2;
+                uuids = Arrays.copyOf(uuids, length);
+                countries = Arrays.copyOf(countries, length);
+                createdAt = Arrays.copyOf(createdAt, length);
+                money = Arrays.copyOf(money, length);
+                activity = Arrays.copyOf(activity, length);
+                syncCount = Arrays.copyOf(syncCount, length);
+                statCount = Arrays.copyOf(statCount, length);
+                lastSyncTime = Arrays.copyOf(lastSyncTime, length);
+                lastStatTime = Arrays.copyOf(lastStatTime, length);
+            }
+            return size++;
+        }
+
+        private void read(int slot, UserData target) {
+            target.setUuid(uuids[slot]);
+            target.setCountry(countries[slot]);
+            target.setCreatedAt(createdAt[slot]);
+            target.setMoney(money[slot]);
+            target.setActivity(activity[slot]);
+            target.setSyncCount(syncCount[slot]);
+            target.setStatCount(statCount[slot]);
+            target.setLastSyncTime(lastSyncTime[slot]);
+            target.setLastStatTime(lastStatTime[slot]);
+        }
+
+        /**
+         * @return {@code true}, если хотя бы одно поле изменилось.
+         */
+        private boolean write(int slot, UserData source) {
+            boolean changed = !Objects.equals(countries[slot], source.getCountry())
+                    || money[slot] != source.getMoney()
+                    || activity[slot] != source.getActivity()
+                    || syncCount[slot] != source.getSyncCount()
+                    || statCount[slot] != source.getStatCount()
+                    || lastSyncTime[slot] != source.getLastSyncTime()
+                    || lastStatTime[slot] != source.getLastStatTime();
+            countries[slot] = source.getCountry();
+            money[slot] = source.getMoney();
+            activity[slot] = source.getActivity();
+            syncCount[slot] = source.getSyncCount();
+            statCount[slot] = source.getStatCount();
+            lastSyncTime[slot] = source.getLastSyncTime();
+            lastStatTime[slot] = source.getLastStatTime();
+            return changed;
+        }
+    }
+}
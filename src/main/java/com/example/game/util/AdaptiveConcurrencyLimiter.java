@@ -0,0 +1,215 @@
+package com.example.game.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивный ограничитель количества одновременно обрабатываемых запросов.
+ * <p>
+ * Предел подбирается по градиенту задержки: сравниваются короткое ({@code shortRtt}) и длинное
+ * ({@code longRtt}) экспоненциальные средние времени обработки. Пока короткое среднее не превышает
+ * длинное больше чем в {@code tolerance} раз, предел растёт примерно на квадратный корень из себя
+ * за цикл; когда запросы начинают ждать ресурсов (соединений пула, блокировок) и задержка растёт,
+ * предел уменьшается пропорционально отношению средних. Отказ обработки (ошибка сервера)
+ * уменьшает предел в {@code backoffRatio} раз.
+ * </p>
+ * <p>
+ * Запросы делятся на приоритеты. Запросы {@link Priority#LOW} допускаются только в пределах
+ * доли {@code lowPriorityShare} от предела и никогда не ждут. Запросы более высоких приоритетов
+ * при заполненном пределе ждут в очереди ограниченного размера не дольше заданного времени,
+ * и каждый освободившийся слот достаётся сначала им.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * Приоритет запроса; порядок констант — от высшего к низшему.
+     */
+    public enum Priority {
+        CRITICAL, NORMAL, LOW
+    }
+
+    private static final double SHORT_RTT_WEIGHT = 0.1;
+    private static final double LONG_RTT_WEIGHT = 0.01;
+    private static final double LIMIT_SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double backoffRatio;
+    private final double lowPriorityShare;
+    private final int maxQueueSize;
+    private final int[] waiting = new int[Priority.values().length];
+
+    private double limit;
+    private double shortRtt;
+    private double longRtt;
+    private int inFlight;
+
+    /**
+     * @param initialLimit     начальный предел.
+     * @param minLimit         минимальный предел.
+     * @param maxLimit         максимальный предел.
+     * @param tolerance        допустимое отношение короткой средней задержки к длинной.
+     * @param backoffRatio     множитель предела при отказе обработки.
+     * @param lowPriorityShare доля предела, доступная запросам низкого приоритета.
+     * @param maxQueueSize     максимальное количество ожидающих запросов.
+     * @throws IllegalArgumentException если параметры несовместимы.
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance,
+                                      double backoffRatio, double lowPriorityShare, int maxQueueSize) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max: "
+                    + minLimit + ", " + initialLimit + ", " + maxLimit);
+        }
+        if (tolerance < 1 || backoffRatio <= 0 || backoffRatio >= 1 || lowPriorityShare <= 0 || lowPriorityShare > 1
+                || maxQueueSize < 0) {
+            throw new IllegalArgumentException("Invalid limiter parameters");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.backoffRatio = backoffRatio;
+        this.lowPriorityShare = lowPriorityShare;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * Занимает слот обработки запроса.
+     *
+     * @param priority приоритет запроса.
+     * @param maxWait  максимальное время ожидания слота; не используется для {@link Priority#LOW}.
+     * @param unit     единица времени ожидания.
+     * @return {@code true}, если слот занят и после обработки должен быть освобождён {@link #release}.
+     * @throws InterruptedException если поток прерван во время ожидания.
+     */
+    public boolean tryAcquire(Priority priority, long maxWait, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            if (canEnter(priority)) {
+                inFlight++;
+                return true;
+            }
+            if (priority == Priority.LOW || maxWait <= 0 || queueDepthLocked() >= maxQueueSize) {
+                return false;
+            }
+            waiting[priority.ordinal()]++;
+            try {
+                long remaining = unit.toNanos(maxWait);
+                while (!canEnter(priority)) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+                return true;
+            } finally {
+                waiting[priority.ordinal()]--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает слот и учитывает результат обработки запроса.
+     *
+     * @param rttNanos время обработки в наносекундах.
+     * @param dropped  {@code true}, если обработка завершилась отказом сервера.
+     */
+    public void release(long rttNanos, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (dropped) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else {
+                update(Math.max(1, rttNanos));
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(double rtt) {
+        if (longRtt == 0) {
+            shortRtt = rtt;
+            longRtt = rtt;
+            return;
+        }
+        shortRtt += (rtt - shortRtt) * SHORT_RTT_WEIGHT;
+        longRtt += (rtt - longRtt) * LONG_RTT_WEIGHT;
+        // После перегрузки длинное среднее остаётся завышенным; его сближение с коротким ускоряет восстановление
+        if (longRtt > shortRtt * 2) {
+            longRtt *= 0.95;
+        }
+        // Предел не растёт, пока он не используется хотя бы наполовину
+        if (inFlight + 1 < limit / 2) {
+            return;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING));
+    }
+
+    private boolean canEnter(Priority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (waiting[i] > 0) {
+                return false;
+            }
+        }
+        int capacity = priority == Priority.LOW ? Math.max(1, (int) (limit * lowPriorityShare)) : (int) limit;
+        return inFlight < capacity;
+    }
+
+    private int queueDepthLocked() {
+        int depth = 0;
+        for (int count : waiting) {
+            depth += count;
+        }
+        return depth;
+    }
+
+    /**
+     * @return текущий предел одновременно обрабатываемых запросов.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return количество обрабатываемых запросов.
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return количество запросов, ожидающих слота.
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queueDepthLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
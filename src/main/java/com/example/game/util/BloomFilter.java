@@ -0,0 +1,105 @@
+package com.example.game.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Фильтр Блума для проверки принадлежности элемента множеству.
+ * <p>
+ * Отрицательный ответ {@link #mightContain(long)} точен: добавленный элемент всегда найден.
+ * Положительный ответ ложен с вероятностью, заданной при создании для расчётного количества
+ * элементов. Удаление элементов не поддерживается. Позиции битов вычисляются двойным
+ * хешированием из 64-битного хеша элемента. Добавление и проверка потокобезопасны без блокировок.
+ * </p>
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Создаёт пустой фильтр.
+     *
+     * @param expectedInsertions расчётное количество элементов.
+     * @param falsePositiveRate  допустимая вероятность ложноположительного ответа (от 0 до 1).
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive.");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1.");
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Добавляет элемент по его 64-битному хешу.
+     *
+     * @param hash равномерно распределённый хеш элемента.
+     */
+    public void put(long hash) {
+        long combined = hash;
+        long step = Hashing.mix64(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(combined, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while ((word & mask) == 0 && !words.weakCompareAndSetVolatile(index, word, word | mask)) {
+                word = words.get(index);
+            }
+            combined += step;
+        }
+    }
+
+    /**
+     * Проверяет, мог ли элемент быть добавлен.
+     *
+     * @param hash хеш элемента.
+     * @return {@code false}, если элемент точно не добавлялся.
+     */
+    public boolean mightContain(long hash) {
+        long combined = hash;
+        long step = Hashing.mix64(hash) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(combined, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += step;
+        }
+        return true;
+    }
+
+    /**
+     * Оценивает текущую вероятность ложноположительного ответа по доле установленных битов.
+     *
+     * @return вероятность от 0 до 1.
+     */
+    public double expectedFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) set / bitCount, hashCount);
+    }
+
+    /**
+     * @return размер битового массива в байтах.
+     */
+    public long sizeInBytes() {
+        return bitCount >>> 3;
+    }
+
+    /**
+     * @return количество хеш-функций.
+     */
+    public int getHashCount() {
+        return hashCount;
+    }
+}
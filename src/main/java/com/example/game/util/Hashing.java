@@ -0,0 +1,70 @@
+package com.example.game.util;
+
+import java.util.UUID;
+
+/**
+ * Быстрые некриптографические хеш-функции для вероятностных структур данных.
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * Вычисляет 64-битный хеш строки.
+     * <p>
+     * Символы смешиваются по схеме FNV-1a, после чего результат проходит финализатор
+     * MurmurHash3, который обеспечивает равномерное распределение всех 64 бит.
+     * </p>
+     *
+     * @param value строка для хеширования.
+     * @return 64-битный хеш.
+     */
+    public static long hash64(CharSequence value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * Вычисляет 64-битный хеш UUID по двум его 64-битным половинам без перевода в строку.
+     *
+     * @param value UUID для хеширования.
+     * @return 64-битный хеш.
+     */
+    public static long hash64(UUID value) {
+        return hash64(value.getMostSignificantBits(), value.getLeastSignificantBits());
+    }
+
+    /**
+     * Вычисляет 64-битный хеш пары 64-битных значений.
+     *
+     * @param high старшая половина ключа.
+     * @param low  младшая половина ключа.
+     * @return 64-битный хеш.
+     */
+    public static long hash64(long high, long low) {
+        return mix64(mix64(high) ^ low);
+    }
+
+    /**
+     * Финализатор MurmurHash3 для 64-битных значений.
+     *
+     * @param value исходное значение.
+     * @return перемешанное значение.
+     */
+    public static long mix64(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.game.util;
+
+import java.util.Arrays;
+
+/**
+ * Скетч HyperLogLog для приближённого подсчёта количества уникальных элементов.
+ * <p>
+ * Скетч с точностью {@code p} занимает {@code 2^p} байт независимо от количества
+ * добавленных элементов. Стандартная ошибка оценки составляет {@code 1.04 / sqrt(2^p)},
+ * то есть около 1.6% при {@code p = 12} (4 КБ). Скетчи с одинаковой точностью
+ * объединяются без потери точности, что позволяет считать уникальных пользователей
+ * за произвольный период по дневным скетчам.
+ * </p>
+ */
+public final class HyperLogLog {
+
+    /**
+     * Точность по умолчанию: 4096 регистров (4 КБ).
+     */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+
+    /**
+     * Создаёт пустой скетч.
+     *
+     * @param precision количество бит хеша, определяющих номер регистра (от 4 до 16).
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("Precision must be between 4 and 16.");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(int precision, byte[] registers) {
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    /**
+     * Добавляет элемент по его 64-битному хешу.
+     *
+     * @param hash равномерно распределённый хеш элемента.
+     */
+    public synchronized void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        int rank = rest == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * Объединяет другой скетч с текущим.
+     *
+     * @param other скетч с той же точностью.
+     */
+    public synchronized void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precision.");
+        }
+        byte[] otherRegisters = other.snapshot();
+        for (int i = 0; i < registers.length; i++) {
+            if (otherRegisters[i] > registers[i]) {
+                registers[i] = otherRegisters[i];
+            }
+        }
+    }
+
+    /**
+     * Возвращает оценку количества уникальных элементов.
+     *
+     * @return оценка мощности множества.
+     */
+    public synchronized long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Поправка для малых мощностей (linear counting)
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Создаёт независимую копию скетча.
+     *
+     * @return копия скетча.
+     */
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, snapshot());
+    }
+
+    /**
+     * @return размер регистров скетча в байтах.
+     */
+    public int sizeInBytes() {
+        return registers.length;
+    }
+
+    private synchronized byte[] snapshot() {
+        return Arrays.copyOf(registers, registers.length);
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
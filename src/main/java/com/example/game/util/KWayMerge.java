@@ -0,0 +1,65 @@
+package com.example.game.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * K-путевое слияние отсортированных списков с помощью кучи.
+ * <p>
+ * Позволяет получить первые N элементов объединения k отсортированных списков
+ * за O(N log k) без полной сортировки исходных данных.
+ * </p>
+ */
+public final class KWayMerge {
+
+    private KWayMerge() {
+    }
+
+    /**
+     * Сливает отсортированные списки и возвращает первые {@code limit} элементов.
+     *
+     * @param sortedLists списки, каждый из которых отсортирован в порядке {@code comparator}.
+     * @param comparator  порядок сортировки элементов.
+     * @param limit       максимальное количество элементов результата.
+     * @param <T>         тип элементов.
+     * @return первые {@code limit} элементов объединения в порядке {@code comparator}.
+     */
+    public static <T> List<T> merge(List<? extends List<? extends T>> sortedLists, Comparator<? super T> comparator, int limit) {
+        PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(1, sortedLists.size()),
+                (a, b) -> comparator.compare(a.current(), b.current()));
+        for (List<? extends T> list : sortedLists) {
+            if (list != null && !list.isEmpty()) {
+                heap.add(new Cursor<>(list));
+            }
+        }
+
+        List<T> result = new ArrayList<>(Math.min(limit, 1024));
+        while (result.size() < limit && !heap.isEmpty()) {
+            Cursor<T> cursor = heap.poll();
+            result.add(cursor.current());
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private static final class Cursor<T> {
+        private final List<? extends T> list;
+        private int position;
+
+        private Cursor(List<? extends T> list) {
+            this.list = list;
+        }
+
+        private T current() {
+            return list.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < list.size();
+        }
+    }
+}
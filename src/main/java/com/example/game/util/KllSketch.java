@@ -0,0 +1,398 @@
+package com.example.game.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Потоковый скетч квантилей KLL (Karnin, Lang, Liberty) для целочисленных значений.
+ * <p>
+ * Скетч хранит иерархию компакторов: элемент уровня {@code h} представляет {@code 2^h}
+ * исходных значений. Когда уровень переполняется, он сортируется и в следующий уровень
+ * переносится каждый второй элемент со случайным смещением. Объём памяти составляет
+ * O(k) элементов независимо от количества обработанных значений.
+ * </p>
+ * <p>
+ * Точность: при {@code k = 200} нормированная ошибка ранга не превышает примерно 1.65%
+ * с вероятностью 99%, то есть возвращаемое значение p99 лежит между истинными p97.35 и p100.
+ * Скетчи с одинаковым {@code k} объединяются с той же гарантией, поэтому скетчи
+ * нескольких узлов можно сериализовать ({@link #toBytes()}) и слить на одном узле.
+ * </p>
+ */
+public final class KllSketch implements QuantileSummary {
+
+    /**
+     * Параметр точности по умолчанию.
+     */
+    public static final int DEFAULT_K = 200;
+
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_K = 1 << 16;
+    private static final int MAX_LEVELS = 61;
+    private static final String MALFORMED_SKETCH = "Malformed sketch data.";
+
+    private final int k;
+    private final SplittableRandom random;
+    private int[][] levels;
+    private int[] sizes;
+    private int numLevels;
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    /**
+     * Создаёт пустой скетч с точностью {@link #DEFAULT_K}.
+     */
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Создаёт пустой скетч.
+     *
+     * @param k параметр точности: ошибка ранга убывает примерно как {@code 1/k}.
+     */
+    public KllSketch(int k) {
+        if (k < 8) {
+            throw new IllegalArgumentException("Parameter k must be at least 8.");
+        }
+        this.k = k;
+        this.random = new SplittableRandom();
+        this.levels = new int[0][];
+        this.sizes = new int[0];
+        grow();
+    }
+
+    /**
+     * Добавляет значение в скетч.
+     *
+     * @param value добавляемое значение.
+     */
+    public synchronized void update(int value) {
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Добавляет значение с весом, как если бы оно было добавлено {@code weight} раз.
+     * <p>
+     * Вес раскладывается по двоичным разрядам: для каждого установленного разряда {@code h}
+     * значение помещается сразу на уровень {@code h}, где элемент представляет {@code 2^h}
+     * исходных значений. Время не зависит от величины веса.
+     * </p>
+     *
+     * @param value  добавляемое значение.
+     * @param weight количество повторений значения.
+     */
+    public synchronized void update(int value, long weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive.");
+        }
+        for (int h = 0; h < Long.SIZE - 1; h++) {
+            if ((weight & (1L << h)) != 0) {
+                while (numLevels <= h) {
+                    grow();
+                }
+                append(h, value);
+            }
+        }
+        count += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+
+    /**
+     * Объединяет другой скетч с текущим.
+     *
+     * @param other скетч с тем же параметром {@code k}.
+     */
+    public void merge(KllSketch other) {
+        if (other == this) {
+            throw new IllegalArgumentException("Cannot merge a sketch with itself.");
+        }
+        KllSketch snapshot = other.copy();
+        synchronized (this) {
+            if (snapshot.k != k) {
+                throw new IllegalArgumentException("Cannot merge sketches with different k.");
+            }
+            while (numLevels < snapshot.numLevels) {
+                grow();
+            }
+            for (int h = 0; h < snapshot.numLevels; h++) {
+                for (int i = 0; i < snapshot.sizes[h]; i++) {
+                    append(h, snapshot.levels[h][i]);
+                }
+            }
+            count += snapshot.count;
+            if (snapshot.count > 0) {
+                min = Math.min(min, snapshot.min);
+                max = Math.max(max, snapshot.max);
+            }
+            while (retained >= maxRetained) {
+                compress();
+            }
+        }
+    }
+
+    /**
+     * @return параметр точности скетча.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return количество обработанных значений.
+     */
+    @Override
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return количество значений, хранимых скетчем в памяти.
+     */
+    public synchronized int getRetained() {
+        return retained;
+    }
+
+    /**
+     * Возвращает приближённое значение квантиля.
+     *
+     * @param quantile уровень квантиля от 0 до 1.
+     * @return значение, ранг которого приближённо равен {@code quantile}.
+     * @throws IllegalStateException если скетч пуст.
+     */
+    @Override
+    public synchronized int quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+        if (count == 0) {
+            throw new IllegalStateException("Sketch is empty.");
+        }
+        if (quantile == 0) {
+            return min;
+        }
+        if (quantile == 1) {
+            return max;
+        }
+        long[] sorted = sortedWeighted();
+        long target = (long) Math.ceil(quantile * count);
+        long cumulative = 0;
+        for (long entry : sorted) {
+            cumulative += weight(entry);
+            if (cumulative >= target) {
+                return value(entry);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Возвращает приближённую долю значений, не превышающих указанное.
+     *
+     * @param value граничное значение.
+     * @return нормированный ранг от 0 до 1.
+     */
+    @Override
+    public synchronized double rank(int value) {
+        if (count == 0) {
+            return 0;
+        }
+        long weight = 0;
+        for (int h = 0; h < numLevels; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (levels[h][i] <= value) {
+                    weight += 1L << h;
+                }
+            }
+        }
+        return (double) weight / count;
+    }
+
+    /**
+     * Создаёт независимую копию скетча.
+     *
+     * @return копия скетча.
+     */
+    public KllSketch copy() {
+        return fromBytes(toBytes());
+    }
+
+    /**
+     * Сериализует скетч для передачи на другой узел.
+     *
+     * @return бинарное представление скетча.
+     */
+    public synchronized byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + retained * 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeInt(k);
+            out.writeLong(count);
+            out.writeInt(min);
+            out.writeInt(max);
+            out.writeInt(numLevels);
+            for (int h = 0; h < numLevels; h++) {
+                out.writeInt(sizes[h]);
+                for (int i = 0; i < sizes[h]; i++) {
+                    out.writeInt(levels[h][i]);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Восстанавливает скетч из бинарного представления.
+     * <p>
+     * Данные могут прийти с другого узла, поэтому размеры уровней проверяются до чтения значений:
+     * количество уровней ограничено, общее количество значений — ёмкостью
+     * скетча с тем же {@code k}, а сумма весов значений должна совпадать с {@code count}.
+     * </p>
+     *
+     * @param data результат {@link #toBytes()}.
+     * @return восстановленный скетч.
+     * @throws IllegalArgumentException если данные повреждены или не соответствуют формату.
+     */
+    public static KllSketch fromBytes(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported sketch format version: " + version);
+            }
+            int k = in.readInt();
+            if (k > MAX_K) {
+                throw new IllegalArgumentException("Parameter k must not exceed " + MAX_K + ".");
+            }
+            KllSketch sketch = new KllSketch(k);
+            sketch.count = in.readLong();
+            sketch.min = in.readInt();
+            sketch.max = in.readInt();
+            int levelCount = in.readInt();
+            if (sketch.count < 0 || levelCount < 1 || levelCount > MAX_LEVELS) {
+                throw new IllegalArgumentException(MALFORMED_SKETCH);
+            }
+            while (sketch.numLevels < levelCount) {
+                sketch.grow();
+            }
+            long weight = 0;
+            for (int h = 0; h < levelCount; h++) {
+                int size = in.readInt();
+                if (size < 0 || size > sketch.maxRetained - sketch.retained) {
+                    throw new IllegalArgumentException(MALFORMED_SKETCH);
+                }
+                for (int i = 0; i < size; i++) {
+                    int value = in.readInt();
+                    if (value < sketch.min || value > sketch.max) {
+                        throw new IllegalArgumentException(MALFORMED_SKETCH);
+                    }
+                    sketch.append(h, value);
+                }
+                weight = Math.addExact(weight, Math.multiplyExact((long) size, 1L << h));
+            }
+            if (weight != sketch.count || in.available() > 0) {
+                throw new IllegalArgumentException(MALFORMED_SKETCH);
+            }
+            return sketch;
+        } catch (IOException | ArithmeticException e) {
+            throw new IllegalArgumentException(MALFORMED_SKETCH, e);
+        }
+    }
+
+    private void append(int level, int value) {
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], Math.max(MIN_CAPACITY, sizes[level] * 2));
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+
+    private void compress() {
+        for (int h = 0; h < numLevels; h++) {
+            if (sizes[h] >= capacity(h)) {
+                if (h + 1 == numLevels) {
+                    grow();
+                }
+                compact(h);
+                return;
+            }
+        }
+    }
+
+    private void compact(int level) {
+        int[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+        int pairs = size / 2;
+        int offset = random.nextBoolean() ? 1 : 0;
+        for (int i = 0; i < pairs; i++) {
+            append(level + 1, items[2 * i + offset]);
+        }
+        // При нечётном размере наибольший элемент остаётся на текущем уровне
+        if (size % 2 == 1) {
+            items[0] = items[size - 1];
+            sizes[level] = 1;
+        } else {
+            sizes[level] = 0;
+        }
+        retained -= 2 * pairs;
+    }
+
+    private void grow() {
+        levels = Arrays.copyOf(levels, numLevels + 1);
+        sizes = Arrays.copyOf(sizes, numLevels + 1);
+        levels[numLevels] = new int[MIN_CAPACITY];
+        numLevels++;
+        maxRetained = 0;
+        for (int h = 0; h < numLevels; h++) {
+            maxRetained += capacity(h);
+        }
+    }
+
+    private int capacity(int level) {
+        int depth = numLevels - level - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private long[] sortedWeighted() {
+        long[] entries = new long[retained];
+        int n = 0;
+        for (int h = 0; h < numLevels; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                // Значение в старших 32 битах определяет порядок сортировки, уровень хранится в младших
+                entries[n++] = ((long) levels[h][i] << 32) | h;
+            }
+        }
+        Arrays.sort(entries, 0, n);
+        return entries;
+    }
+
+    private static int value(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    private static long weight(long entry) {
+        return 1L << (int) (entry & 0xFFFF_FFFFL);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.game.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма целочисленных значений с логарифмическими интервалами, поддерживающая удаление значений.
+ * <p>
+ * Значения по модулю меньше {@link #LINEAR_LIMIT} учитываются точно, каждое в своём интервале.
+ * Большие значения попадают в интервалы {@code (γ^(i-1), γ^i]} с {@code γ = (1 + α) / (1 - α)}
+ * и {@code α = }{@link #RELATIVE_ACCURACY}, поэтому квантиль отличается от истинного значения
+ * того же ранга не более чем на 1%. На весь диапазон {@code int} приходится меньше двух тысяч
+ * интервалов каждого знака.
+ * </p>
+ * <p>
+ * В отличие от {@link KllSketch} гистограмма хранит точные количества значений в интервалах,
+ * поэтому значение можно удалить: при изменении данных пользователя прежнее значение удаляется,
+ * а новое добавляется без перечитывания всех значений. Изменения потокобезопасны
+ * и не блокируют друг друга.
+ * </p>
+ */
+public final class LogHistogram implements QuantileSummary {
+
+    /**
+     * Относительная точность значений в логарифмических интервалах.
+     */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * Граница по модулю, ниже которой значения учитываются точно.
+     */
+    public static final int LINEAR_LIMIT = 1024;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int FIRST_LOG_INDEX = logIndex(LINEAR_LIMIT);
+    private static final int BUCKETS = LINEAR_LIMIT + logIndex(1L << 31) - FIRST_LOG_INDEX + 1;
+
+    /**
+     * Неотрицательные значения; интервал 0 хранит нули.
+     */
+    private final AtomicLongArray positive = new AtomicLongArray(BUCKETS);
+    /**
+     * Отрицательные значения по модулю; создаётся при первом отрицательном значении.
+     */
+    private volatile AtomicLongArray negative;
+
+    /**
+     * Добавляет значение.
+     *
+     * @param value добавляемое значение.
+     */
+    public void add(int value) {
+        counts(value, true).incrementAndGet(bucket(value));
+    }
+
+    /**
+     * Удаляет ранее добавленное значение.
+     * <p>
+     * Если в интервале значения нет, гистограмма не изменяется: количество не становится отрицательным.
+     * </p>
+     *
+     * @param value удаляемое значение.
+     * @return {@code true}, если значение было удалено.
+     */
+    public boolean remove(int value) {
+        AtomicLongArray counts = counts(value, false);
+        if (counts == null) {
+            return false;
+        }
+        int bucket = bucket(value);
+        long previous;
+        do {
+            previous = counts.get(bucket);
+            if (previous == 0) {
+                return false;
+            }
+        } while (!counts.compareAndSet(bucket, previous, previous - 1));
+        return true;
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        long[] negativeCounts = snapshot(negative);
+        long[] positiveCounts = snapshot(positive);
+        for (int i = 0; i < BUCKETS; i++) {
+            count += negativeCounts[i] + positiveCounts[i];
+        }
+        return count;
+    }
+
+    @Override
+    public int quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1.");
+        }
+        long[] negativeCounts = snapshot(negative);
+        long[] positiveCounts = snapshot(positive);
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += negativeCounts[i] + positiveCounts[i];
+        }
+        if (count == 0) {
+            throw new IllegalStateException("Histogram is empty.");
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * count));
+        long cumulative = 0;
+        for (int i = BUCKETS - 1; i > 0; i--) {
+            cumulative += negativeCounts[i];
+            if (cumulative >= target) {
+                return -representative(i);
+            }
+        }
+        int last = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (positiveCounts[i] > 0) {
+                cumulative += positiveCounts[i];
+                last = i;
+                if (cumulative >= target) {
+                    return representative(i);
+                }
+            }
+        }
+        return representative(last);
+    }
+
+    @Override
+    public double rank(int value) {
+        long[] negativeCounts = snapshot(negative);
+        long[] positiveCounts = snapshot(positive);
+        int bucket = bucket(value);
+        long count = 0;
+        long weight = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += negativeCounts[i] + positiveCounts[i];
+            if (value >= 0 || i >= bucket) {
+                weight += negativeCounts[i];
+            }
+            if (value >= 0 && i <= bucket) {
+                weight += positiveCounts[i];
+            }
+        }
+        return count == 0 ? 0 : (double) weight / count;
+    }
+
+    /**
+     * Строит скетч {@link KllSketch} с теми же значениями для объединения со скетчами других узлов.
+     * <p>
+     * Каждый непустой интервал добавляется одним значением с весом, равным количеству значений в нём.
+     * </p>
+     *
+     * @return скетч с параметром точности {@link KllSketch#DEFAULT_K}.
+     */
+    public KllSketch toKllSketch() {
+        KllSketch sketch = new KllSketch();
+        long[] negativeCounts = snapshot(negative);
+        long[] positiveCounts = snapshot(positive);
+        for (int i = 0; i < BUCKETS; i++) {
+            if (negativeCounts[i] > 0) {
+                sketch.update(-representative(i), negativeCounts[i]);
+            }
+            if (positiveCounts[i] > 0) {
+                sketch.update(representative(i), positiveCounts[i]);
+            }
+        }
+        return sketch;
+    }
+
+    private AtomicLongArray counts(int value, boolean create) {
+        if (value >= 0) {
+            return positive;
+        }
+        AtomicLongArray counts = negative;
+        if (counts == null && create) {
+            synchronized (this) {
+                if (negative == null) {
+                    negative = new AtomicLongArray(BUCKETS);
+                }
+                counts = negative;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Возвращает номер интервала модуля значения: точный для малых значений, логарифмический для больших.
+     */
+    private static int bucket(int value) {
+        long magnitude = Math.abs((long) value);
+        if (magnitude < LINEAR_LIMIT) {
+            return (int) magnitude;
+        }
+        return LINEAR_LIMIT + logIndex(magnitude) - FIRST_LOG_INDEX;
+    }
+
+    /**
+     * Возвращает значение, представляющее интервал: для логарифмического интервала это точка,
+     * относительное отклонение которой от любой границы интервала не превышает {@link #RELATIVE_ACCURACY}.
+     */
+    private static int representative(int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        double value = 2 * Math.pow(GAMMA, bucket - LINEAR_LIMIT + FIRST_LOG_INDEX) / (GAMMA + 1);
+        return (int) Math.max(LINEAR_LIMIT, Math.min(Integer.MAX_VALUE, Math.round(value)));
+    }
+
+    private static int logIndex(long magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    private static long[] snapshot(AtomicLongArray counts) {
+        long[] result = new long[BUCKETS];
+        if (counts != null) {
+            for (int i = 0; i < BUCKETS; i++) {
+                result[i] = counts.get(i);
+            }
+        }
+        return result;
+    }
+}
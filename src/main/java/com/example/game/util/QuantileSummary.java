@@ -0,0 +1,29 @@
+package com.example.game.util;
+
+/**
+ * Приближённое распределение целочисленных значений, отвечающее на запросы квантилей и рангов.
+ */
+public interface QuantileSummary {
+
+    /**
+     * @return количество учтённых значений.
+     */
+    long getCount();
+
+    /**
+     * Возвращает приближённое значение квантиля.
+     *
+     * @param quantile уровень квантиля от 0 до 1.
+     * @return значение, ранг которого приближённо равен {@code quantile}.
+     * @throws IllegalStateException если распределение пусто.
+     */
+    int quantile(double quantile);
+
+    /**
+     * Возвращает приближённую долю значений, не превышающих указанное.
+     *
+     * @param value граничное значение.
+     * @return нормированный ранг от 0 до 1.
+     */
+    double rank(int value);
+}
@@ -0,0 +1,226 @@
+package com.example.game.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Индексированный список с пропусками (order-statistic skip list).
+ * <p>
+ * Каждая ссылка уровня хранит "ширину" — количество элементов, через которые она
+ * перепрыгивает. Это позволяет за ожидаемое время O(log n) не только вставлять и удалять
+ * элементы, но и вычислять позицию элемента в порядке сортировки и получать элемент по позиции.
+ * </p>
+ * <p>
+ * Класс не потокобезопасен: синхронизация выполняется вызывающим кодом.
+ * </p>
+ *
+ * @param <T> тип элементов; элементы, равные с точки зрения компаратора, не допускаются.
+ */
+public final class RankedSkipList<T> {
+
+    private static final int MAX_LEVEL = 32;
+
+    private final Comparator<? super T> comparator;
+    private final Node<T> head = new Node<>(null, MAX_LEVEL);
+    private final SplittableRandom random = new SplittableRandom();
+    private int level = 1;
+    private int size;
+
+    /**
+     * Создаёт пустой список.
+     *
+     * @param comparator порядок элементов.
+     */
+    public RankedSkipList(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    /**
+     * @return количество элементов в списке.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Добавляет элемент.
+     *
+     * @param value добавляемый элемент.
+     * @return {@code false}, если равный элемент уже присутствует.
+     */
+    public boolean add(T value) {
+        Node<T>[] update = Node.array(MAX_LEVEL);
+        int[] rank = new int[MAX_LEVEL];
+        Node<T> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (x.next[i] != null && comparator.compare(x.next[i].value, value) < 0) {
+                rank[i] += x.span[i];
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        if (x.next[0] != null && comparator.compare(x.next[0].value, value) == 0) {
+            return false;
+        }
+
+        int nodeLevel = randomLevel();
+        if (nodeLevel > level) {
+            for (int i = level; i < nodeLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+            level = nodeLevel;
+        }
+
+        Node<T> node = new Node<>(value, nodeLevel);
+        for (int i = 0; i < nodeLevel; i++) {
+            node.next[i] = update[i].next[i];
+            update[i].next[i] = node;
+            node.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = rank[0] - rank[i] + 1;
+        }
+        for (int i = nodeLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Удаляет элемент.
+     *
+     * @param value удаляемый элемент.
+     * @return {@code false}, если элемент отсутствовал.
+     */
+    public boolean remove(T value) {
+        Node<T>[] update = Node.array(MAX_LEVEL);
+        Node<T> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && comparator.compare(x.next[i].value, value) < 0) {
+                x = x.next[i];
+            }
+            update[i] = x;
+        }
+        x = x.next[0];
+        if (x == null || comparator.compare(x.value, value) != 0) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == x) {
+                update[i].span[i] += x.span[i] - 1;
+                update[i].next[i] = x.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * Возвращает позицию элемента в порядке сортировки.
+     *
+     * @param value искомый элемент.
+     * @return позиция начиная с 1 или 0, если элемент отсутствует.
+     */
+    public int rank(T value) {
+        int rank = 0;
+        Node<T> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && comparator.compare(x.next[i].value, value) <= 0) {
+                rank += x.span[i];
+                x = x.next[i];
+            }
+            if (x != head && comparator.compare(x.value, value) == 0) {
+                return rank;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Возвращает элемент по позиции.
+     *
+     * @param rank позиция начиная с 1.
+     * @return элемент или {@code null}, если позиция вне списка.
+     */
+    public T get(int rank) {
+        Node<T> node = nodeAt(rank);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Возвращает элементы в диапазоне позиций.
+     *
+     * @param fromRank начальная позиция (включительно, начиная с 1).
+     * @param toRank   конечная позиция (включительно).
+     * @return элементы диапазона в порядке сортировки.
+     */
+    public List<T> range(int fromRank, int toRank) {
+        fromRank = Math.max(1, fromRank);
+        toRank = Math.min(size, toRank);
+        if (fromRank > toRank) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>(toRank - fromRank + 1);
+        Node<T> node = nodeAt(fromRank);
+        for (int i = fromRank; i <= toRank && node != null; i++) {
+            result.add(node.value);
+            node = node.next[0];
+        }
+        return result;
+    }
+
+    private Node<T> nodeAt(int rank) {
+        if (rank < 1 || rank > size) {
+            return null;
+        }
+        int traversed = 0;
+        Node<T> x = head;
+        for (int i = level - 1; i >= 0; i--) {
+            while (x.next[i] != null && traversed + x.span[i] <= rank) {
+                traversed += x.span[i];
+                x = x.next[i];
+            }
+            if (traversed == rank) {
+                return x;
+            }
+        }
+        return null;
+    }
+
+    private int randomLevel() {
+        int nodeLevel = 1;
+        while (nodeLevel < MAX_LEVEL && random.nextInt(4) == 0) {
+            nodeLevel++;
+        }
+        return nodeLevel;
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final Node<T>[] next;
+        private final int[] span;
+
+        private Node(T value, int level) {
+            this.value = value;
+            this.next = array(level);
+            this.span = new int[level];
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] array(int length) {
+            // Массив элементов Node<?> безопасно использовать как Node<T>[]: он не покидает список
+            return (Node<T>[]) new Node<?>[length];
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.game.util;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Хеш-таблица с открытой адресацией, отображающая UUID на неотрицательный {@code int}.
+ * <p>
+ * Ключ хранится как две 64-битные половины в примитивных массивах, поэтому запись занимает
+ * 20 байт без объектов-обёрток, а поиск не создаёт объектов и не сравнивает строки.
+ * Удаление сдвигает следующие ключи цепочки назад, поэтому таблица не накапливает удалённых записей.
+ * </p>
+ * <p>
+ * Класс не потокобезопасен.
+ * </p>
+ */
+public final class UuidIndex {
+
+    /**
+     * Значение, возвращаемое для отсутствующего ключа.
+     */
+    public static final int MISSING = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] highs;
+    private long[] lows;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    /**
+     * Создаёт пустую таблицу.
+     *
+     * @param expectedSize ожидаемое количество ключей.
+     */
+    public UuidIndex(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1);
+    }
+
+    /**
+     * @return количество ключей.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает значение по ключу.
+     *
+     * @param key UUID.
+     * @return значение или {@link #MISSING}.
+     */
+    public int get(UUID key) {
+        return get(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    /**
+     * Возвращает значение по ключу, заданному половинами UUID.
+     *
+     * @param high старшие 64 бита UUID.
+     * @param low  младшие 64 бита UUID.
+     * @return значение или {@link #MISSING}.
+     */
+    public int get(long high, long low) {
+        for (int i = slot(high, low); ; i = (i + 1) & mask) {
+            int value = values[i];
+            if (value == MISSING || (highs[i] == high && lows[i] == low)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Устанавливает значение по ключу.
+     *
+     * @param key   UUID.
+     * @param value неотрицательное значение.
+     * @return предыдущее значение или {@link #MISSING}.
+     */
+    public int put(UUID key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative.");
+        }
+        long high = key.getMostSignificantBits();
+        long low = key.getLeastSignificantBits();
+        for (int i = slot(high, low); ; i = (i + 1) & mask) {
+            int previous = values[i];
+            if (previous == MISSING) {
+                highs[i] = high;
+                lows[i] = low;
+                values[i] = value;
+                if (++size > resizeThreshold) {
+                    resize();
+                }
+                return MISSING;
+            }
+            if (highs[i] == high && lows[i] == low) {
+                values[i] = value;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Удаляет ключ.
+     *
+     * @param key UUID.
+     * @return удалённое значение или {@link #MISSING}.
+     */
+    public int remove(UUID key) {
+        long high = key.getMostSignificantBits();
+        long low = key.getLeastSignificantBits();
+        for (int i = slot(high, low); ; i = (i + 1) & mask) {
+            int value = values[i];
+            if (value == MISSING) {
+                return MISSING;
+            }
+            if (highs[i] == high && lows[i] == low) {
+                shiftBack(i);
+                size--;
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Заполняет освободившуюся ячейку ключами, которые без неё стали бы недостижимы.
+     */
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; values[i] != MISSING; i = (i + 1) & mask) {
+            int home = slot(highs[i], lows[i]);
+            // Ключ переносится, если его исходная ячейка не лежит между освободившейся и текущей
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                highs[gap] = highs[i];
+                lows[gap] = lows[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = MISSING;
+    }
+
+    private int slot(long high, long low) {
+        return (int) Hashing.hash64(high, low) & mask;
+    }
+
+    private void allocate(int capacity) {
+        highs = new long[capacity];
+        lows = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void resize() {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        int[] oldValues = values;
+        allocate(oldValues.length * 2);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int j = slot(oldHighs[i], oldLows[i]);
+                while (values[j] != MISSING) {
+                    j = (j + 1) & mask;
+                }
+                highs[j] = oldHighs[i];
+                lows[j] = oldLows[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.game.util;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Вспомогательные методы для работы с UUID как с парой 64-битных чисел.
+ */
+public final class Uuids {
+
+    /**
+     * Порядок UUID, совпадающий с порядком типа {@code uuid} в PostgreSQL (побайтовое
+     * беззнаковое сравнение). Стандартный {@link UUID#compareTo(UUID)} сравнивает половины
+     * со знаком, поэтому для слияния результатов запросов с {@code ORDER BY uuid} не подходит.
+     */
+    public static final Comparator<UUID> UNSIGNED_ORDER = Uuids::compareUnsigned;
+
+    private Uuids() {
+    }
+
+    /**
+     * Сравнивает UUID в порядке PostgreSQL.
+     *
+     * @param a первый UUID.
+     * @param b второй UUID.
+     * @return отрицательное число, ноль или положительное число.
+     */
+    public static int compareUnsigned(UUID a, UUID b) {
+        int high = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return high != 0 ? high : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.game.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Утилиты для кодирования целых чисел переменной длины (varint).
+ * <p>
+ * Небольшие значения занимают 1 байт вместо 4, поэтому кодировка используется
+ * для компактного хранения дельт дат и показателей активности в архивных файлах.
+ * Отрицательные значения предварительно преобразуются ZigZag-кодированием.
+ * </p>
+ */
+public final class VarInts {
+
+    private VarInts() {
+    }
+
+    /**
+     * Записывает беззнаковое значение в формате varint.
+     *
+     * @param out   поток для записи.
+     * @param value значение, интерпретируемое как беззнаковое.
+     * @return количество записанных байт.
+     * @throws IOException при ошибке записи в поток.
+     */
+    public static int writeUnsignedInt(OutputStream out, int value) throws IOException {
+        int written = 1;
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+            written++;
+        }
+        out.write(value);
+        return written;
+    }
+
+    /**
+     * Читает беззнаковое значение varint с текущей позиции буфера.
+     *
+     * @param buffer буфер, позиция которого сдвигается на длину значения.
+     * @return прочитанное значение.
+     */
+    public static int readUnsignedInt(ByteBuffer buffer) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * Записывает знаковое значение в формате ZigZag + varint.
+     *
+     * @param out   поток для записи.
+     * @param value знаковое значение.
+     * @return количество записанных байт.
+     * @throws IOException при ошибке записи в поток.
+     */
+    public static int writeSignedInt(OutputStream out, int value) throws IOException {
+        return writeUnsignedInt(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Читает знаковое значение, записанное методом {@link #writeSignedInt(OutputStream, int)}.
+     *
+     * @param buffer буфер, позиция которого сдвигается на длину значения.
+     * @return прочитанное значение.
+     */
+    public static int readSignedInt(ByteBuffer buffer) {
+        int raw = readUnsignedInt(buffer);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    /**
+     * Записывает беззнаковое 64-битное значение в формате varint.
+     *
+     * @param out   поток для записи.
+     * @param value значение, интерпретируемое как беззнаковое.
+     * @return количество записанных байт.
+     * @throws IOException при ошибке записи в поток.
+     */
+    public static int writeUnsignedLong(OutputStream out, long value) throws IOException {
+        int written = 1;
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+            written++;
+        }
+        out.write((int) value);
+        return written;
+    }
+
+    /**
+     * Читает беззнаковое 64-битное значение varint с текущей позиции буфера.
+     *
+     * @param buffer буфер, позиция которого сдвигается на длину значения.
+     * @return прочитанное значение.
+     */
+    public static long readUnsignedLong(ByteBuffer buffer) {
+        long result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /**
+     * Записывает знаковое 64-битное значение в формате ZigZag + varint.
+     *
+     * @param out   поток для записи.
+     * @param value знаковое значение.
+     * @return количество записанных байт.
+     * @throws IOException при ошибке записи в поток.
+     */
+    public static int writeSignedLong(OutputStream out, long value) throws IOException {
+        return writeUnsignedLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Читает знаковое значение, записанное методом {@link #writeSignedLong(OutputStream, long)}.
+     *
+     * @param buffer буфер, позиция которого сдвигается на длину значения.
+     * @return прочитанное значение.
+     */
+    public static long readSignedLong(ByteBuffer buffer) {
+        long raw = readUnsignedLong(buffer);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+}
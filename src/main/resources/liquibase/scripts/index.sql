@@ -29,4 +29,59 @@ CREATE INDEX idx_user_activity ON user_activity_history (uuid, activity_date DES
 
 -- changeset julia:3
 ALTER TABLE user_data
-ALTER COLUMN created_at DROP DEFAULT;
\ No newline at end of file
+ALTER COLUMN created_at DROP DEFAULT;
+
+-- changeset julia:4
+CREATE TABLE ingest_log_checkpoint (
+    id INT PRIMARY KEY,
+    applied_lsn BIGINT NOT NULL
+);
+
+INSERT INTO ingest_log_checkpoint (id, applied_lsn) VALUES (1, 0);
+
+-- changeset julia:5
+ALTER TABLE user_activity_history DROP CONSTRAINT user_activity_history_uuid_fkey;
+
+ALTER TABLE user_data
+ALTER COLUMN uuid TYPE UUID USING uuid::uuid;
+
+ALTER TABLE user_activity_history
+ALTER COLUMN uuid TYPE UUID USING uuid::uuid;
+
+ALTER TABLE user_activity_history
+ADD CONSTRAINT user_activity_history_uuid_fkey FOREIGN KEY (uuid) REFERENCES user_data(uuid);
+
+-- changeset julia:6
+ALTER TABLE user_data ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- changeset julia:7
+CREATE TABLE ingest_log_dead_letter (
+    lsn BIGINT PRIMARY KEY,
+    type VARCHAR(16) NOT NULL,
+    uuid UUID NOT NULL,
+    entry_timestamp BIGINT NOT NULL,
+    money INT NOT NULL,
+    country VARCHAR(255),
+    activity INT NOT NULL,
+    reason TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- changeset julia:8
+CREATE SEQUENCE user_data_registration_seq;
+
+ALTER TABLE user_data
+ADD COLUMN registration_seq BIGINT NOT NULL DEFAULT nextval('user_data_registration_seq');
+
+CREATE INDEX idx_user_data_registration_seq ON user_data (registration_seq);
+
+-- changeset julia:9
+ALTER TABLE ingest_log_checkpoint ADD COLUMN log_id VARCHAR(36) NOT NULL DEFAULT 'legacy';
+ALTER TABLE ingest_log_checkpoint DROP COLUMN id;
+ALTER TABLE ingest_log_checkpoint ALTER COLUMN log_id DROP DEFAULT;
+ALTER TABLE ingest_log_checkpoint ADD PRIMARY KEY (log_id);
+
+ALTER TABLE ingest_log_dead_letter ADD COLUMN log_id VARCHAR(36) NOT NULL DEFAULT 'legacy';
+ALTER TABLE ingest_log_dead_letter ALTER COLUMN log_id DROP DEFAULT;
+ALTER TABLE ingest_log_dead_letter DROP CONSTRAINT ingest_log_dead_letter_pkey;
+ALTER TABLE ingest_log_dead_letter ADD PRIMARY KEY (log_id, lsn);
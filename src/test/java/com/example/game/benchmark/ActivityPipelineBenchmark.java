@@ -0,0 +1,251 @@
+package com.example.game.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.example.game.model.UserData;
+import com.example.game.repository.UserDataRepository;
+import com.example.game.service.ActivityPipelineService;
+import com.example.game.service.IngestLogService;
+import com.example.game.service.KnownUsersService;
+import com.example.game.service.OptimisticRetryService;
+import com.example.game.service.RequestQuotaService;
+import com.example.game.service.ShardService;
+import com.example.game.service.UserDataService;
+import com.example.game.service.UserStateService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Бенчмарк приёма игровой активности: синхронная обработка против конвейера с кольцевым буфером.
+ * <p>
+ * {@value #PRODUCERS} потоков, имитирующих потоки веб-сервера, отправляют по {@value #REQUESTS_PER_PRODUCER}
+ * запросов {@code processActivityData} для {@value #USERS} пользователей. Каждое обращение
+ * к репозиторию (чтение, сохранение, пакетное чтение или сохранение) стоит одного сетевого обмена
+ * с базой данных длительностью {@value #ROUND_TRIP_MICROS} мкс. Для каждого варианта выводятся
+ * пропускная способность с учётом применения всех событий, память, выделенная потоками запросов
+ * и потоками-потребителями на одно событие, и задержки запроса p50/p99/p99.9.
+ * База данных, Redis и контекст Spring не нужны.
+ * Запуск: {@code mvn test -Dtest=ActivityPipelineBenchmark -Dbenchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ActivityPipelineBenchmark {
+
+    private static final int PRODUCERS = 16;
+    private static final int REQUESTS_PER_PRODUCER = 5_000;
+    private static final int WARM_UP_REQUESTS = 500;
+    private static final int USERS = 10_000;
+    private static final long ROUND_TRIP_MICROS = 200;
+    private static final String CONSUMER_THREAD_PREFIX = "activity-pipeline";
+
+    private final Map<UUID, UserData> database = new ConcurrentHashMap<>();
+    private final AtomicInteger appliedActivity = new AtomicInteger();
+    private UUID[] users;
+
+    @Test
+    void compareIngestPaths() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.example.game")).setLevel(Level.WARN);
+        users = new UUID[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = UUID.randomUUID();
+            UserData userData = new UserData();
+            userData.setUuid(users[i]);
+            userData.setLastStatTime(System.currentTimeMillis());
+            database.put(users[i], userData);
+        }
+
+        run("Synchronous", false);
+        run("Ring buffer", true);
+    }
+
+    private void run(String name, boolean pipeline) throws Exception {
+        UserDataRepository repository = repository();
+        ShardService shardService = new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
+        OptimisticRetryService retryService = new OptimisticRetryService(new SimpleMeterRegistry(), 5, 2, 50);
+        IngestLogService ingestLogService = new IngestLogService(false, "ingest-log", 64, true, 5000);
+        KnownUsersService knownUsersService = new KnownUsersService(repository, shardService,
+                new NoOpTransactionManager(), Clock.systemUTC(), new SimpleMeterRegistry(), false, USERS, 0.01, 60,
+                1000, 60);
+        UserStateService userStateService = new UserStateService(repository, null, ingestLogService, knownUsersService,
+                shardService, false, 8, USERS);
+        // Каждое применённое событие, синхронное или из конвейера, публикует ровно одно событие обновления
+        ApplicationEventPublisher eventPublisher = event -> appliedActivity.incrementAndGet();
+        RequestQuotaService requestQuotaService = new RequestQuotaService(Clock.systemUTC(), new SimpleMeterRegistry(),
+                USERS);
+        ActivityPipelineService pipelineService = new ActivityPipelineService(repository, new NoOpTransactionManager(),
+                eventPublisher, shardService, retryService, ingestLogService, userStateService, requestQuotaService,
+                new SimpleMeterRegistry(), pipeline, 65536, 4, 1000, 5, 1000);
+        UserDataService userDataService = new UserDataService(repository, Clock.systemUTC(), new ObjectMapper(),
+                eventPublisher, ingestLogService, userStateService, knownUsersService, shardService, retryService,
+                pipelineService, requestQuotaService);
+        pipelineService.start();
+
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        try {
+            load(producers, userDataService, WARM_UP_REQUESTS);
+            awaitApplied(PRODUCERS * WARM_UP_REQUESTS);
+            appliedActivity.set(0);
+
+            com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long consumerAllocatedBefore = consumerAllocatedBytes(threads);
+            long start = System.nanoTime();
+            List<Result> results = load(producers, userDataService, REQUESTS_PER_PRODUCER);
+            long acceptedNanos = System.nanoTime() - start;
+            int total = PRODUCERS * REQUESTS_PER_PRODUCER;
+            awaitApplied(total);
+            long appliedNanos = System.nanoTime() - start;
+            long consumerAllocated = consumerAllocatedBytes(threads) - consumerAllocatedBefore;
+
+            long[] latencies = new long[total];
+            long requestAllocated = 0;
+            for (int i = 0; i < results.size(); i++) {
+                System.arraycopy(results.get(i).latencies(), 0, latencies, i * REQUESTS_PER_PRODUCER,
+                        REQUESTS_PER_PRODUCER);
+                requestAllocated += results.get(i).allocatedBytes();
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%s: %d requests accepted in %d ms, applied in %d ms (%.0f events/s); "
+                            + "allocated per event: request threads %d B, consumer threads %d B; "
+                            + "latency p50 %.1f us, p99 %.1f us, p99.9 %.1f us%n",
+                    name, total, acceptedNanos / 1_000_000, appliedNanos / 1_000_000, total / (appliedNanos / 1e9),
+                    requestAllocated / total, consumerAllocated / total,
+                    latencies[total / 2] / 1e3, latencies[total * 99 / 100] / 1e3, latencies[total * 999 / 1000] / 1e3);
+        } finally {
+            producers.shutdown();
+            pipelineService.stop();
+        }
+    }
+
+    private List<Result> load(ExecutorService producers, UserDataService userDataService, int requests)
+            throws Exception {
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            futures.add(producers.submit(() -> {
+                com.sun.management.ThreadMXBean threads =
+                        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                long thread = Thread.currentThread().getId();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long[] latencies = new long[requests];
+                long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+                for (int i = 0; i < requests; i++) {
+                    UUID uuid = users[random.nextInt(USERS)];
+                    long started = System.nanoTime();
+                    userDataService.processActivityData(uuid, 1);
+                    latencies[i] = System.nanoTime() - started;
+                }
+                return new Result(latencies, threads.getThreadAllocatedBytes(thread) - allocatedBefore);
+            }));
+        }
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private void awaitApplied(int expected) {
+        while (appliedActivity.get() < expected) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(appliedActivity.get()).isEqualTo(expected);
+    }
+
+    private static long consumerAllocatedBytes(com.sun.management.ThreadMXBean threads) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith(CONSUMER_THREAD_PREFIX))
+                .mapToLong(thread -> threads.getThreadAllocatedBytes(thread.getId()))
+                .sum();
+    }
+
+    /**
+     * Репозиторий в памяти, каждое обращение к которому стоит одного сетевого обмена с базой данных.
+     */
+    @SuppressWarnings("unchecked")
+    private UserDataRepository repository() {
+        return (UserDataRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{UserDataRepository.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "findById" -> {
+                            roundTrip();
+                            return Optional.ofNullable(database.get((UUID) args[0]));
+                        }
+                        case "findAllById" -> {
+                            roundTrip();
+                            List<UserData> found = new ArrayList<>();
+                            ((Iterable<UUID>) args[0]).forEach(uuid -> found.add(database.get(uuid)));
+                            return found;
+                        }
+                        case "save" -> {
+                            roundTrip();
+                            return args[0];
+                        }
+                        case "saveAll" -> {
+                            roundTrip();
+                            return args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static void roundTrip() {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS));
+    }
+
+    private record Result(long[] latencies, long allocatedBytes) {
+    }
+
+    /**
+     * Менеджер транзакций без базы данных: стоимость транзакции учитывается в обращениях к репозиторию.
+     */
+    private static class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
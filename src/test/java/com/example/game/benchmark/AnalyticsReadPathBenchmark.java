@@ -0,0 +1,112 @@
+package com.example.game.benchmark;
+
+import com.example.game.model.UserData;
+import com.example.game.repository.UserActivityHistoryJdbcRepository;
+import com.example.game.repository.UserActivityHistoryRepository;
+import com.example.game.repository.UserDataRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Бенчмарк чтения истории активности: загрузка управляемых сущностей через JPA
+ * в сравнении с одним запросом JDBC без контекста персистентности.
+ * <p>
+ * Прежний путь загружал пользователя {@code findByUuid} и передавал сущность в запрос
+ * истории. Новый путь читает пользователя и историю одним запросом по UUID. Для каждого
+ * варианта выводятся выделенная память на запрос и задержки p50/p99.
+ * Нужна база данных PostgreSQL с заполненными таблицами ({@code spring.datasource.*}),
+ * данные не изменяются; Redis не нужен.
+ * Запуск: {@code mvn test -Dtest=AnalyticsReadPathBenchmark -Dbenchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(classes = AnalyticsReadPathBenchmark.DataLayer.class, properties = {
+        "spring.jpa.show-sql=false", "logging.level.org.hibernate.SQL=WARN", "logging.level.com.example.game=WARN"})
+class AnalyticsReadPathBenchmark {
+
+    private static final int USERS = 200;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 20;
+    private static final int MAX_HISTORY_SIZE = 10000;
+    private static final LocalDate START_DATE = LocalDate.of(2000, 1, 1);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private UserDataRepository userDataRepository;
+    @Autowired
+    private UserActivityHistoryRepository userActivityHistoryRepository;
+    @Autowired
+    private UserActivityHistoryJdbcRepository userActivityHistoryJdbcRepository;
+
+    @Test
+    void activityHistoryReadPath() {
+        List<UUID> users = jdbcTemplate.queryForList("SELECT uuid FROM user_activity_history GROUP BY uuid "
+                + "ORDER BY COUNT(*) DESC LIMIT " + USERS, UUID.class);
+        assumeFalse(users.isEmpty(), "user_activity_history is empty");
+
+        Consumer<UUID> entities = uuid -> {
+            UserData user = userDataRepository.findByUuid(uuid);
+            userActivityHistoryRepository.findUserActivityHistoryByUuidAndPeriod(user, START_DATE,
+                    PageRequest.of(0, MAX_HISTORY_SIZE));
+        };
+        Consumer<UUID> jdbc = uuid ->
+                userActivityHistoryJdbcRepository.findUserActivityHistory(uuid, START_DATE, MAX_HISTORY_SIZE);
+
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            users.forEach(entities);
+            users.forEach(jdbc);
+        }
+        report("JPA entities", users, entities);
+        report("JDBC", users, jdbc);
+    }
+
+    private static void report(String name, List<UUID> users, Consumer<UUID> read) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] latencies = new long[users.size() * ROUNDS];
+        int requests = 0;
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        for (int round = 0; round < ROUNDS; round++) {
+            for (UUID uuid : users) {
+                long start = System.nanoTime();
+                read.accept(uuid);
+                latencies[requests++] = System.nanoTime() - start;
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        Arrays.sort(latencies);
+        System.out.printf("%s: %d requests, %d KB allocated per request, p50 %.2f ms, p99 %.2f ms%n", name, requests,
+                allocated / requests / 1024, latencies[requests / 2] / 1e6, latencies[requests * 99 / 100] / 1e6);
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration(exclude = {LiquibaseAutoConfiguration.class, RedisAutoConfiguration.class,
+            RedisRepositoriesAutoConfiguration.class})
+    @EntityScan(basePackageClasses = UserData.class)
+    @EnableJpaRepositories(basePackageClasses = UserDataRepository.class)
+    @Import(UserActivityHistoryJdbcRepository.class)
+    static class DataLayer {
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.game.benchmark;
+
+import com.example.game.model.UserData;
+import com.example.game.util.KWayMerge;
+import com.example.game.util.Uuids;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Бенчмарк слияния глобального рейтинга на 10 млн пользователей.
+ * <p>
+ * Топ-N каждой страны в рабочем режиме читается по индексу {@code (country, money DESC)},
+ * поэтому здесь они вычисляются заранее, а измеряется стоимость k-путевого слияния
+ * в сравнении с полной сортировкой всех пользователей. Чтение из базы данных здесь не измеряется,
+ * его измеряет {@link GlobalLeaderboardQueryBenchmark}.
+ * Запуск: {@code mvn test -Dtest=GlobalLeaderboardBenchmark -Dbenchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class GlobalLeaderboardBenchmark {
+
+    private static final int USERS = 10_000_000;
+    private static final int COUNTRIES = 200;
+    private static final int TOP = 1000;
+    private static final int ITERATIONS = 50;
+
+    private static final Comparator<UserData> BY_MONEY_DESC = Comparator.comparingInt(UserData::getMoney).reversed()
+            .thenComparing(UserData::getUuid, Uuids.UNSIGNED_ORDER);
+
+    @Test
+    void mergeGlobalTop1000() {
+        SplittableRandom random = new SplittableRandom(7);
+        int[][] moneyByCountry = new int[COUNTRIES][];
+        int[] sizes = new int[COUNTRIES];
+        for (int i = 0; i < COUNTRIES; i++) {
+            moneyByCountry[i] = new int[16];
+        }
+        for (int i = 0; i < USERS; i++) {
+            // Распределение пользователей по странам с длинным хвостом
+            int country = (int) (COUNTRIES * Math.pow(random.nextDouble(), 3));
+            if (sizes[country] == moneyByCountry[country].length) {
+                moneyByCountry[country] = Arrays.copyOf(moneyByCountry[country], sizes[country] * 2);
+            }
+            moneyByCountry[country][sizes[country]++] = random.nextInt(1_000_000_000);
+        }
+
+        long sortStart = System.nanoTime();
+        List<List<UserData>> perCountry = new ArrayList<>();
+        for (int c = 0; c < COUNTRIES; c++) {
+            int[] money = Arrays.copyOf(moneyByCountry[c], sizes[c]);
+            Arrays.sort(money);
+            List<UserData> top = new ArrayList<>();
+            for (int i = money.length - 1; i >= 0 && top.size() < TOP; i--) {
+                UserData user = new UserData();
+                user.setUuid(new UUID(c, i));
+                user.setCountry("C" + c);
+                user.setMoney(money[i]);
+                top.add(user);
+            }
+            perCountry.add(top);
+        }
+        long fullSortMillis = (System.nanoTime() - sortStart) / 1_000_000;
+
+        long[] samples = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            List<UserData> result = KWayMerge.merge(perCountry, BY_MONEY_DESC, TOP);
+            samples[i] = System.nanoTime() - start;
+            if (result.size() != TOP) {
+                throw new IllegalStateException("Unexpected result size: " + result.size());
+            }
+        }
+        Arrays.sort(samples);
+
+        System.out.printf("Users: %d, countries: %d, top: %d%n", USERS, COUNTRIES, TOP);
+        System.out.printf("Full per-country sort (what the index replaces): %d ms%n", fullSortMillis);
+        System.out.printf("K-way merge of per-country top lists: p50 %.3f ms, p99 %.3f ms%n",
+                samples[ITERATIONS / 2] / 1e6, samples[ITERATIONS * 99 / 100] / 1e6);
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.game.benchmark;
+
+import com.example.game.model.UserData;
+import com.example.game.repository.AnalyticsRepository;
+import com.example.game.service.AnalyticsService;
+import com.example.game.service.ShardService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Бенчмарк глобального рейтинга с чтением из базы данных.
+ * <p>
+ * Сравнивает перечисление стран через {@code SELECT DISTINCT} и рекурсивный проход по индексу,
+ * а также измеряет {@link AnalyticsService#getTopUsersByMoneyGlobal(List, int)} целиком без кэша:
+ * перечисление стран, чтение страниц рейтингов стран и их слияние. Нужна база данных PostgreSQL
+ * с заполненной таблицей {@code user_data} ({@code spring.datasource.*}), например на 10 млн
+ * пользователей; данные не изменяются, Redis не нужен.
+ * Запуск: {@code mvn test -Dtest=GlobalLeaderboardQueryBenchmark -Dbenchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(classes = GlobalLeaderboardQueryBenchmark.DataLayer.class, properties = {
+        "spring.jpa.show-sql=false", "logging.level.org.hibernate.SQL=WARN", "logging.level.com.example.game=WARN"})
+class GlobalLeaderboardQueryBenchmark {
+
+    private static final int TOP = 1000;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private AnalyticsRepository analyticsRepository;
+
+    @Test
+    void globalTop1000FromDatabase() {
+        assumeFalse(analyticsRepository.findDistinctCountries().isEmpty(), "user_data is empty");
+        AnalyticsService analyticsService = new AnalyticsService(analyticsRepository, null, null,
+                new ForkJoinPool(8), null, new ObjectMapper(),
+                new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128));
+
+        report("SELECT DISTINCT country", () ->
+                jdbcTemplate.queryForList("SELECT DISTINCT country FROM user_data", String.class));
+        report("Recursive index scan of countries", analyticsRepository::findDistinctCountries);
+        report("Global top " + TOP, () -> analyticsService.getTopUsersByMoneyGlobal(null, TOP));
+    }
+
+    private static void report(String name, Supplier<List<?>> query) {
+        int size = 0;
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            size = query.get().size();
+        }
+        long[] latencies = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            query.get();
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%s: %d rows, p50 %.2f ms, p99 %.2f ms%n", name, size,
+                latencies[ROUNDS / 2] / 1e6, latencies[ROUNDS * 99 / 100] / 1e6);
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration(exclude = {LiquibaseAutoConfiguration.class, RedisAutoConfiguration.class,
+            RedisRepositoriesAutoConfiguration.class})
+    @EntityScan(basePackageClasses = UserData.class)
+    @EnableJpaRepositories(basePackageClasses = AnalyticsRepository.class)
+    static class DataLayer {
+    }
+}
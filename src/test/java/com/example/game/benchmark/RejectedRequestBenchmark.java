@@ -0,0 +1,143 @@
+package com.example.game.benchmark;
+
+import com.example.game.controller.UserDataController;
+import com.example.game.exception.ActivityLimitExceededException;
+import com.example.game.exception.GlobalExceptionHandler;
+import com.example.game.service.UserDataService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.example.game.exception.ActivityLimitExceededException.LIMIT_ACTIVITY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Бенчмарк стоимости запроса, отклонённого по лимиту активности.
+ * <p>
+ * Сравнивает прежний путь отказа (исключение со стеком вызовов, запись в журнал на уровне WARN
+ * и сериализация тела {@code Map} при каждом отказе, статус 200) с текущим: исключение без стека,
+ * заранее закодированное тело, статус 429 с {@code Retry-After} и выборочная запись в журнал.
+ * Для каждого варианта выводятся выделенная память на запрос и задержки p50/p99. Поднимается
+ * только веб-слой с контроллером, база данных и Redis не нужны.
+ * Запуск: {@code mvn test -Dtest=RejectedRequestBenchmark -Dbenchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(classes = RejectedRequestBenchmark.WebLayer.class, properties = "logging.level.com.example.game=WARN")
+@AutoConfigureMockMvc
+class RejectedRequestBenchmark {
+
+    private static final int WARM_UP_REQUESTS = 2_000;
+    private static final int REQUESTS = 5_000;
+    private static final UUID LEGACY_USER = new UUID(0, 1);
+    private static final UUID CURRENT_USER = new UUID(0, 2);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UserDataService userDataService;
+
+    @Test
+    void rejectedActivityRequestCost() throws Exception {
+        when(userDataService.processActivityData(eq(LEGACY_USER), anyInt())).thenAnswer(invocation -> {
+            throw new LegacyLimitExceededException(LIMIT_ACTIVITY);
+        });
+        when(userDataService.processActivityData(eq(CURRENT_USER), anyInt())).thenAnswer(invocation -> {
+            throw new ActivityLimitExceededException(LIMIT_ACTIVITY, 3600);
+        });
+
+        assertThat(reject(LEGACY_USER)).isEqualTo(200);
+        assertThat(reject(CURRENT_USER)).isEqualTo(429);
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            reject(LEGACY_USER);
+            reject(CURRENT_USER);
+        }
+        report("Stack trace + WARN log + Map body", LEGACY_USER);
+        report("Stackless + sampled log + pre-encoded 429", CURRENT_USER);
+    }
+
+    private int reject(UUID uuid) throws Exception {
+        return mockMvc.perform(post("/api/activity")
+                        .param("uuid", uuid.toString())
+                        .param("activity", "1"))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private void report(String name, UUID uuid) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long[] latencies = new long[REQUESTS];
+        long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < REQUESTS; i++) {
+            long start = System.nanoTime();
+            reject(uuid);
+            latencies[i] = System.nanoTime() - start;
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+        Arrays.sort(latencies);
+        System.out.printf("%s: %d requests, %d KB allocated per request, p50 %.1f us, p99 %.1f us%n", name, REQUESTS,
+                allocated / REQUESTS / 1024, latencies[REQUESTS / 2] / 1e3, latencies[REQUESTS * 99 / 100] / 1e3);
+    }
+
+    /**
+     * Исключение превышения лимита в прежнем виде: со стеком вызовов.
+     */
+    static class LegacyLimitExceededException extends RuntimeException {
+
+        LegacyLimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Прежний обработчик отказа: запись в журнал каждого отказа и тело {@code Map} со статусом 200.
+     */
+    @RestControllerAdvice
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    static class LegacyLimitHandler {
+
+        private static final Logger log = LoggerFactory.getLogger(LegacyLimitHandler.class);
+
+        @ExceptionHandler(LegacyLimitExceededException.class)
+        public Map<String, String> handle(LegacyLimitExceededException e) {
+            log.warn("Activity limit exceeded: {}", e.getMessage());
+            return Collections.singletonMap("error", e.getMessage());
+        }
+    }
+
+    @SpringBootConfiguration
+    @EnableAutoConfiguration(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            LiquibaseAutoConfiguration.class, RedisAutoConfiguration.class, RedisRepositoriesAutoConfiguration.class})
+    @Import({UserDataController.class, GlobalExceptionHandler.class, LegacyLimitHandler.class})
+    static class WebLayer {
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.game.benchmark;
+
+import com.example.game.util.UuidIndex;
+import com.example.game.util.Uuids;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Бенчмарк строковых и бинарных ключей UUID на 1 млн пользователей.
+ * <p>
+ * Сравнивает объём памяти и время поиска для {@code HashMap<String, Integer>},
+ * {@code HashMap<UUID, Integer>} и {@link UuidIndex}, а также стоимость сортировки
+ * ключей в строковом и бинарном представлении.
+ * Запуск: {@code mvn test -Dtest=UuidKeyBenchmark -Dbenchmark=true}.
+ * </p>
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UuidKeyBenchmark {
+
+    private static final int KEYS = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void compareKeyRepresentations() {
+        UUID[] uuids = new UUID[KEYS];
+        String[] strings = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            uuids[i] = UUID.randomUUID();
+            strings[i] = uuids[i].toString();
+        }
+
+        long stringMapBytes = retainedBytes(() -> {
+            Map<String, Integer> map = new HashMap<>();
+            for (int i = 0; i < KEYS; i++) {
+                map.put(uuids[i].toString(), i);
+            }
+            return map;
+        });
+        long uuidMapBytes = retainedBytes(() -> {
+            Map<UUID, Integer> map = new HashMap<>();
+            for (int i = 0; i < KEYS; i++) {
+                map.put(new UUID(uuids[i].getMostSignificantBits(), uuids[i].getLeastSignificantBits()), i);
+            }
+            return map;
+        });
+        long indexBytes = retainedBytes(() -> {
+            UuidIndex index = new UuidIndex(KEYS);
+            for (int i = 0; i < KEYS; i++) {
+                index.put(uuids[i], i);
+            }
+            return index;
+        });
+
+        Map<String, Integer> stringMap = new HashMap<>();
+        Map<UUID, Integer> uuidMap = new HashMap<>();
+        UuidIndex index = new UuidIndex(KEYS);
+        for (int i = 0; i < KEYS; i++) {
+            stringMap.put(strings[i], i);
+            uuidMap.put(uuids[i], i);
+            index.put(uuids[i], i);
+        }
+        // Поиск выполняется по равным, но не тем же экземплярам ключей, как при разборе запроса
+        String[] stringProbes = Arrays.stream(uuids).map(UUID::toString).toArray(String[]::new);
+        UUID[] uuidProbes = Arrays.stream(uuids)
+                .map(u -> new UUID(u.getMostSignificantBits(), u.getLeastSignificantBits())).toArray(UUID[]::new);
+
+        double stringLookup = Double.MAX_VALUE;
+        double uuidLookup = Double.MAX_VALUE;
+        double indexLookup = Double.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String probe : stringProbes) {
+                checksum += stringMap.get(probe);
+            }
+            stringLookup = Math.min(stringLookup, (System.nanoTime() - start) / (double) KEYS);
+
+            start = System.nanoTime();
+            for (UUID probe : uuidProbes) {
+                checksum += uuidMap.get(probe);
+            }
+            uuidLookup = Math.min(uuidLookup, (System.nanoTime() - start) / (double) KEYS);
+
+            start = System.nanoTime();
+            for (UUID probe : uuidProbes) {
+                checksum += index.get(probe);
+            }
+            indexLookup = Math.min(indexLookup, (System.nanoTime() - start) / (double) KEYS);
+        }
+
+        long start = System.nanoTime();
+        Arrays.sort(strings.clone());
+        long stringSortMillis = (System.nanoTime() - start) / 1_000_000;
+        start = System.nanoTime();
+        Arrays.sort(uuids.clone(), Uuids.UNSIGNED_ORDER);
+        long uuidSortMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("Keys: %d (checksum %d)%n", KEYS, checksum);
+        System.out.printf("HashMap<String, Integer>: %.1f bytes/key, lookup %.1f ns%n",
+                stringMapBytes / (double) KEYS, stringLookup);
+        System.out.printf("HashMap<UUID, Integer>:   %.1f bytes/key, lookup %.1f ns%n",
+                uuidMapBytes / (double) KEYS, uuidLookup);
+        System.out.printf("UuidIndex:                %.1f bytes/key, lookup %.1f ns%n",
+                indexBytes / (double) KEYS, indexLookup);
+        System.out.printf("Sort by key: String %d ms, UUID (unsigned) %d ms%n", stringSortMillis, uuidSortMillis);
+    }
+
+    private static long retainedBytes(Supplier<Object> factory) {
+        long before = usedMemory();
+        Object retained = factory.get();
+        long after = usedMemory();
+        if (retained.hashCode() == 42) {
+            System.out.print("");
+        }
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
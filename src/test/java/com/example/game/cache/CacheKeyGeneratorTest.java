@@ -0,0 +1,86 @@
+package com.example.game.cache;
+
+import com.example.game.model.UserData;
+import com.example.game.service.AnalyticsService;
+import com.example.game.service.UserDataService;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheKeyGeneratorTest {
+
+    private static final UUID USER_A = new UUID(0, 1);
+    private static final UUID USER_B = new UUID(0, 2);
+
+    private final CacheKeyGenerator generator = new CacheKeyGenerator();
+
+    @Test
+    void cachedMethods_ShouldNotUseSpelKeys() {
+        for (Class<?> type : List.of(AnalyticsService.class, UserDataService.class)) {
+            for (Method method : type.getDeclaredMethods()) {
+                Cacheable cacheable = method.getAnnotation(Cacheable.class);
+                CachePut cachePut = method.getAnnotation(CachePut.class);
+                if (cacheable != null) {
+                    assertThat(cacheable.key()).as(method.getName()).isEmpty();
+                }
+                if (cachePut != null) {
+                    assertThat(cachePut.key()).as(method.getName()).isEmpty();
+                }
+            }
+        }
+    }
+
+    @Test
+    void userActivityHistory_ShouldUseSeparateKeysPerUser() throws Exception {
+        Method method = AnalyticsService.class.getMethod("getUserActivityHistory", UUID.class, LocalDate.class);
+        LocalDate date = LocalDate.of(2025, 2, 10);
+
+        Object first = generator.generate(null, method, USER_A, date);
+        Object second = generator.generate(null, method, USER_B, date);
+
+        assertThat(first).isNotEqualTo(second);
+        assertThat(first).isEqualTo(generator.generate(null, method, USER_A, date));
+        // Ключ по сущности пользователя совпадает с ключом по её UUID
+        assertThat(first).isEqualTo(generator.generate(null, method, user(USER_A), date));
+    }
+
+    @Test
+    void usersCache_ShouldUseSameKeyForAllMethods() throws Exception {
+        Method sync = UserDataService.class.getMethod("processSyncData", UUID.class, String.class);
+        Method get = UserDataService.class.getMethod("getUserData", UUID.class);
+        Method activity = UserDataService.class.getMethod("processActivityData", UUID.class, int.class);
+
+        Object key = generator.generate(null, get, USER_A);
+
+        assertThat(generator.generate(null, sync, USER_A, "{\"money\":1}")).isEqualTo(key);
+        assertThat(generator.generate(null, activity, USER_A, 10)).isEqualTo(key);
+        assertThat(generator.generate(null, get, USER_B)).isNotEqualTo(key);
+    }
+
+    @Test
+    void analyticsMethods_ShouldDistinguishEveryParameter() throws Exception {
+        Method topUsers = AnalyticsService.class.getMethod("getTopUsersByMoneyPerCountry", String.class, int.class);
+        Method global = AnalyticsService.class.getMethod("getTopUsersByMoneyGlobal", List.class, int.class);
+
+        assertThat(generator.generate(null, topUsers, "US", 10))
+                .isNotEqualTo(generator.generate(null, topUsers, "US", 1))
+                .isNotEqualTo(generator.generate(null, topUsers, "UK", 10));
+        assertThat(generator.generate(null, global, null, 10))
+                .isNotEqualTo(generator.generate(null, global, List.of(), 10))
+                .isNotEqualTo(generator.generate(null, global, Arrays.asList("US", "DE"), 10));
+    }
+
+    private static UserData user(UUID uuid) {
+        UserData user = new UserData();
+        user.setUuid(uuid);
+        return user;
+    }
+}
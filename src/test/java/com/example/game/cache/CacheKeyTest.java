@@ -0,0 +1,63 @@
+package com.example.game.cache;
+
+import com.example.game.model.UserData;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheKeyTest {
+
+    private static final UUID USER = UUID.fromString("3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f");
+
+    @Test
+    void of_ShouldBeEqualForEqualComponents() {
+        CacheKey first = CacheKey.of("US", 10, LocalDate.of(2025, 2, 10));
+        CacheKey second = CacheKey.of("US", 10, LocalDate.of(2025, 2, 10));
+
+        assertThat(first).isEqualTo(second).hasSameHashCodeAs(second);
+        assertThat(first.toString()).isEqualTo(second.toString()).startsWith("v" + CacheKey.SCHEMA_VERSION + ":");
+    }
+
+    @Test
+    void of_ShouldNotCollideAcrossTypesAndBoundaries() {
+        assertThat(CacheKey.of(1)).isNotEqualTo(CacheKey.of("1")).isNotEqualTo(CacheKey.of(1L));
+        assertThat(CacheKey.of("a_b", "c")).isNotEqualTo(CacheKey.of("a", "b_c"));
+        assertThat(CacheKey.of(List.of("US", "DE"), 10)).isNotEqualTo(CacheKey.of(List.of("US"), "DE", 10));
+        assertThat(CacheKey.of((Object) null)).isNotEqualTo(CacheKey.of("null"));
+        assertThat(CacheKey.of(LocalDate.of(2025, 2, 10)))
+                .isNotEqualTo(CacheKey.of(LocalDateTime.of(2025, 2, 10, 0, 0)));
+    }
+
+    @Test
+    void of_ShouldEncodeUserByUuid() {
+        UserData user = new UserData();
+        user.setUuid(USER);
+        user.setMoney(100);
+
+        assertThat(CacheKey.of(user, LocalDate.of(2025, 2, 10))).isEqualTo(CacheKey.of(USER, LocalDate.of(2025, 2, 10)));
+    }
+
+    @Test
+    void toBytes_ShouldBeCompact() {
+        byte[] bytes = CacheKey.of(USER, LocalDate.of(2025, 2, 10)).toBytes();
+
+        // Версия, тип и 16 байт UUID, тип и 3 байта номера дня
+        assertThat(bytes).hasSize(22);
+        assertThat(bytes[0]).isEqualTo((byte) CacheKey.SCHEMA_VERSION);
+        assertThat(Arrays.copyOfRange(bytes, 2, 4)).containsExactly(0x3f, 0x2c);
+    }
+
+    @Test
+    void of_ShouldRejectUnsupportedTypes() {
+        assertThatThrownBy(() -> CacheKey.of(new Object()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("java.lang.Object");
+    }
+}
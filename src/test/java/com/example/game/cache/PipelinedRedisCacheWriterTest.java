@@ -0,0 +1,80 @@
+package com.example.game.cache;
+
+import com.example.game.service.RedisWritePipelineService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PipelinedRedisCacheWriterTest {
+
+    private static final byte[] KEY = "users::1".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] VALUE = "\"Data received successfully.\"".getBytes(StandardCharsets.UTF_8);
+    private static final Duration TTL = Duration.ofHours(24);
+
+    @Mock
+    private RedisCacheWriter delegate;
+    @Mock
+    private RedisWritePipelineService pipeline;
+
+    @InjectMocks
+    private PipelinedRedisCacheWriter cacheWriter;
+
+    @Test
+    void put_ShouldNotWriteSynchronouslyWhenPipelineAccepts() {
+        when(pipeline.submit(any())).thenReturn(true);
+
+        cacheWriter.put("users", KEY, VALUE, TTL);
+
+        verify(delegate, never()).put(any(), any(), any(), any());
+    }
+
+    @Test
+    void put_ShouldWriteSynchronouslyWhenPipelineRejects() {
+        when(pipeline.submit(any())).thenReturn(false);
+
+        cacheWriter.put("users", KEY, VALUE, TTL);
+
+        verify(delegate).put("users", KEY, VALUE, TTL);
+    }
+
+    @Test
+    void clean_ShouldWaitForPendingPutsBeforeEviction() {
+        byte[] pattern = "users::*".getBytes(StandardCharsets.UTF_8);
+
+        cacheWriter.clean("users", pattern);
+
+        InOrder inOrder = inOrder(pipeline, delegate);
+        inOrder.verify(pipeline).awaitPendingWrites();
+        inOrder.verify(delegate).clean("users", pattern);
+    }
+
+    @Test
+    void remove_ShouldWaitForPendingPutsBeforeEviction() {
+        cacheWriter.remove("users", KEY);
+
+        InOrder inOrder = inOrder(pipeline, delegate);
+        inOrder.verify(pipeline).awaitPendingWrites();
+        inOrder.verify(delegate).remove("users", KEY);
+    }
+
+    @Test
+    void get_ShouldReadThroughDelegate() {
+        cacheWriter.get("users", KEY);
+
+        verify(delegate).get("users", KEY);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.game.cache;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RedisWritePipelineTest {
+
+    @Mock
+    private StatefulRedisConnection<byte[], byte[]> connection;
+    @Mock
+    private RedisAsyncCommands<byte[], byte[]> commands;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private RedisWritePipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(connection.async()).thenReturn(commands);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
+
+    @Test
+    void submit_ShouldFlushFullBatchWithOneFlush() throws Exception {
+        pipeline = create(() -> connection, 3, Duration.ofSeconds(10), 100);
+
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(pipeline.submit(ignored -> CompletableFuture.completedFuture("OK")));
+        }
+
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        verify(connection).setAutoFlushCommands(false);
+        verify(connection, times(1)).flushCommands();
+        assertThat(registry.get("game.redis.pipeline.batch.size").summary().totalAmount()).isEqualTo(3);
+        assertThat(registry.get("game.redis.pipeline.flush").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_ShouldFlushPartialBatchAfterInterval() throws Exception {
+        pipeline = create(() -> connection, 100, Duration.ofMillis(20), 100);
+
+        pipeline.submit(ignored -> CompletableFuture.completedFuture("OK")).get(5, TimeUnit.SECONDS);
+
+        verify(connection, times(1)).flushCommands();
+    }
+
+    @Test
+    void submit_ShouldFailCommandWhenRedisReturnsError() {
+        pipeline = create(() -> connection, 1, Duration.ofMillis(1), 100);
+
+        CompletableFuture<Void> result = pipeline.submit(
+                ignored -> CompletableFuture.failedFuture(new IllegalStateException("WRONGTYPE")));
+
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("WRONGTYPE");
+        assertThat(registry.get("game.redis.pipeline.failed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void submit_ShouldReconnectAfterConnectionFailure() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        pipeline = create(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Connection refused");
+            }
+            return connection;
+        }, 1, Duration.ofMillis(1), 100);
+
+        CompletableFuture<Void> first = pipeline.submit(ignored -> CompletableFuture.completedFuture("OK"));
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("Connection refused");
+
+        pipeline.submit(ignored -> CompletableFuture.completedFuture("OK")).get(5, TimeUnit.SECONDS);
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void submit_ShouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch connecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = create(() -> {
+            connecting.countDown();
+            await(release);
+            return connection;
+        }, 1, Duration.ofMillis(1), 2);
+
+        // Первая команда занимает поток конвейера, следующие две заполняют очередь
+        CompletableFuture<Void> first = pipeline.submit(ignored -> CompletableFuture.completedFuture("OK"));
+        assertThat(connecting.await(5, TimeUnit.SECONDS)).isTrue();
+        pipeline.submit(ignored -> CompletableFuture.completedFuture("OK"));
+        pipeline.submit(ignored -> CompletableFuture.completedFuture("OK"));
+
+        assertThat(pipeline.getQueueDepth()).isEqualTo(2);
+        assertThat(registry.get("game.redis.pipeline.queue.depth").gauge().value()).isEqualTo(2);
+        assertThatThrownBy(() -> pipeline.submit(ignored -> CompletableFuture.completedFuture("OK")))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(registry.get("game.redis.pipeline.rejected").counter().count()).isEqualTo(1);
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void awaitSubmitted_ShouldReturnAfterEarlierCommandsAreAcknowledged() {
+        pipeline = create(() -> connection, 100, Duration.ofMillis(20), 100);
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        CompletableFuture<Void> result = pipeline.submit(ignored -> reply);
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> reply.complete("OK"));
+
+        assertThat(pipeline.awaitSubmitted(Duration.ofSeconds(5))).isTrue();
+
+        assertThat(result).isCompleted();
+    }
+
+    @Test
+    void awaitSubmitted_ShouldGiveUpAfterTimeout() {
+        pipeline = create(() -> connection, 100, Duration.ofMillis(1), 100);
+        pipeline.submit(ignored -> new CompletableFuture<>());
+
+        assertThat(pipeline.awaitSubmitted(Duration.ofMillis(50))).isFalse();
+    }
+
+    @Test
+    void close_ShouldFlushQueuedCommands() {
+        pipeline = create(() -> connection, 100, Duration.ofSeconds(10), 100);
+        CompletableFuture<Void> result = pipeline.submit(ignored -> CompletableFuture.completedFuture("OK"));
+
+        pipeline.close();
+
+        assertThat(result).isCompleted();
+        verify(connection).close();
+    }
+
+    private RedisWritePipeline create(Supplier<StatefulRedisConnection<byte[], byte[]>> connector, int batchSize,
+                                      Duration flushInterval, int capacity) {
+        return new RedisWritePipeline(connector, batchSize, flushInterval, capacity, Duration.ofSeconds(1), registry);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
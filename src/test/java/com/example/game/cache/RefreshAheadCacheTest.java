@@ -0,0 +1,153 @@
+package com.example.game.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RefreshAheadCacheTest {
+
+    private static final Duration SOFT_TTL = Duration.ofMinutes(60);
+    private static final Duration RETRY_INTERVAL = Duration.ofSeconds(30);
+
+    private final Clock clock = mock(Clock.class);
+    private final List<Runnable> pending = new ArrayList<>();
+    private final ConcurrentMapCache storage = new ConcurrentMapCache("topUsers", false);
+    private final RefreshAheadCache cache =
+            new RefreshAheadCache(storage, SOFT_TTL, RETRY_INTERVAL, pending::add, clock, 4);
+
+    @BeforeEach
+    void setUp() {
+        when(clock.millis()).thenReturn(0L);
+    }
+
+    @Test
+    void get_ShouldNotRefreshFreshEntry() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("key", loads::incrementAndGet);
+        when(clock.millis()).thenReturn(SOFT_TTL.toMillis() - 1);
+        Integer value = cache.get("key", loads::incrementAndGet);
+
+        assertThat(value).isEqualTo(1);
+        assertThat(pending).isEmpty();
+    }
+
+    @Test
+    void get_ShouldServeStaleEntryAndRefreshInBackground() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.get("key", loads::incrementAndGet);
+        when(clock.millis()).thenReturn(SOFT_TTL.toMillis());
+
+        Integer stale = cache.get("key", loads::incrementAndGet);
+        cache.get("key", loads::incrementAndGet);
+
+        assertThat(stale).isEqualTo(1);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(pending).hasSize(1);
+
+        pending.remove(0).run();
+
+        assertThat(cache.get("key", loads::incrementAndGet)).isEqualTo(2);
+        assertThat(pending).isEmpty();
+    }
+
+    @Test
+    void get_ShouldKeepServingStaleEntryWhenRefreshFails() {
+        cache.get("key", () -> "initial");
+        when(clock.millis()).thenReturn(SOFT_TTL.toMillis());
+
+        assertThat(cache.get("key", RefreshAheadCacheTest::failingLoader)).isEqualTo("initial");
+        pending.remove(0).run();
+
+        // Повтор откладывается на интервал, а устаревшее значение продолжает возвращаться
+        assertThat(cache.get("key", RefreshAheadCacheTest::failingLoader)).isEqualTo("initial");
+        assertThat(pending).isEmpty();
+
+        when(clock.millis()).thenReturn(SOFT_TTL.toMillis() + RETRY_INTERVAL.toMillis());
+        cache.get("key", () -> "refreshed");
+        pending.remove(0).run();
+
+        assertThat(storage.get("key").get()).isEqualTo("refreshed");
+    }
+
+    @Test
+    void get_ShouldSkipRefreshWhenExecutorIsSaturated() {
+        AtomicBoolean saturated = new AtomicBoolean(true);
+        Executor executor = task -> {
+            if (saturated.get()) {
+                throw new RejectedExecutionException("queue is full");
+            }
+            pending.add(task);
+        };
+        RefreshAheadCache boundedCache = new RefreshAheadCache(storage, SOFT_TTL, RETRY_INTERVAL, executor, clock,
+                4);
+        boundedCache.get("key", () -> "initial");
+        when(clock.millis()).thenReturn(SOFT_TTL.toMillis());
+
+        assertThat(boundedCache.get("key", () -> "refreshed")).isEqualTo("initial");
+        assertThat(pending).isEmpty();
+
+        // Отклонённое обновление не блокирует следующую попытку
+        saturated.set(false);
+        boundedCache.get("key", () -> "refreshed");
+        assertThat(pending).hasSize(1);
+    }
+
+    @Test
+    void get_ShouldRefreshEntryLoadedBeforeRestart() {
+        storage.put("key", "loaded elsewhere");
+
+        assertThat(cache.get("key", () -> "refreshed")).isEqualTo("loaded elsewhere");
+        assertThat(pending).hasSize(1);
+    }
+
+    @Test
+    void put_ShouldPruneRefreshTimesOfStaleKeysFirst() {
+        cache.put("stale0", "value");
+        cache.put("stale1", "value");
+        when(clock.millis()).thenReturn(SOFT_TTL.toMillis());
+        for (int i = 0; i < 3; i++) {
+            cache.put("fresh" + i, "value");
+        }
+
+        // Удалены только ключи с наступившим сроком, остальные по-прежнему не обновляются
+        for (int i = 0; i < 3; i++) {
+            cache.get("fresh" + i, () -> "refreshed");
+        }
+        assertThat(pending).isEmpty();
+        cache.get("stale0", () -> "refreshed");
+        cache.get("stale1", () -> "refreshed");
+        assertThat(pending).hasSize(2);
+    }
+
+    @Test
+    void put_ShouldBoundTrackedKeys() {
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, "value");
+        }
+
+        for (int i = 0; i < 100; i++) {
+            cache.get("key" + i, () -> "refreshed");
+        }
+
+        // Отслеживаются не больше четырёх ключей, остальные обновляются раньше срока
+        assertThat(pending).hasSizeGreaterThanOrEqualTo(96);
+    }
+
+    private static String failingLoader() {
+        throw new IllegalStateException("database unavailable");
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.game.cache;
+
+import com.example.game.model.UserData;
+import com.example.game.repository.AnalyticsRepository;
+import com.example.game.repository.UserActivityHistoryJdbcRepository;
+import com.example.game.service.ActivityArchiveService;
+import com.example.game.service.AnalyticsService;
+import com.example.game.service.ShardService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringJUnitConfig(SingleFlightCacheManagerTest.Config.class)
+class SingleFlightCacheManagerTest {
+
+    private static final int CALLERS = 100;
+
+    @Autowired
+    private AnalyticsService analyticsService;
+    @Autowired
+    private AnalyticsRepository analyticsRepository;
+
+    @Test
+    void cacheable_ShouldRunOneQueryForConcurrentCallers() throws Exception {
+        List<UserData> users = List.of(new UserData(), new UserData());
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("US"), any(Pageable.class))).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return users;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<UserData>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await(5, TimeUnit.SECONDS);
+                    return analyticsService.getTopUsersByMoneyPerCountry("US", 2);
+                }));
+            }
+            start.countDown();
+            for (Future<List<UserData>> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(users);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(analyticsRepository, times(1)).findTopUsersByCountryMoney(eq("US"), any(Pageable.class));
+    }
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new SingleFlightCacheManager(new ConcurrentMapCacheManager());
+        }
+
+        @Bean
+        AnalyticsRepository analyticsRepository() {
+            return mock(AnalyticsRepository.class);
+        }
+
+        @Bean
+        AnalyticsService analyticsService(AnalyticsRepository analyticsRepository, CacheManager cacheManager) {
+            return new AnalyticsService(analyticsRepository, mock(UserActivityHistoryJdbcRepository.class),
+                    mock(ActivityArchiveService.class), ForkJoinPool.commonPool(), cacheManager, new ObjectMapper(),
+                    new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128));
+        }
+    }
+}
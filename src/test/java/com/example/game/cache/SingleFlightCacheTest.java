@@ -0,0 +1,96 @@
+package com.example.game.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightCacheTest {
+
+    private static final int CALLERS = 100;
+
+    private final SingleFlightCache cache = new SingleFlightCache(new ConcurrentMapCache("test", false));
+
+    @Test
+    void get_ShouldLoadOnceForConcurrentMisses() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> cache.get("key", () -> {
+            loads.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return "value";
+        }), release);
+
+        for (Future<String> result : results) {
+            assertThat(result.get()).isEqualTo("value");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.get("key").get()).isEqualTo("value");
+    }
+
+    @Test
+    void get_ShouldPropagateLoaderFailureToAllWaitersWithoutCaching() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = runConcurrently(() -> cache.get("key", () -> {
+            loads.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("database unavailable");
+        }), release);
+
+        for (Future<String> result : results) {
+            assertThatThrownBy(result::get).hasCauseInstanceOf(Cache.ValueRetrievalException.class)
+                    .hasRootCauseMessage("database unavailable");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.get("key", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Test
+    void get_ShouldLoadDifferentKeysIndependently() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("a", loads::incrementAndGet);
+        cache.get("b", loads::incrementAndGet);
+        cache.get("a", loads::incrementAndGet);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private static List<Future<String>> runConcurrently(Callable<String> call,
+                                                        CountDownLatch release) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            CountDownLatch started = new CountDownLatch(CALLERS);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> {
+                    started.countDown();
+                    return call.call();
+                }));
+            }
+            started.await(5, TimeUnit.SECONDS);
+            // Даём всем вызовам дойти до ожидания общей загрузки
+            Thread.sleep(100);
+            release.countDown();
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
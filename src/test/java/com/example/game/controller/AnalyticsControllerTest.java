@@ -1,9 +1,16 @@
 package com.example.game.controller;
 
+import com.example.game.dto.RankedUser;
+import com.example.game.dto.UserRankResponse;
+import com.example.game.exception.GlobalExceptionHandler;
+import com.example.game.exception.UserNotFoundException;
 import com.example.game.model.UserActivityHistory;
 import com.example.game.model.UserData;
-import com.example.game.repository.UserDataRepository;
+import com.example.game.service.ActiveUsersService;
 import com.example.game.service.AnalyticsService;
+import com.example.game.service.KnownUsersService;
+import com.example.game.service.QuantileSketchService;
+import com.example.game.service.UserRankService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -19,19 +26,32 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 
 @ExtendWith(MockitoExtension.class)
 class AnalyticsControllerTest {
+    private static final String USER_ID = "3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f";
+    private static final UUID USER_UUID = UUID.fromString(USER_ID);
     @Autowired
     private MockMvc mockMvc;
     @Mock
-    private UserDataRepository userDataRepository;
-    @Mock
     private AnalyticsService analyticsService;
+    @Mock
+    private ActiveUsersService activeUsersService;
+    @Mock
+    private QuantileSketchService quantileSketchService;
+    @Mock
+    private UserRankService userRankService;
+    @Mock
+    private KnownUsersService knownUsersService;
 
     @InjectMocks
     private AnalyticsController analyticsController;
@@ -44,7 +64,7 @@ class AnalyticsControllerTest {
     @Test
     void getTopUsersByMoneyPerCountry_ShouldReturnUsers() throws Exception {
         UserData userData = new UserData();
-        userData.setUuid("test-uuid");
+        userData.setUuid(USER_UUID);
         userData.setCountry("US");
         userData.setMoney(1000);
 
@@ -57,13 +77,84 @@ class AnalyticsControllerTest {
                         .param("usersCount", "1")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isOk())
-                .andExpect(MockMvcResultMatchers.jsonPath("$[0].uuid").value("test-uuid"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].uuid").value(USER_ID))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].country").value("US"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].money").value(1000));
 
         verify(analyticsService).getTopUsersByMoneyPerCountry("US", 1); // Проверяем, что метод был вызван
     }
 
+    @Test
+    void getTopUsersByMoneyForCountries_ShouldReturnUsersByCountry() throws Exception {
+        UserData userData = new UserData();
+        userData.setUuid(USER_UUID);
+        userData.setCountry("DE");
+        userData.setMoney(1000);
+
+        when(analyticsService.getTopUsersByMoneyForCountries(List.of("DE", "AT"), 1))
+                .thenReturn(Map.of("DE", List.of(userData), "AT", List.of()));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/top-users-by-money/batch")
+                        .param("countries", "DE,AT")
+                        .param("usersCount", "1"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.DE[0].uuid").value(USER_ID))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.AT").isEmpty());
+    }
+
+    @Test
+    void countNewUsersByCountries_ShouldReturnCountsByCountry() throws Exception {
+        LocalDate startDate = LocalDate.of(2025, 2, 1);
+        when(analyticsService.countNewUsersByCountries(List.of("US", "DE"), startDate))
+                .thenReturn(Map.of("US", 5L, "DE", 0L));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/new-users-count/batch")
+                        .param("countries", "US", "DE")
+                        .param("startDate", "2025-02-01"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.US").value(5))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.DE").value(0));
+    }
+
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldReturnUsers() throws Exception {
+        UserData userData = new UserData();
+        userData.setUuid(USER_UUID);
+        userData.setCountry("DE");
+        userData.setMoney(1000);
+
+        when(analyticsService.getTopUsersByMoneyGlobal(List.of("DE", "AT"), 1)).thenReturn(List.of(userData));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/top-users-global")
+                        .param("countries", "DE", "AT")
+                        .param("usersCount", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].uuid").value(USER_ID))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].country").value("DE"));
+
+        verify(analyticsService).getTopUsersByMoneyGlobal(List.of("DE", "AT"), 1);
+    }
+
+    @Test
+    void getUserRank_ShouldReturnRankAndNeighbors() throws Exception {
+        UserRankResponse response = new UserRankResponse(USER_UUID, "US", 500, 2, 3, List.of(
+                new RankedUser(1, new UUID(0, 1), 900),
+                new RankedUser(2, USER_UUID, 500),
+                new RankedUser(3, new UUID(0, 3), 100)));
+
+        when(userRankService.getUserRank(USER_UUID, 1)).thenReturn(response);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/user-rank")
+                        .param("uuid", USER_ID)
+                        .param("neighbors", "1")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.rank").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.totalUsers").value(3))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.neighbors[0].uuid").value("00000000-0000-0000-0000-000000000001"));
+    }
+
     @Test
     void countNewUsersByCountry_ShouldReturnCount() throws Exception {
         long newUsersCount = 10L;
@@ -80,10 +171,91 @@ class AnalyticsControllerTest {
         verify(analyticsService).countNewUsersByCountry("US", LocalDate.of(2025, 2, 22));
     }
 
+    @Test
+    void countActiveUsers_ShouldReturnEstimate() throws Exception {
+        when(activeUsersService.countActiveUsers("US", LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 28)))
+                .thenReturn(1234L);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/active-users")
+                        .param("country", "US")
+                        .param("startDate", "2025-02-01")
+                        .param("endDate", "2025-02-28")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$").value(1234));
+
+        verify(activeUsersService).countActiveUsers("US", LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 28));
+    }
+
+    @Test
+    void countActiveUsers_ShouldReturnBadRequest_WhenPeriodBeyondRetention() throws Exception {
+        String message = String.format(ActiveUsersService.PERIOD_OUT_OF_RETENTION, 62);
+        when(activeUsersService.countActiveUsers("US", LocalDate.of(2000, 1, 1), LocalDate.of(2025, 2, 28)))
+                .thenThrow(new IllegalArgumentException(message));
+        MockMvc mockMvcWithAdvice = MockMvcBuilders.standaloneSetup(analyticsController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+
+        mockMvcWithAdvice.perform(MockMvcRequestBuilders.get("/api/analytics/active-users")
+                        .param("country", "US")
+                        .param("startDate", "2000-01-01")
+                        .param("endDate", "2025-02-28"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.error").value(message));
+    }
+
+    @Test
+    void mergeSketch_ShouldReturnForbidden_WhenTokenInvalid() throws Exception {
+        when(quantileSketchService.isMergeAuthorized("wrong")).thenReturn(false);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/analytics/sketch")
+                        .param("metric", "MONEY")
+                        .param("country", "US")
+                        .param("node", "eu-1")
+                        .header("X-Sketch-Token", "wrong")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[]{1}))
+                .andExpect(MockMvcResultMatchers.status().isForbidden());
+
+        verify(quantileSketchService, never()).mergeSketch(any(), any(), any(), any());
+    }
+
+    @Test
+    void mergeSketch_ShouldMergeSketchOfNode() throws Exception {
+        byte[] sketch = {1, 2, 3};
+        when(quantileSketchService.isMergeAuthorized("secret")).thenReturn(true);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/analytics/sketch")
+                        .param("metric", "MONEY")
+                        .param("country", "US")
+                        .param("node", "eu-1")
+                        .header("X-Sketch-Token", "secret")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(sketch))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        verify(quantileSketchService).mergeSketch(QuantileSketchService.Metric.MONEY, "US", "eu-1", sketch);
+    }
+
+    @Test
+    void getPercentiles_ShouldReturnQuantiles() throws Exception {
+        when(quantileSketchService.getQuantiles(QuantileSketchService.Metric.MONEY, "US", List.of(0.5, 0.99)))
+                .thenReturn(Map.of(0.5, 100, 0.99, 5000));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/percentiles")
+                        .param("metric", "MONEY")
+                        .param("country", "US")
+                        .param("quantiles", "0.5,0.99")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$['0.5']").value(100))
+                .andExpect(MockMvcResultMatchers.jsonPath("$['0.99']").value(5000));
+    }
+
     @Test
     void getUserActivityHistory_ShouldReturnActivityHistory() throws Exception {
         UserData userData = new UserData();
-        userData.setUuid("test-uuid");
+        userData.setUuid(USER_UUID);
 
         UserActivityHistory activityHistory = new UserActivityHistory();
 
@@ -92,18 +264,44 @@ class AnalyticsControllerTest {
         activityHistory.setActivityDate(LocalDate.of(2025, 2, 22));
 
         List<UserActivityHistory> activityHistoryList = List.of(activityHistory);
-        when(userDataRepository.findByUuid("test-uuid")).thenReturn(userData);
-        when(analyticsService.getUserActivityHistory(userData, LocalDate.of(2025, 2, 22))).thenReturn(activityHistoryList);
+        when(analyticsService.getUserActivityHistory(USER_UUID, LocalDate.of(2025, 2, 22))).thenReturn(activityHistoryList);
 
         mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/user-activity-history")
-                        .param("uuid", "test-uuid")
+                        .param("uuid", USER_ID)
                         .param("startDate", "2025-02-22")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.status().isOk())
-                .andExpect(MockMvcResultMatchers.jsonPath("$[0].user.uuid").value("test-uuid"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].user.uuid").value(USER_ID))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].activity").value(1))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].activityDate").value("2025-02-22"));
 
-        verify(analyticsService).getUserActivityHistory(userData, LocalDate.of(2025, 2, 22));
+        verify(analyticsService).getUserActivityHistory(USER_UUID, LocalDate.of(2025, 2, 22));
+    }
+
+    @Test
+    void getUserActivityHistory_ShouldReturnNotFoundForMissingUser() throws Exception {
+        when(analyticsService.getUserActivityHistory(USER_UUID, LocalDate.of(2025, 2, 22)))
+                .thenThrow(new UserNotFoundException(UserNotFoundException.USER_NOT_FOUND));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/user-activity-history")
+                        .param("uuid", USER_ID)
+                        .param("startDate", "2025-02-22")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        verify(knownUsersService).recordMissing(USER_UUID);
+    }
+
+    @Test
+    void getUserActivityHistory_ShouldReturnNotFoundForUnknownUserWithoutLookup() throws Exception {
+        when(knownUsersService.isDefinitelyUnknown(USER_UUID)).thenReturn(true);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/analytics/user-activity-history")
+                        .param("uuid", USER_ID)
+                        .param("startDate", "2025-02-22")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(MockMvcResultMatchers.status().isNotFound());
+
+        verifyNoInteractions(analyticsService);
     }
-}
\ No newline at end of file
+}
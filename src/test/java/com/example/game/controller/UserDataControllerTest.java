@@ -1,5 +1,7 @@
 package com.example.game.controller;
 
+import com.example.game.exception.ActivityLimitExceededException;
+import com.example.game.exception.GlobalExceptionHandler;
 import com.example.game.service.UserDataService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,15 +15,22 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.UUID;
+
+import static com.example.game.exception.ActivityLimitExceededException.LIMIT_ACTIVITY;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 @ExtendWith(MockitoExtension.class)
 class UserDataControllerTest {
 
+    private static final String USER_ID = "3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f";
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -41,10 +50,10 @@ class UserDataControllerTest {
     void syncUserData_ShouldReturnOk() throws Exception {
         String mockResponse = "Sync successful";
 
-        when(userDataService.processSyncData("test-uuid", "{\"data\":\"value\"}")).thenReturn(mockResponse);
+        when(userDataService.processSyncData(UUID.fromString(USER_ID), "{\"data\":\"value\"}")).thenReturn(mockResponse);
 
         mockMvc.perform(post("/api/sync")
-                        .param("uuid", "test-uuid")
+                        .param("uuid", USER_ID)
                         .content("{\"data\":\"value\"}")
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -55,10 +64,10 @@ class UserDataControllerTest {
     void getUserData_ShouldReturnUserData() throws Exception {
         String mockResponse = "User data for test-uuid";
 
-        when(userDataService.getUserData("test-uuid")).thenReturn(mockResponse);
+        when(userDataService.getUserData(UUID.fromString(USER_ID))).thenReturn(mockResponse);
 
         mockMvc.perform(post("/api/user-data")
-                        .param("uuid", "test-uuid"))
+                        .param("uuid", USER_ID))
                 .andExpect(status().isOk())
                 .andExpect(content().string(mockResponse));
     }
@@ -67,12 +76,38 @@ class UserDataControllerTest {
     void processActivity_ShouldReturnActivityData() throws Exception {
         String mockResponse = "Activity data processed for test-uuid";
 
-        when(userDataService.processActivityData("test-uuid", 100)).thenReturn(mockResponse);
+        when(userDataService.processActivityData(UUID.fromString(USER_ID), 100)).thenReturn(mockResponse);
 
         mockMvc.perform(post("/api/activity")
-                        .param("uuid", "test-uuid")
+                        .param("uuid", USER_ID)
                         .param("activity", "100"))
                 .andExpect(status().isOk())
                 .andExpect(content().string(mockResponse));
     }
-}
\ No newline at end of file
+
+    @Test
+    void processActivity_ShouldReturnTooManyRequestsWithRetryAfter() throws Exception {
+        MockMvc mockMvcWithAdvice = MockMvcBuilders.standaloneSetup(userDataController)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        when(userDataService.processActivityData(UUID.fromString(USER_ID), 100))
+                .thenThrow(new ActivityLimitExceededException(LIMIT_ACTIVITY, 3600));
+
+        mockMvcWithAdvice.perform(post("/api/activity")
+                        .param("uuid", USER_ID)
+                        .param("activity", "100"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3600"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json("{\"error\":\"" + LIMIT_ACTIVITY + "\"}"));
+    }
+
+    @Test
+    void getUserData_ShouldReturnBadRequest_WhenUuidMalformed() throws Exception {
+        mockMvc.perform(post("/api/user-data")
+                        .param("uuid", "not-a-uuid"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(userDataService);
+    }
+}
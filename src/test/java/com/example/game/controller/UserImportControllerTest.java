@@ -0,0 +1,77 @@
+package com.example.game.controller;
+
+import com.example.game.dto.UserImportReport;
+import com.example.game.service.UserImportService;
+import com.example.game.storage.UserImportReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class UserImportControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private UserImportService userImportService;
+
+    @InjectMocks
+    private UserImportController userImportController;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(userImportController).build();
+    }
+
+    @Test
+    void importCsv_ShouldReturnReport() throws Exception {
+        when(userImportService.importUsers(any(InputStream.class), eq(UserImportReader.Format.CSV)))
+                .thenReturn(new UserImportReport(3, 1, 1, 1, 10, 300, List.of("Line 2: Missing uuid")));
+
+        mockMvc.perform(post("/api/users/import")
+                        .contentType("text/csv")
+                        .content("uuid,country\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.insertedRows").value(1))
+                .andExpect(jsonPath("$.errors[0]").value("Line 2: Missing uuid"));
+    }
+
+    @Test
+    void importNdjson_ShouldUseNdjsonFormat() throws Exception {
+        when(userImportService.importUsers(any(InputStream.class), eq(UserImportReader.Format.NDJSON)))
+                .thenReturn(new UserImportReport(0, 0, 0, 0, 1, 0, List.of()));
+
+        mockMvc.perform(post("/api/users/import")
+                        .contentType("application/x-ndjson")
+                        .content(""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.receivedRows").value(0));
+    }
+
+    @Test
+    void importUsers_ShouldRejectUnsupportedContentType() throws Exception {
+        mockMvc.perform(post("/api/users/import")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+
+        verifyNoInteractions(userImportService);
+    }
+}
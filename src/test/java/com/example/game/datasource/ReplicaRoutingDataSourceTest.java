@@ -0,0 +1,195 @@
+package com.example.game.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaRoutingDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(5);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DataSource primary = dataSource(0L);
+
+    @Test
+    void readOnlyTransaction_ShouldUseHealthyReplica() throws SQLException {
+        DataSource replica = dataSource(100L);
+        ReplicaRoutingDataSource routing = create(Map.of("replica-1", replica));
+        routing.checkLag();
+
+        analyticsQuery(routing);
+
+        verify(replica, times(2)).getConnection();
+        verify(primary, never()).getConnection();
+        assertThat(gauge("game.datasource.replica.lag", "replica-1")).isEqualTo(100.0);
+        assertThat(gauge("game.datasource.replica.healthy", "replica-1")).isEqualTo(1.0);
+        assertThat(reads("replica-1")).isEqualTo(1.0);
+    }
+
+    @Test
+    void writeTransaction_ShouldUsePrimary() throws SQLException {
+        DataSource replica = dataSource(0L);
+        ReplicaRoutingDataSource routing = create(Map.of("replica-1", replica));
+        routing.checkLag();
+
+        query(routing, false);
+
+        verify(primary).getConnection();
+        verify(replica, times(1)).getConnection();
+        assertThat(reads(ReplicaRoutingDataSource.PRIMARY)).isZero();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUsePrimaryOutsideReplicaContext() throws SQLException {
+        DataSource replica = dataSource(0L);
+        ReplicaRoutingDataSource routing = create(Map.of("replica-1", replica));
+        routing.checkLag();
+
+        // Так читает findById перед изменением и сохранением пользователя
+        query(routing, true);
+
+        verify(primary).getConnection();
+        verify(replica, times(1)).getConnection();
+        assertThat(reads("replica-1")).isZero();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldUsePrimaryBeforeFirstLagCheck() throws SQLException {
+        DataSource replica = dataSource(0L);
+        ReplicaRoutingDataSource routing = create(Map.of("replica-1", replica));
+
+        analyticsQuery(routing);
+
+        verify(primary).getConnection();
+        verify(replica, never()).getConnection();
+        assertThat(reads(ReplicaRoutingDataSource.PRIMARY)).isEqualTo(1.0);
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldFallBackToPrimaryWhenReplicaLags() throws SQLException {
+        DataSource replica = dataSource(10_000L);
+        ReplicaRoutingDataSource routing = create(Map.of("replica-1", replica));
+        routing.checkLag();
+
+        analyticsQuery(routing);
+
+        verify(primary).getConnection();
+        assertThat(gauge("game.datasource.replica.lag", "replica-1")).isEqualTo(10_000.0);
+        assertThat(gauge("game.datasource.replica.healthy", "replica-1")).isZero();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldFallBackToPrimaryWhenLagIsUnknown() throws SQLException {
+        DataSource replica = dataSource(null);
+        ReplicaRoutingDataSource routing = create(Map.of("replica-1", replica));
+        routing.checkLag();
+
+        analyticsQuery(routing);
+
+        verify(primary).getConnection();
+        assertThat(gauge("game.datasource.replica.lag", "replica-1")).isNaN();
+    }
+
+    @Test
+    void readOnlyTransaction_ShouldFallBackToPrimaryWhenReplicaFails() throws SQLException {
+        DataSource replica = dataSource(0L);
+        ReplicaRoutingDataSource routing = create(Map.of("replica-1", replica));
+        routing.checkLag();
+        lenient().when(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        analyticsQuery(routing);
+        analyticsQuery(routing);
+
+        verify(primary, times(2)).getConnection();
+        verify(replica, times(2)).getConnection();
+        assertThat(gauge("game.datasource.replica.healthy", "replica-1")).isZero();
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldAlternateBetweenReplicas() throws SQLException {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", dataSource(0L));
+        replicas.put("replica-2", dataSource(0L));
+        ReplicaRoutingDataSource routing = create(replicas);
+        routing.checkLag();
+
+        for (int i = 0; i < 4; i++) {
+            analyticsQuery(routing);
+        }
+
+        assertThat(reads("replica-1")).isEqualTo(2.0);
+        assertThat(reads("replica-2")).isEqualTo(2.0);
+        verify(primary, never()).getConnection();
+    }
+
+    private ReplicaRoutingDataSource create(Map<String, DataSource> replicas) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, MAX_LAG,
+                Duration.ofSeconds(1), registry);
+        routing.setDefaultAutoCommit(true);
+        routing.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return routing;
+    }
+
+    private static void query(DataSource dataSource, boolean readOnly) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(readOnly);
+            connection.createStatement();
+        }
+    }
+
+    private static void analyticsQuery(DataSource dataSource) {
+        ReplicaContext.call(() -> {
+            try {
+                query(dataSource, true);
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return null;
+        });
+    }
+
+    private static DataSource dataSource(Long lag) {
+        try {
+            DataSource dataSource = mock(DataSource.class);
+            Connection connection = mock(Connection.class);
+            Statement statement = mock(Statement.class);
+            ResultSet resultSet = mock(ResultSet.class);
+            lenient().when(dataSource.getConnection()).thenReturn(connection);
+            lenient().when(connection.createStatement()).thenReturn(statement);
+            lenient().when(statement.executeQuery(anyString())).thenReturn(resultSet);
+            lenient().when(resultSet.next()).thenReturn(true);
+            lenient().when(resultSet.getLong(1)).thenReturn(lag == null ? 0L : lag);
+            lenient().when(resultSet.wasNull()).thenReturn(lag == null);
+            return dataSource;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double gauge(String name, String dataSource) {
+        return registry.get(name).tag("datasource", dataSource).gauge().value();
+    }
+
+    private double reads(String dataSource) {
+        return registry.get("game.datasource.read-only.connections").tag("datasource", dataSource).counter().count();
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.game.datasource;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardRingTest {
+
+    private static final int USERS = 100_000;
+
+    @Test
+    void shardFor_ShouldSpreadUsersEvenly() {
+        ShardRing ring = new ShardRing(List.of("shard-0", "shard-1", "shard-2", "shard-3"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < USERS; i++) {
+            counts.merge(ring.shardFor(new UUID(i, i * 31L)), 1, Integer::sum);
+        }
+
+        assertThat(counts).hasSize(4);
+        // Допуск с запасом на неравномерность виртуальных узлов: ожидается 25% на шард
+        assertThat(counts.values())
+                .allSatisfy(count -> assertThat(count).isBetween(USERS / 4 * 7 / 10, USERS / 4 * 13 / 10));
+    }
+
+    @Test
+    void shardFor_ShouldMoveUsersOnlyToAddedShard() {
+        ShardRing before = new ShardRing(List.of("shard-0", "shard-1", "shard-2"), 128);
+        ShardRing after = new ShardRing(List.of("shard-0", "shard-1", "shard-2", "shard-3"), 128);
+        int moved = 0;
+        for (int i = 0; i < USERS; i++) {
+            UUID uuid = new UUID(i, i * 31L);
+            String owner = after.shardFor(uuid);
+            if (!owner.equals(before.shardFor(uuid))) {
+                assertThat(owner).isEqualTo("shard-3");
+                moved++;
+            }
+        }
+
+        assertThat(moved).isBetween(USERS / 4 * 7 / 10, USERS / 4 * 13 / 10);
+    }
+
+    @Test
+    void shardFor_ShouldNotDependOnShardOrder() {
+        ShardRing ring = new ShardRing(List.of("shard-0", "shard-1"), 16);
+        ShardRing reversed = new ShardRing(List.of("shard-1", "shard-0"), 16);
+
+        for (int i = 0; i < 1_000; i++) {
+            UUID uuid = UUID.randomUUID();
+            assertThat(reversed.shardFor(uuid)).isEqualTo(ring.shardFor(uuid));
+        }
+    }
+
+    @Test
+    void constructor_ShouldRejectDuplicateShards() {
+        assertThatThrownBy(() -> new ShardRing(List.of("shard-0", "shard-0"), 16))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
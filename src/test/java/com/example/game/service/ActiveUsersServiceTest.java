@@ -0,0 +1,143 @@
+package com.example.game.service;
+
+import com.example.game.event.UserDataUpdatedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.HyperLogLogOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ActiveUsersServiceTest {
+
+    @Mock
+    private ObjectProvider<StringRedisTemplate> redisTemplate;
+    @Mock
+    private RedisWritePipelineService writePipeline;
+
+    private ActiveUsersService activeUsersService;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(Instant.parse("2025-02-28T12:00:00Z"), ZoneOffset.UTC);
+        activeUsersService = new ActiveUsersService(clock, redisTemplate, writePipeline, false, 62);
+    }
+
+    @Test
+    void countActiveUsers_ShouldCountUniqueUsersAcrossDays() {
+        LocalDate start = LocalDate.of(2025, 2, 1);
+        for (int day = 0; day < 28; day++) {
+            // Каждый день активны 1000 пользователей, половина из них — те же, что вчера
+            for (int i = day * 500; i < day * 500 + 1000; i++) {
+                activeUsersService.record(new UUID(0, i), "US", start.plusDays(day));
+            }
+        }
+
+        long dau = activeUsersService.countActiveUsers("US", start, start);
+        long mau = activeUsersService.countActiveUsers("US", start, start.plusDays(27));
+
+        assertThat((double) dau).isCloseTo(1000, within(50.0));
+        assertThat((double) mau).isCloseTo(14_500, within(14_500 * 0.05));
+        assertThat(activeUsersService.countActiveUsers("DE", start, start)).isZero();
+    }
+
+    @Test
+    void onUserDataUpdated_ShouldRecordUserForEventDay() {
+        long timestamp = Instant.parse("2025-02-10T23:59:00Z").toEpochMilli();
+
+        activeUsersService.onUserDataUpdated(new UserDataUpdatedEvent(new UUID(0, 1), "US", 0, 5,
+                UserDataUpdatedEvent.Source.ACTIVITY, timestamp, "US", 0, 0));
+        activeUsersService.onUserDataUpdated(new UserDataUpdatedEvent(new UUID(0, 1), "US", 100, 0,
+                UserDataUpdatedEvent.Source.SYNC, timestamp, "US", 0, 5));
+
+        assertThat(activeUsersService.countActiveUsers("US", LocalDate.of(2025, 2, 10), LocalDate.of(2025, 2, 10)))
+                .isEqualTo(1);
+        assertThat(activeUsersService.countActiveUsers("US", LocalDate.of(2025, 2, 11), LocalDate.of(2025, 2, 11)))
+                .isZero();
+    }
+
+    @Test
+    void pruneExpiredSketches_ShouldDropDaysOutsideRetention() {
+        activeUsersService.record(new UUID(0, 1), "US", LocalDate.of(2024, 1, 1));
+        activeUsersService.record(new UUID(0, 2), "US", LocalDate.of(2025, 2, 27));
+
+        activeUsersService.pruneExpiredSketches();
+
+        assertThat(activeUsersService.countActiveUsers("US", LocalDate.of(2024, 12, 28), LocalDate.of(2025, 2, 28)))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void countActiveUsers_ShouldRejectPeriodBeyondRetention() {
+        assertThatThrownBy(() -> activeUsersService.countActiveUsers("US", LocalDate.of(2024, 12, 27), LocalDate.of(2025, 2, 28)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Start date must be within the last 62 days.");
+        assertThatThrownBy(() -> activeUsersService.countActiveUsers("US", LocalDate.MIN, LocalDate.MAX))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void countActiveUsers_ShouldLimitPeriodToToday() {
+        activeUsersService.record(new UUID(0, 1), "US", LocalDate.of(2025, 2, 28));
+
+        assertThat(activeUsersService.countActiveUsers("US", LocalDate.of(2025, 2, 28), LocalDate.MAX)).isEqualTo(1);
+        assertThat(activeUsersService.countActiveUsers("US", LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 5))).isZero();
+    }
+
+    @Test
+    void countActiveUsers_ShouldThrowException_WhenPeriodInvalid() {
+        assertThatThrownBy(() -> activeUsersService.countActiveUsers("US", LocalDate.of(2025, 2, 2), LocalDate.of(2025, 2, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> activeUsersService.countActiveUsers("", LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Country must not be null or empty.");
+    }
+
+    @Test
+    void record_ShouldSendPfaddThroughPipelineWhenRedisEnabled() {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        when(redisTemplate.getObject()).thenReturn(template);
+        when(writePipeline.submit(any())).thenReturn(true);
+        ActiveUsersService redisBacked = new ActiveUsersService(Clock.systemUTC(), redisTemplate, writePipeline, true, 62);
+
+        redisBacked.record(new UUID(0, 1), "US", LocalDate.of(2025, 2, 10));
+
+        verify(writePipeline).submit(any());
+        verifyNoInteractions(template);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void record_ShouldWriteSynchronouslyWhenPipelineRejects() {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        HyperLogLogOperations<String, String> operations = mock(HyperLogLogOperations.class);
+        when(template.opsForHyperLogLog()).thenReturn(operations);
+        when(redisTemplate.getObject()).thenReturn(template);
+        when(writePipeline.submit(any())).thenReturn(false);
+        ActiveUsersService redisBacked = new ActiveUsersService(Clock.systemUTC(), redisTemplate, writePipeline, true, 62);
+
+        redisBacked.record(new UUID(0, 1), "US", LocalDate.of(2025, 2, 10));
+
+        verify(operations).add("dau:US:2025-02-10", new UUID(0, 1).toString());
+        verify(template).expire("dau:US:2025-02-10", Duration.ofDays(62));
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.game.service;
+
+import com.example.game.model.UserActivityHistory;
+import com.example.game.model.UserData;
+import com.example.game.repository.UserActivityHistoryRepository;
+import com.example.game.storage.ActivityArchiveSegment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ActivityArchiveServiceTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2024, 3);
+    private static final UUID USER_A = new UUID(0, 1);
+    private static final UUID USER_B = new UUID(0, 2);
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private UserActivityHistoryRepository userActivityHistoryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ActivityArchiveService archiveService;
+
+    @AfterEach
+    void tearDown() {
+        if (archiveService != null) {
+            archiveService.closeSegments();
+        }
+    }
+
+    @Test
+    void archiveMonth_ShouldMoveRowsToSegmentAndDeleteOnlyArchivedIds() {
+        archiveService = service();
+        when(userActivityHistoryRepository.streamActivityForPeriod(MONTH.atDay(1), MONTH.plusMonths(1).atDay(1)))
+                .thenReturn(rows());
+        when(userActivityHistoryRepository.deleteActivityByIds(any())).thenReturn(3);
+
+        archiveService.archiveMonth(MONTH);
+
+        verify(userActivityHistoryRepository).deleteActivityByIds(List.of(10L, 11L, 12L));
+        assertThat(directory.resolve("activity-2024-03.seg")).exists();
+        assertThat(directory.resolve("activity-2024-03.ids")).doesNotExist();
+        assertThat(archiveService.findArchivedHistory(user(USER_A), LocalDate.of(2024, 1, 1)))
+                .extracting(UserActivityHistory::getActivityDate, UserActivityHistory::getActivity)
+                .containsExactly(
+                        tuple(LocalDate.of(2024, 3, 20), 7),
+                        tuple(LocalDate.of(2024, 3, 2), 5));
+    }
+
+    @Test
+    void archiveMonth_ShouldKeepRowsAddedAfterMonthWasArchived() {
+        archiveService = service();
+        when(userActivityHistoryRepository.streamActivityForPeriod(any(), any())).thenReturn(rows());
+        archiveService.archiveMonth(MONTH);
+
+        // Записи за месяц, появившиеся после архивации, остаются в таблице
+        archiveService.archiveMonth(MONTH);
+
+        verify(userActivityHistoryRepository, times(1)).streamActivityForPeriod(any(), any());
+        verify(userActivityHistoryRepository, times(1)).deleteActivityByIds(any());
+    }
+
+    @Test
+    void archiveMonth_ShouldResumeInterruptedDeletion() {
+        archiveService = service();
+        when(userActivityHistoryRepository.streamActivityForPeriod(any(), any())).thenReturn(rows());
+        when(userActivityHistoryRepository.deleteActivityByIds(any()))
+                .thenThrow(new IllegalStateException("Database unavailable"))
+                .thenReturn(3);
+
+        archiveService.archiveMonth(MONTH);
+        assertThat(directory.resolve("activity-2024-03.ids")).exists();
+
+        archiveService.archiveMonth(MONTH);
+
+        assertThat(directory.resolve("activity-2024-03.ids")).doesNotExist();
+        verify(userActivityHistoryRepository, times(1)).streamActivityForPeriod(any(), any());
+        verify(userActivityHistoryRepository, times(2)).deleteActivityByIds(List.of(10L, 11L, 12L));
+    }
+
+    @Test
+    void archiveMonth_ShouldNotCreateSegmentForEmptyMonth() throws Exception {
+        archiveService = service();
+        when(userActivityHistoryRepository.streamActivityForPeriod(any(), any())).thenReturn(Stream.empty());
+
+        archiveService.archiveMonth(MONTH);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+        verify(userActivityHistoryRepository, never()).deleteActivityByIds(any());
+    }
+
+    @Test
+    void archiveMonth_ShouldKeepRowsWhenSegmentExceedsSizeLimit() throws Exception {
+        archiveService = service(30);
+        when(userActivityHistoryRepository.streamActivityForPeriod(any(), any())).thenReturn(rows());
+
+        archiveService.archiveMonth(MONTH);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+        verify(userActivityHistoryRepository, never()).deleteActivityByIds(any());
+        assertThat(archiveService.findArchivedHistory(user(USER_A), LocalDate.of(2024, 1, 1))).isEmpty();
+    }
+
+    @Test
+    void openSegments_ShouldServeArchivedHistoryAfterRestart() {
+        archiveService = service();
+        when(userActivityHistoryRepository.streamActivityForPeriod(any(), any())).thenReturn(rows());
+        archiveService.archiveMonth(MONTH);
+        archiveService.closeSegments();
+
+        archiveService = service();
+
+        assertThat(archiveService.findArchivedHistory(user(USER_B), LocalDate.of(2024, 3, 1)))
+                .extracting(UserActivityHistory::getActivity)
+                .containsExactly(-2);
+        assertThat(archiveService.findArchivedHistory(user(USER_B), LocalDate.of(2024, 4, 1))).isEmpty();
+    }
+
+    private ActivityArchiveService service() {
+        return service(ActivityArchiveSegment.MAX_SIZE);
+    }
+
+    private ActivityArchiveService service(long maxSegmentSize) {
+        ActivityArchiveService service = new ActivityArchiveService(userActivityHistoryRepository,
+                new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128), transactionManager,
+                Clock.fixed(Instant.parse("2025-06-01T00:00:00Z"), ZoneOffset.UTC), true, directory.toString(), 12,
+                maxSegmentSize);
+        service.openSegments();
+        return service;
+    }
+
+    private static Stream<Object[]> rows() {
+        return Stream.of(
+                new Object[]{USER_A, LocalDate.of(2024, 3, 2), 5, 10L},
+                new Object[]{USER_A, LocalDate.of(2024, 3, 20), 7, 11L},
+                new Object[]{USER_B, LocalDate.of(2024, 3, 9), -2, 12L});
+    }
+
+    private static UserData user(UUID uuid) {
+        UserData userData = new UserData();
+        userData.setUuid(uuid);
+        return userData;
+    }
+}
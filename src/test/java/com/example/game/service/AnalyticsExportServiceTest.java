@@ -0,0 +1,134 @@
+package com.example.game.service;
+
+import com.example.game.repository.AnalyticsRepository;
+import com.example.game.repository.UserActivityHistoryRepository;
+import com.example.game.storage.ColumnarFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalyticsExportServiceTest {
+
+    private static final UUID USER_1 = new UUID(0, 1);
+    private static final UUID USER_2 = new UUID(0, 2);
+    private static final LocalDate DAY_1 = LocalDate.of(2025, 2, 10);
+    private static final LocalDate DAY_2 = LocalDate.of(2025, 2, 11);
+    private static final LocalDate TODAY = LocalDate.of(2025, 2, 12);
+
+    @Mock
+    private AnalyticsRepository analyticsRepository;
+    @Mock
+    private UserActivityHistoryRepository userActivityHistoryRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ShardService shardService = new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
+
+    @TempDir
+    Path tempDir;
+
+    private AnalyticsExportService exportService;
+
+    @BeforeEach
+    void setUp() {
+        exportService = new AnalyticsExportService(analyticsRepository, userActivityHistoryRepository,
+                shardService, transactionManager, Clock.systemUTC(), true, tempDir.toString(), 2);
+    }
+
+    @Test
+    void exportBefore_ShouldWritePartitionsByCountryAndDate() throws IOException {
+        when(analyticsRepository.streamUsersCreatedForPeriod(LocalDate.EPOCH.atStartOfDay(), TODAY.atStartOfDay()))
+                .thenReturn(Stream.of(
+                        new Object[]{USER_1, "DE", 10, 1, DAY_1.atTime(9, 0)},
+                        new Object[]{USER_2, "US", 20, 2, DAY_1.atTime(10, 0)}));
+        when(userActivityHistoryRepository.streamActivityWithCountryForPeriod(LocalDate.EPOCH, TODAY))
+                .thenReturn(Stream.of(
+                        new Object[]{USER_2, "US", DAY_1, 5},
+                        new Object[]{USER_2, "US", DAY_2, 7},
+                        new Object[]{USER_1, "US", DAY_2, 3}));
+
+        Map<String, Long> exported = exportService.exportBefore(TODAY);
+
+        assertThat(exported).containsEntry("user_data", 2L).containsEntry("user_activity_history", 3L);
+        assertThat(readRows(tempDir.resolve("user_data/country=DE/date=2025-02-10/data.gcf")))
+                .containsExactly(new Object[]{USER_1, 10, 1, DAY_1.atTime(9, 0)});
+        assertThat(readRows(tempDir.resolve("user_activity_history/country=US/date=2025-02-11/data.gcf")))
+                .containsExactly(new Object[]{USER_2, 7}, new Object[]{USER_1, 3});
+        assertThat(Files.exists(tempDir.resolve("user_activity_history/country=US/date=2025-02-10/data.gcf"))).isTrue();
+    }
+
+    @Test
+    void exportBefore_ShouldExportOnlyDaysAfterPreviousRun() {
+        when(analyticsRepository.streamUsersCreatedForPeriod(any(), any())).thenAnswer(invocation -> Stream.empty());
+        when(userActivityHistoryRepository.streamActivityWithCountryForPeriod(any(), any()))
+                .thenAnswer(invocation -> Stream.empty());
+
+        exportService.exportBefore(DAY_2);
+        exportService.exportBefore(TODAY);
+        exportService.exportBefore(TODAY);
+
+        verify(analyticsRepository).streamUsersCreatedForPeriod(LocalDate.EPOCH.atStartOfDay(), DAY_2.atStartOfDay());
+        verify(analyticsRepository).streamUsersCreatedForPeriod(DAY_2.atStartOfDay(), TODAY.atStartOfDay());
+        verify(userActivityHistoryRepository).streamActivityWithCountryForPeriod(DAY_2, TODAY);
+    }
+
+    @Test
+    void exportBefore_ShouldNotAdvanceWatermarkWhenPartitionsAreNotGrouped() {
+        when(analyticsRepository.streamUsersCreatedForPeriod(any(), any())).thenAnswer(invocation -> Stream.<Object[]>of(
+                new Object[]{USER_1, "DE", 10, 1, DAY_1.atTime(9, 0)},
+                new Object[]{USER_2, "US", 20, 2, DAY_1.atTime(10, 0)},
+                new Object[]{USER_2, "DE", 20, 2, DAY_1.atTime(11, 0)}));
+        when(userActivityHistoryRepository.streamActivityWithCountryForPeriod(any(), any()))
+                .thenAnswer(invocation -> Stream.empty());
+
+        Map<String, Long> exported = exportService.exportBefore(TODAY);
+        exportService.exportBefore(TODAY);
+
+        assertThat(exported).doesNotContainKey("user_data").containsEntry("user_activity_history", 0L);
+        assertThat(Files.exists(tempDir.resolve("user_data/country=US/date=2025-02-10/data.gcf.tmp"))).isFalse();
+        verify(analyticsRepository, times(2))
+                .streamUsersCreatedForPeriod(LocalDate.EPOCH.atStartOfDay(), TODAY.atStartOfDay());
+    }
+
+    @Test
+    void exportIncremental_ShouldDoNothingWhenDisabled() {
+        AnalyticsExportService disabled = new AnalyticsExportService(analyticsRepository, userActivityHistoryRepository,
+                shardService, transactionManager, Clock.systemUTC(), false, tempDir.toString(), 2);
+
+        disabled.exportIncremental();
+
+        verify(analyticsRepository, never()).streamUsersCreatedForPeriod(any(), any());
+    }
+
+    private static List<Object[]> readRows(Path file) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        try (ColumnarFile columnar = ColumnarFile.open(file)) {
+            columnar.forEachRow(rows::add);
+        }
+        return rows;
+    }
+}
@@ -1,25 +1,56 @@
 package com.example.game.service;
 
+import com.example.game.cache.CacheKey;
+import com.example.game.cache.RefreshAheadCache;
+import com.example.game.datasource.ShardContext;
 import com.example.game.exception.DatabaseException;
+import com.example.game.exception.UserNotFoundException;
 import com.example.game.model.UserActivityHistory;
 import com.example.game.model.UserData;
 import com.example.game.repository.AnalyticsRepository;
+import com.example.game.repository.UserActivityHistoryJdbcRepository;
 import com.example.game.repository.UserActivityHistoryRepository;
+import com.example.game.storage.ActivityArchiveSegment;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -30,7 +61,15 @@ class AnalyticsServiceTest {
     @Mock
     private AnalyticsRepository analyticsRepository;
     @Mock
-    private UserActivityHistoryRepository userActivityHistoryRepository;
+    private UserActivityHistoryJdbcRepository userActivityHistoryJdbcRepository;
+    @Mock
+    private ActivityArchiveService activityArchiveService;
+    @Mock
+    private CacheManager cacheManager;
+    @Mock
+    private ObjectMapper objectMapper;
+    @Spy
+    private ShardService shardService = new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
 
     @Test
     void getTopUsersByMoneyPerCountry_ShouldReturnUsers() {
@@ -47,6 +86,89 @@ class AnalyticsServiceTest {
         verify(analyticsRepository).findTopUsersByCountryMoney(eq(country), any(Pageable.class));
     }
 
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldServeSmallerCountsFromCachedList() {
+        analyticsService = cachingService();
+        List<UserData> users = List.of(user("us-1", "US", 500), user("us-2", "US", 300), user("us-3", "US", 100));
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("US"), any(Pageable.class))).thenReturn(users);
+
+        assertThat(analyticsService.getTopUsersByMoneyPerCountry("US", 3)).isEqualTo(users);
+        assertThat(analyticsService.getTopUsersByMoneyPerCountry("US", 2)).isEqualTo(users.subList(0, 2));
+        assertThat(analyticsService.getTopUsersByMoneyPerCountry("US", 1)).isEqualTo(users.subList(0, 1));
+
+        verify(analyticsRepository, times(1)).findTopUsersByCountryMoney(eq("US"), any(Pageable.class));
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldExtendCachedListWithKeysetQuery() {
+        analyticsService = cachingService();
+        UserData us1 = user("us-1", "US", 500);
+        UserData us2 = user("us-2", "US", 300);
+        UserData us3 = user("us-3", "US", 300);
+        UserData us4 = user("us-4", "US", 100);
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("US"), any(Pageable.class))).thenReturn(List.of(us1, us2));
+        when(analyticsRepository.findTopUsersByCountryMoneyAfter("US", 300, us2.getUuid(), PageRequest.of(0, 3)))
+                .thenReturn(List.of(us3, us4));
+
+        analyticsService.getTopUsersByMoneyPerCountry("US", 2);
+        List<UserData> extended = analyticsService.getTopUsersByMoneyPerCountry("US", 5);
+        // Страна исчерпана: больше запросов к базе данных не нужно
+        List<UserData> again = analyticsService.getTopUsersByMoneyPerCountry("US", 10);
+
+        assertThat(extended).containsExactly(us1, us2, us3, us4);
+        assertThat(again).containsExactly(us1, us2, us3, us4);
+        verify(analyticsRepository, times(1)).findTopUsersByCountryMoney(eq("US"), any(Pageable.class));
+        verify(analyticsRepository, times(1)).findTopUsersByCountryMoneyAfter(any(), anyInt(), any(), any());
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldRefreshWholeCachedList() {
+        // Обновление выполняется при каждом чтении и сразу в вызывающем потоке
+        RefreshAheadCache cache = new RefreshAheadCache(new ConcurrentMapCache("topUsers"), Duration.ZERO,
+                Duration.ZERO, Runnable::run, Clock.systemUTC(), 10);
+        when(cacheManager.getCache("topUsers")).thenReturn(cache);
+        List<UserData> users = IntStream.range(0, 5).mapToObj(i -> user("us-" + i, "US", 500 - i)).toList();
+        when(analyticsRepository.findTopUsersByCountryMoney("US", PageRequest.of(0, 5))).thenReturn(users);
+
+        analyticsService.getTopUsersByMoneyPerCountry("US", 5);
+        assertThat(analyticsService.getTopUsersByMoneyPerCountry("US", 2)).isEqualTo(users.subList(0, 2));
+
+        verify(analyticsRepository, times(2)).findTopUsersByCountryMoney("US", PageRequest.of(0, 5));
+        verify(analyticsRepository, never()).findTopUsersByCountryMoney("US", PageRequest.of(0, 2));
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldReadUntypedCachedValue() {
+        ConcurrentMapCacheManager caches = new ConcurrentMapCacheManager();
+        ObjectMapper mapper = new ObjectMapper();
+        analyticsService = new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository, activityArchiveService,
+                ForkJoinPool.commonPool(), caches, mapper, shardService);
+        UserData us1 = user("us-1", "US", 500);
+        // Так значение возвращает кэш Redis: JSON, разобранный без сведений о типе
+        caches.getCache("topUsers").put(CacheKey.of("US"),
+                mapper.convertValue(new AnalyticsService.CachedTopUsers(List.of(us1), true), Map.class));
+
+        List<UserData> result = analyticsService.getTopUsersByMoneyPerCountry("US", 5);
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getUuid()).isEqualTo(us1.getUuid());
+        verify(analyticsRepository, never()).findTopUsersByCountryMoney(any(), any());
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldBypassCacheAboveLimit() {
+        ConcurrentMapCacheManager caches = new ConcurrentMapCacheManager();
+        analyticsService = new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository, activityArchiveService,
+                ForkJoinPool.commonPool(), caches, new ObjectMapper(), shardService);
+        List<UserData> users = List.of(user("us-1", "US", 500));
+        when(analyticsRepository.findTopUsersByCountryMoney("US", PageRequest.of(0, AnalyticsService.MAX_CACHED_TOP_SIZE + 1)))
+                .thenReturn(users);
+
+        assertThat(analyticsService.getTopUsersByMoneyPerCountry("US", AnalyticsService.MAX_CACHED_TOP_SIZE + 1))
+                .isEqualTo(users);
+        assertThat(caches.getCache("topUsers").get(CacheKey.of("US"))).isNull();
+    }
+
     @Test
     void getTopUsersByMoneyPerCountry_ShouldThrowException_WhenUsersCountInvalid() {
         assertThatThrownBy(() -> analyticsService.getTopUsersByMoneyPerCountry("US", 0))
@@ -61,6 +183,114 @@ class AnalyticsServiceTest {
                 .hasMessage("Country must not be null or empty.");
     }
 
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldMergePerCountryLists() {
+        analyticsService = new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository,
+                activityArchiveService, ForkJoinPool.commonPool(), cacheManager, objectMapper, shardService);
+        UserData us1 = user("us-1", "US", 500);
+        UserData us2 = user("us-2", "US", 100);
+        UserData de1 = user("de-1", "DE", 300);
+        UserData fr1 = user("fr-1", "FR", 700);
+
+        when(analyticsRepository.findDistinctCountries()).thenReturn(List.of("US", "DE", "FR"));
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("US"), any(Pageable.class))).thenReturn(List.of(us1, us2));
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("DE"), any(Pageable.class))).thenReturn(List.of(de1));
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("FR"), any(Pageable.class))).thenReturn(List.of(fr1));
+
+        List<UserData> result = analyticsService.getTopUsersByMoneyGlobal(null, 3);
+
+        assertThat(result).containsExactly(fr1, us1, de1);
+    }
+
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldQueryOnlyRegionCountries() {
+        analyticsService = new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository,
+                activityArchiveService, ForkJoinPool.commonPool(), cacheManager, objectMapper, shardService);
+        UserData de1 = user("de-1", "DE", 300);
+
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("DE"), any(Pageable.class))).thenReturn(List.of(de1));
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("AT"), any(Pageable.class))).thenReturn(List.of());
+
+        List<UserData> result = analyticsService.getTopUsersByMoneyGlobal(List.of("DE", "AT"), 10);
+
+        assertThat(result).containsExactly(de1);
+        verify(analyticsRepository, never()).findDistinctCountries();
+    }
+
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldReadNextPageOnlyForCountriesReachedByMerge() {
+        analyticsService = new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository,
+                activityArchiveService, ForkJoinPool.commonPool(), cacheManager, objectMapper, shardService);
+        List<UserData> usFirstPage = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            usFirstPage.add(user("us-" + i, "US", 1000 - i));
+        }
+        UserData us10 = user("us-10", "US", 990);
+        UserData de1 = user("de-1", "DE", 50);
+        UserData us9 = usFirstPage.get(9);
+
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("US"), eq(PageRequest.of(0, 10))))
+                .thenReturn(usFirstPage);
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("DE"), eq(PageRequest.of(0, 10))))
+                .thenReturn(List.of(de1));
+        when(analyticsRepository.findTopUsersByCountryMoneyAfter("US", us9.getMoney(), us9.getUuid(),
+                PageRequest.of(0, 2))).thenReturn(List.of(us10));
+
+        // Страница на страну: max(10, 2 * 12 / 3) = 10; во Франции пользователей нет
+        List<UserData> result = analyticsService.getTopUsersByMoneyGlobal(List.of("US", "DE", "FR"), 12);
+
+        assertThat(result).hasSize(12).endsWith(us10, de1);
+        verify(analyticsRepository, never()).findTopUsersByCountryMoneyAfter(eq("DE"), anyInt(), any(), any());
+    }
+
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldRejectTooManyCountries() {
+        List<String> countries = new ArrayList<>();
+        for (int i = 0; i <= 500; i++) {
+            countries.add("C" + i);
+        }
+
+        assertThatThrownBy(() -> analyticsService.getTopUsersByMoneyGlobal(countries, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("The number of countries must not exceed 500.");
+        verify(analyticsRepository, never()).findTopUsersByCountryMoney(any(), any());
+    }
+
+    @Test
+    void getTopUsersByMoneyPerCountry_ShouldMergeShardRankings() {
+        analyticsService = shardedService();
+        UserData us1 = user("us-1", "US", 500);
+        UserData us2 = user("us-2", "US", 300);
+        UserData us3 = user("us-3", "US", 100);
+        when(analyticsRepository.findTopUsersByCountryMoney(eq("US"), any(Pageable.class))).thenAnswer(invocation ->
+                "shard-0".equals(ShardContext.current()) ? List.of(us1, us3) : List.of(us2));
+
+        List<UserData> result = analyticsService.getTopUsersByMoneyPerCountry("US", 2);
+
+        assertThat(result).containsExactly(us1, us2);
+        verify(analyticsRepository, times(2)).findTopUsersByCountryMoney(eq("US"), any(Pageable.class));
+    }
+
+    @Test
+    void countNewUsersByCountries_ShouldSumShardCounts() {
+        analyticsService = shardedService();
+        LocalDate startDate = LocalDate.of(2025, 2, 1);
+        when(analyticsRepository.countNewUsersByCountries(List.of("US", "DE"), startDate.atStartOfDay()))
+                .thenAnswer(invocation -> "shard-0".equals(ShardContext.current())
+                        ? List.<Object[]>of(new Object[]{"US", 3L}, new Object[]{"DE", 1L})
+                        : List.<Object[]>of(new Object[]{"US", 2L}));
+
+        Map<String, Long> result = analyticsService.countNewUsersByCountries(List.of("US", "DE"), startDate);
+
+        assertThat(result).containsExactly(Map.entry("US", 5L), Map.entry("DE", 1L));
+    }
+
+    @Test
+    void getTopUsersByMoneyGlobal_ShouldThrowException_WhenUsersCountInvalid() {
+        assertThatThrownBy(() -> analyticsService.getTopUsersByMoneyGlobal(null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     void countNewUsersByCountry_ShouldReturnCount() {
         String country = "US";
@@ -86,32 +316,147 @@ class AnalyticsServiceTest {
     @Test
     void getUserActivityHistory_ShouldReturnHistory() {
         UserData userData = new UserData();
-        userData.setUuid("test-uuid");
+        userData.setUuid(UUID.randomUUID());
         LocalDate startDate = LocalDate.of(2024, 2, 1);
         List<UserActivityHistory> mockHistory = List.of(new UserActivityHistory(), new UserActivityHistory());
 
-        when(userActivityHistoryRepository.findUserActivityHistoryByUuidAndPeriod(eq(userData), eq(startDate), any(Pageable.class)))
-                .thenReturn(mockHistory);
+        when(userActivityHistoryJdbcRepository.findUserActivityHistory(userData.getUuid(), startDate, 10000))
+                .thenReturn(Optional.of(new UserActivityHistoryJdbcRepository.UserHistory(userData, mockHistory)));
 
-        List<UserActivityHistory> result = analyticsService.getUserActivityHistory(userData, startDate);
+        List<UserActivityHistory> result = analyticsService.getUserActivityHistory(userData.getUuid(), startDate);
 
         assertThat(result).hasSize(mockHistory.size());
-        verify(userActivityHistoryRepository).findUserActivityHistoryByUuidAndPeriod(eq(userData), eq(startDate), any(Pageable.class));
+        verify(activityArchiveService).findArchivedHistory(userData, startDate);
+    }
+
+    @Test
+    void getUserActivityHistory_ShouldAppendArchivedMonthsAfterDatabaseHistory(@TempDir Path directory) {
+        UserData userData = user("archived", "US", 100);
+        UserActivityHistoryRepository historyRepository = mock(UserActivityHistoryRepository.class);
+        when(historyRepository.streamActivityForPeriod(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 2, 1)))
+                .thenReturn(Stream.of(
+                        new Object[]{userData.getUuid(), LocalDate.of(2024, 1, 5), 3, 1L},
+                        new Object[]{userData.getUuid(), LocalDate.of(2024, 1, 25), 4, 2L}));
+        ActivityArchiveService archiveService = new ActivityArchiveService(historyRepository, shardService,
+                mock(PlatformTransactionManager.class), Clock.systemUTC(), true, directory.toString(), 12,
+                ActivityArchiveSegment.MAX_SIZE);
+        archiveService.openSegments();
+        archiveService.archiveMonth(YearMonth.of(2024, 1));
+        verify(historyRepository).deleteActivityByIds(List.of(1L, 2L));
+
+        LocalDate startDate = LocalDate.of(2024, 1, 10);
+        UserActivityHistory recent = new UserActivityHistory(7L, userData, 9, LocalDate.of(2024, 2, 3));
+        when(userActivityHistoryJdbcRepository.findUserActivityHistory(userData.getUuid(), startDate, 10000))
+                .thenReturn(Optional.of(new UserActivityHistoryJdbcRepository.UserHistory(userData, List.of(recent))));
+        AnalyticsService service = new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository,
+                archiveService, ForkJoinPool.commonPool(), cacheManager, objectMapper, shardService);
+
+        try {
+            List<UserActivityHistory> result = service.getUserActivityHistory(userData.getUuid(), startDate);
+
+            assertThat(result).extracting(UserActivityHistory::getActivityDate)
+                    .containsExactly(LocalDate.of(2024, 2, 3), LocalDate.of(2024, 1, 25));
+            assertThat(result).extracting(UserActivityHistory::getActivity).containsExactly(9, 4);
+        } finally {
+            archiveService.closeSegments();
+        }
     }
 
+    @Test
+    void getUserActivityHistory_ShouldThrowUserNotFound_WhenUserIsMissing() {
+        UUID uuid = UUID.randomUUID();
+        when(userActivityHistoryJdbcRepository.findUserActivityHistory(eq(uuid), any(LocalDate.class), anyInt()))
+                .thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> analyticsService.getUserActivityHistory(uuid, LocalDate.now()))
+                .isInstanceOf(UserNotFoundException.class);
+        verify(activityArchiveService, never()).findArchivedHistory(any(), any());
+    }
 
     @Test
     void getUserActivityHistory_ShouldThrowException_WhenDatabaseErrorOccurs() {
-        UserData userData = new UserData();
-        userData.setUuid("valid-uuid");
+        UUID uuid = UUID.randomUUID();
 
         // Мокаем репозиторий, чтобы он вызвал исключение при обращении
-        when(userActivityHistoryRepository.findUserActivityHistoryByUuidAndPeriod(eq(userData), any(LocalDate.class), any(Pageable.class)))
+        when(userActivityHistoryJdbcRepository.findUserActivityHistory(eq(uuid), any(LocalDate.class), anyInt()))
                 .thenThrow(new RuntimeException("Database error"));
 
         // Проверяем, что выбрасывается DatabaseException, а не IllegalArgumentException
-        assertThatThrownBy(() -> analyticsService.getUserActivityHistory(userData, LocalDate.now()))
+        assertThatThrownBy(() -> analyticsService.getUserActivityHistory(uuid, LocalDate.now()))
                 .isInstanceOf(DatabaseException.class)
                 .hasMessage("Failed to fetch activity history. Please try again later");
     }
-}
\ No newline at end of file
+
+    @Test
+    void getTopUsersByMoneyForCountries_ShouldGroupUsersByCountryInRequestOrder() {
+        UserData first = user("first", "DE", 300);
+        UserData second = user("second", "DE", 200);
+        UserData third = user("third", "US", 100);
+        when(analyticsRepository.findTopUsersByCountriesMoney(List.of("US", "DE", "FR"), 2))
+                .thenReturn(List.of(first, second, third));
+
+        Map<String, List<UserData>> result = analyticsService.getTopUsersByMoneyForCountries(
+                Arrays.asList("US", "DE", "", null, "FR", "US"), 2);
+
+        assertThat(result).containsOnlyKeys("US", "DE", "FR");
+        assertThat(result.keySet()).containsExactly("US", "DE", "FR");
+        assertThat(result.get("DE")).containsExactly(first, second);
+        assertThat(result.get("US")).containsExactly(third);
+        assertThat(result.get("FR")).isEmpty();
+    }
+
+    @Test
+    void getTopUsersByMoneyForCountries_ShouldRejectEmptyCountries() {
+        assertThatThrownBy(() -> analyticsService.getTopUsersByMoneyForCountries(List.of(" "), 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("At least one country must be specified.");
+        verify(analyticsRepository, never()).findTopUsersByCountriesMoney(any(), anyInt());
+    }
+
+    @Test
+    void getTopUsersByMoneyForCountries_ShouldThrowDatabaseException_WhenQueryFails() {
+        when(analyticsRepository.findTopUsersByCountriesMoney(List.of("US"), 2)).thenThrow(new RuntimeException("Database error"));
+
+        assertThatThrownBy(() -> analyticsService.getTopUsersByMoneyForCountries(List.of("US"), 2))
+                .isInstanceOf(DatabaseException.class);
+    }
+
+    @Test
+    void countNewUsersByCountries_ShouldFillMissingCountriesWithZero() {
+        LocalDate startDate = LocalDate.of(2025, 2, 1);
+        when(analyticsRepository.countNewUsersByCountries(List.of("US", "DE"), startDate.atStartOfDay()))
+                .thenReturn(List.<Object[]>of(new Object[]{"US", 7L}));
+
+        Map<String, Long> result = analyticsService.countNewUsersByCountries(List.of("US", "DE"), startDate);
+
+        assertThat(result).containsExactly(Map.entry("US", 7L), Map.entry("DE", 0L));
+    }
+
+    @Test
+    void countNewUsersByCountries_ShouldRejectTooManyCountries() {
+        List<String> countries = IntStream.range(0, 501).mapToObj(i -> "C" + i).toList();
+
+        assertThatThrownBy(() -> analyticsService.countNewUsersByCountries(countries, LocalDate.of(2025, 2, 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("The number of countries must not exceed 500.");
+    }
+
+    private AnalyticsService cachingService() {
+        return new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository, activityArchiveService,
+                ForkJoinPool.commonPool(), new ConcurrentMapCacheManager(), new ObjectMapper(), shardService);
+    }
+
+    private AnalyticsService shardedService() {
+        return new AnalyticsService(analyticsRepository, userActivityHistoryJdbcRepository, activityArchiveService,
+                ForkJoinPool.commonPool(), cacheManager, objectMapper,
+                new ShardService(ForkJoinPool.commonPool(), true, List.of("jdbc:postgresql://localhost:5433/game"), 128));
+    }
+
+    private static UserData user(String name, String country, int money) {
+        UserData userData = new UserData();
+        userData.setUuid(UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)));
+        userData.setCountry(country);
+        userData.setMoney(money);
+        return userData;
+    }
+}
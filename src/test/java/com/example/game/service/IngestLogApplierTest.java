@@ -0,0 +1,236 @@
+package com.example.game.service;
+
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.model.UserData;
+import com.example.game.repository.UserDataRepository;
+import com.example.game.storage.IngestEntry;
+import com.example.game.storage.IngestLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IngestLogApplierTest {
+
+    private static final String SELECT_CHECKPOINT = "SELECT applied_lsn FROM ingest_log_checkpoint WHERE log_id = ?";
+    private static final String UPDATE_CHECKPOINT = "UPDATE ingest_log_checkpoint SET applied_lsn = ? WHERE log_id = ?";
+    private static final String INSERT_DEAD_LETTER = "INSERT INTO ingest_log_dead_letter "
+            + "(log_id, lsn, type, uuid, entry_timestamp, money, country, activity, reason) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final UUID USER_A = new UUID(0, 1);
+    private static final UUID USER_B = new UUID(0, 2);
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private UserDataRepository userDataRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong checkpoint = new AtomicLong();
+    private IngestLogService ingestLogService;
+    private IngestLogApplier applier;
+
+    @AfterEach
+    void tearDown() {
+        if (ingestLogService != null) {
+            ingestLogService.close();
+        }
+    }
+
+    @Test
+    void applyPending_ShouldApplyEntriesAndStoreCheckpoint() {
+        open(5);
+        UserData user = user(USER_A);
+        stubCheckpoint(0);
+        when(userDataRepository.findAllById(any())).thenReturn(List.of(user));
+        ingestLogService.append(IngestEntry.sync(USER_A, 1000L, 50, "US"));
+        ingestLogService.append(IngestEntry.activity(USER_A, 2000L, 7));
+
+        assertThat(applier.applyPending()).isEqualTo(2);
+
+        assertThat(user.getMoney()).isEqualTo(50);
+        assertThat(user.getActivity()).isEqualTo(7);
+        assertThat(checkpoint.get()).isEqualTo(2);
+        verify(userDataRepository).saveAll(any());
+        verify(eventPublisher, times(2)).publishEvent(any(UserDataUpdatedEvent.class));
+    }
+
+    @Test
+    void applyPending_ShouldSkipEntriesUpToCheckpoint() {
+        open(5);
+        UserData user = user(USER_A);
+        stubCheckpoint(2);
+        when(userDataRepository.findAllById(any())).thenReturn(List.of(user));
+        for (int i = 1; i <= 3; i++) {
+            ingestLogService.append(IngestEntry.activity(USER_A, i, i));
+        }
+
+        assertThat(applier.applyPending()).isEqualTo(1);
+
+        assertThat(user.getActivity()).isEqualTo(3);
+        assertThat(checkpoint.get()).isEqualTo(3);
+    }
+
+    @Test
+    void applyPending_ShouldApplyOneByOneAndDeadLetterEntryAfterMaxAttempts() {
+        open(2);
+        UserData user = user(USER_A);
+        stubCheckpoint(0);
+        when(userDataRepository.findAllById(any())).thenAnswer(invocation -> {
+            Set<UUID> uuids = invocation.getArgument(0);
+            if (uuids.contains(USER_B)) {
+                throw new IllegalStateException("Constraint violation");
+            }
+            return List.of(user);
+        });
+        ingestLogService.append(IngestEntry.activity(USER_A, 1000L, 5));
+        ingestLogService.append(IngestEntry.activity(USER_B, 2000L, 6));
+
+        // Пакет не применился: первая запись применена отдельно, вторая ждёт следующей попытки
+        assertThat(applier.applyPending()).isZero();
+        assertThat(user.getActivity()).isEqualTo(5);
+        assertThat(checkpoint.get()).isEqualTo(1);
+        verify(jdbcTemplate, never()).update(eq(INSERT_DEAD_LETTER), any(), any(), any(), any(), any(), any(), any(),
+                any(), any());
+
+        assertThat(applier.applyPending()).isEqualTo(1);
+
+        assertThat(user.getActivity()).isEqualTo(5);
+        assertThat(checkpoint.get()).isEqualTo(2);
+        verify(jdbcTemplate).update(eq(INSERT_DEAD_LETTER), eq(ingestLogService.getLogId()), eq(2L), eq("ACTIVITY"),
+                eq(USER_B), eq(2000L), anyInt(), any(), eq(6), any());
+        assertThat(registry.get("game.ingest-log.dead-lettered").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void applyPending_ShouldDeadLetterEntriesOfUnknownUsers() {
+        open(5);
+        stubCheckpoint(0);
+        when(userDataRepository.findAllById(any())).thenReturn(List.of());
+        ingestLogService.append(IngestEntry.activity(USER_B, 2000L, 6));
+
+        assertThat(applier.applyPending()).isEqualTo(1);
+
+        assertThat(checkpoint.get()).isEqualTo(1);
+        verify(jdbcTemplate).update(eq(INSERT_DEAD_LETTER), eq(ingestLogService.getLogId()), eq(1L), eq("ACTIVITY"),
+                eq(USER_B), eq(2000L), anyInt(), any(), eq(6), eq("Unknown user"));
+    }
+
+    @Test
+    void replay_ShouldRefuseToStartWhenCheckpointIsAheadOfLog() {
+        open(5);
+        stubCheckpoint(10);
+        ingestLogService.append(IngestEntry.activity(USER_A, 1000L, 5));
+
+        assertThatThrownBy(() -> applier.replay())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining(ingestLogService.getLogId());
+        verify(userDataRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void applyPending_ShouldCreateCheckpointForNewLog() {
+        open(5);
+        when(jdbcTemplate.queryForList(SELECT_CHECKPOINT, Long.class, ingestLogService.getLogId()))
+                .thenReturn(List.of());
+
+        assertThat(applier.applyPending()).isZero();
+
+        verify(jdbcTemplate).update("INSERT INTO ingest_log_checkpoint (log_id, applied_lsn) VALUES (?, 0)",
+                ingestLogService.getLogId());
+        verify(jdbcTemplate, never()).update(eq("UPDATE ingest_log_checkpoint SET log_id = ? WHERE log_id = ?"),
+                any(), any());
+    }
+
+    @Test
+    void applyPending_ShouldTakeOverLegacyCheckpointForUpgradedLog() throws Exception {
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, false)) {
+            for (int i = 1; i <= 3; i++) {
+                log.append(IngestEntry.activity(USER_A, i, i)).get();
+            }
+        }
+        Files.delete(tempDir.resolve("log-id"));
+        open(5);
+        String logId = ingestLogService.getLogId();
+        UserData user = user(USER_A);
+        when(jdbcTemplate.queryForList(SELECT_CHECKPOINT, Long.class, logId))
+                .thenReturn(List.of())
+                .thenReturn(List.of(2L));
+        when(jdbcTemplate.update("UPDATE ingest_log_checkpoint SET log_id = ? WHERE log_id = ?", logId,
+                IngestLogApplier.LEGACY_LOG_ID)).thenReturn(1);
+        when(userDataRepository.findAllById(any())).thenReturn(List.of(user));
+
+        assertThat(ingestLogService.isUpgraded()).isTrue();
+        assertThat(applier.applyPending()).isEqualTo(1);
+
+        assertThat(user.getActivity()).isEqualTo(3);
+    }
+
+    private void open(int maxApplyAttempts) {
+        ingestLogService = new IngestLogService(true, tempDir.toString(), 64, false, 5000);
+        ingestLogService.open();
+        ShardService shardService = new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
+        RequestQuotaService requestQuotaService = new RequestQuotaService(Clock.systemUTC(), registry, 1000);
+        applier = new IngestLogApplier(ingestLogService, userDataRepository, jdbcTemplate, transactionManager,
+                eventPublisher, shardService, requestQuotaService, registry, 100, maxApplyAttempts);
+    }
+
+    /**
+     * Хранит контрольную точку журнала так, как её хранила бы таблица {@code ingest_log_checkpoint}.
+     */
+    private void stubCheckpoint(long applied) {
+        String logId = ingestLogService.getLogId();
+        checkpoint.set(applied);
+        when(jdbcTemplate.queryForList(SELECT_CHECKPOINT, Long.class, logId))
+                .thenAnswer(invocation -> List.of(checkpoint.get()));
+        lenient().when(jdbcTemplate.update(eq(UPDATE_CHECKPOINT), anyLong(), eq(logId))).thenAnswer(invocation -> {
+            checkpoint.set(invocation.getArgument(1));
+            return 1;
+        });
+    }
+
+    private static UserData user(UUID uuid) {
+        UserData user = new UserData();
+        user.setUuid(uuid);
+        user.setCountry("US");
+        return user;
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.game.service;
+
+import com.example.game.repository.UserDataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KnownUsersServiceTest {
+
+    private static final UUID KNOWN = new UUID(1, 1);
+    private static final UUID UNKNOWN = new UUID(2, 2);
+
+    @Mock
+    private UserDataRepository userDataRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ShardService shardService = new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private KnownUsersService knownUsersService;
+
+    @BeforeEach
+    void setUp() {
+        knownUsersService = new KnownUsersService(userDataRepository, shardService, transactionManager, clock, registry,
+                true, 1_000, 0.01, 60, 100, 60);
+    }
+
+    @Test
+    void isDefinitelyUnknown_ShouldPassEverythingUntilLoaded() {
+        assertThat(knownUsersService.isDefinitelyUnknown(UNKNOWN)).isFalse();
+    }
+
+    @Test
+    void isDefinitelyUnknown_ShouldRejectUsersMissingFromFilter() {
+        load(KNOWN);
+
+        assertThat(knownUsersService.isDefinitelyUnknown(KNOWN)).isFalse();
+        assertThat(knownUsersService.isDefinitelyUnknown(UNKNOWN)).isTrue();
+        assertThat(registry.get("game.known-users.rejected").tag("source", "filter").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void add_ShouldAcceptCreatedUsers() {
+        load(KNOWN);
+
+        knownUsersService.add(UNKNOWN);
+
+        assertThat(knownUsersService.isDefinitelyUnknown(UNKNOWN)).isFalse();
+    }
+
+    @Test
+    void refresh_ShouldAddUsersInsertedSinceLastLoad() {
+        load(KNOWN);
+        when(userDataRepository.findMaxRegistrationSeq()).thenReturn(11L);
+        when(userDataRepository.streamUuidsRegisteredAfter(10L)).thenReturn(Stream.of(UNKNOWN));
+
+        knownUsersService.refresh();
+
+        assertThat(knownUsersService.isDefinitelyUnknown(UNKNOWN)).isFalse();
+    }
+
+    @Test
+    void refresh_ShouldRereadRowsInsertedWithinOverlap() {
+        load(KNOWN);
+        when(userDataRepository.findMaxRegistrationSeq()).thenReturn(20L, 30L, 40L);
+        when(userDataRepository.streamUuidsRegisteredAfter(anyLong())).thenAnswer(invocation -> Stream.empty());
+
+        knownUsersService.refresh();
+        clock.advanceSeconds(30);
+        knownUsersService.refresh();
+        clock.advanceSeconds(31);
+        knownUsersService.refresh();
+
+        // Номера, полученные меньше минуты назад, могли принадлежать ещё не зафиксированным транзакциям
+        InOrder inOrder = inOrder(userDataRepository);
+        inOrder.verify(userDataRepository, times(2)).streamUuidsRegisteredAfter(10L);
+        inOrder.verify(userDataRepository).streamUuidsRegisteredAfter(20L);
+    }
+
+    @Test
+    void recordMissing_ShouldCacheFalsePositiveForTtl() {
+        load(KNOWN);
+
+        knownUsersService.recordMissing(KNOWN);
+
+        assertThat(knownUsersService.isDefinitelyUnknown(KNOWN)).isTrue();
+        assertThat(registry.get("game.known-users.false-positives").counter().count()).isEqualTo(1);
+        assertThat(registry.get("game.known-users.false-positive-rate").gauge().value()).isEqualTo(1);
+
+        clock.advanceSeconds(61);
+
+        assertThat(knownUsersService.isDefinitelyUnknown(KNOWN)).isFalse();
+    }
+
+    @Test
+    void isDefinitelyUnknown_ShouldPassEverythingWhenDisabled() {
+        KnownUsersService disabled = new KnownUsersService(mock(UserDataRepository.class), shardService,
+                transactionManager, clock, new SimpleMeterRegistry(), false, 1_000, 0.01, 60, 100, 60);
+
+        disabled.load();
+
+        assertThat(disabled.isDefinitelyUnknown(UNKNOWN)).isFalse();
+    }
+
+    private void load(UUID... uuids) {
+        when(userDataRepository.count()).thenReturn((long) uuids.length);
+        when(userDataRepository.findMaxRegistrationSeq()).thenReturn(10L);
+        when(userDataRepository.streamAllUuids()).thenReturn(Stream.of(uuids));
+        knownUsersService.load();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2025-02-10T12:00:00Z");
+
+        void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
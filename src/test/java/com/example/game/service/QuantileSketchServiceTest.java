@@ -0,0 +1,193 @@
+package com.example.game.service;
+
+import com.example.game.dto.HistogramBucket;
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.exception.NoDataFoundException;
+import com.example.game.repository.UserDataRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class QuantileSketchServiceTest {
+
+    private static final String TOKEN = "secret";
+
+    @Mock
+    private UserDataRepository userDataRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void getQuantiles_ShouldCountEachUserOnce() {
+        QuantileSketchService service = service(userDataRepository);
+        when(userDataRepository.streamCountryMoneyActivity()).thenReturn(IntStream.rangeClosed(1, 100)
+                .mapToObj(money -> new Object[]{"US", money, 0}));
+
+        service.rebuild();
+
+        Map<Double, Integer> quantiles = service.getQuantiles(
+                QuantileSketchService.Metric.MONEY, "US", List.of(0.5, 0.9, 0.99));
+        assertThat(quantiles).containsExactly(Map.entry(0.5, 50), Map.entry(0.9, 90), Map.entry(0.99, 99));
+    }
+
+    @Test
+    void getHistogram_ShouldSplitUsersByTotalActivity() {
+        QuantileSketchService service = service(userDataRepository);
+        when(userDataRepository.streamCountryMoneyActivity()).thenReturn(IntStream.rangeClosed(1, 100)
+                .mapToObj(activity -> new Object[]{"US", 0, activity}));
+
+        service.rebuild();
+
+        List<HistogramBucket> histogram = service.getHistogram(
+                QuantileSketchService.Metric.ACTIVITY, "US", List.of(10, 50));
+        assertThat(histogram).containsExactly(
+                new HistogramBucket(null, 10, 10),
+                new HistogramBucket(10, 50, 40),
+                new HistogramBucket(50, null, 50));
+    }
+
+    @Test
+    void onUserDataUpdated_ShouldMoveUserWithoutScanningTable() {
+        QuantileSketchService service = service(userDataRepository);
+        when(userDataRepository.streamCountryMoneyActivity()).thenReturn(IntStream.rangeClosed(1, 100)
+                .mapToObj(money -> new Object[]{"US", money, 0}));
+        service.rebuild();
+
+        service.onUserDataUpdated(new UserDataUpdatedEvent(new UUID(0, 1), "DE", 500, 0,
+                UserDataUpdatedEvent.Source.SYNC, 0, "US", 100, 0));
+        service.onUserDataUpdated(new UserDataUpdatedEvent(new UUID(0, 2), "US", 1, 7,
+                UserDataUpdatedEvent.Source.ACTIVITY, 0, "US", 1, 0));
+
+        assertThat(service.getQuantiles(QuantileSketchService.Metric.MONEY, "US", List.of(1.0)))
+                .containsEntry(1.0, 99);
+        assertThat(service.getQuantiles(QuantileSketchService.Metric.MONEY, "DE", List.of(0.5)))
+                .containsEntry(0.5, 500);
+        assertThat(service.getHistogram(QuantileSketchService.Metric.ACTIVITY, "US", List.of(0)))
+                .containsExactly(new HistogramBucket(null, 0, 98), new HistogramBucket(0, null, 1));
+        verify(userDataRepository, times(1)).streamCountryMoneyActivity();
+    }
+
+    @Test
+    void onUserDataUpdated_ShouldCountUserMissingFromDistribution() {
+        QuantileSketchService service = service(userDataRepository);
+
+        service.onUserDataUpdated(new UserDataUpdatedEvent(new UUID(0, 1), "US", 10, 0,
+                UserDataUpdatedEvent.Source.SYNC, 0, null, 0, 0));
+        service.onUserDataUpdated(new UserDataUpdatedEvent(new UUID(0, 2), "US", 20, 0,
+                UserDataUpdatedEvent.Source.SYNC, 0, "US", 15, 0));
+
+        assertThat(service.getQuantiles(QuantileSketchService.Metric.MONEY, "US", List.of(0.0, 1.0)))
+                .containsExactly(Map.entry(0.0, 10), Map.entry(1.0, 20));
+    }
+
+    @Test
+    void rebuild_ShouldReplacePreviousDistribution() {
+        QuantileSketchService service = service(userDataRepository);
+        when(userDataRepository.streamCountryMoneyActivity())
+                .thenReturn(Stream.<Object[]>of(new Object[]{"US", 10, 1}, new Object[]{"DE", 20, 2}))
+                .thenReturn(Stream.<Object[]>of(new Object[]{"US", 500, 1}));
+
+        service.rebuild();
+        service.rebuild();
+
+        assertThat(service.getQuantiles(QuantileSketchService.Metric.MONEY, "US", List.of(0.0, 1.0)))
+                .containsExactly(Map.entry(0.0, 500), Map.entry(1.0, 500));
+        assertThatThrownBy(() -> service.getQuantiles(QuantileSketchService.Metric.MONEY, "DE", List.of(0.5)))
+                .isInstanceOf(NoDataFoundException.class);
+    }
+
+    @Test
+    void rebuild_ShouldKeepPreviousSketches_WhenScanFails() {
+        QuantileSketchService service = service(userDataRepository);
+        when(userDataRepository.streamCountryMoneyActivity())
+                .thenReturn(Stream.<Object[]>of(new Object[]{"US", 10, 1}))
+                .thenThrow(new IllegalStateException("Database unavailable"));
+
+        service.rebuild();
+        service.rebuild();
+
+        assertThat(service.getQuantiles(QuantileSketchService.Metric.MONEY, "US", List.of(0.5)))
+                .containsEntry(0.5, 10);
+    }
+
+    @Test
+    void mergeSketch_ShouldReplaceSketchOfSameNode() {
+        QuantileSketchService service = service(userDataRepository);
+        when(userDataRepository.streamCountryMoneyActivity()).thenReturn(IntStream.rangeClosed(1, 50)
+                .mapToObj(money -> new Object[]{"US", money, 0}));
+        service.rebuild();
+
+        UserDataRepository otherRepository = mock(UserDataRepository.class);
+        QuantileSketchService otherNode = service(otherRepository);
+        when(otherRepository.streamCountryMoneyActivity()).thenReturn(IntStream.rangeClosed(51, 100)
+                .mapToObj(money -> new Object[]{"US", money, 0}));
+        otherNode.rebuild();
+        byte[] exported = otherNode.exportSketch(QuantileSketchService.Metric.MONEY, "US");
+
+        service.mergeSketch(QuantileSketchService.Metric.MONEY, "US", "eu-1", exported);
+        service.mergeSketch(QuantileSketchService.Metric.MONEY, "US", "eu-1", exported);
+
+        assertThat(service.getQuantiles(QuantileSketchService.Metric.MONEY, "US", List.of(0.5, 1.0)))
+                .containsExactly(Map.entry(0.5, 50), Map.entry(1.0, 100));
+        assertThat(service.getHistogram(QuantileSketchService.Metric.MONEY, "US", List.of(50)))
+                .containsExactly(new HistogramBucket(null, 50, 50), new HistogramBucket(50, null, 50));
+        // Скетчи других узлов не выгружаются обратно
+        assertThat(service.exportSketch(QuantileSketchService.Metric.MONEY, "US")).isNotEqualTo(exported);
+    }
+
+    @Test
+    void mergeSketch_ShouldRejectMalformedSketchAndLongCountry() {
+        QuantileSketchService service = service(userDataRepository);
+
+        assertThatThrownBy(() -> service.mergeSketch(QuantileSketchService.Metric.MONEY, "US", "eu-1", new byte[]{1, 0}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.mergeSketch(QuantileSketchService.Metric.MONEY, "USA1", "eu-1", new byte[0]))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Country code must not exceed 3 characters.");
+    }
+
+    @Test
+    void isMergeAuthorized_ShouldRequireConfiguredToken() {
+        assertThat(service(userDataRepository).isMergeAuthorized(TOKEN)).isTrue();
+        assertThat(service(userDataRepository).isMergeAuthorized("wrong")).isFalse();
+        assertThat(service(userDataRepository).isMergeAuthorized(null)).isFalse();
+        assertThat(new QuantileSketchService(userDataRepository, shardService(), transactionManager, true, "")
+                .isMergeAuthorized("")).isFalse();
+    }
+
+    @Test
+    void getQuantiles_ShouldThrowException_WhenNoData() {
+        QuantileSketchService service = service(userDataRepository);
+
+        assertThatThrownBy(() -> service.getQuantiles(QuantileSketchService.Metric.MONEY, "DE", List.of(0.5)))
+                .isInstanceOf(NoDataFoundException.class);
+        assertThatThrownBy(() -> service.getHistogram(QuantileSketchService.Metric.MONEY, "DE", List.of(5, 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private QuantileSketchService service(UserDataRepository repository) {
+        return new QuantileSketchService(repository, shardService(), transactionManager, true, TOKEN);
+    }
+
+    private static ShardService shardService() {
+        return new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
+    }
+}
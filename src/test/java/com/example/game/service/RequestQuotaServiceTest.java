@@ -0,0 +1,112 @@
+package com.example.game.service;
+
+import com.example.game.exception.ActivityLimitExceededException;
+import com.example.game.exception.SyncLimitExceededException;
+import com.example.game.model.UserData;
+import com.example.game.storage.IngestEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestQuotaServiceTest {
+
+    private static final long NOW = Instant.parse("2025-06-01T12:00:00Z").toEpochMilli();
+    private static final UUID USER_ID = new UUID(0, 1);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RequestQuotaService quotaService = new RequestQuotaService(
+            Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC), registry, 10);
+
+    @Test
+    void acquire_ShouldRejectSyncOverLimitWithRetryAfter() {
+        for (int i = 0; i < UserDataService.SYNC_LIMIT; i++) {
+            quotaService.acquire(USER_ID, IngestEntry.Type.SYNC, NOW);
+        }
+
+        assertThatThrownBy(() -> quotaService.acquire(USER_ID, IngestEntry.Type.SYNC, NOW))
+                .isInstanceOf(SyncLimitExceededException.class)
+                .hasMessage(SyncLimitExceededException.MESSAGE_SYNC)
+                .satisfies(e -> assertThat(((SyncLimitExceededException) e).getRetryAfterSeconds())
+                        .isEqualTo(UserDataService.LIMIT_WINDOW_MS / 1000));
+        // Лимит синхронизаций не влияет на запросы статистики
+        assertThatCode(() -> quotaService.acquire(USER_ID, IngestEntry.Type.ACTIVITY, NOW)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void acquire_ShouldResetCounterAfterWindow() {
+        for (int i = 0; i < UserDataService.SYNC_LIMIT; i++) {
+            quotaService.acquire(USER_ID, IngestEntry.Type.SYNC, NOW);
+        }
+
+        assertThatCode(() -> quotaService.acquire(USER_ID, IngestEntry.Type.SYNC,
+                NOW + UserDataService.LIMIT_WINDOW_MS + 1)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void release_ShouldReturnAcquiredRequest() {
+        for (int i = 0; i < UserDataService.SYNC_LIMIT; i++) {
+            quotaService.acquire(USER_ID, IngestEntry.Type.SYNC, NOW);
+        }
+
+        quotaService.release(USER_ID, IngestEntry.Type.SYNC);
+
+        assertThatCode(() -> quotaService.acquire(USER_ID, IngestEntry.Type.SYNC, NOW)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void observe_ShouldTakeCountersFromDatabase() {
+        UserData userData = new UserData();
+        userData.setUuid(USER_ID);
+        userData.setStatCount(UserDataService.ACTIVITY_LIMIT);
+        userData.setLastStatTime(NOW - 1000);
+
+        quotaService.observe(userData);
+
+        assertThatThrownBy(() -> quotaService.acquire(USER_ID, IngestEntry.Type.ACTIVITY, NOW))
+                .isInstanceOf(ActivityLimitExceededException.class);
+    }
+
+    @Test
+    void observe_ShouldIgnoreCountersFromExpiredWindow() {
+        quotaService.acquire(USER_ID, IngestEntry.Type.ACTIVITY, NOW);
+        UserData userData = new UserData();
+        userData.setUuid(USER_ID);
+        userData.setStatCount(UserDataService.ACTIVITY_LIMIT);
+        userData.setLastStatTime(NOW - UserDataService.LIMIT_WINDOW_MS - 1);
+
+        quotaService.observe(userData);
+
+        assertThatCode(() -> quotaService.acquire(USER_ID, IngestEntry.Type.ACTIVITY, NOW)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void prune_ShouldRemoveExpiredCounters() {
+        quotaService.acquire(USER_ID, IngestEntry.Type.SYNC, NOW - UserDataService.LIMIT_WINDOW_MS - 1);
+        quotaService.acquire(new UUID(0, 2), IngestEntry.Type.SYNC, NOW);
+
+        quotaService.prune();
+
+        assertThat(registry.get("game.request-quota.users").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void acquire_ShouldAdmitUntrackedUsersWhenCapacityIsReached() {
+        for (int i = 0; i < 10; i++) {
+            quotaService.acquire(new UUID(1, i), IngestEntry.Type.SYNC, NOW);
+        }
+
+        for (int i = 0; i <= UserDataService.SYNC_LIMIT; i++) {
+            quotaService.acquire(USER_ID, IngestEntry.Type.SYNC, NOW);
+        }
+
+        assertThat(registry.get("game.request-quota.users").gauge().value()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.game.service;
+
+import com.example.game.datasource.ShardContext;
+import com.example.game.dto.ShardRebalanceReport;
+import com.example.game.exception.DatabaseException;
+import com.example.game.repository.UserDataRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEFAULTS;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Перераспределение на трёх шардах, каждый из которых представлен таблицами в памяти:
+ * запросы {@link JdbcTemplate} и репозитория выполняются над таблицами шарда,
+ * выбранного {@link ShardContext} в момент вызова.
+ */
+@ExtendWith(MockitoExtension.class)
+class ShardRebalanceServiceTest {
+
+    @Mock
+    private UserDataRepository userDataRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final ShardService shardService = new ShardService(ForkJoinPool.commonPool(), true,
+            List.of("jdbc:postgresql://localhost:5433/game", "jdbc:postgresql://localhost:5434/game"), 128);
+    private final Map<String, Map<UUID, Object[]>> users = new HashMap<>();
+    private final Map<String, List<Object[]>> activity = new HashMap<>();
+    private final List<String> events = new ArrayList<>();
+    private final Set<String> failingShards = new HashSet<>();
+
+    private UUID owned;
+    private UUID toShard1;
+    private UUID toShard2;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        for (String shard : shardService.getShards()) {
+            users.put(shard, new LinkedHashMap<>());
+            activity.put(shard, new ArrayList<>());
+        }
+        owned = userOf("shard-0");
+        toShard1 = userOf("shard-1");
+        toShard2 = userOf("shard-2");
+
+        lenient().when(userDataRepository.streamAllUuids())
+                .thenAnswer(invocation -> new ArrayList<>(users.get(ShardContext.current()).keySet()).stream());
+        lenient().when(transactionManager.getTransaction(any())).thenAnswer(invocation -> new SimpleTransactionStatus());
+        lenient().doAnswer(invocation -> events.add("commit " + ShardContext.current()))
+                .when(transactionManager).commit(any());
+        lenient().when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+                .thenAnswer(invocation -> query(invocation.getArgument(0), uuids(invocation.getArgument(1)),
+                        invocation.getArgument(2)));
+        lenient().when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class))).thenAnswer(invocation ->
+                insert(invocation.getArgument(0), invocation.getArgument(1)));
+        lenient().when(jdbcTemplate.update(anyString(), any(PreparedStatementSetter.class))).thenAnswer(invocation ->
+                delete(invocation.getArgument(0), uuids(invocation.getArgument(1))));
+    }
+
+    @Test
+    void rebalance_ShouldCopyMisplacedUsersWithActivityAndDeleteThemAfterTargetCommit() {
+        store("shard-0", owned, 10);
+        store("shard-0", toShard1, 20);
+        store("shard-0", toShard2, 30);
+        storeActivity("shard-0", toShard1, 1, 2);
+        storeActivity("shard-0", toShard2, 3);
+
+        ShardRebalanceReport report = service(1000).rebalance();
+
+        assertThat(report.movedUsers()).containsExactly(
+                Map.entry("shard-0", 0L), Map.entry("shard-1", 1L), Map.entry("shard-2", 1L));
+        assertThat(report.movedActivity()).isEqualTo(3);
+        assertThat(report.skippedUsers()).isZero();
+        assertThat(users.get("shard-0")).containsOnlyKeys(owned);
+        assertThat(users.get("shard-1").get(toShard1)).containsExactly(row(toShard1, 20));
+        assertThat(users.get("shard-2")).containsOnlyKeys(toShard2);
+        assertThat(activity.get("shard-0")).isEmpty();
+        assertThat(activity.get("shard-1")).extracting(row -> row[1]).containsExactly(1, 2);
+        assertThat(activity.get("shard-2")).extracting(row -> row[1]).containsExactly(3);
+        int deleted = events.indexOf("delete shard-0");
+        assertThat(deleted).isGreaterThan(events.indexOf("commit shard-1"))
+                .isGreaterThan(events.indexOf("commit shard-2"));
+        assertThat(events).containsSubsequence("insert shard-1", "commit shard-1", "delete shard-0");
+    }
+
+    @Test
+    void rebalance_ShouldSkipUsersAlreadyPresentOnTargetShard() {
+        store("shard-0", toShard1, 20);
+        storeActivity("shard-0", toShard1, 1);
+        // Копия осталась от перераспределения, прерванного после фиксации на шарде назначения
+        store("shard-1", toShard1, 25);
+        storeActivity("shard-1", toShard1, 1);
+
+        ShardRebalanceReport report = service(1000).rebalance();
+
+        assertThat(report.skippedUsers()).isEqualTo(1);
+        assertThat(report.movedUsers()).containsEntry("shard-1", 0L);
+        assertThat(report.movedActivity()).isZero();
+        assertThat(users.get("shard-1").get(toShard1)).containsExactly(row(toShard1, 25));
+        assertThat(activity.get("shard-1")).hasSize(1);
+        assertThat(users.get("shard-0")).isEmpty();
+        assertThat(activity.get("shard-0")).isEmpty();
+    }
+
+    @Test
+    void rebalance_ShouldKeepSourceRowsOfFailedBatchAndFinishOnRetry() {
+        store("shard-0", toShard1, 20);
+        store("shard-0", toShard2, 30);
+        storeActivity("shard-0", toShard2, 3);
+        failingShards.add("shard-2");
+        ShardRebalanceService service = service(1);
+
+        assertThatThrownBy(service::rebalance).isInstanceOf(DatabaseException.class);
+
+        // Первая порция перенесена, порция с ошибкой на шарде назначения осталась на исходном шарде
+        assertThat(users.get("shard-1")).containsOnlyKeys(toShard1);
+        assertThat(users.get("shard-0")).containsOnlyKeys(toShard2);
+        assertThat(activity.get("shard-0")).hasSize(1);
+        assertThat(users.get("shard-2")).isEmpty();
+
+        ShardRebalanceReport report = service.rebalance();
+
+        assertThat(report.movedUsers()).containsEntry("shard-2", 1L).containsEntry("shard-1", 0L);
+        assertThat(report.movedActivity()).isEqualTo(1);
+        assertThat(users.get("shard-0")).isEmpty();
+        assertThat(users.get("shard-2")).containsOnlyKeys(toShard2);
+        assertThat(activity.get("shard-2")).hasSize(1);
+    }
+
+    private ShardRebalanceService service(int batchSize) {
+        return new ShardRebalanceService(shardService, userDataRepository, jdbcTemplate, transactionManager, batchSize);
+    }
+
+    private UUID userOf(String shard) {
+        for (long i = 1; ; i++) {
+            UUID uuid = new UUID(i, i * 31L);
+            if (shardService.shardFor(uuid).equals(shard)) {
+                return uuid;
+            }
+        }
+    }
+
+    private void store(String shard, UUID uuid, int money) {
+        users.get(shard).put(uuid, row(uuid, money));
+    }
+
+    private void storeActivity(String shard, UUID uuid, int... values) {
+        for (int i = 0; i < values.length; i++) {
+            activity.get(shard).add(new Object[]{uuid, values[i], Date.valueOf(LocalDate.of(2024, 3, i + 1))});
+        }
+    }
+
+    private static Object[] row(UUID uuid, int money) {
+        return new Object[]{uuid, money, "US", 0, 1, 0, 1000L, 0L, Timestamp.valueOf("2024-01-01 00:00:00"), 3L};
+    }
+
+    private List<Object> query(String sql, List<UUID> uuids, RowMapper<?> mapper) throws SQLException {
+        String shard = ShardContext.current();
+        List<Object[]> rows = new ArrayList<>();
+        if (sql.startsWith("SELECT uuid FROM user_data")) {
+            uuids.stream().filter(users.get(shard)::containsKey).forEach(uuid -> rows.add(new Object[]{uuid}));
+        } else if (sql.contains("FROM user_data")) {
+            uuids.stream().map(users.get(shard)::get).filter(row -> row != null).forEach(rows::add);
+        } else {
+            activity.get(shard).stream().filter(row -> uuids.contains((UUID) row[0])).forEach(rows::add);
+        }
+        List<Object> result = new ArrayList<>();
+        for (Object[] row : rows) {
+            // Колонка результата читается по номеру из строки таблицы
+            ResultSet resultSet = mock(ResultSet.class, invocation -> invocation.getArguments().length > 0
+                    && invocation.getArgument(0) instanceof Integer column
+                    ? row[column - 1] : RETURNS_DEFAULTS.answer(invocation));
+            result.add(mapper.mapRow(resultSet, result.size()));
+        }
+        return result;
+    }
+
+    private int[][] insert(String sql, Collection<Object[]> rows) {
+        String shard = ShardContext.current();
+        if (failingShards.remove(shard)) {
+            throw new TransientDataAccessResourceException("Connection reset");
+        }
+        events.add("insert " + shard);
+        for (Object[] row : rows) {
+            if (sql.startsWith("INSERT INTO user_data")) {
+                users.get(shard).put((UUID) row[0], row);
+            } else {
+                activity.get(shard).add(row);
+            }
+        }
+        return new int[0][];
+    }
+
+    private int delete(String sql, List<UUID> uuids) {
+        String shard = ShardContext.current();
+        events.add("delete " + shard);
+        if (sql.startsWith("DELETE FROM user_data")) {
+            int before = users.get(shard).size();
+            users.get(shard).keySet().removeAll(uuids);
+            return before - users.get(shard).size();
+        }
+        List<Object[]> rows = activity.get(shard);
+        int before = rows.size();
+        rows.removeIf(row -> uuids.contains((UUID) row[0]));
+        return before - rows.size();
+    }
+
+    /**
+     * Извлекает UUID, которые запрос передаёт массивом в {@code ANY(?)}.
+     */
+    private static List<UUID> uuids(PreparedStatementSetter setter) throws SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(statement.getConnection()).thenReturn(connection);
+        List<UUID> uuids = new ArrayList<>();
+        when(connection.createArrayOf(eq("uuid"), any())).thenAnswer(invocation -> {
+            for (Object uuid : (Object[]) invocation.getArgument(1)) {
+                uuids.add((UUID) uuid);
+            }
+            return null;
+        });
+        setter.setValues(statement);
+        return uuids;
+    }
+}
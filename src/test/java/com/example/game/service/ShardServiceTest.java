@@ -0,0 +1,73 @@
+package com.example.game.service;
+
+import com.example.game.datasource.ShardContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ShardServiceTest {
+
+    private final ShardService sharded = new ShardService(ForkJoinPool.commonPool(), true,
+            List.of("jdbc:postgresql://localhost:5433/game", "jdbc:postgresql://localhost:5434/game"), 128);
+    private final ShardService unsharded = new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void groupByShard_ShouldGroupItemsByOwnerShardKeepingOrder() {
+        List<UUID> users = IntStream.range(0, 300).mapToObj(i -> new UUID(i, i * 31L)).toList();
+
+        Map<String, List<UUID>> groups = sharded.groupByShard(users, uuid -> uuid);
+
+        assertThat(groups.keySet()).containsExactlyInAnyOrderElementsOf(sharded.getShards());
+        assertThat(groups.values().stream().mapToInt(List::size).sum()).isEqualTo(users.size());
+        groups.forEach((shard, group) -> {
+            assertThat(group).allSatisfy(uuid -> assertThat(sharded.shardFor(uuid)).isEqualTo(shard));
+            assertThat(group).isSortedAccordingTo((a, b) -> Integer.compare(users.indexOf(a), users.indexOf(b)));
+        });
+    }
+
+    @Test
+    void groupByShard_ShouldUseMainDatabase_WhenShardingDisabled() {
+        List<UUID> users = List.of(new UUID(0, 1), new UUID(0, 2));
+
+        assertThat(unsharded.groupByShard(users, uuid -> uuid)).containsExactly(Map.entry("shard-0", users));
+        assertThat(unsharded.groupByShard(List.<UUID>of(), uuid -> uuid)).isEmpty();
+    }
+
+    @Test
+    void onShard_ShouldSelectShardForAction() {
+        List<String> selected = new ArrayList<>();
+
+        sharded.forEachShard(shard -> selected.add(ShardContext.current()));
+        String shard = sharded.onShardOf(new UUID(0, 1), ShardContext::current);
+
+        assertThat(selected).containsExactlyElementsOf(sharded.getShards());
+        assertThat(shard).isEqualTo(sharded.shardFor(new UUID(0, 1)));
+        assertThat(ShardContext.current()).isNull();
+    }
+
+    @Test
+    void onShard_ShouldRejectCallInsideActiveTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        assertThatThrownBy(() -> sharded.onShard("shard-1", () -> "result"))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Database shard must be selected before a transaction starts.");
+        // Без шардирования переключать нечего, поэтому вызов внутри транзакции допустим
+        assertThat(unsharded.onShard("shard-0", () -> "result")).isEqualTo("result");
+    }
+}
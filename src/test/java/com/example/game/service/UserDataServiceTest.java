@@ -1,31 +1,46 @@
 package com.example.game.service;
 
+import com.example.game.event.UserDataUpdatedEvent;
 import com.example.game.exception.ActivityLimitExceededException;
+import com.example.game.exception.ConcurrentUpdateException;
+import com.example.game.exception.DatabaseException;
 import com.example.game.exception.InvalidJsonException;
+import com.example.game.exception.ServiceOverloadedException;
 import com.example.game.exception.SyncLimitExceededException;
 import com.example.game.exception.UserNotFoundException;
 import com.example.game.model.UserData;
 import com.example.game.repository.UserDataRepository;
+import com.example.game.storage.IngestEntry;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.IntNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import static org.mockito.Mockito.*;
 import java.time.*;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 
 
 @ExtendWith(MockitoExtension.class)
 class UserDataServiceTest {
+    private static final UUID USER_ID = UUID.fromString("3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f");
+    private static final UUID UNKNOWN_USER_ID = UUID.fromString("00000000-0000-0000-0000-000000000000");
     @InjectMocks
     private UserDataService userDataService;
 
@@ -38,10 +53,34 @@ class UserDataServiceTest {
     @Mock
     private Clock clock;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private IngestLogService ingestLogService;
+
+    @Mock
+    private UserStateService userStateService;
+
+    @Mock
+    private KnownUsersService knownUsersService;
+
+    @Mock
+    private ActivityPipelineService activityPipelineService;
+
+    @Mock
+    private RequestQuotaService requestQuotaService;
+
+    @Spy
+    private ShardService shardService = new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128);
+
+    @Spy
+    private OptimisticRetryService optimisticRetryService = new OptimisticRetryService(new SimpleMeterRegistry(), 3, 0, 0);
+
 
     @Test
     void processSyncData_ShouldUpdateUserData() throws Exception {
-        String uuid = "test-uuid";
+        UUID uuid = USER_ID;
         String jsonData = "{\"money\":100, \"country\":\"US\"}";
         UserData userData = new UserData();
         userData.setUuid(uuid);
@@ -61,11 +100,50 @@ class UserDataServiceTest {
 
         verify(userDataRepository).findById(uuid);
         verify(userDataRepository).save(userData);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof UserDataUpdatedEvent e
+                && e.source() == UserDataUpdatedEvent.Source.SYNC && e.money() == 100 && "US".equals(e.country())));
+    }
+
+    @Test
+    void processActivityData_ShouldRetryWithFreshDataAfterConflict() {
+        UUID uuid = USER_ID;
+        UserData stale = new UserData();
+        stale.setUuid(uuid);
+        stale.setActivity(10);
+        UserData fresh = new UserData();
+        fresh.setUuid(uuid);
+        fresh.setActivity(15);
+
+        when(userDataRepository.findById(uuid)).thenReturn(Optional.of(stale), Optional.of(fresh));
+        when(userDataRepository.save(stale)).thenThrow(new ObjectOptimisticLockingFailureException(UserData.class, uuid));
+
+        String result = userDataService.processActivityData(uuid, 5);
+
+        assertThat(result).isEqualTo("Activity data received successfully.");
+        assertThat(fresh.getActivity()).isEqualTo(20);
+        verify(userDataRepository).save(fresh);
+        verify(eventPublisher, times(1)).publishEvent(any(UserDataUpdatedEvent.class));
+    }
+
+    @Test
+    void processActivityData_ShouldThrowConcurrentUpdateExceptionWhenRetriesExhausted() {
+        UUID uuid = USER_ID;
+        UserData userData = new UserData();
+        userData.setUuid(uuid);
+
+        when(userDataRepository.findById(uuid)).thenReturn(Optional.of(userData));
+        when(userDataRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(UserData.class, uuid));
+
+        assertThatThrownBy(() -> userDataService.processActivityData(uuid, 5))
+                .isInstanceOf(ConcurrentUpdateException.class);
+
+        verify(userDataRepository, times(3)).save(any());
+        verifyNoInteractions(eventPublisher);
     }
 
     @Test
     void processSyncData_ShouldThrowUserNotFoundException() {
-        String uuid = "unknown-uuid";
+        UUID uuid = UNKNOWN_USER_ID;
         String jsonData = "{\"money\":100, \"country\":\"US\"}";
 
         when(userDataRepository.findById(uuid)).thenReturn(Optional.empty());
@@ -75,15 +153,29 @@ class UserDataServiceTest {
 
         verify(userDataRepository).findById(uuid);
         verify(userDataRepository, never()).save(any());
+        verify(knownUsersService).recordMissing(uuid);
+    }
+
+    @Test
+    void processSyncData_ShouldRejectUnknownUserWithoutDatabaseLookup() {
+        UUID uuid = UNKNOWN_USER_ID;
+
+        when(knownUsersService.isDefinitelyUnknown(uuid)).thenReturn(true);
+
+        assertThatThrownBy(() -> userDataService.processSyncData(uuid, "{\"money\":100, \"country\":\"US\"}"))
+                .isInstanceOf(UserNotFoundException.class);
+
+        verifyNoInteractions(userDataRepository, userStateService);
     }
 
     @Test
     void processSyncData_ShouldThrowSyncLimitExceededException() {
-        String uuid = "test-uuid";
+        UUID uuid = USER_ID;
         String jsonData = "{\"money\":100, \"country\":\"US\"}";
         UserData userData = new UserData();
         userData.setUuid(uuid);
         userData.setSyncCount(100); // Превышен лимит
+        userData.setLastSyncTime(Instant.now().toEpochMilli());
 
         when(userDataRepository.findById(uuid)).thenReturn(Optional.of(userData));
 
@@ -94,9 +186,28 @@ class UserDataServiceTest {
         verify(userDataRepository, never()).save(any());
     }
 
+    @Test
+    void processSyncData_ShouldResetExhaustedLimitAfterWindow() throws Exception {
+        String jsonData = "{\"money\":100, \"country\":\"US\"}";
+        UserData userData = new UserData();
+        userData.setUuid(USER_ID);
+        userData.setSyncCount(100);
+        userData.setLastSyncTime(Instant.now().minus(Duration.ofHours(25)).toEpochMilli());
+
+        when(userDataRepository.findById(USER_ID)).thenReturn(Optional.of(userData));
+        JsonNode mockJsonNode = mock(JsonNode.class);
+        when(objectMapper.readTree(jsonData)).thenReturn(mockJsonNode);
+        when(mockJsonNode.path("money")).thenReturn(new IntNode(100));
+        when(mockJsonNode.path("country")).thenReturn(new TextNode("US"));
+
+        assertThat(userDataService.processSyncData(USER_ID, jsonData)).isEqualTo("Data received successfully.");
+        assertThat(userData.getSyncCount()).isEqualTo(1);
+        verify(userDataRepository).save(userData);
+    }
+
     @Test
     void processSyncData_ShouldThrowInvalidJsonException() throws Exception {
-        String uuid = "test-uuid";
+        UUID uuid = USER_ID;
         String invalidJson = "{money:100, country:US}"; // Некорректный JSON
         UserData userData = new UserData();
         userData.setUuid(uuid);
@@ -125,10 +236,10 @@ class UserDataServiceTest {
         Clock fixedClock = Clock.fixed(expectedInstant, ZoneOffset.UTC);
 
         // Пересоздаем сервис с фиксированным Clock
-        userDataService = new UserDataService(userDataRepository, fixedClock, objectMapper);
+        userDataService = new UserDataService(userDataRepository, fixedClock, objectMapper, eventPublisher, ingestLogService, userStateService, knownUsersService, shardService, optimisticRetryService, activityPipelineService, requestQuotaService);
 
         // Подготовка данных пользователя
-        String uuid = "test-uuid";
+        UUID uuid = USER_ID;
         UserData userData = new UserData();
         userData.setUuid(uuid);
         userData.setCountry("US");
@@ -139,7 +250,7 @@ class UserDataServiceTest {
         userData.setCreatedAt(expectedLocalDateTime);
 
         // Ожидаемый JSON
-        String jsonResponse = "{\"uuid\":\"test-uuid\",\"money\":0,\"country\":\"US\",\"activity\":0," +
+        String jsonResponse = "{\"uuid\":\"" + USER_ID + "\",\"money\":0,\"country\":\"US\",\"activity\":0," +
                 "\"syncCount\":1,\"statCount\":0,\"lastSyncTime\":" + expectedLastSyncTime + ",\"lastStatTime\":0," +
                 "\"createdAt\":\"2025-02-22T08:54:13\"}";
 
@@ -164,7 +275,7 @@ class UserDataServiceTest {
 
     @Test
     void getUserData_ShouldThrowUserNotFoundException() {
-        String uuid = "unknown-uuid";
+        UUID uuid = UNKNOWN_USER_ID;
 
         when(userDataRepository.findById(uuid)).thenReturn(Optional.empty());
 
@@ -173,7 +284,7 @@ class UserDataServiceTest {
         Clock fixedClock = Clock.fixed(fixedInstant, ZoneOffset.UTC);
 
         // Создаем сервис с фиксированным clock
-        UserDataService userDataServiceWithFixedClock = new UserDataService(userDataRepository, fixedClock, objectMapper);
+        UserDataService userDataServiceWithFixedClock = new UserDataService(userDataRepository, fixedClock, objectMapper, eventPublisher, ingestLogService, userStateService, knownUsersService, shardService, optimisticRetryService, activityPipelineService, requestQuotaService);
 
         assertThatThrownBy(() -> userDataServiceWithFixedClock.getUserData(uuid))
                 .isInstanceOf(UserNotFoundException.class);
@@ -183,7 +294,7 @@ class UserDataServiceTest {
 
     @Test
     void processActivityData_ShouldUpdateUserActivity() {
-        String uuid = "test-uuid";
+        UUID uuid = USER_ID;
         int activity = 10;
         UserData userData = new UserData();
         userData.setUuid(uuid);
@@ -200,11 +311,13 @@ class UserDataServiceTest {
 
         verify(userDataRepository).findById(uuid);
         verify(userDataRepository).save(userData);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof UserDataUpdatedEvent e
+                && e.source() == UserDataUpdatedEvent.Source.ACTIVITY && e.activity() == 10));
     }
 
     @Test
     void processActivityData_ShouldThrowUserNotFoundException() {
-        String uuid = "unknown-uuid";
+        UUID uuid = UNKNOWN_USER_ID;
         int activity = 10;
 
         when(userDataRepository.findById(uuid)).thenReturn(Optional.empty());
@@ -216,13 +329,38 @@ class UserDataServiceTest {
         verify(userDataRepository, never()).save(any());
     }
 
+    @Test
+    void processActivityData_ShouldReportTimeUntilLimitReset() {
+        UUID uuid = USER_ID;
+        UserData userData = new UserData();
+        userData.setUuid(uuid);
+        userData.setStatCount(10000);
+        userData.setLastStatTime(Instant.now().minus(Duration.ofHours(23)).toEpochMilli());
+
+        when(userDataRepository.findById(uuid)).thenReturn(Optional.of(userData));
+
+        assertThatThrownBy(() -> userDataService.processActivityData(uuid, 10))
+                .isInstanceOfSatisfying(ActivityLimitExceededException.class, e -> {
+                    assertThat(e.getRetryAfterSeconds()).isBetween(3590L, 3600L);
+                    assertThat(e.getStackTrace()).isEmpty();
+                });
+    }
+
+    @Test
+    void retryAfterSeconds_ShouldRoundUpAndStayPositive() {
+        assertThat(UserDataService.retryAfterSeconds(0, 86_400_000L - 1_500)).isEqualTo(2);
+        assertThat(UserDataService.retryAfterSeconds(0, 86_400_000L)).isEqualTo(1);
+        assertThat(UserDataService.retryAfterSeconds(0, 200_000_000L)).isEqualTo(1);
+    }
+
     @Test
     void processActivityData_ShouldThrowActivityLimitExceededException() {
-        String uuid = "test-uuid";
+        UUID uuid = USER_ID;
         int activity = 10;
         UserData userData = new UserData();
         userData.setUuid(uuid);
         userData.setStatCount(10000); // Превышен лимит
+        userData.setLastStatTime(Instant.now().toEpochMilli());
 
         when(userDataRepository.findById(uuid)).thenReturn(Optional.of(userData));
 
@@ -233,4 +371,137 @@ class UserDataServiceTest {
         verify(userDataRepository, never()).save(any());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void processActivityData_ShouldResetExhaustedLimitAfterWindowInMemoryState() {
+        UserData userData = new UserData();
+        userData.setUuid(USER_ID);
+        userData.setStatCount(10000);
+        userData.setLastStatTime(Instant.now().minus(Duration.ofHours(25)).toEpochMilli());
+
+        when(userStateService.isEnabled()).thenReturn(true);
+        when(userStateService.execute(eq(USER_ID), any())).thenAnswer(invocation ->
+                ((Function<UserData, Object>) invocation.getArgument(1)).apply(userData));
+
+        assertThat(userDataService.processActivityData(USER_ID, 10)).isEqualTo("Activity data received successfully.");
+        assertThat(userData.getStatCount()).isEqualTo(1);
+    }
+
+    @Test
+    void processActivityData_ShouldAppendToIngestLogWhenEnabled() {
+        UUID uuid = USER_ID;
+
+        when(ingestLogService.isEnabled()).thenReturn(true);
+        when(ingestLogService.append(any())).thenReturn(1L);
+
+        String result = userDataService.processActivityData(uuid, 10);
+
+        assertThat(result).isEqualTo("Activity data received successfully.");
+        verify(requestQuotaService).acquire(eq(uuid), eq(IngestEntry.Type.ACTIVITY), anyLong());
+        verify(ingestLogService).append(argThat(entry -> entry.type() == IngestEntry.Type.ACTIVITY
+                && entry.uuid().equals(uuid) && entry.activity() == 10));
+        verify(userDataRepository, never()).findById(any());
+        verify(userDataRepository, never()).save(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void processActivityData_ShouldRejectOverLimitBeforeAppendingToIngestLog() {
+        when(ingestLogService.isEnabled()).thenReturn(true);
+        doThrow(new ActivityLimitExceededException(ActivityLimitExceededException.LIMIT_ACTIVITY, 60))
+                .when(requestQuotaService).acquire(eq(USER_ID), eq(IngestEntry.Type.ACTIVITY), anyLong());
+
+        assertThatThrownBy(() -> userDataService.processActivityData(USER_ID, 10))
+                .isInstanceOf(ActivityLimitExceededException.class);
+        verify(ingestLogService, never()).append(any());
+    }
+
+    @Test
+    void processActivityData_ShouldReleaseQuotaWhenIngestLogAppendFails() {
+        when(ingestLogService.isEnabled()).thenReturn(true);
+        when(ingestLogService.append(any())).thenThrow(new DatabaseException(DatabaseException.ERROR_INGEST_LOG));
+
+        assertThatThrownBy(() -> userDataService.processActivityData(USER_ID, 10))
+                .isInstanceOf(DatabaseException.class);
+        verify(requestQuotaService).release(USER_ID, IngestEntry.Type.ACTIVITY);
+    }
+
+    @Test
+    void processSyncData_ShouldRejectTooLongCountryBeforeAppendingToIngestLog() throws Exception {
+        String jsonData = "{\"money\":100, \"country\":\"USA1\"}";
+        JsonNode mockJsonNode = mock(JsonNode.class);
+        when(ingestLogService.isEnabled()).thenReturn(true);
+        when(objectMapper.readTree(jsonData)).thenReturn(mockJsonNode);
+        when(mockJsonNode.path("money")).thenReturn(new IntNode(100));
+        when(mockJsonNode.path("country")).thenReturn(new TextNode("USA1"));
+
+        assertThatThrownBy(() -> userDataService.processSyncData(USER_ID, jsonData))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(UserDataService.INVALID_COUNTRY);
+        verify(requestQuotaService, never()).acquire(any(), any(), anyLong());
+        verify(ingestLogService, never()).append(any());
+        verify(userDataRepository, never()).findById(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processActivityData_ShouldUseInMemoryStateWhenEnabled() {
+        UUID uuid = USER_ID;
+        UserData userData = new UserData();
+        userData.setUuid(uuid);
+        userData.setCountry("US");
+
+        when(userStateService.isEnabled()).thenReturn(true);
+        when(userStateService.execute(eq(uuid), any())).thenAnswer(invocation ->
+                ((Function<UserData, Object>) invocation.getArgument(1)).apply(userData));
+
+        String result = userDataService.processActivityData(uuid, 10);
+
+        assertThat(result).isEqualTo("Activity data received successfully.");
+        assertThat(userData.getActivity()).isEqualTo(10);
+        assertThat(userData.getStatCount()).isEqualTo(1);
+        verify(userDataRepository, never()).findById(any());
+        verify(userDataRepository, never()).save(any());
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof UserDataUpdatedEvent e
+                && e.activity() == 10 && "US".equals(e.country())));
+    }
+
+    @Test
+    void processActivityData_ShouldPublishToPipelineWhenEnabled() {
+        UUID uuid = USER_ID;
+        when(activityPipelineService.isEnabled()).thenReturn(true);
+
+        String result = userDataService.processActivityData(uuid, 10);
+
+        assertThat(result).isEqualTo("Activity data received successfully.");
+        verify(requestQuotaService).acquire(eq(uuid), eq(IngestEntry.Type.ACTIVITY), anyLong());
+        verify(activityPipelineService).publish(eq(uuid), eq(10), anyLong());
+        verify(userDataRepository, never()).findById(any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void processActivityData_ShouldRejectWhenPipelineIsFull() {
+        when(activityPipelineService.isEnabled()).thenReturn(true);
+        doThrow(new ServiceOverloadedException(ServiceOverloadedException.SERVICE_OVERLOADED))
+                .when(activityPipelineService).publish(any(), anyInt(), anyLong());
+
+        assertThatThrownBy(() -> userDataService.processActivityData(USER_ID, 10))
+                .isInstanceOf(ServiceOverloadedException.class);
+        verify(userDataRepository, never()).save(any());
+        verify(requestQuotaService).release(USER_ID, IngestEntry.Type.ACTIVITY);
+    }
+
+    @Test
+    void processActivityData_ShouldRejectOverLimitBeforePublishingToPipeline() {
+        when(activityPipelineService.isEnabled()).thenReturn(true);
+        doThrow(new ActivityLimitExceededException(ActivityLimitExceededException.LIMIT_ACTIVITY, 60))
+                .when(requestQuotaService).acquire(eq(USER_ID), eq(IngestEntry.Type.ACTIVITY), anyLong());
+
+        assertThatThrownBy(() -> userDataService.processActivityData(USER_ID, 10))
+                .isInstanceOf(ActivityLimitExceededException.class);
+        verify(activityPipelineService, never()).publish(any(), anyInt(), anyLong());
+        verify(requestQuotaService, never()).release(any(), any());
+    }
+
 }
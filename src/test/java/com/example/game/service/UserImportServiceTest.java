@@ -0,0 +1,25 @@
+package com.example.game.service;
+
+import com.example.game.storage.UserImportReader;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserImportServiceTest {
+
+    @Test
+    void encode_ShouldWriteCopyTextRowsAndDefaultCreatedAt() {
+        LocalDateTime now = LocalDateTime.of(2025, 2, 10, 12, 0);
+        List<UserImportReader.Row> rows = List.of(
+                new UserImportReader.Row(2, new UUID(0, 1), "US", 100, 5, LocalDateTime.of(2025, 1, 1, 8, 30, 15)),
+                new UserImportReader.Row(3, new UUID(0, 2), "DE", 0, 0, null));
+
+        assertThat(UserImportService.encode(rows, now)).isEqualTo(
+                "2\t00000000-0000-0000-0000-000000000001\t100\tUS\t5\t2025-01-01T08:30:15\n"
+                        + "3\t00000000-0000-0000-0000-000000000002\t0\tDE\t0\t2025-02-10T12:00\n");
+    }
+}
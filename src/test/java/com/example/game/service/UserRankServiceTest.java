@@ -0,0 +1,101 @@
+package com.example.game.service;
+
+import com.example.game.dto.RankedUser;
+import com.example.game.dto.UserRankResponse;
+import com.example.game.event.UserDataUpdatedEvent;
+import com.example.game.exception.UserNotFoundException;
+import com.example.game.repository.AnalyticsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class UserRankServiceTest {
+
+    private static final UUID USER_A = new UUID(0, 1);
+    private static final UUID USER_B = new UUID(0, 2);
+    private static final UUID USER_C = new UUID(0, 3);
+    private static final UUID USER_D = new UUID(0, 4);
+    private static final UUID USER_E = new UUID(0, 5);
+
+    @Mock
+    private AnalyticsRepository analyticsRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private UserRankService userRankService;
+
+    @BeforeEach
+    void setUp() {
+        userRankService = new UserRankService(analyticsRepository,
+                new ShardService(ForkJoinPool.commonPool(), false, List.of(), 128), transactionManager, true);
+    }
+
+    @Test
+    void getUserRank_ShouldReturnPositionAndNeighbors() {
+        userRankService.update(USER_A, "US", 100);
+        userRankService.update(USER_B, "US", 300);
+        userRankService.update(USER_C, "US", 200);
+        userRankService.update(USER_D, "US", 50);
+        userRankService.update(USER_E, "DE", 1000);
+
+        UserRankResponse response = userRankService.getUserRank(USER_C, 1);
+
+        assertThat(response.rank()).isEqualTo(2);
+        assertThat(response.totalUsers()).isEqualTo(4);
+        assertThat(response.neighbors()).containsExactly(
+                new RankedUser(1, USER_B, 300),
+                new RankedUser(2, USER_C, 200),
+                new RankedUser(3, USER_A, 100));
+    }
+
+    @Test
+    void onUserDataUpdated_ShouldMoveUserBetweenPositionsAndCountries() {
+        userRankService.update(USER_A, "US", 100);
+        userRankService.update(USER_B, "US", 300);
+
+        userRankService.onUserDataUpdated(new UserDataUpdatedEvent(USER_A, "US", 500, 0,
+                UserDataUpdatedEvent.Source.SYNC, 0, "US", 100, 0));
+        assertThat(userRankService.getUserRank(USER_A, 0).rank()).isEqualTo(1);
+
+        userRankService.onUserDataUpdated(new UserDataUpdatedEvent(USER_A, "DE", 500, 0,
+                UserDataUpdatedEvent.Source.SYNC, 0, "US", 500, 0));
+        assertThat(userRankService.getUserRank(USER_A, 0).totalUsers()).isEqualTo(1);
+        assertThat(userRankService.getUserRank(USER_B, 0).rank()).isEqualTo(1);
+        assertThat(userRankService.getUserRank(USER_B, 0).totalUsers()).isEqualTo(1);
+    }
+
+    @Test
+    void loadRankings_ShouldNotOverrideNewerValues() {
+        userRankService.update(USER_A, "US", 999);
+        when(analyticsRepository.streamMoneyByUser()).thenReturn(Stream.of(
+                new Object[]{USER_A, "US", 1},
+                new Object[]{USER_B, "US", 500}));
+
+        userRankService.loadRankings();
+
+        assertThat(userRankService.getUserRank(USER_A, 0).money()).isEqualTo(999);
+        assertThat(userRankService.getUserRank(USER_B, 0).rank()).isEqualTo(2);
+    }
+
+    @Test
+    void getUserRank_ShouldThrowException_WhenUserUnknown() {
+        assertThatThrownBy(() -> userRankService.getUserRank(new UUID(0, 99), 5))
+                .isInstanceOf(UserNotFoundException.class);
+        assertThatThrownBy(() -> userRankService.getUserRank(new UUID(0, 99), -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
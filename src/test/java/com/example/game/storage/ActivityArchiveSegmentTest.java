@@ -0,0 +1,154 @@
+package com.example.game.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ActivityArchiveSegmentTest {
+
+    private static final YearMonth MONTH = YearMonth.of(2024, 3);
+    private static final UUID USER = new UUID(0, 1);
+    private static final UUID USER_A = UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e");
+    // Старшая половина отрицательна: индекс упорядочен по знаковым половинам
+    private static final UUID USER_B = UUID.fromString("f47ac10b-58cc-4372-a567-0e02b2c3d479");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void read_ShouldReturnRowsWrittenForUser() throws Exception {
+        Path file = tempDir.resolve("activity-2024-03.seg");
+        try (ActivityArchiveSegment.Writer writer = ActivityArchiveSegment.writer(file, MONTH)) {
+            writer.append(USER_B, LocalDate.of(2024, 3, 1), 5);
+            writer.append(USER_B, LocalDate.of(2024, 3, 1), -3);
+            writer.append(USER_B, LocalDate.of(2024, 3, 31), 1_000_000);
+            writer.append(USER_A, LocalDate.of(2024, 3, 15), 42);
+        }
+
+        try (ActivityArchiveSegment segment = ActivityArchiveSegment.open(file, MONTH)) {
+            assertThat(segment.getUserCount()).isEqualTo(2);
+            assertThat(segment.read(USER_B, LocalDate.of(2024, 1, 1))).containsExactly(
+                    new ArchivedActivity(LocalDate.of(2024, 3, 1), 5),
+                    new ArchivedActivity(LocalDate.of(2024, 3, 1), -3),
+                    new ArchivedActivity(LocalDate.of(2024, 3, 31), 1_000_000));
+            assertThat(segment.read(USER_A, LocalDate.of(2024, 3, 15)))
+                    .containsExactly(new ArchivedActivity(LocalDate.of(2024, 3, 15), 42));
+        }
+    }
+
+    @Test
+    void read_ShouldSkipRowsBeforeStartDate() throws Exception {
+        Path file = tempDir.resolve("activity-2024-03.seg");
+        try (ActivityArchiveSegment.Writer writer = ActivityArchiveSegment.writer(file, MONTH)) {
+            for (int day = 1; day <= 31; day++) {
+                writer.append(USER, MONTH.atDay(day), day);
+            }
+        }
+
+        try (ActivityArchiveSegment segment = ActivityArchiveSegment.open(file, MONTH)) {
+            List<ArchivedActivity> rows = segment.read(USER, LocalDate.of(2024, 3, 29));
+
+            assertThat(rows).extracting(ArchivedActivity::activity).containsExactly(29, 30, 31);
+            assertThat(segment.read(new UUID(0, 2), LocalDate.of(2024, 3, 1))).isEmpty();
+        }
+    }
+
+    @Test
+    void write_ShouldStoreDatesCompactly() throws Exception {
+        Path file = tempDir.resolve("activity-2024-03.seg");
+        try (ActivityArchiveSegment.Writer writer = ActivityArchiveSegment.writer(file, MONTH)) {
+            for (int day = 1; day <= 31; day++) {
+                writer.append(USER, MONTH.atDay(day), 10);
+            }
+        }
+
+        // 31 дельта даты и 31 значение активности по одному байту, ключ, индекс и футер
+        assertThat(Files.size(file)).isEqualTo(31 + 31 + USER.length() + 16 + 16);
+    }
+
+    @Test
+    void open_ShouldUpgradeSegmentWithStringKeys() throws Exception {
+        Path file = tempDir.resolve("activity-2024-03.seg");
+        Files.write(file, legacySegment(USER_B, USER_A));
+
+        try (ActivityArchiveSegment segment = ActivityArchiveSegment.open(file, MONTH)) {
+            assertThat(segment.getUserCount()).isEqualTo(2);
+            assertThat(segment.read(USER_A, LocalDate.of(2024, 3, 1)))
+                    .containsExactly(new ArchivedActivity(LocalDate.of(2024, 3, 2), 7));
+            assertThat(segment.read(USER_B, LocalDate.of(2024, 3, 1)))
+                    .containsExactly(new ArchivedActivity(LocalDate.of(2024, 3, 2), 7));
+        }
+        assertThat(ByteBuffer.wrap(Files.readAllBytes(file)).getInt((int) Files.size(file) - 4))
+                .isEqualTo(ActivityArchiveSegment.MAGIC);
+        assertThat(tempDir.resolve("activity-2024-03.seg.upgrade")).doesNotExist();
+    }
+
+    @Test
+    void writer_ShouldFailBeforeSegmentExceedsSizeLimit() throws Exception {
+        Path file = tempDir.resolve("activity-2024-03.seg");
+        // Первый пользователь занимает ровно 98 байт вместе с индексом и футером
+        ActivityArchiveSegment.Writer writer = ActivityArchiveSegment.writer(file, MONTH, 98);
+        for (int day = 1; day <= 31; day++) {
+            writer.append(USER, MONTH.atDay(day), 10);
+        }
+        writer.append(new UUID(0, 2), MONTH.atDay(1), 10);
+
+        assertThatThrownBy(() -> writer.append(new UUID(0, 3), MONTH.atDay(1), 10))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("exceeds 98 bytes");
+        assertThatThrownBy(writer::close).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> ActivityArchiveSegment.writer(tempDir.resolve("other.seg"), MONTH,
+                ActivityArchiveSegment.MAX_SIZE + 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void append_ShouldRejectUngroupedRows() throws Exception {
+        Path file = tempDir.resolve("activity-2024-03.seg");
+        try (ActivityArchiveSegment.Writer writer = ActivityArchiveSegment.writer(file, MONTH)) {
+            writer.append(USER_A, LocalDate.of(2024, 3, 1), 1);
+            writer.append(USER_B, LocalDate.of(2024, 3, 1), 1);
+
+            assertThatThrownBy(() -> writer.append(USER_A, LocalDate.of(2024, 3, 2), 1))
+                    .isInstanceOf(IllegalStateException.class);
+            assertThatThrownBy(() -> writer.append(USER_B, LocalDate.of(2024, 4, 1), 1))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    /**
+     * Строит сегмент прежнего формата: у каждого пользователя одна запись 2 марта с активностью 7.
+     */
+    private static byte[] legacySegment(UUID... users) {
+        byte[][] keys = Arrays.stream(users)
+                .map(uuid -> uuid.toString().getBytes(StandardCharsets.UTF_8))
+                .sorted(Arrays::compareUnsigned)
+                .toArray(byte[][]::new);
+        ByteBuffer buffer = ByteBuffer.allocate(keys.length * (2 + 36 + 16) + 16);
+        for (byte[] ignored : keys) {
+            buffer.put((byte) 1).put((byte) 14);
+        }
+        int keysOffset = buffer.position();
+        for (byte[] key : keys) {
+            buffer.put(key);
+        }
+        int indexOffset = buffer.position();
+        for (int i = 0; i < keys.length; i++) {
+            buffer.putInt(i * 36).putInt(36).putInt(i * 2).putInt(1);
+        }
+        buffer.putInt(indexOffset).putInt(keys.length).putInt(keysOffset).putInt(ActivityArchiveSegment.LEGACY_MAGIC);
+        return buffer.array();
+    }
+}
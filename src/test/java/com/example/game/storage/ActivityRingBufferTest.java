@@ -0,0 +1,161 @@
+package com.example.game.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ActivityRingBufferTest {
+
+    private static final UUID USER = new UUID(0, 1);
+
+    @Test
+    void publish_ShouldDeliverEventsOfUserInOrderToSingleConsumer() throws Exception {
+        Map<UUID, List<Integer>> received = new ConcurrentHashMap<>();
+        Map<UUID, Set<String>> threads = new ConcurrentHashMap<>();
+        ActivityRingBuffer ringBuffer = new ActivityRingBuffer(64, 4, 16, 3, batch -> batch.forEach(entry -> {
+            received.computeIfAbsent(entry.uuid(), uuid -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(entry.activity());
+            threads.computeIfAbsent(entry.uuid(), uuid -> ConcurrentHashMap.newKeySet())
+                    .add(Thread.currentThread().getName());
+        }), "test-ring");
+
+        int users = 8;
+        int events = 1000;
+        ExecutorService producers = Executors.newFixedThreadPool(users);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int u = 0; u < users; u++) {
+                UUID uuid = new UUID(1, u);
+                futures.add(producers.submit(() -> {
+                    for (int i = 0; i < events; i++) {
+                        assertThat(ringBuffer.publish(uuid, i, i, 5, TimeUnit.SECONDS)).isTrue();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            producers.shutdown();
+            ringBuffer.close();
+        }
+
+        assertThat(received).hasSize(users);
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            expected.add(i);
+        }
+        received.values().forEach(activities -> assertThat(activities).isEqualTo(expected));
+        threads.values().forEach(names -> assertThat(names).hasSize(1));
+        assertThat(ringBuffer.backlog()).isZero();
+    }
+
+    @Test
+    void publish_ShouldFailWhenBufferIsFullAndConsumersAreBehind() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ActivityRingBuffer ringBuffer = new ActivityRingBuffer(4, 1, 1, 3, batch -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "test-ring");
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertThat(ringBuffer.publish(USER, i, i, 1, TimeUnit.SECONDS)).isTrue();
+            }
+            assertThat(ringBuffer.publish(USER, 4, 4, 10, TimeUnit.MILLISECONDS)).isFalse();
+
+            release.countDown();
+            assertThat(ringBuffer.publish(USER, 4, 4, 5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            ringBuffer.close();
+        }
+    }
+
+    @Test
+    void consume_ShouldRetryBatchAfterHandlerFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        ActivityRingBuffer ringBuffer = new ActivityRingBuffer(8, 1, 8, 3, batch -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("Database unavailable");
+            }
+            batch.forEach(entry -> applied.add(entry.activity()));
+        }, "test-ring");
+
+        assertThat(ringBuffer.publish(USER, 7, 1, 1, TimeUnit.SECONDS)).isTrue();
+        while (applied.isEmpty()) {
+            Thread.onSpinWait();
+        }
+        ringBuffer.close();
+
+        assertThat(applied).containsExactly(7);
+        assertThat(attempts.get()).isEqualTo(2);
+    }
+
+    @Test
+    void consume_ShouldRetryOnlyRemainingEventsAndDiscardThemAfterMaxAttempts() {
+        AtomicInteger attempts = new AtomicInteger();
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> retried = Collections.synchronizedList(new ArrayList<>());
+        ActivityRingBuffer ringBuffer = new ActivityRingBuffer(8, 1, 8, 3, batch -> {
+            if (attempts.incrementAndGet() == 1) {
+                // Первое событие применено, второе нет: при повторе передаётся только второе
+                applied.add(batch.remove(0).activity());
+            } else {
+                batch.forEach(entry -> retried.add(entry.activity()));
+            }
+            throw new IllegalStateException("Database unavailable");
+        }, "test-ring");
+        ringBuffer.publish(USER, 1, 1, 1, TimeUnit.SECONDS);
+        ringBuffer.publish(USER, 2, 2, 1, TimeUnit.SECONDS);
+
+        while (ringBuffer.discarded() == 0) {
+            Thread.onSpinWait();
+        }
+        ringBuffer.close();
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(applied).containsExactly(1);
+        assertThat(retried).containsExactly(2, 2);
+        assertThat(ringBuffer.discarded()).isEqualTo(1);
+    }
+
+    @Test
+    void close_ShouldApplyPublishedEventsAndRejectNewOnes() {
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        ActivityRingBuffer ringBuffer = new ActivityRingBuffer(16, 2, 4, 3,
+                batch -> batch.forEach(entry -> applied.add(entry.activity())), "test-ring");
+        for (int i = 0; i < 10; i++) {
+            ringBuffer.publish(new UUID(2, i), i, i, 1, TimeUnit.SECONDS);
+        }
+
+        ringBuffer.close();
+
+        assertThat(applied).hasSize(10);
+        assertThat(ringBuffer.publish(USER, 1, 1, 1, TimeUnit.SECONDS)).isFalse();
+    }
+
+    @Test
+    void constructor_ShouldRejectCapacityThatIsNotPowerOfTwo() {
+        assertThatThrownBy(() -> new ActivityRingBuffer(10, 1, 1, 3, batch -> { }, "test-ring"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.game.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ColumnarFileTest {
+
+    private static final List<ColumnarFile.Column> COLUMNS = List.of(
+            new ColumnarFile.Column("uuid", ColumnarFile.Type.UUID),
+            new ColumnarFile.Column("money", ColumnarFile.Type.INT),
+            new ColumnarFile.Column("created_at", ColumnarFile.Type.TIMESTAMP));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writer_ShouldRoundTripRowsAcrossRowGroups() throws IOException {
+        Path file = tempDir.resolve("data.gcf");
+        LocalDateTime start = LocalDateTime.of(2025, 2, 10, 0, 0, 0, 123_456_000);
+        List<Object[]> expected = new ArrayList<>();
+        try (ColumnarFile.Writer writer = ColumnarFile.writer(file, COLUMNS, 4)) {
+            for (int i = 0; i < 10; i++) {
+                Object[] row = {new UUID(i, -i), i % 3 == 0 ? null : -i * 1000, start.plusSeconds(i * 37L)};
+                writer.append(row);
+                expected.add(row);
+            }
+            writer.append(null, 0, LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000));
+            expected.add(new Object[]{null, 0, LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000)});
+        }
+
+        try (ColumnarFile columnar = ColumnarFile.open(file)) {
+            assertThat(columnar.getColumns()).isEqualTo(COLUMNS);
+            assertThat(columnar.getRowGroupCount()).isEqualTo(3);
+            assertThat(columnar.getRowCount()).isEqualTo(11);
+            List<Object[]> actual = new ArrayList<>();
+            columnar.forEachRow(actual::add);
+            assertThat(actual).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void writer_ShouldCompressRepetitiveColumns() throws IOException {
+        Path file = tempDir.resolve("data.gcf");
+        LocalDateTime createdAt = LocalDateTime.of(2025, 2, 10, 12, 0);
+        try (ColumnarFile.Writer writer = ColumnarFile.writer(file, COLUMNS, 10_000)) {
+            for (int i = 0; i < 10_000; i++) {
+                writer.append(new UUID(0, i), 100, createdAt);
+            }
+        }
+
+        // Без сжатия только колонка UUID заняла бы 160 КБ
+        assertThat(Files.size(file)).isLessThan(80_000);
+    }
+
+    @Test
+    void writer_ShouldWriteEmptyFile() throws IOException {
+        Path file = tempDir.resolve("data.gcf");
+        ColumnarFile.writer(file, COLUMNS, 4).close();
+
+        try (ColumnarFile columnar = ColumnarFile.open(file)) {
+            assertThat(columnar.getRowCount()).isZero();
+            assertThat(columnar.getColumns()).hasSize(3);
+        }
+    }
+
+    @Test
+    void append_ShouldRejectValuesNotMatchingSchema() throws IOException {
+        try (ColumnarFile.Writer writer = ColumnarFile.writer(tempDir.resolve("data.gcf"), COLUMNS, 4)) {
+            assertThatThrownBy(() -> writer.append(new UUID(0, 1), "100", null))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Column money does not accept String");
+            assertThatThrownBy(() -> writer.append(new UUID(0, 1)))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void open_ShouldRejectFileWithoutMagic() throws IOException {
+        Path file = tempDir.resolve("data.gcf");
+        Files.write(file, new byte[32]);
+
+        assertThatThrownBy(() -> ColumnarFile.open(file)).isInstanceOf(IllegalStateException.class);
+    }
+}
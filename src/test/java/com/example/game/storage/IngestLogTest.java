@@ -0,0 +1,312 @@
+package com.example.game.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestLogTest {
+
+    private static final UUID USER_1 = new UUID(0, 1);
+    private static final UUID USER_2 = new UUID(0, 2);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void append_ShouldAssignSequentialLsnsAndBeReadable() throws Exception {
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            long first = log.append(IngestEntry.sync(USER_1, 1000L, 50, "US")).get();
+            long second = log.append(IngestEntry.activity(USER_2, 2000L, 7)).get();
+
+            assertThat(first).isEqualTo(1);
+            assertThat(second).isEqualTo(2);
+            assertThat(log.getDurableLsn()).isEqualTo(2);
+
+            try (IngestLog.Reader reader = log.reader(1)) {
+                assertThat(reader.next(10)).containsExactly(
+                        new IngestEntry(1, IngestEntry.Type.SYNC, USER_1, 1000L, 50, "US", 0),
+                        new IngestEntry(2, IngestEntry.Type.ACTIVITY, USER_2, 2000L, 0, null, 7));
+                assertThat(reader.next(10)).isEmpty();
+            }
+        }
+    }
+
+    @Test
+    void open_ShouldContinueNumberingAfterRestart() throws Exception {
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            appendAll(log, 5);
+        }
+
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            assertThat(log.getDurableLsn()).isEqualTo(5);
+            assertThat(log.append(IngestEntry.activity(USER_1, 1L, 1)).get()).isEqualTo(6);
+            try (IngestLog.Reader reader = log.reader(4)) {
+                assertThat(reader.next(10)).extracting(IngestEntry::lsn).containsExactly(4L, 5L, 6L);
+            }
+        }
+    }
+
+    @Test
+    void open_ShouldTruncateIncompleteTail() throws Exception {
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            appendAll(log, 3);
+        }
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            assertThat(log.getDurableLsn()).isEqualTo(2);
+            assertThat(log.append(IngestEntry.activity(USER_1, 1L, 1)).get()).isEqualTo(3);
+            try (IngestLog.Reader reader = log.reader(1)) {
+                assertThat(reader.next(10)).extracting(IngestEntry::lsn).containsExactly(1L, 2L, 3L);
+            }
+        }
+    }
+
+    @Test
+    void reader_ShouldFollowRolledSegmentsAndSkipDeletedOnes() throws Exception {
+        try (IngestLog log = IngestLog.open(tempDir, 256, true)) {
+            for (int i = 0; i < 40; i++) {
+                log.append(IngestEntry.activity(new UUID(0, i), i, i)).get();
+            }
+            assertThat(segments()).hasSizeGreaterThan(2);
+
+            List<IngestEntry> all = new ArrayList<>();
+            try (IngestLog.Reader reader = log.reader(1)) {
+                List<IngestEntry> batch;
+                while (!(batch = reader.next(7)).isEmpty()) {
+                    all.addAll(batch);
+                }
+            }
+            assertThat(all).extracting(IngestEntry::lsn).containsExactlyElementsOf(
+                    LongStream.rangeClosed(1, 40).boxed().toList());
+
+            log.deleteSegmentsUpTo(20);
+            try (IngestLog.Reader reader = log.reader(21)) {
+                assertThat(reader.next(1)).extracting(IngestEntry::lsn).containsExactly(21L);
+            }
+            try (IngestLog.Reader reader = log.reader(1)) {
+                assertThat(reader.next(1).get(0).lsn()).isGreaterThan(1L).isLessThanOrEqualTo(21L);
+            }
+        }
+    }
+
+    @Test
+    void append_ShouldCommitConcurrentEntriesInGroups() throws Exception {
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            List<CompletableFuture<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                futures.add(log.append(IngestEntry.activity(new UUID(0, i), i, 1)));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get();
+
+            assertThat(futures).extracting(CompletableFuture::join).doesNotHaveDuplicates();
+            assertThat(log.getDurableLsn()).isEqualTo(500);
+        }
+    }
+
+    @Test
+    void append_ShouldRollBackFailedGroupSoThatLaterEntriesSurviveRecovery() throws Exception {
+        FaultyChannel[] channel = new FaultyChannel[1];
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true,
+                delegate -> channel[0] = new FaultyChannel(delegate))) {
+            assertThat(log.append(IngestEntry.activity(USER_1, 1000L, 1)).get()).isEqualTo(1);
+
+            channel[0].failWrites = true;
+            assertThatThrownBy(() -> log.append(IngestEntry.activity(USER_1, 2000L, 2)).get())
+                    .isInstanceOf(ExecutionException.class);
+            channel[0].failWrites = false;
+
+            // Номер отклонённой записи назначается следующей, а её байты не остаются в сегменте
+            assertThat(log.append(IngestEntry.activity(USER_2, 3000L, 3)).get()).isEqualTo(2);
+        }
+
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            assertThat(log.getDurableLsn()).isEqualTo(2);
+            try (IngestLog.Reader reader = log.reader(1)) {
+                assertThat(reader.next(10)).containsExactly(
+                        new IngestEntry(1, IngestEntry.Type.ACTIVITY, USER_1, 1000L, 0, null, 1),
+                        new IngestEntry(2, IngestEntry.Type.ACTIVITY, USER_2, 3000L, 0, null, 3));
+            }
+        }
+    }
+
+    @Test
+    void append_ShouldRejectFurtherEntriesWhenRollbackFails() throws Exception {
+        FaultyChannel[] channel = new FaultyChannel[1];
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true,
+                delegate -> channel[0] = new FaultyChannel(delegate))) {
+            channel[0].failWrites = true;
+            channel[0].failTruncate = true;
+            assertThatThrownBy(() -> log.append(IngestEntry.activity(USER_1, 1000L, 1)).get())
+                    .isInstanceOf(ExecutionException.class);
+            channel[0].failWrites = false;
+
+            assertThatThrownBy(() -> log.append(IngestEntry.activity(USER_1, 2000L, 2)).get())
+                    .hasCauseInstanceOf(IllegalStateException.class);
+            assertThat(log.getDurableLsn()).isZero();
+        }
+    }
+
+    @Test
+    void close_ShouldWriteAcceptedEntries() throws Exception {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            for (int i = 0; i < 200; i++) {
+                futures.add(log.append(IngestEntry.activity(new UUID(0, i), i, 1)));
+            }
+        }
+
+        assertThat(futures).allSatisfy(future -> assertThat(future).isCompleted().isNotCompletedExceptionally());
+        try (IngestLog log = IngestLog.open(tempDir, 1024 * 1024, true)) {
+            assertThat(log.getDurableLsn()).isEqualTo(200);
+        }
+    }
+
+    private static void appendAll(IngestLog log, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            log.append(IngestEntry.activity(new UUID(0, i), i, i)).get();
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tempDir, "ingest-*.log")) {
+            files.forEach(result::add);
+        }
+        result.sort(null);
+        return result;
+    }
+
+    /**
+     * Канал, запись в который по флагу обрывается на середине буфера.
+     */
+    private static final class FaultyChannel extends FileChannel {
+
+        private final FileChannel delegate;
+        private volatile boolean failWrites;
+        private volatile boolean failTruncate;
+
+        private FaultyChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (failWrites) {
+                ByteBuffer half = src.slice().limit(src.remaining() / 2);
+                int written = delegate.write(half);
+                src.position(src.position() + written);
+                throw new IOException("Disk failure");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("Disk failure");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
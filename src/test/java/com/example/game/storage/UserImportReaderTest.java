@@ -0,0 +1,106 @@
+package com.example.game.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserImportReaderTest {
+
+    private static final UUID USER_1 = UUID.fromString("3f2c8a1e-6b4d-4c1a-9e2f-7a5b8c9d0e1f");
+    private static final UUID USER_2 = UUID.fromString("7c9e6679-7425-40de-944b-e07fc1f90ae7");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void next_ShouldParseCsvWithHeaderInAnyColumnOrder() throws IOException {
+        String csv = "country,uuid,money,created_at\n"
+                + "us," + USER_1 + ",100,2025-01-15T10:00:00\n"
+                + "\n"
+                + "DEU," + USER_2 + ",,\n";
+
+        try (UserImportReader reader = reader(csv, UserImportReader.Format.CSV, 10)) {
+            assertThat(reader.next(10)).containsExactly(
+                    new UserImportReader.Row(2, USER_1, "US", 100, 0, LocalDateTime.of(2025, 1, 15, 10, 0)),
+                    new UserImportReader.Row(4, USER_2, "DEU", 0, 0, null));
+            assertThat(reader.next(10)).isEmpty();
+            assertThat(reader.getInvalidRows()).isZero();
+        }
+    }
+
+    @Test
+    void next_ShouldParseNdjson() throws IOException {
+        String ndjson = "{\"uuid\":\"" + USER_1 + "\",\"country\":\"FR\",\"money\":5,\"activity\":7}\n"
+                + "{\"uuid\":\"" + USER_2 + "\",\"country\":\"JP\",\"createdAt\":\"2024-12-31T23:59:59\"}\n";
+
+        try (UserImportReader reader = reader(ndjson, UserImportReader.Format.NDJSON, 10)) {
+            assertThat(reader.next(10)).containsExactly(
+                    new UserImportReader.Row(1, USER_1, "FR", 5, 7, null),
+                    new UserImportReader.Row(2, USER_2, "JP", 0, 0, LocalDateTime.of(2024, 12, 31, 23, 59, 59)));
+        }
+    }
+
+    @Test
+    void next_ShouldSkipInvalidRowsAndKeepFirstErrors() throws IOException {
+        String csv = "uuid,country,money\n"
+                + "not-a-uuid,US,1\n"
+                + USER_1 + ",XX,1\n"
+                + USER_1 + ",US,lots\n"
+                + USER_1 + ",US\n"
+                + USER_2 + ",US,3\n";
+
+        try (UserImportReader reader = reader(csv, UserImportReader.Format.CSV, 2)) {
+            assertThat(reader.next(10)).extracting(UserImportReader.Row::uuid).containsExactly(USER_2);
+            assertThat(reader.getInvalidRows()).isEqualTo(4);
+            assertThat(reader.getErrors()).containsExactly(
+                    "Line 2: Invalid UUID string: not-a-uuid",
+                    "Line 3: Unknown country code: XX");
+        }
+    }
+
+    @Test
+    void next_ShouldReturnRowsInChunks() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            ndjson.append("{\"uuid\":\"").append(new UUID(0, i)).append("\",\"country\":\"US\"}\n");
+        }
+
+        try (UserImportReader reader = reader(ndjson.toString(), UserImportReader.Format.NDJSON, 10)) {
+            assertThat(reader.next(2)).hasSize(2);
+            assertThat(reader.next(2)).hasSize(2);
+            assertThat(reader.next(2)).hasSize(1);
+            assertThat(reader.next(2)).isEmpty();
+            assertThat(reader.getLinesRead()).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void next_ShouldRejectCsvWithoutRequiredColumns() {
+        UserImportReader reader = reader("uuid,money\n" + USER_1 + ",1\n", UserImportReader.Format.CSV, 10);
+
+        assertThatThrownBy(() -> reader.next(10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("CSV header must contain 'uuid' and 'country' columns.");
+    }
+
+    @Test
+    void next_ShouldRejectUnknownCsvColumn() {
+        UserImportReader reader = reader("uuid,country,level\n", UserImportReader.Format.CSV, 10);
+
+        assertThatThrownBy(() -> reader.next(10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Unknown CSV column: level");
+    }
+
+    private UserImportReader reader(String text, UserImportReader.Format format, int maxErrors) {
+        return new UserImportReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), format,
+                objectMapper, maxErrors);
+    }
+}
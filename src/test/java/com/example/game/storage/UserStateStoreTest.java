@@ -0,0 +1,196 @@
+package com.example.game.storage;
+
+import com.example.game.exception.UserNotFoundException;
+import com.example.game.model.UserData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserStateStoreTest {
+
+    private static final UUID USER = new UUID(0, 1);
+    private static final UUID USER_A = new UUID(1, 1);
+    private static final UUID USER_B = new UUID(1, 2);
+
+    private final Map<UUID, UserData> database = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<String> loaderThreads = new CopyOnWriteArrayList<>();
+    private final UserStateStore store = store(4, 10_000);
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void execute_ShouldLoadUserOnceAndKeepChangesInMemory() {
+        database.put(USER, user(USER, 10));
+
+        store.execute(USER, userData -> {
+            userData.setMoney(userData.getMoney() + 5);
+            return null;
+        });
+        int money = store.execute(USER, UserData::getMoney);
+
+        assertThat(money).isEqualTo(15);
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_ShouldLoadMissingUserOutsideShardThread() {
+        database.put(USER, user(USER, 10));
+
+        store.execute(USER, UserData::getMoney);
+
+        assertThat(loaderThreads).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    void execute_ShouldEvictLeastRecentlyUsedSavedUserWhenFull() {
+        UserStateStore small = store(1, 2);
+        try {
+            database.put(USER, user(USER, 1));
+            database.put(USER_A, user(USER_A, 2));
+            database.put(USER_B, user(USER_B, 3));
+            small.execute(USER, UserData::getMoney);
+            small.execute(USER_A, UserData::getMoney);
+
+            small.execute(USER_B, UserData::getMoney);
+            assertThat(small.size()).isEqualTo(2);
+            assertThat(loads.get()).isEqualTo(3);
+
+            // USER_B только что загружен, поэтому повторное обращение обслуживается из памяти
+            small.execute(USER_B, UserData::getMoney);
+            assertThat(loads.get()).isEqualTo(3);
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    void execute_ShouldNotEvictUsersUntilTheirChangesAreSaved() {
+        UserStateStore small = store(1, 1);
+        try {
+            database.put(USER, user(USER, 1));
+            database.put(USER_A, user(USER_A, 2));
+            database.put(USER_B, user(USER_B, 3));
+            small.execute(USER_A, userData -> {
+                userData.setMoney(100);
+                return null;
+            });
+
+            // Изменённый пользователь не вытесняется, шард временно растёт сверх лимита
+            small.execute(USER_B, UserData::getMoney);
+            assertThat(small.size()).isEqualTo(2);
+
+            // Сохраняемый пользователь тоже не вытесняется, поэтому место освобождает USER_B
+            small.drainDirty();
+            small.execute(USER, UserData::getMoney);
+            assertThat(small.size()).isEqualTo(2);
+            assertThat(small.execute(USER_A, UserData::getMoney)).isEqualTo(100);
+            assertThat(loads.get()).isEqualTo(3);
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    void execute_ShouldDiscardChangesWhenActionFails() {
+        database.put(USER, user(USER, 10));
+
+        assertThatThrownBy(() -> store.execute(USER, userData -> {
+            userData.setMoney(0);
+            throw new IllegalStateException("limit");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(store.execute(USER, UserData::getMoney)).isEqualTo(10);
+        assertThat(store.drainDirty()).isEmpty();
+    }
+
+    @Test
+    void execute_ShouldPropagateLoaderFailure() {
+        assertThatThrownBy(() -> store.execute(new UUID(0, 0), UserData::getMoney))
+                .isInstanceOf(UserNotFoundException.class);
+    }
+
+    @Test
+    void drainDirty_ShouldReturnOnlyChangedUsersOnce() {
+        database.put(USER_A, user(USER_A, 1));
+        database.put(USER_B, user(USER_B, 2));
+        store.execute(USER_A, userData -> {
+            userData.setActivity(7);
+            return null;
+        });
+        store.execute(USER_B, UserData::getMoney);
+
+        List<UserData> dirty = store.drainDirty();
+
+        assertThat(dirty).extracting(UserData::getUuid).containsExactly(USER_A);
+        assertThat(dirty.get(0).getActivity()).isEqualTo(7);
+        assertThat(store.drainDirty()).isEmpty();
+
+        store.markDirty(List.of(USER_A));
+        assertThat(store.drainDirty()).extracting(UserData::getUuid).containsExactly(USER_A);
+    }
+
+    @Test
+    void execute_ShouldSerializeConcurrentUpdatesOfOneUser() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            database.put(new UUID(0, i), user(new UUID(0, i), 0));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                UUID uuid = new UUID(0, i % 2000);
+                futures.add(executor.submit(() -> store.execute(uuid, userData -> {
+                    userData.setActivity(userData.getActivity() + 1);
+                    return null;
+                })));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        List<UserData> dirty = store.drainDirty();
+        assertThat(dirty).hasSize(2000);
+        assertThat(dirty).allMatch(userData -> userData.getActivity() == 10);
+    }
+
+    private UserStateStore store(int shards, int capacity) {
+        return new UserStateStore(shards, capacity, uuid -> {
+            loads.incrementAndGet();
+            loaderThreads.add(Thread.currentThread().getName());
+            UserData userData = database.get(uuid);
+            if (userData == null) {
+                throw new UserNotFoundException(UserNotFoundException.USER_NOT_FOUND);
+            }
+            return userData;
+        });
+    }
+
+    private static UserData user(UUID uuid, int money) {
+        UserData userData = new UserData();
+        userData.setUuid(uuid);
+        userData.setCountry("US");
+        userData.setMoney(money);
+        return userData;
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.game.util;
+
+import com.example.game.util.AdaptiveConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long RTT = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    void tryAcquire_ShouldRejectAboveLimitWithoutWaiting() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 1.5, 0.9, 0.5, 10);
+
+        assertThat(limiter.tryAcquire(Priority.CRITICAL, 0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(Priority.NORMAL, 0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(Priority.CRITICAL, 0, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void tryAcquire_ShouldLimitLowPriorityToItsShare() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 1.5, 0.9, 0.5, 10);
+
+        assertThat(limiter.tryAcquire(Priority.LOW, 100, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(Priority.LOW, 100, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.tryAcquire(Priority.LOW, 100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(limiter.tryAcquire(Priority.CRITICAL, 0, TimeUnit.MILLISECONDS)).isTrue();
+        assertThat(limiter.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void tryAcquire_ShouldHandReleasedSlotToWaitingRequest() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10, 1.5, 0.9, 0.5, 10);
+        assertThat(limiter.tryAcquire(Priority.NORMAL, 0, TimeUnit.MILLISECONDS)).isTrue();
+
+        CompletableFuture<Boolean> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.tryAcquire(Priority.CRITICAL, 5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (limiter.getQueueDepth() == 0) {
+            Thread.onSpinWait();
+        }
+        limiter.release(RTT, false);
+
+        assertThat(waiter.get(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        assertThat(limiter.getQueueDepth()).isZero();
+    }
+
+    @Test
+    void tryAcquire_ShouldRejectWhenQueueIsFull() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 10, 1.5, 0.9, 0.5, 0);
+        assertThat(limiter.tryAcquire(Priority.NORMAL, 0, TimeUnit.MILLISECONDS)).isTrue();
+
+        long started = System.nanoTime();
+        assertThat(limiter.tryAcquire(Priority.CRITICAL, 1, TimeUnit.SECONDS)).isFalse();
+        assertThat(System.nanoTime() - started).isLessThan(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void release_ShouldGrowLimitWhileLatencyIsStable() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 1.5, 0.9, 0.5, 10);
+
+        runSaturated(limiter, 200, RTT);
+
+        assertThat(limiter.getLimit()).isEqualTo(100);
+    }
+
+    @Test
+    void release_ShouldShrinkLimitWhenLatencyGrows() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 1, 100, 1.5, 0.9, 0.5, 10);
+        runSaturated(limiter, 200, RTT);
+        int stable = limiter.getLimit();
+
+        runSaturated(limiter, 50, RTT * 10);
+
+        assertThat(limiter.getLimit()).isLessThan(stable / 2);
+    }
+
+    @Test
+    void release_ShouldBackOffOnDrops() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(50, 10, 100, 1.5, 0.5, 0.5, 10);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire(Priority.NORMAL, 0, TimeUnit.MILLISECONDS)).isTrue();
+            limiter.release(RTT, true);
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void constructor_ShouldRejectInconsistentLimits() {
+        assertThatThrownBy(() -> new AdaptiveConcurrencyLimiter(5, 10, 100, 1.5, 0.9, 0.5, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Держит занятыми все слоты предела и завершает запросы с заданной задержкой.
+     */
+    private static void runSaturated(AdaptiveConcurrencyLimiter limiter, int samples, long rtt)
+            throws InterruptedException {
+        for (int i = 0; i < samples; i++) {
+            while (limiter.tryAcquire(Priority.NORMAL, 0, TimeUnit.MILLISECONDS)) {
+                // Заполнение свободных слотов
+            }
+            limiter.release(rtt, false);
+        }
+        while (limiter.getInFlight() > 0) {
+            limiter.release(rtt, false);
+        }
+    }
+}
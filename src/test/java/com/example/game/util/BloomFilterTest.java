@@ -0,0 +1,57 @@
+package com.example.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BloomFilterTest {
+
+    @Test
+    void mightContain_ShouldFindEveryAddedElement() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put(Hashing.hash64(new UUID(i, i * 31L)));
+        }
+
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(filter.mightContain(Hashing.hash64(new UUID(i, i * 31L)))).isTrue();
+        }
+    }
+
+    @Test
+    void mightContain_ShouldKeepFalsePositiveRateNearConfigured() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.put(Hashing.hash64(new UUID(i, i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(Hashing.hash64(new UUID(-1 - i, i)))) {
+                falsePositives++;
+            }
+        }
+
+        // Допуск с запасом на разброс: ожидается около 1%
+        assertThat(falsePositives).isLessThan(1_500);
+        assertThat(filter.expectedFalsePositiveRate()).isBetween(0.005, 0.015);
+        assertThat(filter.getHashCount()).isEqualTo(7);
+    }
+
+    @Test
+    void mightContain_ShouldRejectEverythingWhenEmpty() {
+        BloomFilter filter = new BloomFilter(1_000, 0.01);
+
+        assertThat(filter.mightContain(Hashing.hash64("user"))).isFalse();
+        assertThat(filter.expectedFalsePositiveRate()).isZero();
+    }
+
+    @Test
+    void constructor_ShouldRejectInvalidParameters() {
+        assertThatThrownBy(() -> new BloomFilter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new BloomFilter(1_000, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimate_ShouldBeExact_ForEmptySketch() {
+        assertThat(new HyperLogLog(HyperLogLog.DEFAULT_PRECISION).estimate()).isZero();
+    }
+
+    @Test
+    void estimate_ShouldStayWithinErrorBound() {
+        for (int cardinality : new int[]{100, 10_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+            for (int i = 0; i < cardinality; i++) {
+                sketch.add(Hashing.hash64("user-" + i));
+            }
+
+            // Повторное добавление не должно менять оценку
+            for (int i = 0; i < cardinality; i += 10) {
+                sketch.add(Hashing.hash64("user-" + i));
+            }
+
+            // Допуск — три стандартные ошибки (1.04 / sqrt(4096) ~ 1.6%)
+            assertThat((double) sketch.estimate()).isCloseTo(cardinality, within(cardinality * 0.05));
+        }
+    }
+
+    @Test
+    void merge_ShouldEstimateUnion() {
+        HyperLogLog first = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        HyperLogLog second = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+        for (int i = 0; i < 60_000; i++) {
+            first.add(Hashing.hash64("user-" + i));
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            second.add(Hashing.hash64("user-" + i));
+        }
+
+        HyperLogLog union = first.copy();
+        union.merge(second);
+
+        assertThat((double) union.estimate()).isCloseTo(100_000, within(5_000.0));
+        assertThat(union.sizeInBytes()).isEqualTo(4096);
+    }
+
+    @Test
+    void merge_ShouldRejectDifferentPrecision() {
+        assertThatThrownBy(() -> new HyperLogLog(12).merge(new HyperLogLog(10)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KWayMergeTest {
+
+    @Test
+    void merge_ShouldReturnFirstElementsOfUnion() {
+        List<List<Integer>> lists = List.of(
+                List.of(100, 50, 10),
+                List.of(90, 80, 70, 5),
+                List.of(),
+                List.of(95));
+
+        List<Integer> result = KWayMerge.merge(lists, Comparator.reverseOrder(), 5);
+
+        assertThat(result).containsExactly(100, 95, 90, 80, 70);
+    }
+
+    @Test
+    void merge_ShouldReturnAllElements_WhenLimitExceedsTotal() {
+        List<Integer> result = KWayMerge.merge(List.of(List.of(3, 1), List.of(2)), Comparator.reverseOrder(), 10);
+
+        assertThat(result).containsExactly(3, 2, 1);
+    }
+
+    @Test
+    void merge_ShouldMatchFullSort_OnRandomData() {
+        Random random = new Random(42);
+        List<List<Integer>> lists = new ArrayList<>();
+        List<Integer> all = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            List<Integer> list = new ArrayList<>();
+            for (int j = random.nextInt(200); j > 0; j--) {
+                list.add(random.nextInt(10_000));
+            }
+            list.sort(Collections.reverseOrder());
+            lists.add(list);
+            all.addAll(list);
+        }
+        all.sort(Collections.reverseOrder());
+
+        List<Integer> result = KWayMerge.merge(lists, Comparator.reverseOrder(), 1000);
+
+        assertThat(result).isEqualTo(all.subList(0, Math.min(1000, all.size())));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Проверка заявленной точности KLL-скетча против точных значений на синтетических данных.
+ */
+class KllSketchTest {
+
+    /**
+     * Граница ошибки ранга для k = 200 с вероятностью 99%.
+     */
+    private static final double RANK_ERROR = 0.0165;
+
+    private static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+
+    @Test
+    void quantile_ShouldStayWithinRankError_OnUniformData() {
+        SplittableRandom random = new SplittableRandom(1);
+        int[] values = new int[1_000_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1_000_000);
+        }
+
+        assertRankErrorWithinBound(values, sketchOf(values));
+    }
+
+    @Test
+    void quantile_ShouldStayWithinRankError_OnSkewedData() {
+        SplittableRandom random = new SplittableRandom(2);
+        int[] values = new int[500_000];
+        for (int i = 0; i < values.length; i++) {
+            // Логнормальное распределение, похожее на распределение денег игроков
+            values[i] = (int) Math.min(Integer.MAX_VALUE, Math.exp(6 + 2 * gaussian(random)));
+        }
+
+        KllSketch sketch = sketchOf(values);
+
+        assertRankErrorWithinBound(values, sketch);
+        assertThat(sketch.getRetained()).isLessThan(1000);
+    }
+
+    @Test
+    void merge_ShouldStayWithinRankError() {
+        SplittableRandom random = new SplittableRandom(3);
+        int[] values = new int[600_000];
+        KllSketch[] nodes = {new KllSketch(), new KllSketch(), new KllSketch()};
+        for (int i = 0; i < values.length; i++) {
+            // Узлы получают разные диапазоны значений
+            int node = i % 3;
+            values[i] = node * 1_000_000 + random.nextInt(1_000_000);
+            nodes[node].update(values[i]);
+        }
+
+        KllSketch merged = new KllSketch();
+        for (KllSketch node : nodes) {
+            merged.merge(KllSketch.fromBytes(node.toBytes()));
+        }
+
+        assertThat(merged.getCount()).isEqualTo(values.length);
+        assertRankErrorWithinBound(values, merged);
+    }
+
+    @Test
+    void quantile_ShouldBeExact_ForSmallInput() {
+        KllSketch sketch = new KllSketch();
+        for (int value = 1; value <= 100; value++) {
+            sketch.update(value);
+        }
+
+        assertThat(sketch.quantile(0)).isEqualTo(1);
+        assertThat(sketch.quantile(0.5)).isEqualTo(50);
+        assertThat(sketch.quantile(1)).isEqualTo(100);
+        assertThat(sketch.rank(25)).isEqualTo(0.25);
+    }
+
+    @Test
+    void update_ShouldCountWeightedValuesAsRepeatedValues() {
+        SplittableRandom random = new SplittableRandom(5);
+        int[] values = new int[300_000];
+        KllSketch sketch = new KllSketch();
+        int n = 0;
+        while (n < values.length) {
+            int value = random.nextInt(1_000_000);
+            int weight = Math.min(values.length - n, 1 + random.nextInt(5000));
+            Arrays.fill(values, n, n + weight, value);
+            sketch.update(value, weight);
+            n += weight;
+        }
+
+        assertThat(sketch.getCount()).isEqualTo(values.length);
+        assertRankErrorWithinBound(values, sketch);
+    }
+
+    @Test
+    void quantile_ShouldThrowException_WhenSketchEmpty() {
+        assertThatThrownBy(() -> new KllSketch().quantile(0.5)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void fromBytes_ShouldRoundTripCompactedSketch() {
+        int[] values = new SplittableRandom(4).ints(100_000, 0, 1_000_000).toArray();
+        KllSketch sketch = sketchOf(values);
+
+        KllSketch restored = KllSketch.fromBytes(sketch.toBytes());
+
+        assertThat(restored.getCount()).isEqualTo(sketch.getCount());
+        assertThat(restored.getRetained()).isEqualTo(sketch.getRetained());
+        assertThat(restored.quantile(0.5)).isEqualTo(sketch.quantile(0.5));
+    }
+
+    @Test
+    void fromBytes_ShouldRejectTamperedData() {
+        KllSketch sketch = new KllSketch();
+        for (int value = 1; value <= 100; value++) {
+            sketch.update(value);
+        }
+        byte[] data = sketch.toBytes();
+
+        // Смещения: версия (1), k (4), count (8), min (4), max (4), количество уровней (4), размер уровня 0 (4)
+        assertThatThrownBy(() -> KllSketch.fromBytes(withInt(data, 25, 1_000_000)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KllSketch.fromBytes(withInt(data, 29, Integer.MAX_VALUE)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KllSketch.fromBytes(withInt(data, 1, Integer.MAX_VALUE)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KllSketch.fromBytes(withLong(data, 5, 1_000_000_000L)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KllSketch.fromBytes(withInt(data, 17, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KllSketch.fromBytes(Arrays.copyOf(data, data.length + 4)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static KllSketch sketchOf(int[] values) {
+        KllSketch sketch = new KllSketch();
+        for (int value : values) {
+            sketch.update(value);
+        }
+        return sketch;
+    }
+
+    private static void assertRankErrorWithinBound(int[] values, KllSketch sketch) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double quantile : QUANTILES) {
+            int estimate = sketch.quantile(quantile);
+            // Истинный ранг оценки: доля значений, не превышающих её
+            int upper = upperBound(sorted, estimate);
+            int lower = upperBound(sorted, estimate - 1);
+            double maxRank = (double) upper / sorted.length;
+            double minRank = (double) lower / sorted.length;
+            assertThat(quantile).isBetween(minRank - RANK_ERROR, maxRank + RANK_ERROR);
+
+            double exactRank = (double) upperBound(sorted, sorted[(int) (quantile * (sorted.length - 1))]) / sorted.length;
+            assertThat(sketch.rank(sorted[(int) (quantile * (sorted.length - 1))])).isBetween(
+                    exactRank - RANK_ERROR, exactRank + RANK_ERROR);
+        }
+    }
+
+    private static byte[] withInt(byte[] data, int offset, int value) {
+        byte[] copy = data.clone();
+        ByteBuffer.wrap(copy).putInt(offset, value);
+        return copy;
+    }
+
+    private static byte[] withLong(byte[] data, int offset, long value) {
+        byte[] copy = data.clone();
+        ByteBuffer.wrap(copy).putLong(offset, value);
+        return copy;
+    }
+
+    private static int upperBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
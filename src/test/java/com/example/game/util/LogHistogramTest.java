@@ -0,0 +1,102 @@
+package com.example.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Проверка точности логарифмической гистограммы и удаления значений.
+ */
+class LogHistogramTest {
+
+    private static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+
+    @Test
+    void quantile_ShouldStayWithinRelativeError_OnSkewedData() {
+        SplittableRandom random = new SplittableRandom(1);
+        int[] values = new int[500_000];
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // Логнормальное распределение, похожее на распределение денег игроков
+            values[i] = (int) Math.min(Integer.MAX_VALUE, Math.exp(6 + 2 * gaussian(random)));
+            histogram.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertThat(histogram.getCount()).isEqualTo(values.length);
+        for (double quantile : QUANTILES) {
+            int exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            assertThat((double) histogram.quantile(quantile))
+                    .isCloseTo(exact, within(exact * LogHistogram.RELATIVE_ACCURACY + 1));
+        }
+    }
+
+    @Test
+    void quantile_ShouldBeExact_ForSmallValues() {
+        LogHistogram histogram = new LogHistogram();
+        for (int value = -50; value <= 149; value++) {
+            histogram.add(value);
+        }
+
+        assertThat(histogram.quantile(0)).isEqualTo(-50);
+        assertThat(histogram.quantile(0.25)).isEqualTo(-1);
+        assertThat(histogram.quantile(0.5)).isEqualTo(49);
+        assertThat(histogram.quantile(1)).isEqualTo(149);
+        assertThat(histogram.rank(-1)).isEqualTo(0.25);
+        assertThat(histogram.rank(49)).isEqualTo(0.5);
+    }
+
+    @Test
+    void remove_ShouldMoveValueWithoutRereadingOtherValues() {
+        LogHistogram histogram = new LogHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.add(value);
+        }
+
+        assertThat(histogram.remove(100)).isTrue();
+        histogram.add(1_000_000);
+
+        assertThat(histogram.getCount()).isEqualTo(100);
+        assertThat(histogram.rank(99)).isEqualTo(0.99);
+        assertThat((double) histogram.quantile(1)).isCloseTo(1_000_000, within(10_000.0));
+    }
+
+    @Test
+    void remove_ShouldNotMakeCountNegative() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.add(5);
+
+        assertThat(histogram.remove(6)).isFalse();
+        assertThat(histogram.remove(-5)).isFalse();
+        assertThat(histogram.remove(5)).isTrue();
+        assertThat(histogram.remove(5)).isFalse();
+
+        assertThat(histogram.getCount()).isZero();
+        assertThatThrownBy(() -> histogram.quantile(0.5)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void toKllSketch_ShouldKeepCountsAndQuantiles() {
+        SplittableRandom random = new SplittableRandom(2);
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < 200_000; i++) {
+            histogram.add(random.nextInt(1_000_000));
+        }
+
+        KllSketch sketch = histogram.toKllSketch();
+
+        assertThat(sketch.getCount()).isEqualTo(histogram.getCount());
+        assertThat(sketch.rank(500_000)).isCloseTo(histogram.rank(500_000), within(0.0165));
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        double v = random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RankedSkipListTest {
+
+    @Test
+    void rankAndGet_ShouldFollowSortOrder() {
+        RankedSkipList<Integer> list = new RankedSkipList<>(Comparator.reverseOrder());
+        for (int value : new int[]{50, 10, 90, 30, 70}) {
+            assertThat(list.add(value)).isTrue();
+        }
+
+        assertThat(list.add(30)).isFalse();
+        assertThat(list.size()).isEqualTo(5);
+        assertThat(list.rank(90)).isEqualTo(1);
+        assertThat(list.rank(10)).isEqualTo(5);
+        assertThat(list.rank(40)).isZero();
+        assertThat(list.get(3)).isEqualTo(50);
+        assertThat(list.get(6)).isNull();
+        assertThat(list.range(0, 2)).containsExactly(90, 70);
+        assertThat(list.range(4, 10)).containsExactly(30, 10);
+    }
+
+    @Test
+    void operations_ShouldMatchTreeSet_OnRandomWorkload() {
+        Random random = new Random(11);
+        RankedSkipList<Integer> list = new RankedSkipList<>(Comparator.naturalOrder());
+        TreeSet<Integer> expected = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            int value = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertThat(list.remove(value)).isEqualTo(expected.remove(value));
+            } else {
+                assertThat(list.add(value)).isEqualTo(expected.add(value));
+            }
+        }
+
+        assertThat(list.size()).isEqualTo(expected.size());
+        List<Integer> sorted = new ArrayList<>(expected);
+        for (int i = 0; i < sorted.size(); i += 7) {
+            assertThat(list.rank(sorted.get(i))).isEqualTo(i + 1);
+            assertThat(list.get(i + 1)).isEqualTo(sorted.get(i));
+        }
+        assertThat(list.range(1, sorted.size())).isEqualTo(sorted);
+    }
+}
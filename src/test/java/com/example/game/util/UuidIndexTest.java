@@ -0,0 +1,84 @@
+package com.example.game.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UuidIndexTest {
+
+    @Test
+    void put_ShouldStoreAndReplaceValues() {
+        UuidIndex index = new UuidIndex(4);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        assertThat(index.put(first, 1)).isEqualTo(UuidIndex.MISSING);
+        assertThat(index.put(second, 2)).isEqualTo(UuidIndex.MISSING);
+        assertThat(index.put(first, 3)).isEqualTo(1);
+
+        assertThat(index.get(first)).isEqualTo(3);
+        assertThat(index.get(second.getMostSignificantBits(), second.getLeastSignificantBits())).isEqualTo(2);
+        assertThat(index.get(UUID.randomUUID())).isEqualTo(UuidIndex.MISSING);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void put_ShouldMatchHashMapAfterResizes() {
+        UuidIndex index = new UuidIndex(16);
+        Map<UUID, Integer> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 100_000; i++) {
+            // Половины с малым разбросом проверяют качество хеширования
+            UUID key = new UUID(random.nextInt(64), random.nextInt(5_000));
+            expected.put(key, i);
+            index.put(key, i);
+        }
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(index.get(key)).isEqualTo(value));
+    }
+
+    @Test
+    void remove_ShouldMatchHashMapWithCollidingKeys() {
+        UuidIndex index = new UuidIndex(16);
+        Map<UUID, Integer> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(11);
+        for (int i = 0; i < 100_000; i++) {
+            UUID key = new UUID(random.nextInt(8), random.nextInt(2_000));
+            if (random.nextBoolean()) {
+                assertThat(index.remove(key)).isEqualTo(expected.getOrDefault(key, UuidIndex.MISSING));
+                expected.remove(key);
+            } else {
+                expected.put(key, i);
+                index.put(key, i);
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(expected.size());
+        expected.forEach((key, value) -> assertThat(index.get(key)).isEqualTo(value));
+        assertThat(index.remove(new UUID(100, 100))).isEqualTo(UuidIndex.MISSING);
+    }
+
+    @Test
+    void put_ShouldRejectNegativeValues() {
+        assertThatThrownBy(() -> new UuidIndex(1).put(UUID.randomUUID(), -1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void compareUnsigned_ShouldMatchPostgresOrder() {
+        UUID low = UUID.fromString("00000000-0000-0000-0000-000000000001");
+        UUID high = UUID.fromString("ffffffff-0000-0000-0000-000000000000");
+
+        // UUID.compareTo сравнивает со знаком и считает ffffffff-... меньшим
+        assertThat(high.compareTo(low)).isNegative();
+        assertThat(Uuids.compareUnsigned(high, low)).isPositive();
+        assertThat(Uuids.compareUnsigned(low, UUID.fromString(low.toString()))).isZero();
+    }
+}